@@ -54,6 +54,7 @@ final class Behaviors implements IDetachable
 			{
 				component.addStateChange();
 			}
+			eventSubscriptionsChanged();
 
 			// Give handler the opportunity to bind this component
 			behavior.bind(component);
@@ -105,6 +106,7 @@ final class Behaviors implements IDetachable
 			{
 				component.addStateChange();
 			}
+			eventSubscriptionsChanged();
 			behavior.detach(component);
 		}
 		else
@@ -144,6 +146,18 @@ final class Behaviors implements IDetachable
 		}
 	}
 
+	/**
+	 * Lets the page rebuild its index of the components handling events.
+	 */
+	private void eventSubscriptionsChanged()
+	{
+		final Page page = component.findPage();
+		if (page != null)
+		{
+			page.eventSubscriptionsChanged();
+		}
+	}
+
 	private boolean internalRemove(final Behavior behavior)
 	{
 		final int len = component.data_length();
@@ -0,0 +1,377 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * The storage of the children of a {@link MarkupContainer} with many children.
+ * <p>
+ * The children are kept in an array in the order they were added. An open addressing table of
+ * positions in that array, keyed by the hash of the child ids, gives constant time lookups without
+ * allocating an entry object per child. Removed children leave a hole in the array, which is
+ * compacted when it gets too sparse.
+ * </p>
+ * <p>
+ * Only the array of children is serialized, the lookup table is rebuilt lazily on the first access
+ * after deserialization.
+ * </p>
+ * 
+ * @see MarkupContainer#MAPIFY_THRESHOLD
+ */
+final class ChildTable implements Serializable, Iterable<Component>
+{
+	private static final long serialVersionUID = 1L;
+
+	/** a slot which has never been used, ends a probe sequence */
+	private static final int EMPTY = 0;
+
+	/** a slot whose child has been removed */
+	private static final int DELETED = -1;
+
+	/** the children in the order they were added, {@code null} for removed children */
+	private transient Component[] children;
+
+	/** the hashes of the ids of the children, parallel to {@link #children} */
+	private transient int[] hashes;
+
+	/** the number of used positions in {@link #children} */
+	private transient int end;
+
+	/** the number of children */
+	private transient int size;
+
+	/**
+	 * The lookup table with the position in {@link #children} plus one, {@link #EMPTY} or
+	 * {@link #DELETED}. Its length is a power of two. {@code null} when it has to be rebuilt.
+	 */
+	private transient int[] slots;
+
+	/** the number of slots which are not {@link #EMPTY} */
+	private transient int usedSlots;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param capacity
+	 *            the initial number of children to make room for
+	 */
+	ChildTable(final int capacity)
+	{
+		children = new Component[capacity];
+		hashes = new int[capacity];
+	}
+
+	/**
+	 * @param id
+	 *            the id of the child
+	 * @return the child with the given id or {@code null}
+	 */
+	Component get(final String id)
+	{
+		int slot = findSlot(id);
+		return slot < 0 ? null : children[slots[slot] - 1];
+	}
+
+	/**
+	 * Adds the child, or replaces the child with the same id at its position.
+	 * 
+	 * @param child
+	 *            the child
+	 * @return the replaced child or {@code null}
+	 */
+	Component put(final Component child)
+	{
+		String id = child.getId();
+		int slot = findSlot(id);
+		if (slot >= 0)
+		{
+			int position = slots[slot] - 1;
+			Component oldChild = children[position];
+			children[position] = child;
+			return oldChild;
+		}
+
+		if (end == children.length)
+		{
+			makeRoom();
+		}
+
+		int position = end++;
+		children[position] = child;
+		size++;
+
+		if (slots == null || (usedSlots + 1) * 2 > slots.length)
+		{
+			rehash();
+		}
+		else
+		{
+			hashes[position] = hash(id);
+			insert(position);
+		}
+		return null;
+	}
+
+	/**
+	 * @param id
+	 *            the id of the child
+	 * @return the removed child or {@code null}
+	 */
+	Component remove(final String id)
+	{
+		int slot = findSlot(id);
+		if (slot < 0)
+		{
+			return null;
+		}
+
+		int position = slots[slot] - 1;
+		Component oldChild = children[position];
+		slots[slot] = DELETED;
+		children[position] = null;
+		size--;
+
+		while (end > 0 && children[end - 1] == null)
+		{
+			end--;
+		}
+
+		int holes = end - size;
+		if (holes > 16 && holes > size)
+		{
+			compact();
+		}
+		return oldChild;
+	}
+
+	/**
+	 * @param id
+	 *            the id of a child
+	 * @return the child added before the child with the given id, or {@code null} if there is none
+	 */
+	Component previous(final String id)
+	{
+		int slot = findSlot(id);
+		if (slot >= 0)
+		{
+			for (int i = slots[slot] - 2; i >= 0; i--)
+			{
+				if (children[i] != null)
+				{
+					return children[i];
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the number of children
+	 */
+	int size()
+	{
+		return size;
+	}
+
+	/**
+	 * @return the children in the order they were added
+	 */
+	List<Component> values()
+	{
+		List<Component> values = new ArrayList<>(size);
+		for (int i = 0; i < end; i++)
+		{
+			if (children[i] != null)
+			{
+				values.add(children[i]);
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * The iterator does not support modifications of the table during iteration.
+	 */
+	@Override
+	public Iterator<Component> iterator()
+	{
+		return new Iterator<Component>()
+		{
+			private int next = advance(0);
+
+			private int advance(int position)
+			{
+				while (position < end && children[position] == null)
+				{
+					position++;
+				}
+				return position;
+			}
+
+			@Override
+			public boolean hasNext()
+			{
+				return next < end;
+			}
+
+			@Override
+			public Component next()
+			{
+				if (next >= end)
+				{
+					throw new NoSuchElementException();
+				}
+				Component child = children[next];
+				next = advance(next + 1);
+				return child;
+			}
+		};
+	}
+
+	private static int hash(final String id)
+	{
+		int h = id.hashCode();
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * @return the slot pointing to the child with the given id or {@code -1}
+	 */
+	private int findSlot(final String id)
+	{
+		if (slots == null)
+		{
+			rehash();
+		}
+
+		int hash = hash(id);
+		int mask = slots.length - 1;
+		for (int i = hash & mask;; i = (i + 1) & mask)
+		{
+			int slot = slots[i];
+			if (slot == EMPTY)
+			{
+				return -1;
+			}
+			if (slot != DELETED && hashes[slot - 1] == hash && id.equals(children[slot - 1].getId()))
+			{
+				return i;
+			}
+		}
+	}
+
+	/**
+	 * Adds the child at the given position to the lookup table.
+	 */
+	private void insert(final int position)
+	{
+		int mask = slots.length - 1;
+		int i = hashes[position] & mask;
+		while (slots[i] != EMPTY)
+		{
+			i = (i + 1) & mask;
+		}
+		slots[i] = position + 1;
+		usedSlots++;
+	}
+
+	/**
+	 * Rebuilds the lookup table, so that it is at most half full.
+	 */
+	private void rehash()
+	{
+		int capacity = Integer.highestOneBit(Math.max(8, size) * 4 - 1);
+		slots = new int[capacity];
+		usedSlots = 0;
+
+		if (hashes == null || hashes.length != children.length)
+		{
+			hashes = new int[children.length];
+		}
+		for (int i = 0; i < end; i++)
+		{
+			if (children[i] != null)
+			{
+				hashes[i] = hash(children[i].getId());
+				insert(i);
+			}
+		}
+	}
+
+	/**
+	 * Compacts the array of children, or grows it when there are few holes.
+	 */
+	private void makeRoom()
+	{
+		if (end - size > end / 4)
+		{
+			compact();
+		}
+		else
+		{
+			int capacity = Math.max(end + 1, end * 2);
+			children = Arrays.copyOf(children, capacity);
+			hashes = Arrays.copyOf(hashes, capacity);
+		}
+	}
+
+	/**
+	 * Moves the children over the holes left by removed children.
+	 */
+	private void compact()
+	{
+		int position = 0;
+		for (int i = 0; i < end; i++)
+		{
+			if (children[i] != null)
+			{
+				children[position] = children[i];
+				hashes[position] = hashes[i];
+				position++;
+			}
+		}
+		Arrays.fill(children, position, end, null);
+		end = position;
+
+		// the positions have changed
+		slots = null;
+	}
+
+	private void writeObject(final ObjectOutputStream s) throws IOException
+	{
+		s.defaultWriteObject();
+		s.writeObject(values().toArray(new Component[size]));
+	}
+
+	private void readObject(final ObjectInputStream s) throws IOException, ClassNotFoundException
+	{
+		s.defaultReadObject();
+
+		// the ids may not be read yet when the children refer back to their parent
+		children = (Component[])s.readObject();
+		end = size = children.length;
+	}
+}
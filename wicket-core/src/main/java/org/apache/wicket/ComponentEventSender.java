@@ -23,8 +23,10 @@ import org.apache.wicket.event.Broadcast;
 import org.apache.wicket.event.IEventSink;
 import org.apache.wicket.event.IEventSource;
 import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.settings.FrameworkSettings;
 import org.apache.wicket.util.lang.Args;
 import org.apache.wicket.util.visit.IVisit;
+import org.apache.wicket.util.visit.IVisitFilter;
 import org.apache.wicket.util.visit.IVisitor;
 import org.apache.wicket.util.visit.Visits;
 
@@ -157,7 +159,8 @@ final class ComponentEventSender implements IEventSource
 
 		if (cursor instanceof MarkupContainer)
 		{
-			((MarkupContainer)cursor).visitChildren(new ComponentEventVisitor(event, dispatcher));
+			Visits.visitChildren((MarkupContainer)cursor, new ComponentEventVisitor(event, dispatcher),
+				getFilter(cursor));
 		}
 	}
 
@@ -186,7 +189,8 @@ final class ComponentEventSender implements IEventSource
 
 		if (cursor instanceof MarkupContainer)
 		{
-			Visits.visitPostOrder(cursor, new ComponentEventVisitor(event, dispatcher));
+			Visits.visitPostOrder(cursor, new ComponentEventVisitor(event, dispatcher),
+				getFilter(cursor));
 		}
 		else
 		{
@@ -276,6 +280,33 @@ final class ComponentEventSender implements IEventSource
 		}
 	}
 
+	/**
+	 * Gets the filter restricting a broadcast to the components handling events, if the page has
+	 * {@link Page#setIndexEventSubscriptions(boolean) enabled} it and no additional dispatchers
+	 * might deliver events to other components.
+	 * 
+	 * @param cursor
+	 *            the component the broadcast starts at
+	 * @return the filter
+	 */
+	private IVisitFilter getFilter(Component cursor)
+	{
+		if (dispatcher instanceof FrameworkSettings &&
+			((FrameworkSettings)dispatcher).hasEventDispatchers() == false)
+		{
+			Page page = cursor.findPage();
+			if (page != null)
+			{
+				EventSubscriptions subscriptions = page.getEventSubscriptions();
+				if (subscriptions != null)
+				{
+					return subscriptions;
+				}
+			}
+		}
+		return IVisitFilter.ANY;
+	}
+
 	private static void dispatchToComponent(IEventDispatcher dispatcher, Component object,
 		ComponentEvent<?> e)
 	{
@@ -24,9 +24,11 @@ import org.apache.wicket.page.PageStoreManager;
 import org.apache.wicket.pageStore.AsynchronousDataStore;
 import org.apache.wicket.pageStore.AsynchronousPageStore;
 import org.apache.wicket.pageStore.DefaultPageStore;
+import org.apache.wicket.pageStore.DeltaDataStore;
 import org.apache.wicket.pageStore.DiskDataStore;
 import org.apache.wicket.pageStore.IDataStore;
 import org.apache.wicket.pageStore.IPageStore;
+import org.apache.wicket.pageStore.SegmentedDataStore;
 import org.apache.wicket.serialize.ISerializer;
 import org.apache.wicket.settings.StoreSettings;
 import org.apache.wicket.util.lang.Args;
@@ -58,12 +60,18 @@ public class DefaultPageManagerProvider implements IPageManagerProvider
 
 		StoreSettings storeSettings = getStoreSettings();
 
+		if (storeSettings.isDeltaPages())
+		{
+			dataStore = new DeltaDataStore(dataStore);
+		}
+
 		IPageStore pageStore;
 
 		if (dataStore.canBeAsynchronous() && storeSettings.isAsynchronous())
 		{
 			int capacity = storeSettings.getAsynchronousQueueCapacity();
-			dataStore = new AsynchronousDataStore(dataStore, capacity);
+			dataStore = new AsynchronousDataStore(dataStore, capacity,
+				storeSettings.getAsynchronousThreads());
 
 			pageStore = newPageStore(dataStore);
 
@@ -83,8 +91,15 @@ public class DefaultPageManagerProvider implements IPageManagerProvider
 
 	protected IPageStore newPageStore(IDataStore dataStore)
 	{
-		int inmemoryCacheSize = getStoreSettings().getInmemoryCacheSize();
 		ISerializer pageSerializer = application.getFrameworkSettings().getSerializer();
+
+		Bytes offHeapCacheSize = getStoreSettings().getOffHeapCacheSize();
+		if (offHeapCacheSize.bytes() > 0)
+		{
+			return new DefaultPageStore(pageSerializer, dataStore, offHeapCacheSize);
+		}
+
+		int inmemoryCacheSize = getStoreSettings().getInmemoryCacheSize();
 		return new DefaultPageStore(pageSerializer, dataStore, inmemoryCacheSize);
 	}
 
@@ -94,6 +109,12 @@ public class DefaultPageManagerProvider implements IPageManagerProvider
 		Bytes maxSizePerSession = storeSettings.getMaxSizePerSession();
 		File fileStoreFolder = storeSettings.getFileStoreFolder();
 
+		if (storeSettings.isSegmented())
+		{
+			return new SegmentedDataStore(application.getName(), fileStoreFolder,
+				maxSizePerSession, storeSettings.getSegmentSize());
+		}
+
 		return new DiskDataStore(application.getName(), fileStoreFolder, maxSizePerSession);
 	}
 
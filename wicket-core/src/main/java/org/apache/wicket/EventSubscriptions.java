@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import org.apache.wicket.behavior.Behavior;
+import org.apache.wicket.event.IEvent;
+import org.apache.wicket.util.visit.IVisit;
+import org.apache.wicket.util.visit.IVisitFilter;
+import org.apache.wicket.util.visit.IVisitor;
+
+/**
+ * An index of the components of a page which handle events, i.e. whose class overrides
+ * {@link Component#onEvent(IEvent)} or which have a behavior overriding
+ * {@link Behavior#onEvent(Component, IEvent)}. As a {@link IVisitFilter} it restricts a broadcast
+ * to these components and to the containers which have any of them as descendant.
+ * <p>
+ * The index is discarded by the page as soon as components or behaviors are added or removed. If
+ * this happens while a broadcast is in progress, the index lets it visit all remaining components.
+ * </p>
+ * 
+ * @see Page#setIndexEventSubscriptions(boolean)
+ */
+final class EventSubscriptions implements IVisitFilter
+{
+	private static final ClassValue<Boolean> COMPONENT_HANDLES_EVENTS = new ClassValue<Boolean>()
+	{
+		@Override
+		protected Boolean computeValue(Class<?> type)
+		{
+			return overrides(type, Component.class, "onEvent", IEvent.class);
+		}
+	};
+
+	private static final ClassValue<Boolean> BEHAVIOR_HANDLES_EVENTS = new ClassValue<Boolean>()
+	{
+		@Override
+		protected Boolean computeValue(Class<?> type)
+		{
+			return overrides(type, Behavior.class, "onEvent", Component.class, IEvent.class);
+		}
+	};
+
+	/** the components which handle events */
+	private final Set<Component> subscribers = newIdentitySet();
+
+	/** the subscribers and all their ancestors */
+	private final Set<Component> containers = newIdentitySet();
+
+	private volatile boolean valid = true;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param page
+	 *            the page to index
+	 */
+	EventSubscriptions(final Page page)
+	{
+		add(page);
+		page.visitChildren(new IVisitor<Component, Void>()
+		{
+			@Override
+			public void component(Component component, IVisit<Void> visit)
+			{
+				add(component);
+			}
+		});
+	}
+
+	private void add(final Component component)
+	{
+		if (handlesEvents(component))
+		{
+			subscribers.add(component);
+
+			Component cursor = component;
+			while (cursor != null && containers.add(cursor))
+			{
+				cursor = cursor.getParent();
+			}
+		}
+	}
+
+	/**
+	 * Marks this index as outdated.
+	 */
+	void invalidate()
+	{
+		valid = false;
+	}
+
+	/**
+	 * @return the number of components which handle events
+	 */
+	int size()
+	{
+		return subscribers.size();
+	}
+
+	@Override
+	public boolean visitObject(final Object object)
+	{
+		return valid == false || subscribers.contains(object);
+	}
+
+	@Override
+	public boolean visitChildren(final Object object)
+	{
+		return valid == false || containers.contains(object);
+	}
+
+	/**
+	 * Checks whether events are handled by the component or any of its behaviors.
+	 * 
+	 * @param component
+	 * @return {@code true} if the component or a behavior overrides {@code onEvent()}
+	 */
+	static boolean handlesEvents(final Component component)
+	{
+		if (COMPONENT_HANDLES_EVENTS.get(component.getClass()))
+		{
+			return true;
+		}
+		for (Behavior behavior : component.getBehaviors())
+		{
+			if (BEHAVIOR_HANDLES_EVENTS.get(behavior.getClass()))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks whether a method of the base class is overridden by the given type or one of its
+	 * superclasses.
+	 */
+	private static boolean overrides(final Class<?> type, final Class<?> base, final String name,
+		final Class<?>... parameterTypes)
+	{
+		for (Class<?> cursor = type; cursor != null && cursor != base; cursor = cursor.getSuperclass())
+		{
+			try
+			{
+				cursor.getDeclaredMethod(name, parameterTypes);
+				return true;
+			}
+			catch (NoSuchMethodException ex)
+			{
+				// check the superclass
+			}
+			catch (SecurityException ex)
+			{
+				// assume the worst
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static Set<Component> newIdentitySet()
+	{
+		return Collections.newSetFromMap(new IdentityHashMap<Component, Boolean>());
+	}
+}
@@ -17,6 +17,7 @@
 package org.apache.wicket;
 
 import java.io.Serializable;
+import java.nio.charset.Charset;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -25,12 +26,10 @@ import java.util.Deque;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import java.util.Spliterators;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
-import org.apache.commons.collections4.map.LinkedMap;
 import org.apache.wicket.core.util.string.ComponentStrings;
 import org.apache.wicket.markup.ComponentTag;
 import org.apache.wicket.markup.ComponentTag.IAutoComponentFactory;
@@ -42,6 +41,7 @@ import org.apache.wicket.markup.MarkupFactory;
 import org.apache.wicket.markup.MarkupNotFoundException;
 import org.apache.wicket.markup.MarkupStream;
 import org.apache.wicket.markup.MarkupType;
+import org.apache.wicket.markup.RawMarkup;
 import org.apache.wicket.markup.WicketTag;
 import org.apache.wicket.markup.html.border.Border;
 import org.apache.wicket.markup.html.form.AutoLabelResolver;
@@ -49,6 +49,8 @@ import org.apache.wicket.markup.resolver.ComponentResolvers;
 import org.apache.wicket.model.IComponentInheritedModel;
 import org.apache.wicket.model.IModel;
 import org.apache.wicket.model.IWrapModel;
+import org.apache.wicket.request.Response;
+import org.apache.wicket.response.IEncodingResponse;
 import org.apache.wicket.settings.DebugSettings;
 import org.apache.wicket.util.lang.Args;
 import org.apache.wicket.util.lang.Classes;
@@ -108,10 +110,10 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 	private static final int INITIAL_CHILD_LIST_CAPACITY = 12;
 
 	/**
-	 * The threshold where we start using a Map to store children in, replacing a List. Adding
-	 * components to a list is O(n), and to a map O(1). The magic number is 24, due to a Map using
-	 * more memory to store its elements and below 24 children there's no discernible difference
-	 * between adding to a Map or a List.
+	 * The threshold where we start using a {@link ChildTable} to store children in, replacing a
+	 * List. Adding components to a list is O(n), and to a table O(1). The magic number is 24, due
+	 * to a table using more memory to store its elements and below 24 children there's no
+	 * discernible difference between adding to a table or a List.
 	 * 
 	 * We have focused on adding elements to a list, instead of indexed lookups because adding is an
 	 * action that is performed very often, and lookups often are done by component IDs, not index.
@@ -163,8 +165,8 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 
 	/**
 	 * The children of this markup container, if any. Can be a Component when there's only one
-	 * child, a List when the number of children is fewer than {@link #MAPIFY_THRESHOLD} or a Map
-	 * when there are more children.
+	 * child, a List when the number of children is fewer than {@link #MAPIFY_THRESHOLD} or a
+	 * {@link ChildTable} when there are more children.
 	 */
 	private Object children;
 
@@ -607,8 +609,8 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 				}
 				else
 				{
-					Map<String, Component> childrenMap = children();
-					internalIterator = childrenMap.values().iterator();
+					ChildTable childTable = children();
+					internalIterator = childTable.iterator();
 				}
 
 				// since we now have a new iterator, we need to set it to the last known position
@@ -731,8 +733,15 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 		{
 			addStateChange();
 
+			final Page page = findPage();
 			for (Component child : this)
 			{
+				// Notify Page that component is being removed
+				if (page != null)
+				{
+					page.componentRemoved(child);
+				}
+
 				// Do not call remove() because the state change would then be
 				// recorded twice.
 				child.internalOnRemove();
@@ -1067,8 +1076,9 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 	 * 
 	 * - a list of components when there are more than 1 children
 	 * 
-	 * - a map of components when the number of children makes looking up children by id more costly
-	 * than an indexed search (see MAPIFY_THRESHOLD)
+	 * - a table of components when the number of children makes looking up children by id more
+	 * costly than an indexed search (see MAPIFY_THRESHOLD). The table keeps the children in a flat
+	 * array and looks them up by the hash of their id, without an entry object per child.
 	 * 
 	 * To ensure that iterating through the list of children keeps working even when children are
 	 * added, replaced and removed without throwing a ConcurrentModificationException a special
@@ -1119,7 +1129,7 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 			}
 			return null;
 		}
-		Map<String, Component> kids = children();
+		ChildTable kids = children();
 		return kids.get(childId);
 	}
 
@@ -1166,17 +1176,17 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 				prevChild = child;
 			}
 		}
-		else if (children instanceof LinkedMap)
+		else if (children instanceof ChildTable)
 		{
-			LinkedMap<String, Component> childrenMap = children();
-			if (childrenMap.containsKey(childId))
+			ChildTable childTable = children();
+			Component prevSibling = childTable.previous(childId);
+			Component oldChild = childTable.remove(childId);
+			if (oldChild != null)
 			{
-				String prevSiblingId = childrenMap.previousKey(childId);
-				Component oldChild = childrenMap.remove(childId);
-				removals_add(oldChild, childrenMap.get(prevSiblingId));
-				if (childrenMap.size() == 1)
+				removals_add(oldChild, prevSibling);
+				if (childTable.size() == 1)
 				{
-					children = childrenMap.values().iterator().next();
+					children = childTable.iterator().next();
 				}
 			}
 		}
@@ -1202,7 +1212,7 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 			List<?> kids = children();
 			return kids.size();
 		}
-		return ((Map<?, ?>)children).size();
+		return ((ChildTable)children).size();
 	}
 
 	/**
@@ -1277,7 +1287,7 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 
 			/*
 			 * If it still fits in the allotted number of items of a List, just add it, otherwise
-			 * change the internal data structure to a Map for speedier lookups.
+			 * change the internal data structure to a table for speedier lookups.
 			 */
 			if (childrenList.size() < MAPIFY_THRESHOLD)
 			{
@@ -1285,19 +1295,19 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 			}
 			else
 			{
-				Map<String, Component> newChildren = new LinkedMap<>(MAPIFY_THRESHOLD * 2);
+				ChildTable newChildren = new ChildTable(MAPIFY_THRESHOLD * 2);
 				for (Component curChild : childrenList)
 				{
-					newChildren.put(curChild.getId(), curChild);
+					newChildren.put(curChild);
 				}
-				newChildren.put(child.getId(), child);
+				newChildren.put(child);
 				children = newChildren;
 			}
 			return null;
 		}
 
-		Map<String, Component> childrenMap = children();
-		Component oldChild = childrenMap.put(child.getId(), child);
+		ChildTable childTable = children();
+		Component oldChild = childTable.put(child);
 
 		if (oldChild == null)
 		{
@@ -1471,7 +1481,17 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 			// Render as raw markup
 			if (canRenderRawTag(element))
 			{
-				getResponse().write(element.toCharSequence());
+				Response response = getResponse();
+				if (element instanceof RawMarkup && response instanceof IEncodingResponse)
+				{
+					// write the markup encoded once for all renders
+					Charset charset = ((IEncodingResponse)response).getCharset();
+					response.write(((RawMarkup)element).getBytes(charset));
+				}
+				else
+				{
+					response.write(element.toCharSequence());
+				}
 			}
 			return true;
 		}
@@ -1725,7 +1745,7 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 		}
 		else
 		{
-			return new ArrayList<>(((Map<String, Component>)children).values());
+			return ((ChildTable)children).values();
 		}
 	}
 
@@ -98,6 +98,9 @@ public abstract class Page extends MarkupContainer
 	/** Flag that indicates if the page was created using one of its bookmarkable constructors */
 	private static final int FLAG_WAS_CREATED_BOOKMARKABLE = FLAG_RESERVED8;
 
+	/** True if broadcasts should visit only the components which handle events */
+	private static final int FLAG_INDEX_EVENT_SUBSCRIPTIONS = FLAG_RESERVED1;
+
 	/** Log. */
 	private static final Logger log = LoggerFactory.getLogger(Page.class);
 
@@ -118,6 +121,12 @@ public abstract class Page extends MarkupContainer
 	 */
 	private transient Boolean stateless = null;
 
+	/** The components which handle events, built lazily if enabled */
+	private transient EventSubscriptions eventSubscriptions;
+
+	/** Incremented whenever a component is added to or removed from this page */
+	private transient int hierarchyChanges;
+
 	/** Page parameters used to construct this page */
 	private final PageParameters pageParameters;
 
@@ -299,6 +308,66 @@ public abstract class Page extends MarkupContainer
 		pageManager.touchPage(this);
 	}
 
+	/**
+	 * Sets whether {@link org.apache.wicket.event.Broadcast#BREADTH} and
+	 * {@link org.apache.wicket.event.Broadcast#DEPTH} broadcasts on this page should visit only
+	 * the components which handle events, skipping all subtrees without such components. A
+	 * component handles events if it overrides {@code onEvent()} or has a behavior overriding it.
+	 * The order of delivery is unchanged.
+	 * <p>
+	 * The index of these components is built on the first broadcast and rebuilt after components
+	 * or behaviors were added or removed. It is not used when additional
+	 * {@link IEventDispatcher}s are registered, since these might deliver events to any component.
+	 * </p>
+	 * 
+	 * @param value
+	 *            whether broadcasts should be restricted to the components handling events
+	 * @return this
+	 */
+	public final Page setIndexEventSubscriptions(boolean value)
+	{
+		setFlag(FLAG_INDEX_EVENT_SUBSCRIPTIONS, value);
+		eventSubscriptionsChanged();
+		return this;
+	}
+
+	/**
+	 * @return whether broadcasts visit only the components handling events
+	 * @see #setIndexEventSubscriptions(boolean)
+	 */
+	public final boolean getIndexEventSubscriptions()
+	{
+		return getFlag(FLAG_INDEX_EVENT_SUBSCRIPTIONS);
+	}
+
+	/**
+	 * @return the index of the components handling events, or {@code null} if not enabled
+	 */
+	final EventSubscriptions getEventSubscriptions()
+	{
+		if (getFlag(FLAG_INDEX_EVENT_SUBSCRIPTIONS) == false)
+		{
+			return null;
+		}
+		if (eventSubscriptions == null)
+		{
+			eventSubscriptions = new EventSubscriptions(this);
+		}
+		return eventSubscriptions;
+	}
+
+	/**
+	 * Discards the index of the components handling events.
+	 */
+	final void eventSubscriptionsChanged()
+	{
+		if (eventSubscriptions != null)
+		{
+			eventSubscriptions.invalidate();
+			eventSubscriptions = null;
+		}
+	}
+
 	/**
 	 * THIS METHOD IS NOT PART OF THE WICKET PUBLIC API. DO NOT CALL.
 	 * 
@@ -865,6 +934,8 @@ public abstract class Page extends MarkupContainer
 	 */
 	final void componentAdded(final Component component)
 	{
+		hierarchyChanges++;
+		eventSubscriptionsChanged();
 		if (!component.isAuto())
 		{
 			dirty();
@@ -890,6 +961,8 @@ public abstract class Page extends MarkupContainer
 	 */
 	final void componentRemoved(final Component component)
 	{
+		hierarchyChanges++;
+		eventSubscriptionsChanged();
 		if (!component.isAuto())
 		{
 			dirty();
@@ -908,6 +981,16 @@ public abstract class Page extends MarkupContainer
 		}
 	}
 
+	/**
+	 * THIS METHOD IS NOT PART OF THE WICKET PUBLIC API. DO NOT CALL.
+	 * 
+	 * @return a number which changes whenever components are added to or removed from this page
+	 */
+	public final int getHierarchyChanges()
+	{
+		return hierarchyChanges;
+	}
+
 	/**
 	 * Set page stateless
 	 * 
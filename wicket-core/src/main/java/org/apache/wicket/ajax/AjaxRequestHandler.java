@@ -45,6 +45,7 @@ import org.apache.wicket.request.http.WebResponse;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
 import org.apache.wicket.response.StringResponse;
 import org.apache.wicket.response.filter.IResponseFilter;
+import org.apache.wicket.settings.RequestCycleSettings;
 import org.apache.wicket.util.lang.Args;
 import org.apache.wicket.util.lang.Classes;
 import org.apache.wicket.util.string.AppendingStringBuffer;
@@ -361,10 +362,20 @@ public class AjaxRequestHandler implements AjaxRequestTarget
 		// Make sure it is not cached by a client
 		response.disableCaching();
 
-		final StringResponse bodyResponse = new StringResponse();
-		update.writeTo(bodyResponse, encoding);
-		CharSequence filteredResponse = invokeResponseFilters(bodyResponse);
-		response.write(filteredResponse);
+		final RequestCycleSettings requestCycleSettings = app.getRequestCycleSettings();
+		final List<IResponseFilter> responseFilters = requestCycleSettings.getResponseFilters();
+		if (requestCycleSettings.getStreamAjaxResponses() &&
+			(responseFilters == null || responseFilters.isEmpty()))
+		{
+			update.streamTo(response, encoding);
+		}
+		else
+		{
+			final StringResponse bodyResponse = new StringResponse();
+			update.writeTo(bodyResponse, encoding);
+			CharSequence filteredResponse = invokeResponseFilters(bodyResponse);
+			response.write(filteredResponse);
+		}
 	}
 
 	private boolean shouldRedirectToPage(IRequestCycle requestCycle)
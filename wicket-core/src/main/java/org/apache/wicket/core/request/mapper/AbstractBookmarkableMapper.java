@@ -16,9 +16,13 @@
  */
 package org.apache.wicket.core.request.mapper;
 
+import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 
 import org.apache.wicket.IRequestListener;
 import org.apache.wicket.Session;
@@ -63,6 +67,11 @@ public abstract class AbstractBookmarkableMapper extends AbstractComponentMapper
 	 */
 	private boolean isCaseSensitive = true;
 
+	/** the methods deciding whether a URL starts with the mount path */
+	private static final Set<String> MATCHING_METHODS = new HashSet<>(Arrays.asList("mapRequest",
+		"parseRequest", "urlStartsWith", "urlStartsWithMountedSegments", "getMatchedSegmentSizes",
+		"segmentsMatch", "removeCachingDecoration"));
+
 	/**
 	 * Represents information stored in URL.
 	 * 
@@ -748,6 +757,57 @@ public abstract class AbstractBookmarkableMapper extends AbstractComponentMapper
 		return isCaseSensitive;
 	}
 
+	/**
+	 * Creates a cache telling whether a subclass of the given mapper class overrides how URLs are
+	 * matched against the mount path.
+	 * 
+	 * @param mapperClass
+	 *            the mapper class
+	 * @return the cache
+	 */
+	static ClassValue<Boolean> customMatching(
+		final Class<? extends AbstractBookmarkableMapper> mapperClass)
+	{
+		return new ClassValue<Boolean>()
+		{
+			@Override
+			protected Boolean computeValue(final Class<?> type)
+			{
+				for (Class<?> cls = type; cls != mapperClass; cls = cls.getSuperclass())
+				{
+					for (Method method : cls.getDeclaredMethods())
+					{
+						if (MATCHING_METHODS.contains(method.getName()))
+						{
+							return true;
+						}
+					}
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Returns the fixed mount segments to index this mapper by, or an empty array if the mapper
+	 * matches the segments case insensitively or in a custom way.
+	 * 
+	 * @param customMatching
+	 *            the cache created by {@link #customMatching(Class)} for the mapper class
+	 * @param mountSegments
+	 *            the segments of the mount path
+	 * @return the fixed mount segments
+	 */
+	final String[] getFixedMountSegments(final ClassValue<Boolean> customMatching,
+		final String[] mountSegments)
+	{
+		if (isCaseSensitiveMatch() == false || customMatching.get(getClass()))
+		{
+			return new String[0];
+		}
+		return getFixedSegments(mountSegments);
+	}
+
 	/**
 	 * Sets whether the matching of mounted segments against request's url ones should be
 	 * case sensitive or not.
@@ -24,6 +24,7 @@ import org.apache.wicket.request.IRequestHandler;
 import org.apache.wicket.request.Request;
 import org.apache.wicket.request.Url;
 import org.apache.wicket.request.component.IRequestablePage;
+import org.apache.wicket.request.mapper.IMountedRequestMapper;
 import org.apache.wicket.request.mapper.info.ComponentInfo;
 import org.apache.wicket.request.mapper.info.PageComponentInfo;
 import org.apache.wicket.request.mapper.info.PageInfo;
@@ -62,8 +63,11 @@ import org.apache.wicket.util.string.Strings;
  * 
  * @author Matej Knopp
  */
-public class MountedMapper extends AbstractBookmarkableMapper
+public class MountedMapper extends AbstractBookmarkableMapper implements IMountedRequestMapper
 {
+	/** whether a subclass overrides how the mount path is matched */
+	private static final ClassValue<Boolean> CUSTOM_MATCHING = customMatching(MountedMapper.class);
+
 	/** bookmarkable page class. */
 	private final Supplier<Class<? extends IRequestablePage>> pageClassProvider;
 
@@ -206,6 +210,19 @@ public class MountedMapper extends AbstractBookmarkableMapper
 		return encodePageParameters(url, copy, pageParametersEncoder);
 	}
 
+	/**
+	 * Returns an empty array if the segments are matched case insensitively or if a subclass
+	 * overrides how they are matched, e.g. {@link #parseRequest(Request)} or
+	 * {@link #segmentsMatch(String, String)}.
+	 * 
+	 * @see IMountedRequestMapper#getFixedMountSegments()
+	 */
+	@Override
+	public String[] getFixedMountSegments()
+	{
+		return getFixedMountSegments(CUSTOM_MATCHING, mountSegments);
+	}
+
 	/**
 	 * Check if the URL is for home page and the home page class match mounted class. If so,
 	 * redirect to mounted URL.
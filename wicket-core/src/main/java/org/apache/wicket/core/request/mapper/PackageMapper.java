@@ -23,6 +23,7 @@ import org.apache.wicket.protocol.http.WebApplication;
 import org.apache.wicket.request.Request;
 import org.apache.wicket.request.Url;
 import org.apache.wicket.request.component.IRequestablePage;
+import org.apache.wicket.request.mapper.IMountedRequestMapper;
 import org.apache.wicket.request.mapper.info.PageComponentInfo;
 import org.apache.wicket.request.mapper.parameter.IPageParametersEncoder;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
@@ -61,8 +62,11 @@ import org.apache.wicket.util.string.Strings;
  *  (these will redirect to hybrid if page is not stateless)
  * </pre>
  */
-public class PackageMapper extends AbstractBookmarkableMapper
+public class PackageMapper extends AbstractBookmarkableMapper implements IMountedRequestMapper
 {
+	/** whether a subclass overrides how the mount path is matched */
+	private static final ClassValue<Boolean> CUSTOM_MATCHING = customMatching(PackageMapper.class);
+
 	/**
 	 * the name of the package for which all bookmarkable pages should be mounted
 	 */
@@ -231,6 +235,19 @@ public class PackageMapper extends AbstractBookmarkableMapper
 		return className;
 	}
 
+	/**
+	 * Returns an empty array if the segments are matched case insensitively or if a subclass
+	 * overrides how they are matched, e.g. {@link #parseRequest(Request)} or
+	 * {@link #segmentsMatch(String, String)}.
+	 * 
+	 * @see IMountedRequestMapper#getFixedMountSegments()
+	 */
+	@Override
+	public String[] getFixedMountSegments()
+	{
+		return getFixedMountSegments(CUSTOM_MATCHING, mountSegments);
+	}
+
 	@Override
 	protected boolean pageMustHaveBeenCreatedBookmarkable()
 	{
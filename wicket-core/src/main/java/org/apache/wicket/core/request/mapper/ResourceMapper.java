@@ -16,6 +16,7 @@
  */
 package org.apache.wicket.core.request.mapper;
 
+import java.util.Arrays;
 import java.util.List;
 
 import javax.servlet.http.HttpServletResponse;
@@ -27,6 +28,7 @@ import org.apache.wicket.request.Request;
 import org.apache.wicket.request.Url;
 import org.apache.wicket.request.handler.resource.ResourceReferenceRequestHandler;
 import org.apache.wicket.request.http.flow.AbortWithHttpErrorCodeException;
+import org.apache.wicket.request.mapper.IMountedRequestMapper;
 import org.apache.wicket.request.mapper.parameter.INamedParameters;
 import org.apache.wicket.request.mapper.parameter.IPageParametersEncoder;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
@@ -70,8 +72,11 @@ import org.apache.wicket.util.string.Strings;
  *
  * @author Peter Ertl
  */
-public class ResourceMapper extends AbstractBookmarkableMapper
+public class ResourceMapper extends AbstractBookmarkableMapper implements IMountedRequestMapper
 {
+	/** whether a subclass overrides how the mount path is matched */
+	private static final ClassValue<Boolean> CUSTOM_MATCHING = customMatching(ResourceMapper.class);
+
 	// encode page parameters into url + decode page parameters from url
 	private final IPageParametersEncoder parametersEncoder;
 
@@ -244,6 +249,20 @@ public class ResourceMapper extends AbstractBookmarkableMapper
 		return encodePageParameters(url, parameters, parametersEncoder);
 	}
 
+	/**
+	 * The last fixed segment is left out, because it may be decorated by the caching strategy.
+	 * Returns an empty array if a subclass overrides how the segments are matched, e.g.
+	 * {@link #urlStartsWith(Url, String...)}.
+	 * 
+	 * @see IMountedRequestMapper#getFixedMountSegments()
+	 */
+	@Override
+	public String[] getFixedMountSegments()
+	{
+		String[] fixedSegments = getFixedMountSegments(CUSTOM_MATCHING, mountSegments);
+		return Arrays.copyOf(fixedSegments, Math.max(0, fixedSegments.length - 1));
+	}
+
 	protected IResourceCachingStrategy getCachingStrategy()
 	{
 		return Application.get().getResourceSettings().getCachingStrategy();
@@ -20,6 +20,7 @@ import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -87,6 +88,11 @@ public final class PropertyResolver
 
 	private final static ConcurrentHashMap<Object, IPropertyLocator> applicationToLocators = Generics.newConcurrentHashMap(2);
 
+	/** the maximum number of parsed expressions to keep */
+	private final static int MAX_PARSED_EXPRESSIONS = 10000;
+
+	private final static ConcurrentHashMap<String, String[]> expressionToParts = Generics.newConcurrentHashMap(16);
+
 	private static final String GET = "get";
 	private static final String IS = "is";
 	private static final String SET = "set";
@@ -273,24 +279,18 @@ public final class PropertyResolver
 	 */
 	private static ObjectWithGetAndSet getObjectWithGetAndSet(final String expression, final Object object, final int tryToCreateNull, Class<?> clz)
 	{
-		String expressionBracketsSeperated = Strings.replaceAll(expression, "[", ".[").toString();
-		int index = getNextDotIndex(expressionBracketsSeperated, 0);
-		while (index == 0 && expressionBracketsSeperated.startsWith("."))
-		{
-			// eat dots at the beginning of the expression since they will confuse
-			// later steps
-			expressionBracketsSeperated = expressionBracketsSeperated.substring(1);
-			index = getNextDotIndex(expressionBracketsSeperated, 0);
-		}
-		int lastIndex = 0;
+		String[] parts = getParts(expression);
+		// the current expression consists of the parts from first to last
+		int first = 0;
+		int last = 0;
 		Object value = object;
-		String exp = expressionBracketsSeperated;
-		while (index != -1)
+		String exp = parts[0];
+		while (last < parts.length - 1)
 		{
-			exp = expressionBracketsSeperated.substring(lastIndex, index);
+			exp = join(parts, first, last);
 			if (exp.length() == 0)
 			{
-				exp = expressionBracketsSeperated.substring(index + 1);
+				exp = join(parts, last + 1, parts.length - 1);
 				break;
 			}
 
@@ -303,13 +303,12 @@ public final class PropertyResolver
 			{
 				// expression by itself can't be found. try combined with the following
 				// expression (e.g. for a indexed property);
-				int temp = getNextDotIndex(expressionBracketsSeperated, index + 1);
-				if (temp == -1)
+				last++;
+				if (last == parts.length - 1)
 				{
-					exp = expressionBracketsSeperated.substring(lastIndex);
+					exp = join(parts, first, last);
 					break;
 				} else {
-					index = temp;
 					continue;
 				}
 			}
@@ -344,11 +343,11 @@ public final class PropertyResolver
 				clz = value.getClass();
 			}
 
-			lastIndex = index + 1;
-			index = getNextDotIndex(expressionBracketsSeperated, lastIndex);
-			if (index == -1)
+			first = last + 1;
+			last = first;
+			if (last == parts.length - 1)
 			{
-				exp = expressionBracketsSeperated.substring(lastIndex);
+				exp = parts[last];
 				break;
 			}
 		}
@@ -356,6 +355,76 @@ public final class PropertyResolver
 		return new ObjectWithGetAndSet(getAndSet, value);
 	}
 
+	/**
+	 * Gets the parts of an expression, parsing it only once.
+	 * 
+	 * @param expression
+	 * @return parts
+	 * @see #parse(String)
+	 */
+	private static String[] getParts(final String expression)
+	{
+		String[] parts = expressionToParts.get(expression);
+		if (parts == null)
+		{
+			parts = parse(expression);
+			if (expressionToParts.size() < MAX_PARSED_EXPRESSIONS)
+			{
+				expressionToParts.put(expression, parts);
+			}
+		}
+		return parts;
+	}
+
+	/**
+	 * Splits an expression at its dots, with each index in brackets as a part of its own. Dots at
+	 * the beginning are dropped, since they will confuse later steps.
+	 * 
+	 * @param expression
+	 * @return parts
+	 */
+	private static String[] parse(final String expression)
+	{
+		String expressionBracketsSeperated = Strings.replaceAll(expression, "[", ".[").toString();
+
+		List<String> parts = new ArrayList<>();
+		int lastIndex = 0;
+		int index = getNextDotIndex(expressionBracketsSeperated, 0);
+		while (index != -1)
+		{
+			if (index > lastIndex || parts.isEmpty() == false)
+			{
+				parts.add(expressionBracketsSeperated.substring(lastIndex, index));
+			}
+			lastIndex = index + 1;
+			index = getNextDotIndex(expressionBracketsSeperated, lastIndex);
+		}
+		parts.add(expressionBracketsSeperated.substring(lastIndex));
+
+		return parts.toArray(new String[parts.size()]);
+	}
+
+	/**
+	 * @param parts
+	 * @param first
+	 * @param last
+	 * @return the parts from first to last, separated by dots
+	 */
+	private static String join(final String[] parts, final int first, final int last)
+	{
+		if (first == last)
+		{
+			return parts[first];
+		}
+
+		StringBuilder joined = new StringBuilder(parts[first]);
+		for (int i = first + 1; i <= last; i++)
+		{
+			joined.append('.').append(parts[i]);
+		}
+		return joined.toString();
+	}
+
 	/**
 	 *
 	 * @param expression
@@ -1311,7 +1380,10 @@ public final class PropertyResolver
 	 */
 	public static class CachingPropertyLocator implements IPropertyLocator
 	{
-		private final ConcurrentHashMap<String, IGetAndSet> map = Generics.newConcurrentHashMap(16);
+		/**
+		 * class name => expression => getAndSet, so that no key has to be built for a lookup
+		 */
+		private final ConcurrentHashMap<String, ConcurrentHashMap<String, IGetAndSet>> map = Generics.newConcurrentHashMap(16);
 		
 		/**
 		 * Special token to put into the cache representing no located {@link IGetAndSet}. 
@@ -1341,15 +1413,22 @@ public final class PropertyResolver
 
 		@Override
 		public IGetAndSet get(Class<?> clz, String exp) {
-			String key = clz.getName() + "#" + exp;
+			ConcurrentHashMap<String, IGetAndSet> classMap = map.get(clz.getName());
+			if (classMap == null) {
+				classMap = Generics.newConcurrentHashMap(16);
+				ConcurrentHashMap<String, IGetAndSet> tmpClassMap = map.putIfAbsent(clz.getName(), classMap);
+				if (tmpClassMap != null) {
+					classMap = tmpClassMap;
+				}
+			}
 			
-			IGetAndSet located = map.get(key);
+			IGetAndSet located = classMap.get(exp);
 			if (located == null) {
 				located = locator.get(clz, exp);
 				if (located == null) {
 					located = NONE;
 				}
-				map.put(key, located);
+				classMap.put(exp, located);
 			}
 			
 			if (located == NONE) {
@@ -123,6 +123,8 @@ public class ComponentRenderer
 			requestCycle.setResponse(originalResponse);
 		}
 
+		// the text may be kept beyond the request
+		tempResponse.retainText();
 		return tempResponse.getText();
 	}
 
@@ -0,0 +1,236 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.IApplicationListener;
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.Page;
+import org.apache.wicket.Session;
+import org.apache.wicket.ThreadContext;
+import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.markup.html.border.Border;
+import org.apache.wicket.markup.html.panel.Panel;
+import org.apache.wicket.mock.MockWebRequest;
+import org.apache.wicket.mock.MockWebResponse;
+import org.apache.wicket.request.Url;
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads the markup of pages into the {@link IMarkupCache} when the application is started, so that
+ * the first requests after a deployment do not have to wait for the markup to be parsed.
+ * <p>
+ * Each page is instantiated with the application's {@link org.apache.wicket.IPageFactory} in a
+ * temporary request cycle and session. The markup of the page and of all the panels and borders
+ * created by its constructor is loaded. The pages are processed in parallel on a
+ * {@link ForkJoinPool}.
+ * </p>
+ * 
+ * <pre>
+ * getApplicationListeners().add(new MarkupCacheWarmUp(HomePage.class, OrderPage.class));
+ * </pre>
+ * 
+ * Note: pages whose constructors have side effects or need request parameters should not be warmed
+ * up.
+ */
+public class MarkupCacheWarmUp implements IApplicationListener
+{
+	private static final Logger log = LoggerFactory.getLogger(MarkupCacheWarmUp.class);
+
+	private final List<Class<? extends Page>> pageClasses;
+
+	private List<Locale> locales = Collections.emptyList();
+
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+
+	/** markup location -> the time it took to load it */
+	private final Map<String, Duration> loadTimes = new ConcurrentHashMap<>();
+
+	/**
+	 * Construct.
+	 * 
+	 * @param pageClasses
+	 *            the pages whose markup is loaded
+	 */
+	@SafeVarargs
+	public MarkupCacheWarmUp(final Class<? extends Page>... pageClasses)
+	{
+		this(Arrays.asList(pageClasses));
+	}
+
+	/**
+	 * Construct.
+	 * 
+	 * @param pageClasses
+	 *            the pages whose markup is loaded
+	 */
+	public MarkupCacheWarmUp(final Collection<Class<? extends Page>> pageClasses)
+	{
+		this.pageClasses = new ArrayList<>(Args.notNull(pageClasses, "pageClasses"));
+	}
+
+	/**
+	 * Sets the locales to load the markup for. By default the markup is loaded for the default
+	 * locale only.
+	 * 
+	 * @param locales
+	 *            the locales
+	 * @return {@code this} for chaining
+	 */
+	public MarkupCacheWarmUp setLocales(final Locale... locales)
+	{
+		this.locales = Arrays.asList(locales);
+		return this;
+	}
+
+	/**
+	 * Sets the number of threads loading the markup. By default there is one per processor.
+	 * 
+	 * @param parallelism
+	 *            the number of threads
+	 * @return {@code this} for chaining
+	 */
+	public MarkupCacheWarmUp setParallelism(final int parallelism)
+	{
+		this.parallelism = Args.withinRange(1, 32767, parallelism, "parallelism");
+		return this;
+	}
+
+	/**
+	 * @return the time it took to load each markup file, by markup location
+	 */
+	public Map<String, Duration> getLoadTimes()
+	{
+		return Collections.unmodifiableMap(loadTimes);
+	}
+
+	@Override
+	public void onAfterInitialized(final Application application)
+	{
+		warmUp(application);
+	}
+
+	/**
+	 * Loads the markup of all pages and waits until it is done.
+	 * 
+	 * @param application
+	 *            the application
+	 */
+	public void warmUp(final Application application)
+	{
+		final List<Locale> locales = this.locales.isEmpty() ? Collections.singletonList(null)
+			: this.locales;
+
+		long start = System.currentTimeMillis();
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try
+		{
+			pool.submit(() -> pageClasses.parallelStream()
+				.forEach(pageClass -> locales.forEach(locale -> warmUp(application, pageClass, locale))))
+				.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e)
+		{
+			throw new WicketRuntimeException("Error while warming up the markup cache", e.getCause());
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+
+		log.info("Loaded {} markup files of {} pages in {}", loadTimes.size(), pageClasses.size(),
+			Duration.milliseconds(System.currentTimeMillis() - start));
+	}
+
+	private void warmUp(final Application application, final Class<? extends Page> pageClass,
+		final Locale locale)
+	{
+		ThreadContext previous = ThreadContext.detach();
+		try
+		{
+			MockWebRequest request = new MockWebRequest(Url.parse(""));
+			MockWebResponse response = new MockWebResponse();
+
+			ThreadContext.setApplication(application);
+			RequestCycle requestCycle = application.createRequestCycle(request, response);
+			ThreadContext.setRequestCycle(requestCycle);
+			Session session = application.newSession(request, response);
+			ThreadContext.setSession(session);
+			if (locale != null)
+			{
+				session.setLocale(locale);
+			}
+
+			Page page = application.getPageFactory().newPage(pageClass);
+			load(page);
+			page.visitChildren(MarkupContainer.class, (container, visit) -> {
+				if (container instanceof Panel || container instanceof Border)
+				{
+					load((MarkupContainer)container);
+				}
+			});
+		}
+		catch (RuntimeException e)
+		{
+			log.warn("Could not load the markup of page " + pageClass.getName(), e);
+		}
+		finally
+		{
+			ThreadContext.restore(previous);
+		}
+	}
+
+	private void load(final MarkupContainer container)
+	{
+		long start = System.nanoTime();
+		Markup markup = container.getAssociatedMarkup();
+		long duration = System.nanoTime() - start;
+
+		if (markup != null)
+		{
+			String location = markup.locationAsString();
+			if (location == null)
+			{
+				location = container.getClass().getName();
+			}
+
+			if (loadTimes.putIfAbsent(location, Duration.milliseconds(duration / 1000000)) == null)
+			{
+				log.debug("Loaded markup {} in {} ms", location, duration / 1000000);
+			}
+		}
+	}
+}
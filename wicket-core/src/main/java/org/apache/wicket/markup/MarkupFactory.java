@@ -16,6 +16,7 @@
  */
 package org.apache.wicket.markup;
 
+import java.io.File;
 import java.io.IOException;
 
 import org.apache.wicket.Application;
@@ -25,6 +26,7 @@ import org.apache.wicket.markup.loader.DefaultMarkupLoader;
 import org.apache.wicket.markup.loader.IMarkupLoader;
 import org.apache.wicket.markup.parser.IMarkupFilter;
 import org.apache.wicket.markup.parser.IXmlPullParser;
+import org.apache.wicket.markup.parser.PrecompiledXmlPullParser;
 import org.apache.wicket.markup.parser.XmlPullParser;
 import org.apache.wicket.util.lang.Args;
 import org.apache.wicket.util.resource.IResourceStream;
@@ -108,7 +110,7 @@ public class MarkupFactory
 	public MarkupParser newMarkupParser(final MarkupResourceStream resource)
 	{
 		// Markup parsers can not be re-used
-		return new MarkupParser(newXmlPullParser(), resource)
+		return new MarkupParser(newXmlPullParser(resource), resource)
 		{
 			@Override
 			protected IMarkupFilter onAppendMarkupFilter(final IMarkupFilter filter)
@@ -118,6 +120,33 @@ public class MarkupFactory
 		};
 	}
 
+	/**
+	 * Creates the parser for a markup resource. If a folder for precompiled markup is configured,
+	 * the parser is wrapped in a {@link PrecompiledXmlPullParser}.
+	 * 
+	 * @param resource
+	 *            The resource containing the markup
+	 * @return parser instance used by {@link MarkupParser} to parse the markup
+	 * @see org.apache.wicket.settings.MarkupSettings#setPrecompiledMarkupFolder(File)
+	 */
+	protected IXmlPullParser newXmlPullParser(final MarkupResourceStream resource)
+	{
+		IXmlPullParser parser = newXmlPullParser();
+
+		String location = resource.locationAsString();
+		if ((parser instanceof XmlPullParser) && (location != null) && Application.exists())
+		{
+			File folder = Application.get().getMarkupSettings().getPrecompiledMarkupFolder();
+			if (folder != null)
+			{
+				File file = new File(folder, PrecompiledXmlPullParser.getFileName(location));
+				parser = new PrecompiledXmlPullParser((XmlPullParser)parser, file,
+					resource.lastModifiedTime());
+			}
+		}
+		return parser;
+	}
+
 	/**
 	 * Subclasses can override this to use custom parsers.
 	 * 
@@ -16,6 +16,8 @@
  */
 package org.apache.wicket.markup;
 
+import java.nio.charset.Charset;
+
 /**
  * This class is for framework purposes only, which is why the class is (default) protected.
  * <p>
@@ -29,6 +31,9 @@ public class RawMarkup extends MarkupElement
 	/** The raw markup string * */
 	private final CharSequence string;
 
+	/** The raw markup encoded with the charset of the last {@link #getBytes(Charset)} call */
+	private volatile EncodedMarkup encoded;
+
 	/**
 	 * Create a RawMarkup element referencing an uninterpreted markup string.
 	 * 
@@ -96,6 +101,25 @@ public class RawMarkup extends MarkupElement
 		return string;
 	}
 
+	/**
+	 * Gets the raw markup encoded with the given charset. The markup is encoded only once and then
+	 * reused for all following renders with the same charset.
+	 * 
+	 * @param charset
+	 *            the charset
+	 * @return the encoded markup, which must not be modified
+	 */
+	public byte[] getBytes(final Charset charset)
+	{
+		EncodedMarkup current = encoded;
+		if (current == null || current.charset.equals(charset) == false)
+		{
+			current = new EncodedMarkup(charset, string.toString().getBytes(charset));
+			encoded = current;
+		}
+		return current.bytes;
+	}
+
 	/**
 	 * @return This raw markup string
 	 */
@@ -113,4 +137,20 @@ public class RawMarkup extends MarkupElement
 	{
 		return "[Raw markup]";
 	}
+
+	/**
+	 * The raw markup encoded with a charset
+	 */
+	private static class EncodedMarkup
+	{
+		private final Charset charset;
+
+		private final byte[] bytes;
+
+		private EncodedMarkup(final Charset charset, final byte[] bytes)
+		{
+			this.charset = charset;
+			this.bytes = bytes;
+		}
+	}
 }
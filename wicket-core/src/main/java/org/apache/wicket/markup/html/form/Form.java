@@ -46,6 +46,7 @@ import org.apache.wicket.markup.html.form.validation.FormValidatorAdapter;
 import org.apache.wicket.markup.html.form.validation.IFormValidator;
 import org.apache.wicket.model.IModel;
 import org.apache.wicket.model.Model;
+import org.apache.wicket.protocol.http.servlet.IFileItemHandler;
 import org.apache.wicket.protocol.http.servlet.MultipartServletWebRequest;
 import org.apache.wicket.protocol.http.servlet.ServletWebRequest;
 import org.apache.wicket.request.IRequestParameters;
@@ -60,10 +61,9 @@ import org.apache.wicket.util.string.PrependingStringBuffer;
 import org.apache.wicket.util.string.Strings;
 import org.apache.wicket.util.string.interpolator.MapVariableInterpolator;
 import org.apache.wicket.util.value.LongValue;
-import org.apache.wicket.util.visit.ClassVisitFilter;
 import org.apache.wicket.util.visit.IVisit;
 import org.apache.wicket.util.visit.IVisitor;
-import org.apache.wicket.util.visit.Visits;
+import org.apache.wicket.util.visit.Visit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -188,50 +188,6 @@ public class Form<T> extends WebMarkupContainer
 	}
 
 
-	/**
-	 * Visitor used to update component models
-	 * 
-	 * @author Igor Vaynberg (ivaynberg)
-	 */
-	private static class FormModelUpdateVisitor implements IVisitor<Component, Void>
-	{
-		private final Form<?> formFilter;
-
-		/**
-		 * Constructor
-		 * 
-		 * @param formFilter
-		 */
-		public FormModelUpdateVisitor(Form<?> formFilter)
-		{
-			this.formFilter = formFilter;
-		}
-
-		/** {@inheritDoc} */
-		@Override
-		public void component(final Component component, final IVisit<Void> visit)
-		{
-			if (component instanceof IFormModelUpdateListener)
-			{
-				final Form<?> form = Form.findForm(component);
-				if (form != null)
-				{
-					if (this.formFilter == null || this.formFilter == form)
-					{
-						if (form.isEnabledInHierarchy())
-						{
-							if (component.isVisibleInHierarchy() &&
-								component.isEnabledInHierarchy())
-							{
-								((IFormModelUpdateListener)component).updateModel();
-							}
-						}
-					}
-				}
-			}
-		}
-	}
-
 	/**
 	 * Constant for specifying how a form is submitted, in this case using get.
 	 */
@@ -279,9 +235,15 @@ public class Form<T> extends WebMarkupContainer
 	 */
 	private Bytes fileMaxSize;
 
+	/** True if the uploaded files are streamed to the form components */
+	private boolean fileUploadStreaming;
+
 	/** True if the form has enctype of multipart/form-data */
 	private short multiPart = 0;
 
+	/** The components of the root form while a submit is processed */
+	private transient FormComponentIndex formComponentIndex;
+
 	/**
 	 * A user has explicitly called {@link #setMultiPart(boolean)} with value {@code true} forcing
 	 * it to be true
@@ -550,23 +512,22 @@ public class Form<T> extends WebMarkupContainer
 		 * method.
 		 */
 
-		final Bytes[] maxSize = { this.maxSize };
-		if (maxSize[0] == null)
+		Bytes maxSize = this.maxSize;
+		if (maxSize == null)
 		{
-			visitChildren(Form.class, new IVisitor<Form<?>, Bytes>()
+			for (Component component : getFormComponentIndex().descendants)
 			{
-				@Override
-				public void component(Form<?> component, IVisit<Bytes> visit)
+				if (component instanceof Form<?>)
 				{
-					maxSize[0] = LongValue.maxNullSafe(maxSize[0], component.maxSize);
+					maxSize = LongValue.maxNullSafe(maxSize, ((Form<?>)component).maxSize);
 				}
-			});
+			}
 		}
-		if (maxSize[0] == null)
+		if (maxSize == null)
 		{
 			return getApplication().getApplicationSettings().getDefaultMaximumUploadSize();
 		}
-		return maxSize[0];
+		return maxSize;
 	}
 
 	/**
@@ -717,6 +678,36 @@ public class Form<T> extends WebMarkupContainer
 	 * @see Form#validate()
 	 */
 	public final void onFormSubmitted(IFormSubmitter submitter)
+	{
+		final Page page = findPage();
+		if (page == null)
+		{
+			internalOnFormSubmitted(submitter);
+			return;
+		}
+
+		// collect the components once for all processing phases
+		final Form<?> root = getRootForm();
+		final FormComponentIndex outer = root.formComponentIndex;
+		root.formComponentIndex = new FormComponentIndex(root, page);
+		try
+		{
+			internalOnFormSubmitted(submitter);
+		}
+		finally
+		{
+			root.formComponentIndex = outer;
+		}
+	}
+
+	/**
+	 * Handles form submissions.
+	 * 
+	 * @param submitter
+	 *            listener that will receive form processing events, if {@code null} the form will
+	 *            attempt to locate one
+	 */
+	private void internalOnFormSubmitted(IFormSubmitter submitter)
 	{
 		markFormsSubmitted(submitter);
 
@@ -779,14 +770,13 @@ public class Form<T> extends WebMarkupContainer
 
 		// update auto labels if we are inside an ajax request
 		getRequestCycle().find(AjaxRequestTarget.class).ifPresent(target -> {
-			visitChildren(FormComponent.class, new IVisitor<FormComponent<?>, Void>()
+			for (Component component : getFormComponentIndex().descendants)
 			{
-				@Override
-				public void component(FormComponent<?> component, IVisit<Void> visit)
+				if (component instanceof FormComponent<?>)
 				{
-					component.updateAutoLabels(target);
+					((FormComponent<?>)component).updateAutoLabels(target);
 				}
-			});
+			}
 		});
 	}
 
@@ -963,22 +953,13 @@ public class Form<T> extends WebMarkupContainer
 		}
 
 		// invoke Form#onSubmit(..) going from innermost to outermost
-		Visits.visitPostOrder(processingForm, new IVisitor<Form<?>, Void>()
+		for (Form<?> form : processingForm.getFormComponentIndex().getFormsPostOrder())
 		{
-			@Override
-			public void component(Form<?> form, IVisit<Void> visit)
+			if (form.isEnabledInHierarchy() && form.isVisibleInHierarchy() && form.hasError())
 			{
-				if (!form.isEnabledInHierarchy() || !form.isVisibleInHierarchy())
-				{
-					visit.dontGoDeeper();
-					return;
-				}
-				if (form.hasError())
-				{
-					form.onError();
-				}
+				form.onError();
 			}
-		}, new ClassVisitFilter(Form.class));
+		}
 	}
 
 
@@ -990,22 +971,30 @@ public class Form<T> extends WebMarkupContainer
 	{
 		setFlag(FLAG_SUBMITTED, true);
 		Form<?> formToProcess = findFormToProcess(submitter);
-		
-		visitChildren(Form.class, new IVisitor<Component, Void>()
+
+		markNestedFormsSubmitted(getFormComponentIndex(), formToProcess);
+	}
+
+	/**
+	 * Sets FLAG_SUBMITTED to true on every enabled nested form.
+	 * 
+	 * @param entry
+	 *            the components of the enclosing form
+	 * @param formToProcess
+	 */
+	private static void markNestedFormsSubmitted(FormComponentIndex.Entry entry,
+		Form<?> formToProcess)
+	{
+		for (FormComponentIndex.Entry nested : entry.nestedForms)
 		{
-			@Override
-			public void component(final Component component, final IVisit<Void> visit)
+			Form<?> form = nested.form;
+			if ((form.wantSubmitOnParentFormSubmit() || form == formToProcess) &&
+				form.isEnabledInHierarchy() && form.isVisibleInHierarchy())
 			{
-				Form<?> form = (Form<?>)component;
-				if ((form.wantSubmitOnParentFormSubmit() || form == formToProcess) 
-					&& form.isEnabledInHierarchy() && form.isVisibleInHierarchy())
-				{
-					form.setFlag(FLAG_SUBMITTED, true);
-					return;
-				}
-				visit.dontGoDeeper();
+				form.setFlag(FLAG_SUBMITTED, true);
+				markNestedFormsSubmitted(nested, formToProcess);
 			}
-		});
+		}
 	}
 
 	/**
@@ -1058,6 +1047,35 @@ public class Form<T> extends WebMarkupContainer
 		this.fileMaxSize = fileMaxSize;
 	}
 
+	/**
+	 * Sets whether the uploaded files are streamed to the form components instead of being stored
+	 * in temporary files or memory. If streamed, each file is passed to its form component while
+	 * the request is parsed, e.g. to {@link FileUploadField}, and its
+	 * content can be read at that time only. Components which read the uploaded files afterwards,
+	 * e.g. {@link org.apache.wicket.markup.html.form.upload.MultiFileUploadField}, cannot access
+	 * the content then.
+	 * <p>
+	 * The size limits of the form are still enforced and upload progress is still reported.
+	 * </p>
+	 * 
+	 * @param fileUploadStreaming
+	 *            whether the uploaded files should be streamed, {@code false} by default
+	 * @see IFileItemHandler
+	 */
+	public void setFileUploadStreaming(boolean fileUploadStreaming)
+	{
+		this.fileUploadStreaming = fileUploadStreaming;
+	}
+
+	/**
+	 * @return whether the uploaded files are streamed to the form components
+	 * @see #setFileUploadStreaming(boolean)
+	 */
+	public boolean isFileUploadStreaming()
+	{
+		return fileUploadStreaming;
+	}
+
 	/**
 	 * Set to true to use enctype='multipart/form-data', and to process file uploads by default
 	 * multiPart = false
@@ -1127,6 +1145,44 @@ public class Form<T> extends WebMarkupContainer
 		return FormComponent.visitFormComponentsPostOrder(this, visitor);
 	}
 
+	/**
+	 * Gets the components of this form. While a submit is processed, they are taken from the index
+	 * built by {@link #onFormSubmitted(IFormSubmitter)}, otherwise they are collected anew.
+	 * 
+	 * @return the components of this form
+	 */
+	private FormComponentIndex.Entry getFormComponentIndex()
+	{
+		FormComponentIndex.Entry index = getActiveFormComponentIndex();
+		if (index == null)
+		{
+			index = new FormComponentIndex(this, null).get(this);
+		}
+		return index;
+	}
+
+	/**
+	 * Gets the components of this form while a submit is processed. The index is rebuilt if the
+	 * component hierarchy has changed since.
+	 * 
+	 * @return the components of this form or {@code null} if no submit is processed
+	 */
+	private FormComponentIndex.Entry getActiveFormComponentIndex()
+	{
+		Form<?> root = getRootForm();
+		FormComponentIndex index = root.formComponentIndex;
+		if (index == null)
+		{
+			return null;
+		}
+		if (index.isValid() == false)
+		{
+			index = new FormComponentIndex(root, index.getPage());
+			root.formComponentIndex = index;
+		}
+		return index.get(this);
+	}
+
 	/**
 	 * Find out whether there is any registered error for a form component.
 	 * 
@@ -1135,6 +1191,20 @@ public class Form<T> extends WebMarkupContainer
 	private boolean anyFormComponentError()
 	{
 		// Check ALL children for error messages irrespective of FormComponents or not
+		FormComponentIndex.Entry index = getActiveFormComponentIndex();
+		if (index != null)
+		{
+			for (Component component : index.descendants)
+			{
+				if (component.hasErrorMessage() && component.isVisibleInHierarchy() &&
+					component.isEnabledInHierarchy())
+				{
+					return true;
+				}
+			}
+			return false;
+		}
+
 		Boolean error = visitChildren(Component.class, new IVisitor<Component, Boolean>()
 		{
 			@Override
@@ -1156,14 +1226,38 @@ public class Form<T> extends WebMarkupContainer
 	 */
 	private void inputChanged()
 	{
-		visitFormComponentsPostOrder(new IVisitor<FormComponent<?>, Void>()
+		for (FormComponent<?> formComponent : getFormComponentIndex().getFormComponents())
 		{
-			@Override
-			public void component(final FormComponent<?> formComponent, IVisit<Void> visit)
+			formComponent.inputChanged();
+		}
+	}
+
+	/**
+	 * Creates the handler of streamed file uploads, which passes each file to the visible and
+	 * enabled form component with the file's input name.
+	 * 
+	 * @return the handler of the uploaded files
+	 */
+	private IFileItemHandler newFileItemHandler()
+	{
+		final Map<String, IFileItemHandler> handlers = new HashMap<>();
+		for (Component component : getFormComponentIndex().descendants)
+		{
+			if (component instanceof IFileItemHandler && component instanceof FormComponent<?> &&
+				component.isVisibleInHierarchy() && component.isEnabledInHierarchy())
 			{
-				formComponent.inputChanged();
+				handlers.put(((FormComponent<?>)component).getInputName(),
+					(IFileItemHandler)component);
 			}
-		});
+		}
+
+		return item -> {
+			IFileItemHandler handler = handlers.get(item.getFieldName());
+			if (handler != null)
+			{
+				handler.onFileItem(item);
+			}
+		};
 	}
 
 	/**
@@ -1232,17 +1326,13 @@ public class Form<T> extends WebMarkupContainer
 
 		// collect all forms innermost to outermost before any hierarchy is changed
 		final List<Form<?>> forms = Generics.newArrayList(3);
-		Visits.visitPostOrder(processingForm, new IVisitor<Form<?>, Void>()
+		for (Form<?> form : processingForm.getFormComponentIndex().getFormsPostOrder())
 		{
-			@Override
-			public void component(Form<?> form, IVisit<Void> visit)
+			if (form.isSubmitted())
 			{
-				if (form.isSubmitted())
-				{
-					forms.add(form);
-				}
+				forms.add(form);
 			}
-		}, new ClassVisitFilter(Form.class));
+		}
 
 		// process submitting component (if specified)
 		if (submittingComponent != null)
@@ -1307,38 +1397,35 @@ public class Form<T> extends WebMarkupContainer
 	{
 		if (multiPart == 0)
 		{
-			Boolean anyEmbeddedMultipart = visitChildren(Component.class,
+			Boolean anyEmbeddedMultipart = null;
+			FormComponentIndex.Entry index = getActiveFormComponentIndex();
+			if (index != null)
+			{
+				for (Component component : index.descendants)
+				{
+					if (isEmbeddedMultiPart(component))
+					{
+						anyEmbeddedMultipart = true;
+						break;
+					}
+				}
+			}
+			else
+			{
+				anyEmbeddedMultipart = visitChildren(Component.class,
 					new IVisitor<Component, Boolean>()
 					{
 						@Override
 						public void component(final Component component, final IVisit<Boolean> visit)
 						{
-							boolean isMultiPart = false;
-							if (component instanceof Form<?>)
-							{
-								Form<?> form = (Form<?>)component;
-								if (form.isVisibleInHierarchy() && form.isEnabledInHierarchy())
-								{
-									isMultiPart = (form.multiPart & MULTIPART_HARD) != 0;
-								}
-							}
-							else if (component instanceof FormComponent<?>)
-							{
-								FormComponent<?> fc = (FormComponent<?>)component;
-								if (fc.isVisibleInHierarchy() && fc.isEnabledInHierarchy())
-								{
-									isMultiPart = fc.isMultiPart();
-								}
-							}
-
-							if (isMultiPart)
+							if (isEmbeddedMultiPart(component))
 							{
 								visit.stop(true);
 							}
 						}
-
 					});
-			
+			}
+
 			if (Boolean.TRUE.equals(anyEmbeddedMultipart)) {
 				multiPart |= MULTIPART_HINT_YES;
 			} else {
@@ -1349,6 +1436,32 @@ public class Form<T> extends WebMarkupContainer
 		return (multiPart & (MULTIPART_HARD | MULTIPART_HINT_YES)) != 0;
 	}
 
+	/**
+	 * @param component
+	 *            a component inside this form
+	 * @return whether the component requires this form to be multipart
+	 */
+	private static boolean isEmbeddedMultiPart(final Component component)
+	{
+		if (component instanceof Form<?>)
+		{
+			Form<?> form = (Form<?>)component;
+			if (form.isVisibleInHierarchy() && form.isEnabledInHierarchy())
+			{
+				return (form.multiPart & MULTIPART_HARD) != 0;
+			}
+		}
+		else if (component instanceof FormComponent<?>)
+		{
+			FormComponent<?> fc = (FormComponent<?>)component;
+			if (fc.isVisibleInHierarchy() && fc.isEnabledInHierarchy())
+			{
+				return fc.isMultiPart();
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * Handles multi-part processing of the submitted data. <h3>
 	 * WARNING</h3> If this method is overridden it can break {@link FileUploadField}s on this form
@@ -1367,7 +1480,14 @@ public class Form<T> extends WebMarkupContainer
 				final MultipartServletWebRequest multipartWebRequest = request.newMultipartWebRequest(
 					getMaxSize(), getPage().getId());
 				multipartWebRequest.setFileMaxSize(getFileMaxSize());
-				multipartWebRequest.parseFileParts();
+				if (isFileUploadStreaming())
+				{
+					multipartWebRequest.parseFileParts(newFileItemHandler());
+				}
+				else
+				{
+					multipartWebRequest.parseFileParts();
+				}
 
 				// TODO: Can't this be detected from header?
 				getRequestCycle().setRequest(multipartWebRequest);
@@ -1448,17 +1568,13 @@ public class Form<T> extends WebMarkupContainer
 	protected final void markFormComponentsInvalid()
 	{
 		// call invalidate methods of all nested form components
-		visitFormComponentsPostOrder(new IVisitor<FormComponent<?>, Void>()
+		for (FormComponent<?> formComponent : getFormComponentIndex().getFormComponents())
 		{
-			@Override
-			public void component(final FormComponent<?> formComponent, IVisit<Void> visit)
+			if (formComponent.isVisibleInHierarchy())
 			{
-				if (formComponent.isVisibleInHierarchy())
-				{
-					formComponent.invalid();
-				}
+				formComponent.invalid();
 			}
-		});
+		}
 	}
 
 	/**
@@ -1475,21 +1591,10 @@ public class Form<T> extends WebMarkupContainer
 	 */
 	private void markNestedFormComponentsValid()
 	{
-		visitChildren(Form.class, new IVisitor<Form<?>, Void>()
+		for (Form<?> form : getFormComponentIndex().getSubmittedNestedForms())
 		{
-			@Override
-			public void component(final Form<?> form, final IVisit<Void> visit)
-			{
-				if (form.isSubmitted())
-				{
-					form.internalMarkFormComponentsValid();
-				}
-				else
-				{
-					visit.dontGoDeeper();
-				}
-			}
-		});
+			form.internalMarkFormComponentsValid();
+		}
 	}
 
 	/**
@@ -1498,17 +1603,13 @@ public class Form<T> extends WebMarkupContainer
 	private void internalMarkFormComponentsValid()
 	{
 		// call valid methods of all nested form components
-		visitFormComponentsPostOrder(new IVisitor<FormComponent<?>, Void>()
+		for (FormComponent<?> formComponent : getFormComponentIndex().getFormComponents())
 		{
-			@Override
-			public void component(final FormComponent<?> formComponent, IVisit<Void> visit)
+			if (formComponent.getForm() == this && formComponent.isVisibleInHierarchy())
 			{
-				if (formComponent.getForm() == Form.this && formComponent.isVisibleInHierarchy())
-				{
-					formComponent.valid();
-				}
+				formComponent.valid();
 			}
-		});
+		}
 	}
 
 	/**
@@ -1780,21 +1881,10 @@ public class Form<T> extends WebMarkupContainer
 	 */
 	private void updateNestedFormComponentModels()
 	{
-		visitChildren(Form.class, new IVisitor<Form<?>, Void>()
+		for (Form<?> form : getFormComponentIndex().getSubmittedNestedForms())
 		{
-			@Override
-			public void component(final Form<?> form, final IVisit<Void> visit)
-			{
-				if (form.isSubmitted())
-				{
-					form.internalUpdateFormComponentModels();
-				}
-				else
-				{
-					visit.dontGoDeeper();
-				}
-			}
-		});
+			form.internalUpdateFormComponentModels();
+		}
 	}
 
 	/**
@@ -1804,7 +1894,17 @@ public class Form<T> extends WebMarkupContainer
 	 */
 	private void internalUpdateFormComponentModels()
 	{
-		FormComponent.visitComponentsPostOrder(this, new FormModelUpdateVisitor(this));
+		for (Component component : getFormComponentIndex().components)
+		{
+			if (component instanceof IFormModelUpdateListener && findForm(component) == this &&
+				isEnabledInHierarchy())
+			{
+				if (component.isVisibleInHierarchy() && component.isEnabledInHierarchy())
+				{
+					((IFormModelUpdateListener)component).updateModel();
+				}
+			}
+		}
 	}
 
 	/**
@@ -1843,21 +1943,10 @@ public class Form<T> extends WebMarkupContainer
 	private void internalOnValidateModelObjects()
 	{
 		onValidateModelObjects();
-		visitChildren(Form.class, new IVisitor<Form<?>, Void>()
+		for (Form<?> form : getFormComponentIndex().getSubmittedNestedForms())
 		{
-			@Override
-			public void component(Form<?> form, IVisit<Void> visit)
-			{
-				if (form.isSubmitted())
-				{
-					form.onValidateModelObjects();
-				}
-				else
-				{
-					visit.dontGoDeeper();
-				}
-			}
-		});
+			form.onValidateModelObjects();
+		}
 	}
 
 	/**
@@ -1880,7 +1969,7 @@ public class Form<T> extends WebMarkupContainer
 	 */
 	protected final void validateComponents()
 	{
-		visitFormComponentsPostOrder(new ValidationVisitor()
+		ValidationVisitor visitor = new ValidationVisitor()
 		{
 			@Override
 			public void validate(final FormComponent<?> formComponent)
@@ -1891,7 +1980,11 @@ public class Form<T> extends WebMarkupContainer
 					formComponent.validate();
 				}
 			}
-		});
+		};
+		for (FormComponent<?> formComponent : getFormComponentIndex().getFormComponents())
+		{
+			visitor.component(formComponent, new Visit<Void>());
+		}
 	}
 
 	/**
@@ -1980,26 +2073,21 @@ public class Form<T> extends WebMarkupContainer
 	 */
 	private void validateNestedForms()
 	{
-		Visits.visitPostOrder(this, new IVisitor<Form<?>, Void>()
+		for (Form<?> form : getFormComponentIndex().getFormsPostOrder())
 		{
-			@Override
-			public void component(final Form<?> form, final IVisit<Void> visit)
+			if (form == this)
 			{
-				if (form == Form.this)
-				{
-					// skip self, only process children
-					visit.stop();
-					return;
-				}
+				// skip self, only process children
+				break;
+			}
 
-				if (form.isSubmitted())
-				{
-					form.validateComponents();
-					form.validateFormValidators();
-					form.onValidate();
-				}
+			if (form.isSubmitted())
+			{
+				form.validateComponents();
+				form.validateFormValidators();
+				form.onValidate();
 			}
-		}, new ClassVisitFilter(Form.class));
+		}
 	}
 
 	/**
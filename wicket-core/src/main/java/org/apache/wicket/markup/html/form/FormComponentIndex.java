@@ -0,0 +1,261 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.html.form;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.Page;
+
+/**
+ * The components of a form and its nested forms, collected in a single traversal of the component
+ * hierarchy. While a submit is processed, the processing phases iterate this index instead of
+ * visiting the hierarchy again and again.
+ * <p>
+ * The index stays valid until components are added to or removed from the page. The
+ * {@link IFormVisitorParticipant#processChildren()} of the components is evaluated when the index
+ * is built.
+ * </p>
+ * 
+ * @see Form#onFormSubmitted(IFormSubmitter)
+ */
+final class FormComponentIndex
+{
+	private final Page page;
+
+	private final int hierarchyChanges;
+
+	private final Entry root;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param form
+	 *            the form to index
+	 * @param page
+	 *            the page of the form, or {@code null} if the index is not kept
+	 */
+	FormComponentIndex(final Form<?> form, final Page page)
+	{
+		this.page = page;
+		hierarchyChanges = page != null ? page.getHierarchyChanges() : 0;
+
+		root = new Entry(form);
+		List<Entry> forms = Collections.singletonList(root);
+		collectChildren(form, forms, forms, root);
+		root.components.add(form);
+	}
+
+	/**
+	 * @return the page of the indexed form, or {@code null}
+	 */
+	Page getPage()
+	{
+		return page;
+	}
+
+	/**
+	 * @return {@code true} if no components were added to or removed from the page since the
+	 *         index was built
+	 */
+	boolean isValid()
+	{
+		return page != null && page.getHierarchyChanges() == hierarchyChanges;
+	}
+
+	/**
+	 * @param form
+	 *            the indexed form or one of its nested forms
+	 * @return the entry of the form or {@code null} if it is not part of this index
+	 */
+	Entry get(final Form<?> form)
+	{
+		return root.find(form);
+	}
+
+	/**
+	 * Collects the children of a component.
+	 * 
+	 * @param component
+	 *            the component
+	 * @param processing
+	 *            the forms whose {@link Entry#components} include the children
+	 * @param enclosing
+	 *            the forms whose {@link Entry#descendants} include the children
+	 * @param parentForm
+	 *            the innermost form enclosing the children
+	 */
+	private static void collectChildren(final Component component, List<Entry> processing,
+		final List<Entry> enclosing, final Entry parentForm)
+	{
+		if ((component instanceof MarkupContainer) == false)
+		{
+			return;
+		}
+
+		if (component instanceof IFormVisitorParticipant &&
+			((IFormVisitorParticipant)component).processChildren() == false)
+		{
+			processing = Collections.emptyList();
+		}
+
+		for (Component child : (MarkupContainer)component)
+		{
+			collect(child, processing, enclosing, parentForm);
+		}
+	}
+
+	private static void collect(final Component component, List<Entry> processing,
+		List<Entry> enclosing, Entry parentForm)
+	{
+		for (Entry entry : enclosing)
+		{
+			entry.descendants.add(component);
+		}
+
+		if (component instanceof Form<?>)
+		{
+			Entry entry = new Entry((Form<?>)component);
+			parentForm.nestedForms.add(entry);
+
+			processing = with(processing, entry);
+			enclosing = with(enclosing, entry);
+			parentForm = entry;
+		}
+
+		collectChildren(component, processing, enclosing, parentForm);
+
+		// post-order
+		for (Entry entry : processing)
+		{
+			entry.components.add(component);
+		}
+	}
+
+	private static List<Entry> with(final List<Entry> entries, final Entry entry)
+	{
+		List<Entry> result = new ArrayList<>(entries.size() + 1);
+		result.addAll(entries);
+		result.add(entry);
+		return result;
+	}
+
+	/**
+	 * The components of a form
+	 */
+	static final class Entry
+	{
+		final Form<?> form;
+
+		/**
+		 * the components as visited by
+		 * {@link FormComponent#visitComponentsPostOrder(Component, org.apache.wicket.util.visit.IVisitor)}
+		 * , including the form itself
+		 */
+		final List<Component> components = new ArrayList<>();
+
+		/** all components inside the form, in pre-order */
+		final List<Component> descendants = new ArrayList<>();
+
+		/** the forms nested directly inside the form */
+		final List<Entry> nestedForms = new ArrayList<>(1);
+
+		private Entry(final Form<?> form)
+		{
+			this.form = form;
+		}
+
+		private Entry find(final Form<?> form)
+		{
+			if (this.form == form)
+			{
+				return this;
+			}
+			for (Entry nested : nestedForms)
+			{
+				Entry entry = nested.find(form);
+				if (entry != null)
+				{
+					return entry;
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * @return the form components as visited by
+		 *         {@link FormComponent#visitFormComponentsPostOrder(Component, org.apache.wicket.util.visit.IVisitor)}
+		 */
+		List<FormComponent<?>> getFormComponents()
+		{
+			List<FormComponent<?>> formComponents = new ArrayList<>(components.size());
+			for (Component component : components)
+			{
+				if (component instanceof FormComponent<?>)
+				{
+					formComponents.add((FormComponent<?>)component);
+				}
+			}
+			return formComponents;
+		}
+
+		/**
+		 * @return the nested forms in pre-order, skipping the forms inside forms which are not
+		 *         submitted
+		 */
+		List<Form<?>> getSubmittedNestedForms()
+		{
+			List<Form<?>> forms = new ArrayList<>();
+			addSubmittedNestedForms(forms);
+			return forms;
+		}
+
+		private void addSubmittedNestedForms(final List<Form<?>> forms)
+		{
+			for (Entry nested : nestedForms)
+			{
+				if (nested.form.isSubmitted())
+				{
+					forms.add(nested.form);
+					nested.addSubmittedNestedForms(forms);
+				}
+			}
+		}
+
+		/**
+		 * @return the nested forms and the form itself in post-order
+		 */
+		List<Form<?>> getFormsPostOrder()
+		{
+			List<Form<?>> forms = new ArrayList<>();
+			addFormsPostOrder(forms);
+			return forms;
+		}
+
+		private void addFormsPostOrder(final List<Form<?>> forms)
+		{
+			for (Entry nested : nestedForms)
+			{
+				nested.addFormsPostOrder(forms);
+			}
+			forms.add(form);
+		}
+	}
+}
@@ -125,7 +125,9 @@ public class FileUpload implements IClusterable
 			try
 			{
 				in = item.getInputStream();
-				byte[] buf = new byte[Math.min((int)item.getSize(), 4096 * 10)];
+				// the size of a streamed upload is not known in advance
+				long size = item.getSize();
+				byte[] buf = new byte[(size > 0) ? (int)Math.min(size, 4096 * 10) : 4096 * 10];
 				int len;
 				while (-1 != (len = in.read(buf)))
 				{
@@ -17,6 +17,7 @@
 package org.apache.wicket.markup.html.form.upload;
 
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -25,6 +26,7 @@ import org.apache.wicket.markup.ComponentTag;
 import org.apache.wicket.markup.html.form.FormComponent;
 import org.apache.wicket.model.IModel;
 import org.apache.wicket.protocol.http.IMultipartWebRequest;
+import org.apache.wicket.protocol.http.servlet.IFileItemHandler;
 import org.apache.wicket.request.Request;
 import org.apache.wicket.util.convert.ConversionException;
 import org.apache.wicket.util.string.Strings;
@@ -40,10 +42,16 @@ import org.apache.wicket.util.string.Strings;
  * streams they point to will be closed. Because of this, the {@link FileUpload} instance should be
  * processed within the same request as the form containing it was submitted.
  * </p>
+ * <p>
+ * If the form {@link org.apache.wicket.markup.html.form.Form#setFileUploadStreaming(boolean)
+ * streams} the uploaded files, their content is available in {@link #onFileUpload(FileUpload)}
+ * only, while the request is parsed. Afterwards the {@link FileUpload}s provide the file names and
+ * content types, but no content anymore.
+ * </p>
  * 
  * @author Eelco Hillenius
  */
-public class FileUploadField extends FormComponent<List<FileUpload>>
+public class FileUploadField extends FormComponent<List<FileUpload>> implements IFileItemHandler
 {
 	private static final long serialVersionUID = 1L;
 
@@ -123,6 +131,42 @@ public class FileUploadField extends FormComponent<List<FileUpload>>
 		return fileUploads;
 	}
 
+	/**
+	 * Called by a form streaming the uploaded files, for each file uploaded with this component.
+	 * 
+	 * @param item
+	 *            the uploaded file
+	 * @throws IOException
+	 * @see #onFileUpload(FileUpload)
+	 */
+	@Override
+	public final void onFileItem(FileItem item) throws IOException
+	{
+		// WICKET-6270 detect empty field by missing file name
+		if (Strings.isEmpty(item.getName()) == false)
+		{
+			onFileUpload(new FileUpload(item));
+		}
+	}
+
+	/**
+	 * Called by a form streaming the uploaded files, for each file uploaded with this component
+	 * in the order of the request. The content of the file can be read from
+	 * {@link FileUpload#getInputStream()} until this method returns, exceeding the form's size
+	 * limits fails with an {@link IOException}.
+	 * <p>
+	 * This method is called while the request is parsed, i.e. before the form is processed.
+	 * </p>
+	 * 
+	 * @param fileUpload
+	 *            the uploaded file
+	 * @throws IOException
+	 * @see org.apache.wicket.markup.html.form.Form#setFileUploadStreaming(boolean)
+	 */
+	protected void onFileUpload(FileUpload fileUpload) throws IOException
+	{
+	}
+
 	@Override
 	public void updateModel()
 	{
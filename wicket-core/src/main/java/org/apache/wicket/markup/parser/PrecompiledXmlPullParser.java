@@ -0,0 +1,527 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.ParseException;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.apache.wicket.markup.parser.XmlTag.TagType;
+import org.apache.wicket.markup.parser.XmlTag.TextSegment;
+import org.apache.wicket.util.io.FullyBufferedReader;
+import org.apache.wicket.util.io.IOUtils;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Objects;
+import org.apache.wicket.util.time.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An {@link IXmlPullParser} which stores the elements found by a {@link XmlPullParser} in a binary
+ * file, so that the same markup does not have to be parsed again, e.g. after a restart of the
+ * application.
+ * <p>
+ * The file contains the decoded markup and for each element its type, position and, for tags,
+ * the name, namespace and attributes. It is used only if the last modification time and the
+ * checksum of the markup are still the same, otherwise the markup is parsed and the file is
+ * written again. The markup filters still process the elements as usual, as their results may
+ * depend on the component and the application.
+ * </p>
+ * 
+ * @see org.apache.wicket.settings.MarkupSettings#setPrecompiledMarkupFolder(File)
+ */
+public class PrecompiledXmlPullParser implements IXmlPullParser
+{
+	private static final Logger log = LoggerFactory.getLogger(PrecompiledXmlPullParser.class);
+
+	private static final int MAGIC = 0x574D4B50;
+
+	private static final byte VERSION = 1;
+
+	/** the element is a new tag */
+	private static final int NEW_ELEMENT = 0x01;
+
+	/** the element has a string different from the text of the tag */
+	private static final int STRING = 0x02;
+
+	/** the element has the string of the text of the tag */
+	private static final int ELEMENT_STRING = 0x04;
+
+	/** the element is the doctype */
+	private static final int DOCTYPE = 0x08;
+
+	private static final HttpTagType[] TYPES = HttpTagType.values();
+
+	private static final TagType[] TAG_TYPES = TagType.values();
+
+	private final XmlPullParser parser;
+
+	private final File file;
+
+	private final long lastModified;
+
+	/** the checksum of the parsed markup */
+	private long checksum;
+
+	private String defaultEncoding;
+
+	/** the elements of the parsed markup, {@code null} if nothing is recorded */
+	private ByteArrayOutputStream recorded;
+
+	private DataOutputStream recorder;
+
+	/** the elements read from the file, {@code null} when parsing */
+	private DataInputStream replay;
+
+	private FullyBufferedReader input;
+
+	private String encoding;
+
+	private CharSequence doctype;
+
+	private CharSequence lastText;
+
+	private XmlTag lastTag;
+
+	private boolean finished;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param parser
+	 *            the parser to use when the file is missing or outdated
+	 * @param file
+	 *            the file with the parsed markup
+	 * @param lastModified
+	 *            the last modification time of the markup, may be {@code null}
+	 */
+	public PrecompiledXmlPullParser(final XmlPullParser parser, final File file,
+		final Time lastModified)
+	{
+		this.parser = Args.notNull(parser, "parser");
+		this.file = Args.notNull(file, "file");
+		this.lastModified = lastModified != null ? lastModified.getMilliseconds() : -1;
+	}
+
+	/**
+	 * Gets the name of the file for the parsed markup of a location.
+	 * 
+	 * @param location
+	 *            the location of the markup
+	 * @return the file name
+	 */
+	public static String getFileName(final String location)
+	{
+		Args.notNull(location, "location");
+
+		int slash = Math.max(location.lastIndexOf('/'), location.lastIndexOf('\\'));
+		String name = location.substring(slash + 1).replaceAll("[^A-Za-z0-9._-]", "_");
+
+		CRC32 crc = new CRC32();
+		crc.update(location.getBytes(StandardCharsets.UTF_8));
+		return name + '-' + Long.toHexString(crc.getValue()) + ".bin";
+	}
+
+	/**
+	 * @return {@code true} if the elements are read from the file instead of being parsed
+	 */
+	public boolean isPrecompiled()
+	{
+		return replay != null;
+	}
+
+	@Override
+	public String getEncoding()
+	{
+		return replay != null ? encoding : parser.getEncoding();
+	}
+
+	@Override
+	public CharSequence getDoctype()
+	{
+		return replay != null ? doctype : parser.getDoctype();
+	}
+
+	@Override
+	public CharSequence getInputFromPositionMarker(final int toPos)
+	{
+		return replay != null ? input.getSubstring(toPos) : parser.getInputFromPositionMarker(toPos);
+	}
+
+	@Override
+	public CharSequence getInput(final int fromPos, final int toPos)
+	{
+		return replay != null ? input.getSubstring(fromPos, toPos) : parser.getInput(fromPos,
+			toPos);
+	}
+
+	@Override
+	public void parse(final CharSequence string) throws IOException
+	{
+		// nothing to validate the file against
+		parser.parse(string);
+	}
+
+	@Override
+	public void parse(final InputStream inputStream) throws IOException
+	{
+		parse(inputStream, "UTF-8");
+	}
+
+	@Override
+	public void parse(final InputStream inputStream, final String encoding) throws IOException
+	{
+		Args.notNull(inputStream, "inputStream");
+
+		byte[] source;
+		try
+		{
+			source = IOUtils.toByteArray(inputStream);
+		}
+		finally
+		{
+			IOUtils.closeQuietly(inputStream);
+		}
+
+		CRC32 crc = new CRC32();
+		crc.update(source);
+		checksum = crc.getValue();
+		defaultEncoding = encoding;
+
+		if (file.exists())
+		{
+			try
+			{
+				if (load())
+				{
+					return;
+				}
+			}
+			catch (IOException | RuntimeException e)
+			{
+				log.warn("Cannot read precompiled markup " + file, e);
+			}
+			replay = null;
+		}
+
+		parser.parse(new ByteArrayInputStream(source), encoding);
+
+		recorded = new ByteArrayOutputStream();
+		recorder = new DataOutputStream(recorded);
+	}
+
+	@Override
+	public HttpTagType next() throws ParseException
+	{
+		if (replay != null)
+		{
+			return replay();
+		}
+
+		XmlTag previousTag = parser.getElement();
+		HttpTagType type = parser.next();
+		if (recorder != null)
+		{
+			try
+			{
+				record(type, previousTag);
+			}
+			catch (IOException e)
+			{
+				// cannot happen with a ByteArrayOutputStream
+				recorder = null;
+			}
+		}
+		return type;
+	}
+
+	@Override
+	public XmlTag getElement()
+	{
+		return replay != null ? lastTag : parser.getElement();
+	}
+
+	@Override
+	public CharSequence getString()
+	{
+		return replay != null ? lastText : parser.getString();
+	}
+
+	@Override
+	public void setPositionMarker()
+	{
+		if (replay != null)
+		{
+			input.setPositionMarker(input.getPosition());
+		}
+		else
+		{
+			parser.setPositionMarker();
+		}
+	}
+
+	@Override
+	public void setPositionMarker(final int pos)
+	{
+		if (replay != null)
+		{
+			input.setPositionMarker(pos);
+		}
+		else
+		{
+			parser.setPositionMarker(pos);
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return replay != null ? input.toString() : parser.toString();
+	}
+
+	/**
+	 * Reads the header of the file.
+	 * 
+	 * @return {@code true} if the file is valid for the markup
+	 */
+	private boolean load() throws IOException
+	{
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+
+		if (in.readInt() != MAGIC || in.readByte() != VERSION || in.readLong() != lastModified ||
+			in.readLong() != checksum || Objects.equal(readString(in), defaultEncoding) == false)
+		{
+			log.debug("Precompiled markup {} is outdated", file);
+			return false;
+		}
+
+		encoding = readString(in);
+		input = new FullyBufferedReader(readString(in));
+		replay = in;
+		return true;
+	}
+
+	private HttpTagType replay() throws ParseException
+	{
+		if (finished)
+		{
+			return HttpTagType.NOT_INITIALIZED;
+		}
+
+		try
+		{
+			HttpTagType type = TYPES[replay.readByte()];
+			input.setPosition(replay.readInt());
+			int flags = replay.readByte();
+
+			if ((flags & NEW_ELEMENT) != 0)
+			{
+				lastTag = readTag(replay);
+			}
+			if ((flags & STRING) != 0)
+			{
+				lastText = readString(replay);
+			}
+			else if ((flags & ELEMENT_STRING) != 0)
+			{
+				lastText = lastTag.text.text;
+			}
+			if ((flags & DOCTYPE) != 0)
+			{
+				doctype = readString(replay);
+			}
+
+			finished = type == HttpTagType.NOT_INITIALIZED;
+			return type;
+		}
+		catch (IOException e)
+		{
+			throw new ParseException("Corrupt precompiled markup " + file + ": " + e.getMessage(),
+				input.getPosition());
+		}
+	}
+
+	private void record(final HttpTagType type, final XmlTag previousTag) throws IOException
+	{
+		XmlTag tag = parser.getElement();
+		CharSequence text = parser.getString();
+
+		int flags = 0;
+		if (tag != null && tag != previousTag)
+		{
+			flags |= NEW_ELEMENT;
+		}
+		if (text != null)
+		{
+			if (tag != null && tag.text != null && text.toString().equals(tag.text.text.toString()))
+			{
+				flags |= ELEMENT_STRING;
+			}
+			else
+			{
+				flags |= STRING;
+			}
+		}
+		if (type == HttpTagType.DOCTYPE)
+		{
+			flags |= DOCTYPE;
+		}
+
+		recorder.writeByte(type.ordinal());
+		recorder.writeInt(parser.getInputPosition());
+		recorder.writeByte(flags);
+		if ((flags & NEW_ELEMENT) != 0)
+		{
+			writeTag(recorder, tag);
+		}
+		if ((flags & STRING) != 0)
+		{
+			writeString(recorder, text);
+		}
+		if ((flags & DOCTYPE) != 0)
+		{
+			writeString(recorder, parser.getDoctype());
+		}
+
+		if (type == HttpTagType.NOT_INITIALIZED)
+		{
+			recorder.flush();
+			save();
+			recorder = null;
+		}
+	}
+
+	/**
+	 * Writes the file with the recorded elements.
+	 */
+	private void save()
+	{
+		try
+		{
+			File folder = file.getAbsoluteFile().getParentFile();
+			folder.mkdirs();
+
+			// several threads may parse the same markup
+			File temp = File.createTempFile(file.getName(), ".tmp", folder);
+			try (OutputStream out = new FileOutputStream(temp))
+			{
+				DataOutputStream header = new DataOutputStream(out);
+				header.writeInt(MAGIC);
+				header.writeByte(VERSION);
+				header.writeLong(lastModified);
+				header.writeLong(checksum);
+				writeString(header, defaultEncoding);
+				writeString(header, parser.getEncoding());
+				writeString(header, parser.toString());
+				header.flush();
+				recorded.writeTo(out);
+			}
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (IOException e)
+		{
+			log.warn("Cannot write precompiled markup " + file, e);
+		}
+	}
+
+	private static void writeTag(final DataOutputStream out, final XmlTag tag) throws IOException
+	{
+		out.writeInt(tag.text.pos);
+		out.writeInt(tag.text.lineNumber);
+		out.writeInt(tag.text.columnNumber);
+		writeString(out, tag.text.text);
+		out.writeByte(tag.type != null ? tag.type.ordinal() : -1);
+		writeString(out, tag.name);
+		writeString(out, tag.namespace);
+
+		if (tag.hasAttributes())
+		{
+			Map<String, Object> attributes = tag.getAttributes();
+			out.writeInt(attributes.size());
+			for (Map.Entry<String, Object> attribute : attributes.entrySet())
+			{
+				writeString(out, attribute.getKey());
+				writeString(out, (CharSequence)attribute.getValue());
+			}
+		}
+		else
+		{
+			out.writeInt(0);
+		}
+	}
+
+	private static XmlTag readTag(final DataInputStream in) throws IOException
+	{
+		int pos = in.readInt();
+		int line = in.readInt();
+		int column = in.readInt();
+		String text = readString(in);
+		int type = in.readByte();
+
+		XmlTag tag = new XmlTag(new TextSegment(text, pos, line, column), type >= 0
+			? TAG_TYPES[type] : null);
+		tag.name = readString(in);
+		tag.namespace = readString(in);
+
+		int attributes = in.readInt();
+		for (int i = 0; i < attributes; i++)
+		{
+			tag.getAttributes().put(readString(in), readString(in));
+		}
+		return tag;
+	}
+
+	private static void writeString(final DataOutputStream out, final CharSequence string)
+		throws IOException
+	{
+		if (string == null)
+		{
+			out.writeInt(-1);
+		}
+		else
+		{
+			byte[] bytes = string.toString().getBytes(StandardCharsets.UTF_8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	private static String readString(final DataInputStream in) throws IOException
+	{
+		int length = in.readInt();
+		if (length < 0)
+		{
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
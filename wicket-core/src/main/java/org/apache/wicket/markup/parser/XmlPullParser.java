@@ -613,6 +613,14 @@ public final class XmlPullParser implements IXmlPullParser
 		}
 	}
 
+	/**
+	 * @return the position in the input after the last element
+	 */
+	final int getInputPosition()
+	{
+		return input.getPosition();
+	}
+
 	@Override
 	public final void setPositionMarker()
 	{
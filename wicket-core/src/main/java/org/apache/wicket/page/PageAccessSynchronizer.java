@@ -17,22 +17,43 @@
 package org.apache.wicket.page;
 
 import java.io.Serializable;
-import java.util.Iterator;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Supplier;
 
 import org.apache.wicket.Application;
+import org.apache.wicket.IApplicationListener;
+import org.apache.wicket.MetaDataKey;
 import org.apache.wicket.settings.ExceptionSettings.ThreadDumpStrategy;
 import org.apache.wicket.util.LazyInitializer;
+import org.apache.wicket.util.lang.Args;
 import org.apache.wicket.util.lang.Threads;
 import org.apache.wicket.util.time.Duration;
-import org.apache.wicket.util.time.Time;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Synchronizes access to page instances from multiple threads
+ * <p>
+ * Threads waiting for a page are queued and get the lock handed over in the order of their
+ * arrival. Waiting threads are parked instead of waiting on a monitor, and
+ * {@link #lockPageAsync(int, Object)} allows to wait for a lock without occupying a thread at all.
+ * The queues are guarded by a fixed number of stripes, each of them responsible for a subset of
+ * the page ids.
+ * </p>
  * 
  * @author Igor Vaynberg (ivaynberg)
  */
@@ -42,6 +63,21 @@ public class PageAccessSynchronizer implements Serializable
 
 	private static final Logger logger = LoggerFactory.getLogger(PageAccessSynchronizer.class);
 
+	/** the scheduler of the application completing timed out asynchronous lock requests */
+	private static final MetaDataKey<ScheduledExecutorService> TIMEOUT_SCHEDULER = new MetaDataKey<ScheduledExecutorService>()
+	{
+		private static final long serialVersionUID = 1L;
+	};
+
+	/** the number of stripes guarding the wait queues, a power of two */
+	private static final int STRIPES = 16;
+
+	/**
+	 * The upper bounds (inclusive) of the buckets of {@link #getWaitTimeHistogram()} in
+	 * milliseconds. The last bucket counts all longer waits.
+	 */
+	public static final long[] WAIT_TIME_BUCKETS = { 1, 10, 100, 1000, 10000 };
+
 	/** map of which pages are owned by which threads */
 	private final Supplier<ConcurrentMap<Integer, PageLock>> locks = new LazyInitializer<ConcurrentMap<Integer, PageLock>>()
 	{
@@ -54,9 +90,37 @@ public class PageAccessSynchronizer implements Serializable
 		}
 	};
 
+	/** the stripes with the threads waiting for a page */
+	private final Supplier<Stripe[]> stripes = new LazyInitializer<Stripe[]>()
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected Stripe[] createInstance()
+		{
+			Stripe[] stripes = new Stripe[STRIPES];
+			for (int i = 0; i < stripes.length; i++)
+			{
+				stripes[i] = new Stripe();
+			}
+			return stripes;
+		}
+	};
+
 	/** timeout value for acquiring a page lock */
 	private final Duration timeout;
 
+	private final AtomicLong acquisitions = new AtomicLong();
+
+	private final AtomicLong contentions = new AtomicLong();
+
+	private final AtomicLong timeouts = new AtomicLong();
+
+	private final AtomicLongArray waitTimes = new AtomicLongArray(WAIT_TIME_BUCKETS.length + 1);
+
+	/** the scheduler for timeouts when used outside of an application, e.g. in tests */
+	private transient ScheduledExecutorService timeoutScheduler;
+
 	/**
 	 * Constructor
 	 * 
@@ -68,11 +132,6 @@ public class PageAccessSynchronizer implements Serializable
 		this.timeout = timeout;
 	}
 
-	private static long remaining(Time start, Duration timeout)
-	{
-		return Math.max(0, timeout.subtract(start.elapsedSince()).getMilliseconds());
-	}
-
 	/**
 	 * @param pageId
 	 *            the id of the page to be locked
@@ -94,87 +153,174 @@ public class PageAccessSynchronizer implements Serializable
 	public void lockPage(int pageId) throws CouldNotLockPageException
 	{
 		final Thread thread = Thread.currentThread();
-		final PageLock lock = new PageLock(pageId, thread);
-		final Time start = Time.now();
-
-		boolean locked = false;
-
 		final boolean isDebugEnabled = logger.isDebugEnabled();
 
-		PageLock previous = null;
-
-		Duration timeout = getTimeout(pageId);
+		if (isDebugEnabled)
+		{
+			logger.debug("'{}' attempting to acquire lock to page with id '{}'",
+				thread.getName(), pageId);
+		}
 
-		while (!locked && start.elapsedSince().lessThan(timeout))
+		final Waiter waiter = enqueue(pageId, thread, thread, null);
+		if (waiter != null)
 		{
+			final Duration timeout = getTimeout(pageId);
+			final long deadline = waiter.start + TimeUnit.MILLISECONDS.toNanos(timeout.getMilliseconds());
+
 			if (isDebugEnabled)
 			{
-				logger.debug("'{}' attempting to acquire lock to page with id '{}'",
-					thread.getName(), pageId);
+				logger.debug("{} waiting for lock to page {} for {}", thread.getName(), pageId,
+					timeout);
 			}
 
-			previous = locks.get().putIfAbsent(pageId, lock);
-
-			if (previous == null || previous.thread == thread)
+			boolean interrupted = false;
+			long remaining;
+			while (waiter.granted == false && interrupted == false &&
+				(remaining = deadline - System.nanoTime()) > 0)
 			{
-				// first thread to acquire lock or lock is already owned by this thread
-				locked = true;
+				LockSupport.parkNanos(this, remaining);
+				interrupted = Thread.interrupted();
 			}
-			else
+
+			if (cancel(pageId, waiter))
 			{
-				// wait for a lock to become available
-				long remaining = remaining(start, timeout);
-				if (remaining > 0)
+				if (interrupted)
 				{
-					previous.waitForRelease(remaining, isDebugEnabled);
+					throw new RuntimeException(new InterruptedException());
 				}
+				timeouts.incrementAndGet();
+				failToLock(pageId, thread, timeout);
+			}
+
+			if (interrupted)
+			{
+				// the lock was handed over anyway, keep the interrupt for the caller
+				thread.interrupt();
 			}
+			recordWait(waiter);
 		}
-		if (locked)
+
+		if (isDebugEnabled)
 		{
-			if (isDebugEnabled)
+			logger.debug("{} acquired lock to page {}", thread.getName(), pageId);
+		}
+	}
+
+	/**
+	 * Acquires a lock to a page for the given owner without blocking the calling thread, e.g. for
+	 * a request which is processed asynchronously.
+	 * <p>
+	 * The returned future is completed when the lock is acquired, or completed exceptionally with
+	 * a {@link CouldNotLockPageException} if it could not be acquired within the
+	 * {@link #getTimeout(int) timeout}. The future may be completed by the thread releasing the
+	 * lock, so the dependent actions should be light or run asynchronously. The lock has to be
+	 * released with {@link #unlockPage(int, Object)} or {@link #unlockAllPages(Object)}.
+	 * </p>
+	 * 
+	 * @param pageId
+	 *            page id
+	 * @param owner
+	 *            the owner of the lock
+	 * @return a future completed once the lock is acquired
+	 */
+	public CompletableFuture<Void> lockPageAsync(final int pageId, final Object owner)
+	{
+		Args.notNull(owner, "owner");
+
+		final CompletableFuture<Void> future = new CompletableFuture<>();
+		final Waiter waiter = enqueue(pageId, owner, null, future);
+		if (waiter == null)
+		{
+			future.complete(null);
+			return future;
+		}
+
+		final Duration timeout = getTimeout(pageId);
+		waiter.timeoutTask = getTimeoutScheduler().schedule(() -> {
+			if (cancel(pageId, waiter))
 			{
-				logger.debug("{} acquired lock to page {}", thread.getName(), pageId);
+				timeouts.incrementAndGet();
+				future.completeExceptionally(new CouldNotLockPageException(pageId,
+					String.valueOf(owner), timeout));
+			}
+		}, timeout.getMilliseconds(), TimeUnit.MILLISECONDS);
+		return future;
+	}
+
+	/**
+	 * Returns the scheduler completing timed out asynchronous lock requests. It is shared by all
+	 * sessions of the application and shut down when the application is destroyed. Its thread
+	 * ends when no timeout is pending.
+	 * 
+	 * @return the scheduler
+	 */
+	private ScheduledExecutorService getTimeoutScheduler()
+	{
+		if (Application.exists() == false)
+		{
+			synchronized (this)
+			{
+				if (timeoutScheduler == null)
+				{
+					timeoutScheduler = newTimeoutScheduler();
+				}
+				return timeoutScheduler;
 			}
 		}
-		else
+
+		Application application = Application.get();
+		synchronized (TIMEOUT_SCHEDULER)
 		{
-			if (logger.isWarnEnabled())
+			ScheduledExecutorService scheduler = application.getMetaData(TIMEOUT_SCHEDULER);
+			if (scheduler == null)
 			{
-				logger.warn(
-					"Thread '{}' failed to acquire lock to page with id '{}', attempted for {} out of allowed {}." +
-							" The thread that holds the lock has name '{}'.",
-					thread.getName(), pageId, start.elapsedSince(), timeout,
-							previous.thread.getName());
-				if (Application.exists())
+				final ScheduledExecutorService created = newTimeoutScheduler();
+				application.setMetaData(TIMEOUT_SCHEDULER, created);
+				application.getApplicationListeners().add(new IApplicationListener()
 				{
-					ThreadDumpStrategy strategy = Application.get()
-						.getExceptionSettings()
-						.getThreadDumpStrategy();
-					switch (strategy)
+					@Override
+					public void onBeforeDestroyed(Application application)
 					{
-						case ALL_THREADS :
-							Threads.dumpAllThreads(logger);
-							break;
-						case THREAD_HOLDING_LOCK :
-							Threads.dumpSingleThread(logger, previous.thread);
-							break;
-						case NO_THREADS :
-						default :
-							// do nothing
+						created.shutdownNow();
 					}
-				}
+				});
+				scheduler = created;
 			}
-			throw new CouldNotLockPageException(pageId, thread.getName(), timeout);
+			return scheduler;
 		}
 	}
 
+	private static ScheduledExecutorService newTimeoutScheduler()
+	{
+		ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+			Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+			thread.setName("Wicket-PageAccessSynchronizer-Timeout");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.setRemoveOnCancelPolicy(true);
+		scheduler.setKeepAliveTime(1, TimeUnit.SECONDS);
+		scheduler.allowCoreThreadTimeOut(true);
+		return scheduler;
+	}
+
 	/**
 	 * Unlocks all pages locked by this thread
 	 */
 	public void unlockAllPages()
 	{
-		internalUnlockPages(null);
+		internalUnlockPages(null, Thread.currentThread());
+	}
+
+	/**
+	 * Unlocks all pages locked by the given owner.
+	 * 
+	 * @param owner
+	 *            the owner the pages were locked for with {@link #lockPageAsync(int, Object)}
+	 */
+	public void unlockAllPages(Object owner)
+	{
+		internalUnlockPages(null, owner);
 	}
 
 	/**
@@ -185,31 +331,141 @@ public class PageAccessSynchronizer implements Serializable
 	 */
 	public void unlockPage(int pageId)
 	{
-		internalUnlockPages(pageId);
+		internalUnlockPages(pageId, Thread.currentThread());
+	}
+
+	/**
+	 * Unlocks a single page locked by the given owner.
+	 * 
+	 * @param pageId
+	 *            the id of the page which should be unlocked.
+	 * @param owner
+	 *            the owner the page was locked for with {@link #lockPageAsync(int, Object)}
+	 */
+	public void unlockPage(int pageId, Object owner)
+	{
+		internalUnlockPages(pageId, owner);
 	}
 
-	private void internalUnlockPages(final Integer pageId)
+	/**
+	 * @return the number of acquired locks
+	 */
+	public long getAcquisitionCount()
 	{
-		final Thread thread = Thread.currentThread();
-		final Iterator<PageLock> locks = this.locks.get().values().iterator();
+		return acquisitions.get();
+	}
 
+	/**
+	 * @return the number of lock requests which had to wait for another owner
+	 */
+	public long getContentionCount()
+	{
+		return contentions.get();
+	}
+
+	/**
+	 * @return the number of lock requests which timed out
+	 */
+	public long getTimeoutCount()
+	{
+		return timeouts.get();
+	}
+
+	/**
+	 * Gets the number of waits for a lock by their duration, see {@link #WAIT_TIME_BUCKETS}.
+	 * 
+	 * @return the number of successful waits per bucket
+	 */
+	public long[] getWaitTimeHistogram()
+	{
+		long[] histogram = new long[waitTimes.length()];
+		for (int i = 0; i < histogram.length; i++)
+		{
+			histogram[i] = waitTimes.get(i);
+		}
+		return histogram;
+	}
+
+	/**
+	 * Takes the lock if it is free or owned by the same owner, otherwise queues a waiter.
+	 * 
+	 * @return the queued waiter or {@code null} if the lock was acquired
+	 */
+	private Waiter enqueue(final int pageId, final Object owner, final Thread thread,
+		final CompletableFuture<Void> future)
+	{
+		final Stripe stripe = getStripe(pageId);
+		synchronized (stripe)
+		{
+			ConcurrentMap<Integer, PageLock> locks = this.locks.get();
+			PageLock current = locks.get(pageId);
+			if (current == null)
+			{
+				// first thread to acquire lock
+				locks.put(pageId, new PageLock(pageId, owner));
+				acquisitions.incrementAndGet();
+				return null;
+			}
+			if (current.owner == owner)
+			{
+				// lock is already owned by this thread
+				return null;
+			}
+
+			contentions.incrementAndGet();
+			Waiter waiter = new Waiter(owner, thread, future);
+			stripe.waiters.computeIfAbsent(pageId, id -> new ArrayDeque<>()).add(waiter);
+			return waiter;
+		}
+	}
+
+	/**
+	 * Removes a waiter from the queue, unless the lock has been handed over to it already.
+	 * 
+	 * @return {@code true} if the waiter was removed
+	 */
+	private boolean cancel(final int pageId, final Waiter waiter)
+	{
+		final Stripe stripe = getStripe(pageId);
+		synchronized (stripe)
+		{
+			if (waiter.granted)
+			{
+				return false;
+			}
+
+			Deque<Waiter> queue = stripe.waiters.get(pageId);
+			if (queue != null)
+			{
+				queue.remove(waiter);
+				if (queue.isEmpty())
+				{
+					stripe.waiters.remove(pageId);
+				}
+			}
+			return true;
+		}
+	}
+
+	private void internalUnlockPages(final Integer pageId, final Object owner)
+	{
 		final boolean isDebugEnabled = logger.isDebugEnabled();
 
-		while (locks.hasNext())
+		for (PageLock lock : locks.get().values())
 		{
 			// remove all locks held by this thread if 'pageId' is not specified
 			// otherwise just the lock for this 'pageId'
-			final PageLock lock = locks.next();
-			if ((pageId == null || pageId == lock.pageId) && lock.thread == thread)
+			if ((pageId == null || pageId == lock.pageId) && lock.owner == owner)
 			{
-				locks.remove();
+				if (release(lock) == false)
+				{
+					continue;
+				}
+
 				if (isDebugEnabled)
 				{
-					logger.debug("'{}' released lock to page with id '{}'", thread.getName(),
-						lock.pageId);
+					logger.debug("'{}' released lock to page with id '{}'", owner, lock.pageId);
 				}
-				// if any locks were removed notify threads waiting for a lock
-				lock.markReleased(isDebugEnabled);
 				if (pageId != null)
 				{
 					// unlock just the page with the specified id
@@ -219,6 +475,119 @@ public class PageAccessSynchronizer implements Serializable
 		}
 	}
 
+	/**
+	 * Releases a lock and hands it over to the longest waiting thread or request. A request which
+	 * does not accept the lock anymore, e.g. because its future has been cancelled, is skipped.
+	 * 
+	 * @return {@code false} if the lock had been released already
+	 */
+	private boolean release(final PageLock lock)
+	{
+		PageLock released = lock;
+		while (released != null)
+		{
+			Waiter next = null;
+			PageLock granted = null;
+			final Stripe stripe = getStripe(released.pageId);
+			synchronized (stripe)
+			{
+				if (locks.get().remove(released.pageId, released) == false)
+				{
+					return released != lock;
+				}
+
+				// hand the lock over to the longest waiting thread
+				Deque<Waiter> queue = stripe.waiters.get(released.pageId);
+				if (queue != null)
+				{
+					next = queue.poll();
+					if (queue.isEmpty())
+					{
+						stripe.waiters.remove(released.pageId);
+					}
+				}
+				if (next != null)
+				{
+					granted = new PageLock(released.pageId, next.owner);
+					locks.get().put(released.pageId, granted);
+					acquisitions.incrementAndGet();
+					next.granted = true;
+				}
+			}
+
+			released = null;
+			if (next != null)
+			{
+				if (next.signal())
+				{
+					if (next.future != null)
+					{
+						recordWait(next);
+					}
+				}
+				else
+				{
+					// nobody will ever release the lock, pass it on
+					released = granted;
+				}
+			}
+		}
+		return true;
+	}
+
+	private void failToLock(final int pageId, final Thread thread, final Duration timeout)
+	{
+		PageLock holder = locks.get().get(pageId);
+		Thread holdingThread = holder != null ? holder.getThread() : null;
+
+		if (logger.isWarnEnabled())
+		{
+			logger.warn(
+				"Thread '{}' failed to acquire lock to page with id '{}', attempted for {}." +
+					" The lock is held by '{}'.", thread.getName(), pageId, timeout,
+				holder != null ? holder.owner : null);
+			if (Application.exists())
+			{
+				ThreadDumpStrategy strategy = Application.get()
+					.getExceptionSettings()
+					.getThreadDumpStrategy();
+				switch (strategy)
+				{
+					case ALL_THREADS :
+						Threads.dumpAllThreads(logger);
+						break;
+					case THREAD_HOLDING_LOCK :
+						if (holdingThread != null)
+						{
+							Threads.dumpSingleThread(logger, holdingThread);
+						}
+						break;
+					case NO_THREADS :
+					default :
+						// do nothing
+				}
+			}
+		}
+		throw new CouldNotLockPageException(pageId, thread.getName(), timeout);
+	}
+
+	private void recordWait(final Waiter waiter)
+	{
+		long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - waiter.start);
+		int bucket = 0;
+		while (bucket < WAIT_TIME_BUCKETS.length && millis > WAIT_TIME_BUCKETS[bucket])
+		{
+			bucket++;
+		}
+		waitTimes.incrementAndGet(bucket);
+	}
+
+	private Stripe getStripe(final int pageId)
+	{
+		int hash = pageId ^ (pageId >>> 16);
+		return stripes.get()[hash & (STRIPES - 1)];
+	}
+
 	/*
 	 * used by tests
 	 */
@@ -304,10 +673,8 @@ public class PageAccessSynchronizer implements Serializable
 		/** page id */
 		private final int pageId;
 
-		/** thread that owns the lock */
-		private final Thread thread;
-
-		private volatile boolean released = false;
+		/** the owner of the lock, usually a thread */
+		private final Object owner;
 
 		/**
 		 * Constructor
@@ -316,9 +683,14 @@ public class PageAccessSynchronizer implements Serializable
 		 * @param thread
 		 */
 		public PageLock(int pageId, Thread thread)
+		{
+			this(pageId, (Object)thread);
+		}
+
+		private PageLock(int pageId, Object owner)
 		{
 			this.pageId = pageId;
-			this.thread = thread;
+			this.owner = owner;
 		}
 
 		/**
@@ -330,51 +702,80 @@ public class PageAccessSynchronizer implements Serializable
 		}
 
 		/**
-		 * @return thread that owns the lock
+		 * @return thread that owns the lock or {@code null} if the lock was acquired with
+		 *         {@link PageAccessSynchronizer#lockPageAsync(int, Object)} for another owner
 		 */
 		public Thread getThread()
 		{
-			return thread;
+			return owner instanceof Thread ? (Thread)owner : null;
 		}
 
-		final synchronized void waitForRelease(long remaining, boolean isDebugEnabled)
+		/**
+		 * @return the owner of the lock
+		 */
+		public Object getOwner()
 		{
-			if (released)
-			{
-				// the thread holding the lock released it before we were able to wait for the
-				// release
-				if (isDebugEnabled)
-				{
-					logger.debug(
-						"lock for page with id {} no longer locked by {}, falling through", pageId,
-						thread.getName());
-				}
-				return;
-			}
+			return owner;
+		}
+	}
 
-			if (isDebugEnabled)
-			{
-				logger.debug("{} waiting for lock to page {} for {}",
-					thread.getName(), pageId, Duration.milliseconds(remaining));
-			}
-			try
-			{
-				wait(remaining);
-			}
-			catch (InterruptedException e)
-			{
-				throw new RuntimeException(e);
-			}
+	/**
+	 * The waiters of the pages mapped to a stripe. Used as monitor for all changes of their locks.
+	 */
+	private static class Stripe
+	{
+		/** page id -> waiters in order of their arrival */
+		private final Map<Integer, Deque<Waiter>> waiters = new HashMap<>();
+	}
+
+	/**
+	 * A thread or an asynchronous request waiting for a lock.
+	 */
+	private static class Waiter
+	{
+		private final Object owner;
+
+		/** the parked thread or {@code null} if waiting asynchronously */
+		private final Thread thread;
+
+		private final CompletableFuture<Void> future;
+
+		private final long start = System.nanoTime();
+
+		/** whether the lock has been handed over to this waiter */
+		private volatile boolean granted;
+
+		private volatile ScheduledFuture<?> timeoutTask;
+
+		private Waiter(Object owner, Thread thread, CompletableFuture<Void> future)
+		{
+			this.owner = owner;
+			this.thread = thread;
+			this.future = future;
 		}
 
-		final synchronized void markReleased(boolean isDebugEnabled)
+		/**
+		 * Notifies the waiter that the lock has been handed over to it.
+		 * 
+		 * @return {@code false} if the lock is not accepted because the future has been completed
+		 *         already
+		 */
+		private boolean signal()
 		{
-			if (isDebugEnabled)
+			if (thread != null)
 			{
-				logger.debug("'{}' notifying blocked threads", thread.getName());
+				LockSupport.unpark(thread);
+				return true;
+			}
+			else
+			{
+				ScheduledFuture<?> task = timeoutTask;
+				if (task != null)
+				{
+					task.cancel(false);
+				}
+				return future.complete(null);
 			}
-			released = true;
-			notifyAll();
 		}
 	}
 }
@@ -121,6 +121,11 @@ public abstract class PartialPageUpdate
 
 	private IHeaderResponse headerResponse;
 
+	/**
+	 * Whether the response is flushed after each component.
+	 */
+	private boolean streaming = false;
+
 	/**
 	 * The page which components are being updated.
 	 */
@@ -183,6 +188,29 @@ public abstract class PartialPageUpdate
 		}
 	}
 
+	/**
+	 * Serializes this object to the response, flushing the response after each component so that
+	 * the client receives the markup while the following components are rendered. Only the markup
+	 * of a single component is kept in memory.
+	 *
+	 * @param response
+	 *      the response to write to
+	 * @param encoding
+	 *      the encoding for the response
+	 */
+	public void streamTo(final WebResponse response, final String encoding)
+	{
+		streaming = true;
+		try
+		{
+			writeTo(response, encoding);
+		}
+		finally
+		{
+			streaming = false;
+		}
+	}
+
 	/**
 	 * Hook-method called before components are written. 
 	 * 
@@ -246,6 +274,11 @@ public abstract class PartialPageUpdate
 			if (!containsAncestorFor(component))
 			{
 				writeComponent(response, component.getAjaxRegionMarkupId(), component, encoding);
+
+				if (streaming)
+				{
+					((WebResponse)response).flush();
+				}
 			}
 		}
 
@@ -34,6 +34,30 @@ public class XmlPartialPageUpdate extends PartialPageUpdate
 {
 	private static final Logger LOG = LoggerFactory.getLogger(XmlPartialPageUpdate.class);
 
+	/**
+	 * Whether a subclass still overrides the deprecated {@link #encode(CharSequence)}.
+	 */
+	private static final ClassValue<Boolean> ENCODE_OVERRIDDEN = new ClassValue<Boolean>()
+	{
+		@Override
+		protected Boolean computeValue(final Class<?> type)
+		{
+			for (Class<?> cls = type; cls != XmlPartialPageUpdate.class; cls = cls.getSuperclass())
+			{
+				try
+				{
+					cls.getDeclaredMethod("encode", CharSequence.class);
+					return true;
+				}
+				catch (NoSuchMethodException e)
+				{
+					// not overridden here
+				}
+			}
+			return false;
+		}
+	};
+
 	/**
 	 * The name of the root element in the produced XML document.
 	 */
@@ -135,7 +159,7 @@ public class XmlPartialPageUpdate extends PartialPageUpdate
 		response.write("<component id=\"");
 		response.write(markupId);
 		response.write("\" ><![CDATA[");
-		response.write(encode(bodyBuffer.getContents()));
+		writeEncoded(response, bodyBuffer.getContents());
 		response.write("]]></component>");
 
 		bodyBuffer.reset();
@@ -158,7 +182,7 @@ public class XmlPartialPageUpdate extends PartialPageUpdate
 			// we need to write response as CDATA and parse it on client,
 			// because konqueror crashes when there is a <script> element
 			response.write("<![CDATA[<head xmlns:wicket=\"http://wicket.apache.org\">");
-			response.write(encode(contents));
+			writeEncoded(response, contents);
 			response.write("</head>]]>");
 			response.write("</header-contribution>");
 		}
@@ -181,39 +205,78 @@ public class XmlPartialPageUpdate extends PartialPageUpdate
 	{
 		if (scripts.size() > 0)
 		{
-			StringBuilder combinedScript = new StringBuilder(1024);
+			response.write("<");
+			response.write(elementName);
+			response.write(">");
+
+			response.write("<![CDATA[");
 			for (CharSequence script : scripts)
 			{
-				combinedScript.append("(function(){").append(script).append("})();");
+				// a CDATA end cannot span the wrapping, so each script is encoded on its own
+				response.write("(function(){");
+				writeEncoded(response, script);
+				response.write("})();");
 			}
-			writeEvaluation(elementName, response, combinedScript);
+			response.write("]]>");
+
+			response.write("</");
+			response.write(elementName);
+			response.write(">");
+
+			bodyBuffer.reset();
 		}
 	}
 
 	/**
-	* @param invocation
-	*            type of invocation tag, usually {@literal evaluate} or
-	*            {@literal priority-evaluate}
-	* @param response
-	* @param js
-	*/
-	private void writeEvaluation(final String invocation, final Response response, final CharSequence js)
+	 * Writes the content of a CDATA section, splitting the section at each {@code ]]>}. The parts
+	 * between are written as they are, without copying the whole content. A subclass overriding
+	 * {@link #encode(CharSequence)} gets the content written as encoded by it instead.
+	 *
+	 * @param response
+	 *      the response to write to
+	 * @param content
+	 *      the content to write
+	 */
+	protected void writeEncoded(final Response response, final CharSequence content)
 	{
-		response.write("<");
-		response.write(invocation);
-		response.write(">");
-
-		response.write("<![CDATA[");
-		response.write(encode(js));
-		response.write("]]>");
+		if (ENCODE_OVERRIDDEN.get(getClass()))
+		{
+			response.write(encode(content));
+			return;
+		}
 
-		response.write("</");
-		response.write(invocation);
-		response.write(">");
+		final int length = content.length();
+		int start = 0;
+		for (int i = 2; i < length; i++)
+		{
+			if (content.charAt(i) == '>' && content.charAt(i - 1) == ']' &&
+				content.charAt(i - 2) == ']')
+			{
+				// end the section after the brackets and start a new one for the '>'
+				response.write(content.subSequence(start, i));
+				response.write("]]><![CDATA[");
+				start = i;
+			}
+		}
 
-		bodyBuffer.reset();
+		if (start == 0)
+		{
+			response.write(content);
+		}
+		else
+		{
+			response.write(content.subSequence(start, length));
+		}
 	}
 
+	/**
+	 * @param str
+	 *      the content of a CDATA section
+	 * @return the content with each {@code ]]>} split into two sections
+	 * @deprecated override {@link #writeEncoded(Response, CharSequence)} instead, which does not
+	 *             copy the content. An override of this method is still used by it.
+	 */
+	@Deprecated
 	protected CharSequence encode(CharSequence str)
 	{
 		return Strings.replaceAll(str, "]]>", "]]]]><![CDATA[>"); 
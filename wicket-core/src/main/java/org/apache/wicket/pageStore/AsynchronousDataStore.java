@@ -16,28 +16,37 @@
  */
 package org.apache.wicket.pageStore;
 
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Facade for {@link IDataStore} that does the actual saving in worker thread.
+ * Facade for {@link IDataStore} that does the actual saving in worker threads.
  * <p>
- * Creates an {@link Entry} for each triple (sessionId, pageId, data) and puts it in
- * {@link #entries} queue if there is room. Acts as producer.<br/>
- * Later {@link PageSavingRunnable} reads in blocking manner from {@link #entries} and saves each
- * entry. Acts as consumer.
+ * Creates an {@link Entry} for each triple (sessionId, pageId, data) and puts it in the queue of
+ * the worker responsible for the session. Acts as producer.<br/>
+ * Later each {@link PageSavingRunnable} takes the entries from its queue in batches and saves
+ * them. Acts as consumer.
+ * </p>
+ * <p>
+ * A page which is stored again before its previous data has been saved just replaces the pending
+ * data, so only its last state is written. The sessions are distributed among the worker threads,
+ * so the pages of a session are always written by the same thread and in the order they were
+ * stored. When the queue of a worker is full, the storing thread waits until there is room again,
+ * or saves the page itself if the queue stays full for too long.
  * </p>
- * It starts only one instance of {@link PageSavingRunnable} because all we need is to make the page
- * storing asynchronous. We don't want to write concurrently in the wrapped {@link IDataStore},
- * though it may happen in the extreme case when the queue is full. These cases should be avoided.
  * 
  * @author Matej Knopp
  */
@@ -47,7 +56,8 @@ public class AsynchronousDataStore implements IDataStore
 	private static final Logger log = LoggerFactory.getLogger(AsynchronousDataStore.class);
 
 	/**
-	 * The time to wait when adding an {@link Entry} into the entries. In millis.
+	 * The time to wait when adding an {@link Entry} into the entries, before checking whether the
+	 * store has been destroyed in the meantime. In millis.
 	 */
 	private static final long OFFER_WAIT = 30L;
 
@@ -57,9 +67,14 @@ public class AsynchronousDataStore implements IDataStore
 	private static final long POLL_WAIT = 1000L;
 
 	/**
-	 * The page saving thread.
+	 * The maximum number of entries saved in one batch.
+	 */
+	private static final int MAX_BATCH_SIZE = 64;
+
+	/**
+	 * The page saving threads.
 	 */
-	private final Thread pageSavingThread;
+	private final Thread[] pageSavingThreads;
 
 	/**
 	 * The wrapped {@link IDataStore} that actually stores that pages
@@ -67,9 +82,9 @@ public class AsynchronousDataStore implements IDataStore
 	private final IDataStore dataStore;
 
 	/**
-	 * The queue where the entries which have to be saved are temporary stored
+	 * The queues where the entries which have to be saved are temporary stored, one per thread
 	 */
-	private final BlockingQueue<Entry> entries;
+	private final List<BlockingQueue<Entry>> queues;
 
 	/**
 	 * A map 'sessionId:::pageId' -> {@link Entry}. Used for fast retrieval of {@link Entry}s which
@@ -77,6 +92,10 @@ public class AsynchronousDataStore implements IDataStore
 	 */
 	private final ConcurrentMap<String, Entry> entryMap;
 
+	private final Metrics metrics = new Metrics();
+
+	private volatile boolean destroyed = false;
+
 	/**
 	 * Construct.
 	 * 
@@ -87,31 +106,71 @@ public class AsynchronousDataStore implements IDataStore
 	 */
 	public AsynchronousDataStore(final IDataStore dataStore, final int capacity)
 	{
+		this(dataStore, capacity, 1);
+	}
+
+	/**
+	 * Construct.
+	 * 
+	 * @param dataStore
+	 *            the wrapped {@link IDataStore} that actually saved the data
+	 * @param capacity
+	 *            the capacity of the queues that delay the saving, shared among the threads
+	 * @param threads
+	 *            the number of threads saving the pages
+	 */
+	public AsynchronousDataStore(final IDataStore dataStore, final int capacity, final int threads)
+	{
+		Args.withinRange(1, Integer.MAX_VALUE, threads, "threads");
+
 		this.dataStore = dataStore;
-		entries = new LinkedBlockingQueue<>(capacity);
 		entryMap = new ConcurrentHashMap<>();
 
-		PageSavingRunnable savingRunnable = new PageSavingRunnable(dataStore, entries, entryMap);
-		pageSavingThread = new Thread(savingRunnable, "Wicket-AsyncDataStore-PageSavingThread");
-		pageSavingThread.setDaemon(true);
-		pageSavingThread.start();
+		int queueCapacity = Math.max(1, capacity / threads);
+		queues = new ArrayList<>(threads);
+		pageSavingThreads = new Thread[threads];
+		for (int i = 0; i < threads; i++)
+		{
+			BlockingQueue<Entry> entries = new LinkedBlockingQueue<>(queueCapacity);
+			queues.add(entries);
+
+			PageSavingRunnable savingRunnable = new PageSavingRunnable(dataStore, entries,
+				entryMap, metrics);
+			String name = "Wicket-AsyncDataStore-PageSavingThread";
+			pageSavingThreads[i] = new Thread(savingRunnable, threads > 1 ? name + "-" + i : name);
+			pageSavingThreads[i].setDaemon(true);
+			pageSavingThreads[i].start();
+		}
 	}
 
 	@Override
 	public void destroy()
 	{
-		if (pageSavingThread.isAlive())
+		destroyed = true;
+
+		for (Thread pageSavingThread : pageSavingThreads)
 		{
-			pageSavingThread.interrupt();
-			try
-			{
-				pageSavingThread.join();
-			} catch (InterruptedException e)
+			if (pageSavingThread.isAlive())
 			{
-				log.error(e.getMessage(), e);
+				pageSavingThread.interrupt();
+				try
+				{
+					pageSavingThread.join();
+				} catch (InterruptedException e)
+				{
+					log.error(e.getMessage(), e);
+				}
 			}
 		}
 
+		// save what is left
+		for (BlockingQueue<Entry> entries : queues)
+		{
+			List<Entry> batch = new ArrayList<>();
+			entries.drainTo(batch);
+			PageSavingRunnable.save(dataStore, batch, entryMap, metrics);
+		}
+
 		dataStore.destroy();
 	}
 
@@ -155,15 +214,8 @@ public class AsynchronousDataStore implements IDataStore
 	@Override
 	public void removeData(final String sessionId, final int id)
 	{
-		String key = getKey(sessionId, id);
-		if (key != null)
-		{
-			Entry entry = entryMap.remove(key);
-			if (entry != null)
-			{
-				entries.remove(entry);
-			}
-		}
+		// the entry is skipped by the page saving thread
+		entryMap.remove(getKey(sessionId, id));
 
 		dataStore.removeData(sessionId, id);
 	}
@@ -171,54 +223,145 @@ public class AsynchronousDataStore implements IDataStore
 	@Override
 	public void removeData(final String sessionId)
 	{
-		for (Iterator<Entry> itor = entries.iterator(); itor.hasNext();)
-		{
-			Entry entry = itor.next();
-			if (entry != null) // this check is not needed in JDK6
-			{
-				String entrySessionId = entry.sessionId;
-
-				if (sessionId.equals(entrySessionId))
-				{
-					entryMap.remove(getKey(entry));
-					itor.remove();
-				}
-			}
-		}
+		entryMap.values().removeIf(entry -> sessionId.equals(entry.sessionId));
 
 		dataStore.removeData(sessionId);
 	}
 
 	/**
-	 * Save the entry in the queue if there is a room or directly pass it to the wrapped
-	 * {@link IDataStore} if there is no such
+	 * Save the entry in the queue, replacing the data of the entry of the same page if it is still
+	 * waiting to be saved. Waits for room in the queue if it is full.
 	 * 
 	 * @see org.apache.wicket.pageStore.IDataStore#storeData(java.lang.String, int, byte[])
 	 */
 	@Override
 	public void storeData(final String sessionId, final int id, final byte[] data)
 	{
-		Entry entry = new Entry(sessionId, id, data);
-		String key = getKey(entry);
-		entryMap.put(key, entry);
+		Args.notNull(data, "data");
+
+		final String key = getKey(sessionId, id);
+		final Entry[] added = new Entry[1];
+		entryMap.compute(key, (k, pending) -> {
+			if (pending != null && pending.claimed == false)
+			{
+				// not picked up yet, just replace the data
+				pending.data = data;
+				metrics.coalescedWrites.incrementAndGet();
+				return pending;
+			}
+			added[0] = new Entry(sessionId, id, data);
+			return added[0];
+		});
+
+		if (added[0] != null)
+		{
+			enqueue(key, added[0]);
+		}
+	}
 
+	/**
+	 * Adds the entry to its queue, waiting for room as long as the queue is full. Only when the
+	 * store is destroyed meanwhile the entry is saved by the storing thread itself.
+	 * 
+	 * @param key
+	 * @param entry
+	 */
+	private void enqueue(final String key, final Entry entry)
+	{
+		BlockingQueue<Entry> entries = queues.get(Math.abs(entry.sessionId.hashCode() % queues.size()));
+		boolean waited = false;
+		boolean interrupted = false;
 		try
 		{
-			boolean added = entries.offer(entry, OFFER_WAIT, TimeUnit.MILLISECONDS);
+			while (true)
+			{
+				try
+				{
+					if (entries.offer(entry, OFFER_WAIT, TimeUnit.MILLISECONDS))
+					{
+						return;
+					}
+				}
+				catch (InterruptedException e)
+				{
+					// keep waiting, the interrupt is restored afterwards
+					interrupted = true;
+				}
 
-			if (added == false)
+				if (waited == false)
+				{
+					metrics.backpressureWaits.incrementAndGet();
+					waited = true;
+				}
+				if (destroyed)
+				{
+					log.debug("Storing synchronously page with id '{}' in session '{}'",
+						entry.pageId, entry.sessionId);
+					PageSavingRunnable.save(dataStore, entry, entryMap);
+					return;
+				}
+			}
+		}
+		finally
+		{
+			if (interrupted)
 			{
-				log.debug("Storing synchronously page with id '{}' in session '{}'", id, sessionId);
-				entryMap.remove(key);
-				dataStore.storeData(sessionId, id, data);
+				Thread.currentThread().interrupt();
 			}
 		}
-		catch (InterruptedException e)
+	}
+
+	/**
+	 * @return the number of entries waiting to be saved
+	 */
+	public int getQueueDepth()
+	{
+		int depth = 0;
+		for (BlockingQueue<Entry> entries : queues)
 		{
-			log.error(e.getMessage(), e);
-			entryMap.remove(key);
-			dataStore.storeData(sessionId, id, data);
+			depth += entries.size();
 		}
+		return depth;
+	}
+
+	/**
+	 * @return the number of stored pages whose data replaced the data of a pending entry
+	 */
+	public long getCoalescedWriteCount()
+	{
+		return metrics.coalescedWrites.get();
+	}
+
+	/**
+	 * @return the number of pages saved by the wrapped {@link IDataStore}
+	 */
+	public long getWriteCount()
+	{
+		return metrics.writes.get();
+	}
+
+	/**
+	 * @return the number of stored pages which had to wait for room in the queue
+	 */
+	public long getBackpressureWaitCount()
+	{
+		return metrics.backpressureWaits.get();
+	}
+
+	/**
+	 * @return the number of saved batches
+	 */
+	public long getFlushCount()
+	{
+		return metrics.flushes.get();
+	}
+
+	/**
+	 * @return the total time spent saving batches
+	 */
+	public Duration getFlushDuration()
+	{
+		return Duration.milliseconds(TimeUnit.NANOSECONDS.toMillis(metrics.flushNanos.get()));
 	}
 
 	/**
@@ -249,7 +392,14 @@ public class AsynchronousDataStore implements IDataStore
 	{
 		private final String sessionId;
 		private final int pageId;
-		private final byte data[];
+
+		/** the last stored data of the page */
+		private volatile byte data[];
+
+		/**
+		 * whether the entry has been picked up for saving, so its data cannot be replaced anymore
+		 */
+		private boolean claimed;
 
 		public Entry(final String sessionId, final int pageId, final byte data[])
 		{
@@ -258,38 +408,6 @@ public class AsynchronousDataStore implements IDataStore
 			this.data = Args.notNull(data, "data");
 		}
 
-		@Override
-		public int hashCode()
-		{
-			final int prime = 31;
-			int result = 1;
-			result = prime * result + pageId;
-			result = prime * result + ((sessionId == null) ? 0 : sessionId.hashCode());
-			return result;
-		}
-
-		@Override
-		public boolean equals(Object obj)
-		{
-			if (this == obj)
-				return true;
-			if (obj == null)
-				return false;
-			if (getClass() != obj.getClass())
-				return false;
-			Entry other = (Entry)obj;
-			if (pageId != other.pageId)
-				return false;
-			if (sessionId == null)
-			{
-				if (other.sessionId != null)
-					return false;
-			}
-			else if (!sessionId.equals(other.sessionId))
-				return false;
-			return true;
-		}
-
 		@Override
 		public String toString()
 		{
@@ -298,6 +416,22 @@ public class AsynchronousDataStore implements IDataStore
 
 	}
 
+	/**
+	 * The counters exposed by the store
+	 */
+	private static class Metrics
+	{
+		private final AtomicLong coalescedWrites = new AtomicLong();
+
+		private final AtomicLong writes = new AtomicLong();
+
+		private final AtomicLong backpressureWaits = new AtomicLong();
+
+		private final AtomicLong flushes = new AtomicLong();
+
+		private final AtomicLong flushNanos = new AtomicLong();
+	}
+
 	/**
 	 * The thread that acts as consumer of {@link Entry}ies
 	 */
@@ -311,17 +445,21 @@ public class AsynchronousDataStore implements IDataStore
 
 		private final IDataStore dataStore;
 
+		private final Metrics metrics;
+
 		private PageSavingRunnable(IDataStore dataStore, BlockingQueue<Entry> entries,
-			ConcurrentMap<String, Entry> entryMap)
+			ConcurrentMap<String, Entry> entryMap, Metrics metrics)
 		{
 			this.dataStore = dataStore;
 			this.entries = entries;
 			this.entryMap = entryMap;
+			this.metrics = metrics;
 		}
 
 		@Override
 		public void run()
 		{
+			final List<Entry> batch = new ArrayList<>(MAX_BATCH_SIZE);
 			while (!Thread.interrupted())
 			{
 				Entry entry = null;
@@ -336,12 +474,100 @@ public class AsynchronousDataStore implements IDataStore
 
 				if (entry != null)
 				{
-					log.debug("Saving asynchronously: {}...", entry);
-					dataStore.storeData(entry.sessionId, entry.pageId, entry.data);
-					entryMap.remove(getKey(entry));
+					batch.add(entry);
+					entries.drainTo(batch, MAX_BATCH_SIZE - 1);
+					try
+					{
+						save(dataStore, batch, entryMap, metrics);
+					}
+					finally
+					{
+						batch.clear();
+					}
 				}
 			}
 		}
+
+		/**
+		 * Saves a batch of entries, grouped by session.
+		 */
+		private static void save(IDataStore dataStore, List<Entry> batch,
+			ConcurrentMap<String, Entry> entryMap, Metrics metrics)
+		{
+			if (batch.isEmpty())
+			{
+				return;
+			}
+
+			long start = System.nanoTime();
+
+			Map<String, List<Entry>> bySession = new LinkedHashMap<>();
+			for (Entry entry : batch)
+			{
+				bySession.computeIfAbsent(entry.sessionId, id -> new ArrayList<>()).add(entry);
+			}
+
+			int writes = 0;
+			for (List<Entry> sessionEntries : bySession.values())
+			{
+				for (Entry entry : sessionEntries)
+				{
+					try
+					{
+						if (save(dataStore, entry, entryMap))
+						{
+							writes++;
+						}
+					}
+					catch (RuntimeException e)
+					{
+						// keep the thread alive for the other entries
+						log.error("An error occurred while saving " + entry, e);
+					}
+				}
+			}
+
+			metrics.writes.addAndGet(writes);
+			metrics.flushes.incrementAndGet();
+			metrics.flushNanos.addAndGet(System.nanoTime() - start);
+		}
+
+		/**
+		 * Saves a single entry unless it has been removed in the meantime.
+		 * 
+		 * @return {@code true} if the entry was saved
+		 */
+		private static boolean save(IDataStore dataStore, final Entry entry,
+			ConcurrentMap<String, Entry> entryMap)
+		{
+			final String key = getKey(entry);
+
+			// claim the entry, so that its data is not replaced anymore
+			Entry claimed = entryMap.computeIfPresent(key, (k, pending) -> {
+				if (pending == entry)
+				{
+					pending.claimed = true;
+				}
+				return pending;
+			});
+			if (claimed != entry)
+			{
+				// removed in the meantime
+				return false;
+			}
+
+			log.debug("Saving asynchronously: {}...", entry);
+			try
+			{
+				dataStore.storeData(entry.sessionId, entry.pageId, entry.data);
+			}
+			finally
+			{
+				// do not serve the data of a failed entry, it is lost
+				entryMap.remove(key, entry);
+			}
+			return true;
+		}
 	}
 
 	@Override
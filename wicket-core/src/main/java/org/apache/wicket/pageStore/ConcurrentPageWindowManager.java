@@ -0,0 +1,426 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.wicket.pageStore.PageWindowManager.PageWindow;
+
+/**
+ * A non-blocking variant of {@link PageWindowManager} which can be used by several threads saving
+ * and loading pages of the same session at the same time.
+ * <p>
+ * The file is used as a ring buffer: the space for a page is reserved with a compare-and-set on
+ * the write position, which starts again at the beginning of the file once the maximum size would
+ * be exceeded. Pages whose space gets reused are dropped. A page is found by its id in constant
+ * time.
+ * </p>
+ * <p>
+ * The pages are laid out in the file just like {@link PageWindowManager} does it - as plain
+ * serialized data at the offset of the page window - so a session file written with a
+ * {@link PageWindowManager} stays readable after its windows are imported with
+ * {@link #ConcurrentPageWindowManager(PageWindowManager, long)}.
+ * </p>
+ * <p>
+ * Writers reserve a window, write the page data and then publish the window so that readers
+ * never see a partially written page. Since the file space of a window may be reused while a
+ * page is read from it, readers should check with {@link #isValid(PageWindow)} after reading that
+ * the data has not been overwritten in the meantime.
+ * </p>
+ */
+public class ConcurrentPageWindowManager implements Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * How often to try to find file space which is not being written by a concurrent thread,
+	 * before giving up.
+	 */
+	private static final int MAX_ALLOCATION_ATTEMPTS = 8;
+
+	/**
+	 * Maximum file size. After this size is exceeded, the pages will be saved starting at the
+	 * beginning of file.
+	 */
+	private final long maxSize;
+
+	/** the offset in the file where the next page will be written */
+	private final AtomicLong position = new AtomicLong();
+
+	/** the sequence number of the last allocated window, used to tell the age of the windows */
+	private final AtomicLong sequence = new AtomicLong();
+
+	/** the total size of all saved pages */
+	private final AtomicLong totalSize = new AtomicLong();
+
+	/** page id -> window */
+	private final ConcurrentMap<Integer, Window> windowsById = new ConcurrentHashMap<>();
+
+	/** file offset -> window, for all windows which reserve file space */
+	private final ConcurrentNavigableMap<Integer, Window> windowsByOffset = new ConcurrentSkipListMap<>();
+
+	/**
+	 * Creates a new ConcurrentPageWindowManager.
+	 *
+	 * @param maxSize
+	 *            maximum file size. After this size is exceeded, the pages will be saved starting
+	 *            at the beginning of file
+	 */
+	public ConcurrentPageWindowManager(long maxSize)
+	{
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Creates a new ConcurrentPageWindowManager with the windows of the given manager, e.g. one
+	 * deserialized from the index of an older version.
+	 *
+	 * @param manager
+	 *            the manager to import the windows from
+	 * @param maxSize
+	 *            maximum file size
+	 */
+	public ConcurrentPageWindowManager(PageWindowManager manager, long maxSize)
+	{
+		this(maxSize);
+
+		List<PageWindow> windows = manager.getLastPageWindows(Integer.MAX_VALUE);
+
+		// oldest first, so that the sequence numbers reflect the age of the windows
+		for (int i = windows.size() - 1; i >= 0; i--)
+		{
+			PageWindow pageWindow = windows.get(i);
+			Window window = new Window(pageWindow.getPageId(), pageWindow.getFilePartOffset(),
+				pageWindow.getFilePartSize(), sequence.incrementAndGet());
+			window.written = true;
+			windowsByOffset.put(window.offset, window);
+			windowsById.put(window.pageId, window);
+			totalSize.addAndGet(window.size);
+			if (i == 0)
+			{
+				position.set((long)window.offset + window.size);
+			}
+		}
+	}
+
+	/**
+	 * Creates and returns a new page window for given page.
+	 *
+	 * @param pageId
+	 * @param size
+	 * @return page window or {@code null} if no file space could be found which is not being
+	 *         written by concurrent threads
+	 */
+	public PageWindow createPageWindow(int pageId, int size)
+	{
+		PageWindow pageWindow = reservePageWindow(pageId, size);
+		if (pageWindow != null)
+		{
+			publishPageWindow(pageWindow);
+		}
+		return pageWindow;
+	}
+
+	/**
+	 * Reserves file space for the given page. The window is not returned by
+	 * {@link #getPageWindow(int)} until it gets published, so the data can be written without
+	 * concurrent readers seeing a partially written page.
+	 *
+	 * @param pageId
+	 * @param size
+	 * @return page window or {@code null} if no file space could be found which is not being
+	 *         written by concurrent threads
+	 * @see #publishPageWindow(PageWindow)
+	 */
+	public PageWindow reservePageWindow(int pageId, int size)
+	{
+		for (int attempt = 0; attempt < MAX_ALLOCATION_ATTEMPTS; attempt++)
+		{
+			int offset = allocate(size);
+			Window window = new Window(pageId, offset, size, sequence.incrementAndGet());
+			totalSize.addAndGet(size);
+
+			// collect the windows whose file space is reused
+			List<Window> overlapped = new ArrayList<>();
+			Window replaced = windowsByOffset.put(offset, window);
+			if (replaced != null)
+			{
+				overlapped.add(replaced);
+			}
+			int end = (int)Math.min(window.end(), Integer.MAX_VALUE);
+			overlapped.addAll(windowsByOffset.subMap(offset, false, end, false).values());
+			for (Window lower : windowsByOffset.headMap(offset, false).descendingMap().values())
+			{
+				if (lower.end() <= offset)
+				{
+					break;
+				}
+				overlapped.add(lower);
+			}
+
+			long busyEnd = -1;
+			for (Window other : overlapped)
+			{
+				if (other.written == false && other.valid.get())
+				{
+					busyEnd = Math.max(busyEnd, other.end());
+				}
+			}
+
+			if (busyEnd == -1)
+			{
+				for (Window other : overlapped)
+				{
+					invalidate(other);
+				}
+				return window.view;
+			}
+
+			// don't let a slow writer and the new page overwrite each other - skip its file space
+			if (replaced != null)
+			{
+				windowsByOffset.replace(offset, window, replaced);
+			}
+			invalidate(window);
+			position.compareAndSet((long)offset + size, busyEnd);
+		}
+		return null;
+	}
+
+	/**
+	 * Makes a reserved window available to {@link #getPageWindow(int)}, replacing the previous
+	 * window of the page.
+	 *
+	 * @param pageWindow
+	 *            the window returned by {@link #reservePageWindow(int, int)}
+	 * @return {@code false} if the window has been dropped in the meantime, because its file
+	 *         space was reused or a newer window of the page has been published already
+	 */
+	public boolean publishPageWindow(PageWindow pageWindow)
+	{
+		final Window window = windowsByOffset.get(pageWindow.getFilePartOffset());
+		if (window == null || window.view != pageWindow)
+		{
+			return false;
+		}
+		window.written = true;
+
+		final Window[] dropped = new Window[1];
+		windowsById.compute(window.pageId, (pageId, current) -> {
+			if (window.valid.get() == false)
+			{
+				return current;
+			}
+			if (current != null && current.sequence > window.sequence)
+			{
+				dropped[0] = window;
+				return current;
+			}
+			dropped[0] = current;
+			return window;
+		});
+
+		if (dropped[0] != null)
+		{
+			invalidate(dropped[0]);
+		}
+		return window.valid.get();
+	}
+
+	/**
+	 * Releases a reserved window whose data could not be written, so that its file space can be
+	 * reused.
+	 *
+	 * @param pageWindow
+	 *            the window returned by {@link #reservePageWindow(int, int)}
+	 */
+	public void cancelPageWindow(PageWindow pageWindow)
+	{
+		Window window = windowsByOffset.get(pageWindow.getFilePartOffset());
+		if (window != null && window.view == pageWindow && window.written == false)
+		{
+			invalidate(window);
+		}
+	}
+
+	/**
+	 * Returns the page window for given page or null if no window was found.
+	 *
+	 * @param pageId
+	 * @return page window or null
+	 */
+	public PageWindow getPageWindow(int pageId)
+	{
+		Window window = windowsById.get(pageId);
+		return window != null ? window.view : null;
+	}
+
+	/**
+	 * Checks whether the given window still holds the data of its page, i.e. neither the page
+	 * was saved again nor the file space reused for another page.
+	 *
+	 * @param pageWindow
+	 * @return {@code true} if the window is still valid
+	 */
+	public boolean isValid(PageWindow pageWindow)
+	{
+		Window window = windowsById.get(pageWindow.getPageId());
+		return window != null && window.view == pageWindow && window.valid.get();
+	}
+
+	/**
+	 * Removes the page window for given page.
+	 *
+	 * @param pageId
+	 */
+	public void removePage(int pageId)
+	{
+		Window window = windowsById.remove(pageId);
+		if (window != null)
+		{
+			invalidate(window);
+		}
+	}
+
+	/**
+	 * Returns last n saved page windows.
+	 *
+	 * @param count
+	 * @return list of page windows
+	 */
+	public List<PageWindow> getLastPageWindows(int count)
+	{
+		List<Window> windows = new ArrayList<>(windowsById.values());
+		windows.sort((w1, w2) -> Long.compare(w2.sequence, w1.sequence));
+
+		List<PageWindow> result = new ArrayList<>();
+		for (Window window : windows)
+		{
+			if (result.size() == count)
+			{
+				break;
+			}
+			result.add(window.view);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the size of all saved pages
+	 *
+	 * @return total size
+	 */
+	public int getTotalSize()
+	{
+		return (int)totalSize.get();
+	}
+
+	/**
+	 * Reserves file space of the given size.
+	 *
+	 * @param size
+	 * @return the offset of the reserved space
+	 */
+	private int allocate(int size)
+	{
+		while (true)
+		{
+			long current = position.get();
+			long offset = current;
+			if (maxSize > 0 && offset > 0 && offset + size > maxSize)
+			{
+				// start at the beginning of the file
+				offset = 0;
+			}
+			if (position.compareAndSet(current, offset + size))
+			{
+				return (int)offset;
+			}
+		}
+	}
+
+	/**
+	 * Drops the given window.
+	 *
+	 * @param window
+	 */
+	private void invalidate(Window window)
+	{
+		if (window.valid.compareAndSet(true, false))
+		{
+			totalSize.addAndGet(-window.size);
+			windowsByOffset.remove(window.offset, window);
+		}
+		windowsById.remove(window.pageId, window);
+	}
+
+	/**
+	 * Contains information about a page inside the file.
+	 */
+	private static class Window implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final int pageId;
+
+		/** offset in the file where the serialized page data begins */
+		private final int offset;
+
+		/** size of serialized page data */
+		private final int size;
+
+		private final long sequence;
+
+		private final AtomicBoolean valid = new AtomicBoolean(true);
+
+		/** whether the data of the page has been written, i.e. the window was published */
+		private volatile boolean written;
+
+		/** the read only view handed out to the callers */
+		private transient PageWindow view;
+
+		private Window(int pageId, int offset, int size, long sequence)
+		{
+			this.pageId = pageId;
+			this.offset = offset;
+			this.size = size;
+			this.sequence = sequence;
+			view = new PageWindow(pageId, offset, size);
+		}
+
+		private long end()
+		{
+			return (long)offset + size;
+		}
+
+		private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+		{
+			in.defaultReadObject();
+			view = new PageWindow(pageId, offset, size);
+		}
+	}
+}
@@ -24,6 +24,7 @@ import java.util.concurrent.ConcurrentLinkedDeque;
 import org.apache.wicket.page.IManageablePage;
 import org.apache.wicket.serialize.ISerializer;
 import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
 import org.apache.wicket.util.lang.Objects;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -55,6 +56,23 @@ public class DefaultPageStore extends AbstractCachingPageStore<DefaultPageStore.
 		super(pageSerializer, dataStore, new SerializedPagesCache(cacheSize));
 	}
 
+	/**
+	 * Construct with a cache keeping the serialized pages outside of the Java heap.
+	 * 
+	 * @param pageSerializer
+	 *            the {@link ISerializer} that will be used to convert pages from/to byte arrays
+	 * @param dataStore
+	 *            the {@link IDataStore} that actually stores the pages
+	 * @param offHeapCacheSize
+	 *            the maximum size of the pages to cache
+	 * @see OffHeapPageCache
+	 */
+	public DefaultPageStore(final ISerializer pageSerializer, final IDataStore dataStore,
+		final Bytes offHeapCacheSize)
+	{
+		super(pageSerializer, dataStore, new OffHeapPageCache(offHeapCacheSize));
+	}
+
 	@Override
 	public void storePage(final String sessionId, final IManageablePage page)
 	{
@@ -0,0 +1,655 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import org.apache.wicket.util.lang.Args;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Facade for {@link IDataStore} that stores most pages as a compact delta against a base snapshot
+ * of an earlier page of the same session.
+ * <p>
+ * Subsequent versions of a page, e.g. after an Ajax request, differ in a few bytes only. The
+ * first stored page of a session becomes the base snapshot, which is stored with a negative id
+ * so that it does not clash with the page ids. The following pages are stored as a list of ranges
+ * copied from the base plus the bytes not found in it. A new base snapshot is taken when a delta
+ * becomes too big or the base was used for too many deltas. Base snapshots are removed once no
+ * delta refers to them anymore.
+ * </p>
+ * <p>
+ * A page can be loaded only as long as its base snapshot is available in the wrapped data store.
+ * The base snapshots are stored again from time to time, so that a wrapped store discarding its
+ * oldest pages discards them after the pages referring to them. A delta whose base is gone or was
+ * replaced is treated like a missing page.
+ * </p>
+ */
+public class DeltaDataStore implements IDataStore
+{
+	private static final Logger log = LoggerFactory.getLogger(DeltaDataStore.class);
+
+	/** the maximum number of deltas against a single base snapshot */
+	private static final int DEFAULT_MAX_DELTAS_PER_BASE = 16;
+
+	/** a delta bigger than this part of the page is stored as a new base snapshot */
+	private static final double MAX_DELTA_RATIO = 0.5;
+
+	/** the length of the blocks looked up in the base */
+	static final int BLOCK_SIZE = 32;
+
+	private static final byte FULL = 0;
+
+	private static final byte DELTA = 1;
+
+	private static final byte END = 0;
+
+	private static final byte COPY = 1;
+
+	private static final byte INSERT = 2;
+
+	/** 31 ^ (BLOCK_SIZE - 1), used to roll the hash of a block */
+	private static final int ROLL_FACTOR;
+
+	static
+	{
+		int factor = 1;
+		for (int i = 1; i < BLOCK_SIZE; i++)
+		{
+			factor *= 31;
+		}
+		ROLL_FACTOR = factor;
+	}
+
+	private final IDataStore dataStore;
+
+	private final int maxDeltasPerBase;
+
+	private final ConcurrentMap<String, SessionDeltas> sessions = new ConcurrentHashMap<>();
+
+	private final AtomicLong pageBytes = new AtomicLong();
+
+	private final AtomicLong writtenBytes = new AtomicLong();
+
+	private final AtomicLong deltaCount = new AtomicLong();
+
+	private final AtomicLong snapshotCount = new AtomicLong();
+
+	/**
+	 * Construct.
+	 *
+	 * @param dataStore
+	 *            the wrapped {@link IDataStore} that actually stores the pages
+	 */
+	public DeltaDataStore(final IDataStore dataStore)
+	{
+		this(dataStore, DEFAULT_MAX_DELTAS_PER_BASE);
+	}
+
+	/**
+	 * Construct.
+	 *
+	 * @param dataStore
+	 *            the wrapped {@link IDataStore} that actually stores the pages
+	 * @param maxDeltasPerBase
+	 *            the maximum number of pages stored as delta against a single base snapshot
+	 */
+	public DeltaDataStore(final IDataStore dataStore, final int maxDeltasPerBase)
+	{
+		this.dataStore = Args.notNull(dataStore, "dataStore");
+		this.maxDeltasPerBase = maxDeltasPerBase;
+	}
+
+	@Override
+	public byte[] getData(final String sessionId, final int id)
+	{
+		byte[] record = dataStore.getData(sessionId, id);
+		if (record == null || record.length == 0)
+		{
+			return null;
+		}
+
+		try
+		{
+			if (record[0] == FULL)
+			{
+				return unwrap(record);
+			}
+			else if (record[0] != DELTA)
+			{
+				// stored before the wrapped store was decorated
+				return record;
+			}
+
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(record, 1,
+				record.length - 1));
+			int baseId = in.readInt();
+			int baseChecksum = in.readInt();
+
+			SessionDeltas session = getSessionDeltas(sessionId, true);
+			byte[] base;
+			synchronized (session)
+			{
+				base = session.getBase(baseId);
+				session.addDelta(id, baseId);
+			}
+			if (base == null)
+			{
+				base = unwrap(dataStore.getData(sessionId, baseId));
+			}
+			if (base == null || checksum(base) != baseChecksum)
+			{
+				log.debug("The base snapshot {} of page {} in session {} is not available",
+					baseId, id, sessionId);
+				return null;
+			}
+			return patch(base, in);
+		}
+		catch (IOException | RuntimeException e)
+		{
+			log.warn("Cannot restore the data of page {} in session {}", id, sessionId, e);
+			return null;
+		}
+	}
+
+	@Override
+	public void removeData(final String sessionId, final int id)
+	{
+		SessionDeltas session = getSessionDeltas(sessionId, false);
+		if (session != null)
+		{
+			synchronized (session)
+			{
+				removeDelta(sessionId, session, id);
+			}
+		}
+		dataStore.removeData(sessionId, id);
+	}
+
+	@Override
+	public void removeData(final String sessionId)
+	{
+		sessions.remove(sessionId);
+		dataStore.removeData(sessionId);
+	}
+
+	@Override
+	public void storeData(final String sessionId, final int id, final byte[] data)
+	{
+		pageBytes.addAndGet(data.length);
+
+		SessionDeltas session = getSessionDeltas(sessionId, true);
+		synchronized (session)
+		{
+			byte[] record = null;
+			byte[] base = null;
+
+			if (session.baseId != 0 && session.deltasSinceBase < maxDeltasPerBase)
+			{
+				base = session.getBase(session.baseId);
+				if (base == null)
+				{
+					base = unwrap(dataStore.getData(sessionId, session.baseId));
+				}
+				if (base != null)
+				{
+					record = delta(session.baseId, base, data);
+					if (record.length > data.length * MAX_DELTA_RATIO)
+					{
+						record = null;
+					}
+				}
+			}
+
+			if (record == null)
+			{
+				// take a new base snapshot
+				int previousBaseId = session.baseId;
+				if (session.writtenSinceBase > 0 && session.references.containsKey(previousBaseId))
+				{
+					// the previous base has to outlive the pages referring to it
+					restoreBase(sessionId, session, base);
+				}
+				session.newBase(data);
+				byte[] snapshot = wrap(data);
+				dataStore.storeData(sessionId, session.baseId, snapshot);
+				writtenBytes.addAndGet(snapshot.length);
+				snapshotCount.incrementAndGet();
+				removeBaseIfUnused(sessionId, session, previousBaseId);
+
+				record = delta(session.baseId, data, data);
+			}
+
+			removeDelta(sessionId, session, id);
+			session.addDelta(id, session.baseId);
+			session.deltasSinceBase++;
+
+			dataStore.storeData(sessionId, id, record);
+			writtenBytes.addAndGet(record.length);
+			deltaCount.incrementAndGet();
+
+			session.writtenSinceBase += record.length;
+			if (session.writtenSinceBase >= session.baseLength)
+			{
+				restoreBase(sessionId, session, null);
+			}
+		}
+	}
+
+	/**
+	 * Stores the current base snapshot again. A wrapped store which discards the oldest pages of a
+	 * session when it is full, e.g. {@link DiskDataStore}, would otherwise discard the base first
+	 * and lose all pages referring to it. The base is stored again whenever the pages written
+	 * after it add up to its size, and before it is replaced, so that it stays among the newest
+	 * data of the session.
+	 *
+	 * @param sessionId
+	 * @param session
+	 * @param base
+	 *            the data of the current base, if at hand
+	 */
+	private void restoreBase(final String sessionId, final SessionDeltas session, byte[] base)
+	{
+		if (base == null)
+		{
+			base = session.getBase(session.baseId);
+		}
+		if (base == null)
+		{
+			base = unwrap(dataStore.getData(sessionId, session.baseId));
+		}
+		if (base != null)
+		{
+			byte[] snapshot = wrap(base);
+			dataStore.storeData(sessionId, session.baseId, snapshot);
+			writtenBytes.addAndGet(snapshot.length);
+		}
+		session.writtenSinceBase = 0;
+	}
+
+	@Override
+	public void destroy()
+	{
+		sessions.clear();
+		dataStore.destroy();
+	}
+
+	@Override
+	public boolean isReplicated()
+	{
+		return dataStore.isReplicated();
+	}
+
+	@Override
+	public boolean canBeAsynchronous()
+	{
+		return dataStore.canBeAsynchronous();
+	}
+
+	/**
+	 * @return the total size of the stored pages
+	 */
+	public long getPageBytes()
+	{
+		return pageBytes.get();
+	}
+
+	/**
+	 * @return the number of bytes actually passed to the wrapped data store, including the base
+	 *         snapshots
+	 */
+	public long getWrittenBytes()
+	{
+		return writtenBytes.get();
+	}
+
+	/**
+	 * @return the number of pages stored as delta
+	 */
+	public long getDeltaCount()
+	{
+		return deltaCount.get();
+	}
+
+	/**
+	 * @return the number of base snapshots taken
+	 */
+	public long getSnapshotCount()
+	{
+		return snapshotCount.get();
+	}
+
+	private SessionDeltas getSessionDeltas(final String sessionId, final boolean create)
+	{
+		SessionDeltas session = sessions.get(sessionId);
+		if (session == null && create)
+		{
+			session = new SessionDeltas();
+			SessionDeltas existing = sessions.putIfAbsent(sessionId, session);
+			if (existing != null)
+			{
+				session = existing;
+			}
+		}
+		return session;
+	}
+
+	private void removeDelta(final String sessionId, final SessionDeltas session, final int id)
+	{
+		Integer baseId = session.baseIds.remove(id);
+		if (baseId != null)
+		{
+			Integer count = session.references.get(baseId);
+			if (count != null)
+			{
+				if (count > 1)
+				{
+					session.references.put(baseId, count - 1);
+				}
+				else
+				{
+					session.references.remove(baseId);
+					removeBaseIfUnused(sessionId, session, baseId);
+				}
+			}
+		}
+	}
+
+	private void removeBaseIfUnused(final String sessionId, final SessionDeltas session,
+		final int baseId)
+	{
+		if (baseId != 0 && baseId != session.baseId &&
+			session.references.containsKey(baseId) == false)
+		{
+			dataStore.removeData(sessionId, baseId);
+		}
+	}
+
+	private static byte[] wrap(final byte[] data)
+	{
+		byte[] record = new byte[data.length + 1];
+		record[0] = FULL;
+		System.arraycopy(data, 0, record, 1, data.length);
+		return record;
+	}
+
+	private static byte[] unwrap(final byte[] record)
+	{
+		if (record == null || record.length == 0 || record[0] != FULL)
+		{
+			return null;
+		}
+		byte[] data = new byte[record.length - 1];
+		System.arraycopy(record, 1, data, 0, data.length);
+		return data;
+	}
+
+	private static int checksum(final byte[] data)
+	{
+		CRC32 crc = new CRC32();
+		crc.update(data, 0, data.length);
+		return (int)crc.getValue();
+	}
+
+	/**
+	 * Creates the record for a page stored as delta against the given base.
+	 *
+	 * @param baseId
+	 * @param base
+	 * @param data
+	 * @return the record
+	 */
+	private static byte[] delta(final int baseId, final byte[] base, final byte[] data)
+	{
+		try
+		{
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeByte(DELTA);
+			out.writeInt(baseId);
+			out.writeInt(checksum(base));
+			diff(base, data, out);
+			out.close();
+			return bytes.toByteArray();
+		}
+		catch (IOException e)
+		{
+			// cannot happen with a ByteArrayOutputStream
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Writes the operations rebuilding the target from the base.
+	 *
+	 * @param base
+	 * @param target
+	 * @param out
+	 * @throws IOException
+	 */
+	static void diff(final byte[] base, final byte[] target, final DataOutputStream out)
+		throws IOException
+	{
+		out.writeInt(target.length);
+
+		// the offsets of the blocks of the base by their hash
+		int blocks = base.length / BLOCK_SIZE;
+		int[] table = new int[Math.max(16, Integer.highestOneBit(Math.max(1, blocks)) * 4)];
+		int mask = table.length - 1;
+		for (int block = blocks - 1; block >= 0; block--)
+		{
+			int offset = block * BLOCK_SIZE;
+			table[index(hash(base, offset), mask)] = offset + 1;
+		}
+
+		int literalStart = 0;
+		int position = 0;
+		int hash = target.length >= BLOCK_SIZE ? hash(target, 0) : 0;
+		while (position + BLOCK_SIZE <= target.length)
+		{
+			int candidate = table[index(hash, mask)] - 1;
+			if (candidate >= 0 && matches(base, candidate, target, position))
+			{
+				// grow the match in both directions
+				int start = position;
+				int from = candidate;
+				while (start > literalStart && from > 0 && base[from - 1] == target[start - 1])
+				{
+					start--;
+					from--;
+				}
+				int end = position + BLOCK_SIZE;
+				int to = candidate + BLOCK_SIZE;
+				while (end < target.length && to < base.length && base[to] == target[end])
+				{
+					end++;
+					to++;
+				}
+
+				writeInsert(target, literalStart, start, out);
+				out.writeByte(COPY);
+				out.writeInt(from);
+				out.writeInt(end - start);
+
+				position = end;
+				literalStart = end;
+				if (position + BLOCK_SIZE <= target.length)
+				{
+					hash = hash(target, position);
+				}
+			}
+			else
+			{
+				if (position + BLOCK_SIZE < target.length)
+				{
+					hash = (hash - (target[position] & 0xFF) * ROLL_FACTOR) * 31 +
+						(target[position + BLOCK_SIZE] & 0xFF);
+				}
+				position++;
+			}
+		}
+		writeInsert(target, literalStart, target.length, out);
+		out.writeByte(END);
+	}
+
+	/**
+	 * Rebuilds the target from the base and the operations written by
+	 * {@link #diff(byte[], byte[], DataOutputStream)}.
+	 *
+	 * @param base
+	 * @param in
+	 * @return the target
+	 * @throws IOException
+	 */
+	static byte[] patch(final byte[] base, final DataInputStream in) throws IOException
+	{
+		byte[] target = new byte[in.readInt()];
+		int position = 0;
+		byte operation;
+		while ((operation = in.readByte()) != END)
+		{
+			int length;
+			if (operation == COPY)
+			{
+				int offset = in.readInt();
+				length = in.readInt();
+				System.arraycopy(base, offset, target, position, length);
+			}
+			else if (operation == INSERT)
+			{
+				length = in.readInt();
+				in.readFully(target, position, length);
+			}
+			else
+			{
+				throw new IOException("Unknown delta operation " + operation);
+			}
+			position += length;
+		}
+		if (position != target.length)
+		{
+			throw new IOException("Incomplete delta");
+		}
+		return target;
+	}
+
+	private static void writeInsert(final byte[] target, final int start, final int end,
+		final DataOutputStream out) throws IOException
+	{
+		if (end > start)
+		{
+			out.writeByte(INSERT);
+			out.writeInt(end - start);
+			out.write(target, start, end - start);
+		}
+	}
+
+	private static int hash(final byte[] data, final int offset)
+	{
+		int hash = 0;
+		for (int i = offset; i < offset + BLOCK_SIZE; i++)
+		{
+			hash = hash * 31 + (data[i] & 0xFF);
+		}
+		return hash;
+	}
+
+	private static int index(final int hash, final int mask)
+	{
+		return (hash ^ (hash >>> 16)) & mask;
+	}
+
+	private static boolean matches(final byte[] base, final int baseOffset, final byte[] target,
+		final int targetOffset)
+	{
+		for (int i = 0; i < BLOCK_SIZE; i++)
+		{
+			if (base[baseOffset + i] != target[targetOffset + i])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The base snapshots of a session and the pages referring to them.
+	 */
+	private static class SessionDeltas
+	{
+		/**
+		 * the id of the next base snapshot. Starts at a random negative number, so that the ids of
+		 * snapshots written before a restart are unlikely to be reused.
+		 */
+		private int nextBaseId = -1 - ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE / 2);
+
+		/** the id of the current base snapshot, {@code 0} if there is none */
+		private int baseId;
+
+		private SoftReference<byte[]> base;
+
+		private int deltasSinceBase;
+
+		/** the size of the current base snapshot */
+		private int baseLength;
+
+		/** the number of bytes stored since the current base snapshot was stored */
+		private long writtenSinceBase;
+
+		/** page id -> base snapshot id */
+		private final Map<Integer, Integer> baseIds = new HashMap<>();
+
+		/** base snapshot id -> number of pages referring to it */
+		private final Map<Integer, Integer> references = new HashMap<>();
+
+		private void newBase(final byte[] data)
+		{
+			baseId = nextBaseId--;
+			base = new SoftReference<>(data);
+			baseLength = data.length;
+			deltasSinceBase = 0;
+			writtenSinceBase = 0;
+		}
+
+		private byte[] getBase(final int id)
+		{
+			return id == baseId && base != null ? base.get() : null;
+		}
+
+		private void addDelta(final int id, final int baseId)
+		{
+			if (baseIds.containsKey(id) == false)
+			{
+				baseIds.put(id, baseId);
+				references.merge(baseId, 1, Integer::sum);
+			}
+		}
+	}
+}
@@ -30,6 +30,7 @@ import java.io.Serializable;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
@@ -290,8 +291,12 @@ public class DiskDataStore implements IDataStore
 		private final String sessionId;
 		private transient DiskDataStore diskDataStore;
 		private String fileName;
+
+		/** only set when the entry was read from the index of an older version */
 		private PageWindowManager manager;
-		private boolean unbound = false;
+
+		private volatile ConcurrentPageWindowManager windowManager;
+		private volatile boolean unbound = false;
 
 		protected SessionEntry(DiskDataStore diskDataStore, String sessionId)
 		{
@@ -299,13 +304,45 @@ public class DiskDataStore implements IDataStore
 			this.sessionId = sessionId;
 		}
 
+		/**
+		 * @return the manager of the page windows
+		 * @deprecated use {@link #getWindowManager()}, the returned manager is just a view of it
+		 */
+		@Deprecated
 		public PageWindowManager getManager()
 		{
-			if (manager == null)
+			return new PageWindowManagerView(getWindowManager());
+		}
+
+		/**
+		 * @return the manager of the page windows
+		 */
+		public ConcurrentPageWindowManager getWindowManager()
+		{
+			ConcurrentPageWindowManager result = windowManager;
+			if (result == null)
 			{
-				manager = new PageWindowManager(diskDataStore.maxSizePerPageSession.bytes());
+				synchronized (this)
+				{
+					result = windowManager;
+					if (result == null)
+					{
+						long maxSize = diskDataStore.maxSizePerPageSession.bytes();
+						if (manager != null)
+						{
+							// keep the pages saved by an older version readable
+							result = new ConcurrentPageWindowManager(manager, maxSize);
+							manager = null;
+						}
+						else
+						{
+							result = new ConcurrentPageWindowManager(maxSize);
+						}
+						windowManager = result;
+					}
+				}
 			}
-			return manager;
+			return result;
 		}
 
 		private String getFileName()
@@ -327,11 +364,14 @@ public class DiskDataStore implements IDataStore
 
 		/**
 		 * Saves the serialized page to appropriate file.
+		 * <p>
+		 * Several pages of the same session may be saved concurrently - each one gets its own part
+		 * of the file, which is made available to readers once the data is written.
 		 * 
 		 * @param pageId
 		 * @param data
 		 */
-		public synchronized void savePage(int pageId, byte data[])
+		public void savePage(int pageId, byte data[])
 		{
 			if (unbound)
 			{
@@ -341,15 +381,26 @@ public class DiskDataStore implements IDataStore
 			if (data != null)
 			{
 				// allocate window for page
-				PageWindow window = getManager().createPageWindow(pageId, data.length);
+				ConcurrentPageWindowManager pageWindowManager = getWindowManager();
+				PageWindow window = pageWindowManager.reservePageWindow(pageId, data.length);
+				if (window == null)
+				{
+					log.warn(
+						"Cannot save page with id '{}' because there is no free space in the data file.",
+						pageId);
+					return;
+				}
 
 				FileChannel channel = getFileChannel(true);
 				if (channel != null)
 				{
+					boolean written = false;
 					try
 					{
 						// write the content
 						channel.write(ByteBuffer.wrap(data), window.getFilePartOffset());
+						written = true;
+						pageWindowManager.publishPageWindow(window);
 					}
 					catch (IOException e)
 					{
@@ -357,11 +408,17 @@ public class DiskDataStore implements IDataStore
 					}
 					finally
 					{
+						if (written == false)
+						{
+							// release the file space for other pages
+							pageWindowManager.cancelPageWindow(window);
+						}
 						IOUtils.closeQuietly(channel);
 					}
 				}
 				else
 				{
+					pageWindowManager.cancelPageWindow(window);
 					log.warn(
 						"Cannot save page with id '{}' because the data file cannot be opened.",
 						pageId);
@@ -374,13 +431,13 @@ public class DiskDataStore implements IDataStore
 		 * 
 		 * @param pageId
 		 */
-		public synchronized void removePage(int pageId)
+		public void removePage(int pageId)
 		{
 			if (unbound)
 			{
 				return;
 			}
-			getManager().removePage(pageId);
+			getWindowManager().removePage(pageId);
 		}
 
 		/**
@@ -390,15 +447,20 @@ public class DiskDataStore implements IDataStore
 		 * @return serialized page data
 		 */
 		public byte[] loadPage(PageWindow window)
+		{
+			return loadPage(window.getFilePartOffset(), window.getFilePartSize());
+		}
+
+		private byte[] loadPage(int offset, int size)
 		{
 			byte[] result = null;
 			FileChannel channel = getFileChannel(false);
 			if (channel != null)
 			{
-				ByteBuffer buffer = ByteBuffer.allocate(window.getFilePartSize());
+				ByteBuffer buffer = ByteBuffer.allocate(size);
 				try
 				{
-					channel.read(buffer, window.getFilePartOffset());
+					channel.read(buffer, offset);
 					if (buffer.hasArray())
 					{
 						result = buffer.array();
@@ -443,17 +505,26 @@ public class DiskDataStore implements IDataStore
 		 * @param id
 		 * @return page data or null if the page is no longer in pagemap file
 		 */
-		public synchronized byte[] loadPage(int id)
+		public byte[] loadPage(int id)
 		{
 			if (unbound)
 			{
 				return null;
 			}
+			ConcurrentPageWindowManager pageWindowManager = getWindowManager();
 			byte[] result = null;
-			PageWindow window = getManager().getPageWindow(id);
-			if (window != null)
+			PageWindow window = pageWindowManager.getPageWindow(id);
+			while (window != null)
 			{
 				result = loadPage(window);
+
+				// the page may have been saved again or its file space reused while reading
+				if (pageWindowManager.isValid(window))
+				{
+					break;
+				}
+				result = null;
+				window = pageWindowManager.getPageWindow(id);
 			}
 			return result;
 		}
@@ -586,4 +657,51 @@ public class DiskDataStore implements IDataStore
 	{
 		return true;
 	}
+
+	/**
+	 * Exposes a {@link ConcurrentPageWindowManager} as {@link PageWindowManager}, for the callers
+	 * of the deprecated {@link SessionEntry#getManager()}.
+	 */
+	private static class PageWindowManagerView extends PageWindowManager
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final ConcurrentPageWindowManager manager;
+
+		private PageWindowManagerView(ConcurrentPageWindowManager manager)
+		{
+			super(0);
+			this.manager = manager;
+		}
+
+		@Override
+		public PageWindow createPageWindow(int pageId, int size)
+		{
+			return manager.createPageWindow(pageId, size);
+		}
+
+		@Override
+		public PageWindow getPageWindow(int pageId)
+		{
+			return manager.getPageWindow(pageId);
+		}
+
+		@Override
+		public void removePage(int pageId)
+		{
+			manager.removePage(pageId);
+		}
+
+		@Override
+		public List<PageWindow> getLastPageWindows(int count)
+		{
+			return manager.getLastPageWindows(count);
+		}
+
+		@Override
+		public int getTotalSize()
+		{
+			return manager.getTotalSize();
+		}
+	}
 }
@@ -0,0 +1,395 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.wicket.pageStore.DefaultPageStore.SerializedPage;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.util.lang.Objects;
+
+/**
+ * A {@link SecondLevelPageCache} which keeps the data of the serialized pages outside of the Java
+ * heap, so that a big cache does not add to the work of the garbage collector.
+ * <p>
+ * The memory is allocated lazily as direct {@link ByteBuffer} slabs, which are split into blocks
+ * of {@value #BLOCK_SIZE} bytes. A page occupies as many blocks as needed for its data. When the
+ * maximum size is reached, the least recently used pages are evicted.
+ * </p>
+ */
+public class OffHeapPageCache implements SecondLevelPageCache<String, Integer, SerializedPage>
+{
+	/** the size of a block */
+	static final int BLOCK_SIZE = 8 * 1024;
+
+	/** the number of blocks in a slab */
+	private static final int BLOCKS_PER_SLAB = 128;
+
+	private final int maxBlocks;
+
+	private final List<ByteBuffer> slabs = new ArrayList<>();
+
+	/** the number of blocks in all slabs */
+	private int allocatedBlocks;
+
+	/** the indices of the unused blocks */
+	private int[] freeBlocks = new int[BLOCKS_PER_SLAB];
+
+	private int freeBlockCount;
+
+	/** the cached pages, the least recently used first */
+	private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+	/** session id -> ids of its cached pages */
+	private final Map<String, Set<Integer>> pageIdsBySession = new HashMap<>();
+
+	private long size;
+
+	private long hits;
+
+	private long misses;
+
+	private long evictions;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param maxSize
+	 *            the maximum size of the cached data
+	 */
+	public OffHeapPageCache(final Bytes maxSize)
+	{
+		Args.notNull(maxSize, "maxSize");
+
+		maxBlocks = (int)Math.min(Integer.MAX_VALUE, maxSize.bytes() / BLOCK_SIZE);
+	}
+
+	@Override
+	public synchronized SerializedPage removePage(final String sessionId, final Integer pageId)
+	{
+		Entry entry = entries.remove(new Key(sessionId, pageId));
+		if (entry == null)
+		{
+			return null;
+		}
+
+		SerializedPage page = new SerializedPage(sessionId, pageId, read(entry));
+		release(entry);
+		return page;
+	}
+
+	@Override
+	public synchronized void removePages(final String sessionId)
+	{
+		Set<Integer> pageIds = pageIdsBySession.remove(sessionId);
+		if (pageIds != null)
+		{
+			for (Integer pageId : pageIds)
+			{
+				Entry entry = entries.remove(new Key(sessionId, pageId));
+				if (entry != null)
+				{
+					freeBlocks(entry);
+				}
+			}
+		}
+	}
+
+	@Override
+	public synchronized SerializedPage getPage(final String sessionId, final Integer pageId)
+	{
+		Entry entry = entries.get(new Key(sessionId, pageId));
+		if (entry == null)
+		{
+			misses++;
+			return null;
+		}
+
+		hits++;
+		return new SerializedPage(sessionId, pageId, read(entry));
+	}
+
+	@Override
+	public synchronized void storePage(final String sessionId, final Integer pageId,
+		final SerializedPage page)
+	{
+		Args.notNull(page, "page");
+
+		Key key = new Key(sessionId, pageId);
+		Entry previous = entries.remove(key);
+		if (previous != null)
+		{
+			release(previous);
+		}
+
+		byte[] data = page.getData();
+		if (data == null)
+		{
+			return;
+		}
+
+		int blockCount = Math.max(1, (data.length + BLOCK_SIZE - 1) / BLOCK_SIZE);
+		if (blockCount > maxBlocks)
+		{
+			// would never fit
+			return;
+		}
+
+		while (freeBlockCount + allocatableBlocks() < blockCount)
+		{
+			evictEldest();
+		}
+
+		Entry entry = new Entry(key, new int[blockCount], data.length);
+		for (int i = 0; i < blockCount; i++)
+		{
+			entry.blocks[i] = allocateBlock();
+		}
+		write(entry, data);
+
+		entries.put(key, entry);
+		Set<Integer> pageIds = pageIdsBySession.get(sessionId);
+		if (pageIds == null)
+		{
+			pageIds = new HashSet<>();
+			pageIdsBySession.put(sessionId, pageIds);
+		}
+		pageIds.add(pageId);
+		size += data.length;
+	}
+
+	@Override
+	public synchronized void destroy()
+	{
+		entries.clear();
+		pageIdsBySession.clear();
+		slabs.clear();
+		allocatedBlocks = 0;
+		freeBlockCount = 0;
+		size = 0;
+	}
+
+	/**
+	 * @return the total size of the cached pages
+	 */
+	public synchronized long getSize()
+	{
+		return size;
+	}
+
+	/**
+	 * @return the number of cached pages
+	 */
+	public synchronized int getCount()
+	{
+		return entries.size();
+	}
+
+	/**
+	 * @return the number of requests for a page which was in the cache
+	 */
+	public synchronized long getHits()
+	{
+		return hits;
+	}
+
+	/**
+	 * @return the number of requests for a page which was not in the cache
+	 */
+	public synchronized long getMisses()
+	{
+		return misses;
+	}
+
+	/**
+	 * @return the number of pages removed to make room for other pages
+	 */
+	public synchronized long getEvictions()
+	{
+		return evictions;
+	}
+
+	private void evictEldest()
+	{
+		Iterator<Entry> iterator = entries.values().iterator();
+		Entry eldest = iterator.next();
+		iterator.remove();
+		release(eldest);
+		evictions++;
+	}
+
+	/**
+	 * Frees the blocks of a removed entry.
+	 */
+	private void release(final Entry entry)
+	{
+		freeBlocks(entry);
+
+		Set<Integer> pageIds = pageIdsBySession.get(entry.key.sessionId);
+		if (pageIds != null)
+		{
+			pageIds.remove(entry.key.pageId);
+			if (pageIds.isEmpty())
+			{
+				pageIdsBySession.remove(entry.key.sessionId);
+			}
+		}
+	}
+
+	private void freeBlocks(final Entry entry)
+	{
+		for (int block : entry.blocks)
+		{
+			if (freeBlockCount == freeBlocks.length)
+			{
+				int[] newFreeBlocks = new int[freeBlocks.length * 2];
+				System.arraycopy(freeBlocks, 0, newFreeBlocks, 0, freeBlockCount);
+				freeBlocks = newFreeBlocks;
+			}
+			freeBlocks[freeBlockCount++] = block;
+		}
+		size -= entry.length;
+	}
+
+	/**
+	 * @return the number of blocks which can still be allocated in new slabs
+	 */
+	private int allocatableBlocks()
+	{
+		return maxBlocks - allocatedBlocks;
+	}
+
+	private int allocateBlock()
+	{
+		if (freeBlockCount == 0)
+		{
+			// allocate a new slab, possibly smaller than the others if it is the last one
+			int blocks = Math.min(BLOCKS_PER_SLAB, allocatableBlocks());
+			int firstBlock = slabs.size() * BLOCKS_PER_SLAB;
+			slabs.add(ByteBuffer.allocateDirect(blocks * BLOCK_SIZE));
+			allocatedBlocks += blocks;
+			for (int i = blocks - 1; i >= 0; i--)
+			{
+				freeBlocks[freeBlockCount++] = firstBlock + i;
+			}
+		}
+		return freeBlocks[--freeBlockCount];
+	}
+
+	private void write(final Entry entry, final byte[] data)
+	{
+		int offset = 0;
+		for (int block : entry.blocks)
+		{
+			int length = Math.min(BLOCK_SIZE, data.length - offset);
+			ByteBuffer slab = slab(block);
+			slab.put(data, offset, length);
+			offset += length;
+		}
+	}
+
+	private byte[] read(final Entry entry)
+	{
+		byte[] data = new byte[entry.length];
+		int offset = 0;
+		for (int block : entry.blocks)
+		{
+			int length = Math.min(BLOCK_SIZE, data.length - offset);
+			ByteBuffer slab = slab(block);
+			slab.get(data, offset, length);
+			offset += length;
+		}
+		return data;
+	}
+
+	/**
+	 * @return the slab of the given block, positioned at the start of the block
+	 */
+	private ByteBuffer slab(final int block)
+	{
+		ByteBuffer slab = slabs.get(block / BLOCKS_PER_SLAB);
+		slab.clear();
+		slab.position((block % BLOCKS_PER_SLAB) * BLOCK_SIZE);
+		return slab;
+	}
+
+	/**
+	 * The key of a cached page
+	 */
+	private static class Key
+	{
+		private final String sessionId;
+
+		private final int pageId;
+
+		private Key(final String sessionId, final int pageId)
+		{
+			this.sessionId = Args.notNull(sessionId, "sessionId");
+			this.pageId = pageId;
+		}
+
+		@Override
+		public boolean equals(final Object obj)
+		{
+			if (this == obj)
+			{
+				return true;
+			}
+			if ((obj instanceof Key) == false)
+			{
+				return false;
+			}
+			Key rhs = (Key)obj;
+			return pageId == rhs.pageId && sessionId.equals(rhs.sessionId);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return Objects.hashCode(pageId, sessionId);
+		}
+	}
+
+	/**
+	 * A cached page
+	 */
+	private static class Entry
+	{
+		private final Key key;
+
+		/** the blocks holding the data, in order */
+		private final int[] blocks;
+
+		private final int length;
+
+		private Entry(final Key key, final int[] blocks, final int length)
+		{
+			this.key = key;
+			this.blocks = blocks;
+			this.length = length;
+		}
+	}
+}
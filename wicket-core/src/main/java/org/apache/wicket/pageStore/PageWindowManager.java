@@ -339,6 +339,21 @@ public class PageWindowManager implements Serializable
 			this.pageWindowInternal = pageWindowInternal;
 		}
 
+		/**
+		 * Construct.
+		 * 
+		 * @param pageId
+		 * @param filePartOffset
+		 * @param filePartSize
+		 */
+		PageWindow(int pageId, int filePartOffset, int filePartSize)
+		{
+			pageWindowInternal = new PageWindowInternal();
+			pageWindowInternal.pageId = pageId;
+			pageWindowInternal.filePartOffset = filePartOffset;
+			pageWindowInternal.filePartSize = filePartSize;
+		}
+
 		/**
 		 * @return page Id
 		 */
@@ -0,0 +1,840 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.util.file.Files;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A data store implementation which keeps the pages of all sessions in a small number of large
+ * memory-mapped segment files.
+ * <p>
+ * Pages are appended to the current segment and found again by an in-memory index
+ * (sessionId, pageId) -> (segment, offset, length), so neither a file handle per session nor a
+ * lock held during I/O is needed. A page that is stored again is appended anew and its previous
+ * copy becomes garbage. Segments whose live data drops below {@link #COMPACTION_THRESHOLD} are
+ * compacted by a background thread which moves the remaining pages to the current segment and
+ * deletes the old segment file.
+ * </p>
+ * <p>
+ * Just like {@link DiskDataStore} the size of the pages per session is limited by
+ * {@code maxSizePerSession} - once it is exceeded the oldest pages of the session are discarded.
+ * </p>
+ *
+ * @see org.apache.wicket.settings.StoreSettings#setSegmented(boolean)
+ */
+public class SegmentedDataStore implements IDataStore
+{
+	private static final Logger log = LoggerFactory.getLogger(SegmentedDataStore.class);
+
+	private static final String INDEX_FILE_NAME = "SegmentedDataStoreIndex";
+
+	private static final String SEGMENT_FILE_PREFIX = "segment-";
+
+	private static final int INDEX_VERSION = 1;
+
+	/**
+	 * The ratio of live bytes in a full segment below which the segment gets compacted.
+	 */
+	private static final double COMPACTION_THRESHOLD = 0.5d;
+
+	/**
+	 * The time between two compaction runs. In millis.
+	 */
+	private static final long COMPACTION_INTERVAL = 10000L;
+
+	private final String applicationName;
+
+	private final File fileStoreFolder;
+
+	private final long maxSizePerSession;
+
+	private final int segmentSize;
+
+	/**
+	 * sessionId -> index of the pages of this session
+	 */
+	private final ConcurrentMap<String, SessionIndex> sessionIndexMap = new ConcurrentHashMap<>();
+
+	/**
+	 * segment number -> segment
+	 */
+	private final ConcurrentMap<Integer, Segment> segments = new ConcurrentHashMap<>();
+
+	private final AtomicInteger segmentCounter = new AtomicInteger();
+
+	/**
+	 * The segment new pages are appended to
+	 */
+	private volatile Segment currentSegment;
+
+	private final Thread compactionThread;
+
+	/**
+	 * Construct.
+	 *
+	 * @param applicationName
+	 * @param fileStoreFolder
+	 * @param maxSizePerSession
+	 *            the maximum size of all pages of a session
+	 * @param segmentSize
+	 *            the size of a single segment file
+	 */
+	public SegmentedDataStore(final String applicationName, final File fileStoreFolder,
+		final Bytes maxSizePerSession, final Bytes segmentSize)
+	{
+		this.applicationName = applicationName;
+		this.fileStoreFolder = fileStoreFolder;
+		this.maxSizePerSession = Args.notNull(maxSizePerSession, "maxSizePerSession").bytes();
+		this.segmentSize = (int)Math.min(Args.notNull(segmentSize, "segmentSize").bytes(),
+			Integer.MAX_VALUE);
+
+		try
+		{
+			File storeFolder = getStoreFolder();
+			if (storeFolder.exists() || storeFolder.mkdirs())
+			{
+				loadIndex();
+			}
+			else
+			{
+				log.warn("Cannot create segment store folder for some reason.");
+			}
+		}
+		catch (SecurityException e)
+		{
+			throw new WicketRuntimeException(
+				"SecurityException occurred while creating SegmentedDataStore. Consider using a non-disk based IDataStore implementation. "
+					+ "See org.apache.wicket.Application.setPageManagerProvider(IPageManagerProvider)",
+				e);
+		}
+
+		compactionThread = new Thread(new CompactionRunnable(),
+			"Wicket-SegmentedDataStore-CompactionThread");
+		compactionThread.setDaemon(true);
+		compactionThread.start();
+	}
+
+	@Override
+	public byte[] getData(final String sessionId, final int id)
+	{
+		byte[] pageData = null;
+		SessionIndex sessionIndex = sessionIndexMap.get(sessionId);
+		if (sessionIndex != null)
+		{
+			PageLocation location;
+			synchronized (sessionIndex)
+			{
+				location = sessionIndex.pages.get(id);
+			}
+			if (location != null)
+			{
+				pageData = location.segment.read(location.offset, location.length);
+			}
+		}
+
+		if (log.isDebugEnabled())
+		{
+			log.debug("Returning data{} for page with id '{}' in session with id '{}'",
+				pageData != null ? "" : "(null)", id, sessionId);
+		}
+		return pageData;
+	}
+
+	@Override
+	public void removeData(final String sessionId, final int id)
+	{
+		SessionIndex sessionIndex = sessionIndexMap.get(sessionId);
+		if (sessionIndex != null)
+		{
+			log.debug("Removing data for page with id '{}' in session with id '{}'", id, sessionId);
+			PageLocation location;
+			synchronized (sessionIndex)
+			{
+				location = sessionIndex.remove(id);
+			}
+			if (location != null)
+			{
+				release(location);
+			}
+		}
+	}
+
+	@Override
+	public void removeData(final String sessionId)
+	{
+		SessionIndex sessionIndex = sessionIndexMap.remove(sessionId);
+		if (sessionIndex != null)
+		{
+			log.debug("Removing data for pages in session with id '{}'", sessionId);
+			List<PageLocation> locations;
+			synchronized (sessionIndex)
+			{
+				sessionIndex.removed = true;
+				locations = new ArrayList<>(sessionIndex.pages.values());
+				sessionIndex.pages.clear();
+				sessionIndex.size = 0;
+			}
+			for (PageLocation location : locations)
+			{
+				release(location);
+			}
+		}
+	}
+
+	@Override
+	public void storeData(final String sessionId, final int id, final byte[] data)
+	{
+		// only save page that has some data
+		if (data == null)
+		{
+			return;
+		}
+
+		log.debug("Storing data for page with id '{}' in session with id '{}'", id, sessionId);
+
+		PageLocation location = append(data);
+		if (location == null)
+		{
+			log.warn("Cannot save page with id '{}' because no segment could be allocated.", id);
+			return;
+		}
+
+		List<PageLocation> garbage = new ArrayList<>();
+		while (true)
+		{
+			SessionIndex sessionIndex = getSessionIndex(sessionId);
+			synchronized (sessionIndex)
+			{
+				if (sessionIndex.removed)
+				{
+					// the session has been removed concurrently, try again with a new index
+					continue;
+				}
+
+				PageLocation previous = sessionIndex.remove(id);
+				if (previous != null)
+				{
+					garbage.add(previous);
+				}
+				sessionIndex.put(id, location);
+
+				// discard the oldest pages but keep at least the one just stored
+				Iterator<PageLocation> oldest = sessionIndex.pages.values().iterator();
+				while (sessionIndex.size > maxSizePerSession && sessionIndex.pages.size() > 1)
+				{
+					PageLocation evicted = oldest.next();
+					oldest.remove();
+					sessionIndex.size -= evicted.length;
+					garbage.add(evicted);
+				}
+			}
+			break;
+		}
+
+		for (PageLocation evicted : garbage)
+		{
+			release(evicted);
+		}
+	}
+
+	@Override
+	public void destroy()
+	{
+		log.debug("Destroying...");
+		if (compactionThread.isAlive())
+		{
+			compactionThread.interrupt();
+			try
+			{
+				compactionThread.join();
+			}
+			catch (InterruptedException e)
+			{
+				log.error(e.getMessage(), e);
+			}
+		}
+		saveIndex();
+		log.debug("Destroyed.");
+	}
+
+	@Override
+	public boolean isReplicated()
+	{
+		return false;
+	}
+
+	@Override
+	public boolean canBeAsynchronous()
+	{
+		return true;
+	}
+
+	/**
+	 * @return the number of segment files currently in use
+	 */
+	public int getSegmentCount()
+	{
+		return segments.size();
+	}
+
+	/**
+	 * This folder contains the segment files of all sessions.
+	 *
+	 * @return the folder where the segments are stored
+	 */
+	protected File getStoreFolder()
+	{
+		return new File(fileStoreFolder, applicationName + "-segmentstore");
+	}
+
+	private SessionIndex getSessionIndex(final String sessionId)
+	{
+		return sessionIndexMap.computeIfAbsent(sessionId, (key) -> new SessionIndex());
+	}
+
+	/**
+	 * Appends the data to the current segment, rolling over to a new segment when the current one
+	 * is full.
+	 *
+	 * @param data
+	 * @return the location of the written data or {@code null} if no segment could be allocated
+	 */
+	private PageLocation append(final byte[] data)
+	{
+		final int length = data.length;
+		while (true)
+		{
+			Segment segment = currentSegment;
+			int offset = segment != null ? segment.allocate(length) : -1;
+			if (offset != -1)
+			{
+				segment.write(offset, data);
+				return new PageLocation(segment, offset, length);
+			}
+
+			if (rollSegment(segment, length) == false)
+			{
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * Replaces the full segment with a new one, unless another thread did that already.
+	 *
+	 * @param full
+	 *            the segment which has no room for the data
+	 * @param length
+	 *            the length of the data which has to fit into the new segment
+	 * @return {@code false} if a new segment could not be created
+	 */
+	private synchronized boolean rollSegment(final Segment full, final int length)
+	{
+		if (currentSegment != full)
+		{
+			return true;
+		}
+
+		int number = segmentCounter.incrementAndGet();
+		File file = new File(getStoreFolder(), SEGMENT_FILE_PREFIX + number);
+		try
+		{
+			Segment segment = Segment.create(number, file, Math.max(segmentSize, length));
+			segments.put(number, segment);
+			currentSegment = segment;
+		}
+		catch (IOException e)
+		{
+			log.error("Cannot create segment file " + file, e);
+			return false;
+		}
+
+		if (full != null)
+		{
+			seal(full);
+		}
+		return true;
+	}
+
+	/**
+	 * Prevents any further allocations in the segment and deletes it if it holds no live data.
+	 *
+	 * @param segment
+	 */
+	private void seal(final Segment segment)
+	{
+		segment.sealed = true;
+		if (segment.liveBytes.get() == 0)
+		{
+			delete(segment);
+		}
+	}
+
+	/**
+	 * Marks the data at the given location as garbage.
+	 *
+	 * @param location
+	 */
+	private void release(final PageLocation location)
+	{
+		Segment segment = location.segment;
+		if (segment.liveBytes.addAndGet(-location.length) == 0 && segment.sealed)
+		{
+			delete(segment);
+		}
+	}
+
+	private void delete(final Segment segment)
+	{
+		if (segments.remove(segment.number, segment))
+		{
+			log.debug("Deleting segment file {}", segment.file);
+
+			// the mapping stays valid for concurrent readers until it gets garbage collected
+			if (Files.remove(segment.file) == false)
+			{
+				segment.file.deleteOnExit();
+			}
+		}
+	}
+
+	/**
+	 * Compacts all full segments with too little live data.
+	 */
+	void compact()
+	{
+		for (Segment segment : segments.values())
+		{
+			if (segment.sealed == false)
+			{
+				continue;
+			}
+
+			long liveBytes = segment.liveBytes.get();
+			if (liveBytes == 0)
+			{
+				// missed by release() because of a concurrent allocation attempt
+				delete(segment);
+			}
+			else if (liveBytes < segment.capacity * COMPACTION_THRESHOLD)
+			{
+				compact(segment);
+			}
+		}
+	}
+
+	/**
+	 * Moves all live pages out of the given segment. The segment gets deleted as soon as the last
+	 * page is released.
+	 *
+	 * @param segment
+	 */
+	private void compact(final Segment segment)
+	{
+		log.debug("Compacting segment file {}", segment.file);
+
+		for (SessionIndex sessionIndex : sessionIndexMap.values())
+		{
+			Map<Integer, PageLocation> candidates = new LinkedHashMap<>();
+			synchronized (sessionIndex)
+			{
+				for (Map.Entry<Integer, PageLocation> entry : sessionIndex.pages.entrySet())
+				{
+					if (entry.getValue().segment == segment)
+					{
+						candidates.put(entry.getKey(), entry.getValue());
+					}
+				}
+			}
+
+			for (Map.Entry<Integer, PageLocation> candidate : candidates.entrySet())
+			{
+				PageLocation location = candidate.getValue();
+				PageLocation moved = append(location.segment.read(location.offset,
+					location.length));
+				if (moved == null)
+				{
+					return;
+				}
+
+				PageLocation garbage = moved;
+				synchronized (sessionIndex)
+				{
+					// the page may have been stored again or removed in the meantime
+					if (sessionIndex.removed == false &&
+						sessionIndex.pages.get(candidate.getKey()) == location)
+					{
+						// replacing the value keeps the age of the page
+						sessionIndex.pages.put(candidate.getKey(), moved);
+						garbage = location;
+					}
+				}
+				release(garbage);
+			}
+		}
+	}
+
+	/**
+	 * Loads the index written by {@link #saveIndex()} and maps the segments it refers to. Segment
+	 * files which are not referenced by the index are deleted.
+	 */
+	private void loadIndex()
+	{
+		File storeFolder = getStoreFolder();
+		File index = new File(storeFolder, INDEX_FILE_NAME);
+		if (index.exists() && index.length() > 0)
+		{
+			try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(index))))
+			{
+				if (in.readInt() != INDEX_VERSION)
+				{
+					throw new IOException("Unsupported index version");
+				}
+
+				int segmentCount = in.readInt();
+				for (int i = 0; i < segmentCount; i++)
+				{
+					int number = in.readInt();
+					int position = in.readInt();
+					File file = new File(storeFolder, SEGMENT_FILE_PREFIX + number);
+					Segment segment = Segment.open(number, file, position);
+					segment.sealed = true;
+					segments.put(number, segment);
+					segmentCounter.set(Math.max(segmentCounter.get(), number));
+				}
+
+				int sessionCount = in.readInt();
+				for (int i = 0; i < sessionCount; i++)
+				{
+					String sessionId = in.readUTF();
+					SessionIndex sessionIndex = getSessionIndex(sessionId);
+					int pageCount = in.readInt();
+					for (int j = 0; j < pageCount; j++)
+					{
+						int pageId = in.readInt();
+						Segment segment = segments.get(in.readInt());
+						int offset = in.readInt();
+						int length = in.readInt();
+						if (segment != null)
+						{
+							segment.liveBytes.addAndGet(length);
+							sessionIndex.put(pageId, new PageLocation(segment, offset, length));
+						}
+					}
+				}
+			}
+			catch (Exception e)
+			{
+				log.error("Couldn't load SegmentedDataStore index from file " + index + ".", e);
+				sessionIndexMap.clear();
+				segments.clear();
+			}
+		}
+		Files.remove(index);
+
+		File[] files = storeFolder.listFiles();
+		if (files != null)
+		{
+			for (File file : files)
+			{
+				if (file.getName().startsWith(SEGMENT_FILE_PREFIX) && isMapped(file) == false)
+				{
+					Files.remove(file);
+				}
+			}
+		}
+
+		for (Segment segment : segments.values())
+		{
+			if (segment.liveBytes.get() == 0)
+			{
+				delete(segment);
+			}
+		}
+	}
+
+	private boolean isMapped(final File file)
+	{
+		for (Segment segment : segments.values())
+		{
+			if (segment.file.equals(file))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Flushes the segments and writes the index so that the pages survive a restart.
+	 */
+	private void saveIndex()
+	{
+		File storeFolder = getStoreFolder();
+		if (storeFolder.exists())
+		{
+			File index = new File(storeFolder, INDEX_FILE_NAME);
+			Files.remove(index);
+			try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(index))))
+			{
+				List<Segment> segmentList = new ArrayList<>(segments.values());
+				out.writeInt(INDEX_VERSION);
+				out.writeInt(segmentList.size());
+				for (Segment segment : segmentList)
+				{
+					segment.buffer.force();
+					out.writeInt(segment.number);
+					out.writeInt(Math.min(segment.position.get(), segment.capacity));
+				}
+
+				List<Map.Entry<String, SessionIndex>> sessions = new ArrayList<>(
+					sessionIndexMap.entrySet());
+				out.writeInt(sessions.size());
+				for (Map.Entry<String, SessionIndex> entry : sessions)
+				{
+					SessionIndex sessionIndex = entry.getValue();
+					out.writeUTF(entry.getKey());
+					synchronized (sessionIndex)
+					{
+						out.writeInt(sessionIndex.pages.size());
+						for (Map.Entry<Integer, PageLocation> page : sessionIndex.pages.entrySet())
+						{
+							PageLocation location = page.getValue();
+							out.writeInt(page.getKey());
+							out.writeInt(location.segment.number);
+							out.writeInt(location.offset);
+							out.writeInt(location.length);
+						}
+					}
+				}
+			}
+			catch (Exception e)
+			{
+				log.error("Couldn't write SegmentedDataStore index to file " + index + ".", e);
+			}
+		}
+	}
+
+	/**
+	 * The pages of a single session in the order they were stored.
+	 */
+	private static class SessionIndex
+	{
+		private final LinkedHashMap<Integer, PageLocation> pages = new LinkedHashMap<>();
+
+		/** the total length of all pages */
+		private long size;
+
+		/** whether the session has been removed */
+		private boolean removed;
+
+		private void put(int pageId, PageLocation location)
+		{
+			pages.put(pageId, location);
+			size += location.length;
+		}
+
+		private PageLocation remove(int pageId)
+		{
+			PageLocation location = pages.remove(pageId);
+			if (location != null)
+			{
+				size -= location.length;
+			}
+			return location;
+		}
+	}
+
+	/**
+	 * The position of serialized page data inside a segment.
+	 */
+	private static class PageLocation
+	{
+		private final Segment segment;
+
+		private final int offset;
+
+		private final int length;
+
+		private PageLocation(Segment segment, int offset, int length)
+		{
+			this.segment = segment;
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+
+	/**
+	 * A memory-mapped segment file. Data is only ever appended to a segment, so the bytes at an
+	 * allocated location never change.
+	 */
+	private static class Segment
+	{
+		private final int number;
+
+		private final File file;
+
+		private final MappedByteBuffer buffer;
+
+		private final int capacity;
+
+		/** the offset of the next allocation */
+		private final AtomicInteger position;
+
+		/** the number of allocated bytes which are still referenced */
+		private final AtomicLong liveBytes = new AtomicLong();
+
+		/** whether the segment no longer accepts allocations */
+		private volatile boolean sealed;
+
+		private Segment(int number, File file, MappedByteBuffer buffer, int position)
+		{
+			this.number = number;
+			this.file = file;
+			this.buffer = buffer;
+			capacity = buffer.capacity();
+			this.position = new AtomicInteger(position);
+		}
+
+		private static Segment create(int number, File file, int capacity) throws IOException
+		{
+			return new Segment(number, file, map(file, capacity), 0);
+		}
+
+		private static Segment open(int number, File file, int position) throws IOException
+		{
+			return new Segment(number, file, map(file, file.length()), position);
+		}
+
+		private static MappedByteBuffer map(File file, long capacity) throws IOException
+		{
+			// the mapping outlives the channel, so no file handle is kept open
+			try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+				FileChannel channel = randomAccessFile.getChannel())
+			{
+				return channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+			}
+		}
+
+		/**
+		 * Reserves room for data with the given length.
+		 *
+		 * @param length
+		 * @return the offset of the reserved room or -1 if the segment has not enough room left
+		 */
+		private int allocate(int length)
+		{
+			// account the bytes before checking the seal so that a concurrent seal()
+			// never deletes a segment which is about to be written
+			liveBytes.addAndGet(length);
+			if (sealed == false)
+			{
+				while (true)
+				{
+					int offset = position.get();
+					if (offset + length > capacity)
+					{
+						break;
+					}
+					if (position.compareAndSet(offset, offset + length))
+					{
+						return offset;
+					}
+				}
+			}
+			liveBytes.addAndGet(-length);
+			return -1;
+		}
+
+		private void write(int offset, byte[] data)
+		{
+			ByteBuffer target = buffer.duplicate();
+			target.position(offset);
+			target.put(data);
+		}
+
+		private byte[] read(int offset, int length)
+		{
+			byte[] data = new byte[length];
+			ByteBuffer source = buffer.duplicate();
+			source.position(offset);
+			source.get(data);
+			return data;
+		}
+	}
+
+	/**
+	 * Periodically compacts the segments with too little live data.
+	 */
+	private class CompactionRunnable implements Runnable
+	{
+		@Override
+		public void run()
+		{
+			while (!Thread.interrupted())
+			{
+				try
+				{
+					Thread.sleep(COMPACTION_INTERVAL);
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					break;
+				}
+
+				try
+				{
+					compact();
+				}
+				catch (RuntimeException e)
+				{
+					log.error("Error while compacting segments", e);
+				}
+			}
+		}
+	}
+}
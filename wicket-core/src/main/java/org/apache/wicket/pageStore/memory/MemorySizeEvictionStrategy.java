@@ -18,10 +18,10 @@ package org.apache.wicket.pageStore.memory;
 
 import org.apache.wicket.util.lang.Args;
 import org.apache.wicket.util.lang.Bytes;
-import org.apache.wicket.core.util.lang.WicketObjects;
 
 /**
- * An eviction strategy that keeps the data store size up to configured bytes
+ * An eviction strategy that keeps the data store size up to configured bytes. The size is the total
+ * length of the stored pages, as tracked by {@link PageTable#getSize()}.
  */
 public class MemorySizeEvictionStrategy implements IDataStoreEvictionStrategy
 {
@@ -48,16 +48,12 @@ public class MemorySizeEvictionStrategy implements IDataStoreEvictionStrategy
 	@Override
 	public void evict(PageTable pageTable)
 	{
+		PageTableCleaner cleaner = new PageTableCleaner();
 
-		long storeCurrentSize = WicketObjects.sizeof(pageTable);
-
-		if (storeCurrentSize > maxBytes.bytes())
+		// drop the least recently used pages until enough space is cleaned
+		while (pageTable.getSize() > maxBytes.bytes() && pageTable.size() > 0)
 		{
-			PageTableCleaner cleaner = new PageTableCleaner();
 			cleaner.drop(pageTable, 1);
-
-			// recurse until enough space is cleaned
-			evict(pageTable);
 		}
 	}
 
@@ -16,6 +16,8 @@
  */
 package org.apache.wicket.pageStore.memory;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.Iterator;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
@@ -28,7 +30,8 @@ import org.apache.wicket.util.io.IClusterable;
  * A structure that holds page id => pageAsBytes.
  * 
  * <p>
- * Additionally it has an index of the least recently used pages
+ * Additionally it has an index of the least recently used pages and keeps track of the total size
+ * of the stored pages.
  */
 public class PageTable implements IClusterable
 {
@@ -52,6 +55,11 @@ public class PageTable implements IClusterable
 	 */
 	private final ConcurrentMap<Integer, byte[]> pages;
 
+	/**
+	 * The total length of the pages, updated as pages are stored and removed
+	 */
+	private transient volatile long size;
+
 	public PageTable()
 	{
 		pages = new ConcurrentHashMap<>();
@@ -62,7 +70,8 @@ public class PageTable implements IClusterable
 	{
 		synchronized (index)
 		{
-			pages.put(pageId, pageAsBytes);
+			byte[] previous = pages.put(pageId, pageAsBytes);
+			size += pageAsBytes.length - (previous != null ? previous.length : 0);
 
 			updateIndex(pageId);
 		}
@@ -84,7 +93,12 @@ public class PageTable implements IClusterable
 		{
 			index.remove(pageId);
 
-			return pages.remove(pageId);
+			byte[] removed = pages.remove(pageId);
+			if (removed != null)
+			{
+				size -= removed.length;
+			}
+			return removed;
 		}
 	}
 
@@ -94,6 +108,7 @@ public class PageTable implements IClusterable
 		{
 			index.clear();
 			pages.clear();
+			size = 0;
 		}
 	}
 
@@ -102,6 +117,14 @@ public class PageTable implements IClusterable
 		return pages.size();
 	}
 
+	/**
+	 * @return the total length of the stored pages in bytes
+	 */
+	public long getSize()
+	{
+		return size;
+	}
+
 	public Integer getOldest()
 	{
 		return index.peek();
@@ -125,4 +148,16 @@ public class PageTable implements IClusterable
 		index.offer(pageId);
 	}
 
+	private void readObject(ObjectInputStream s) throws IOException, ClassNotFoundException
+	{
+		s.defaultReadObject();
+
+		long total = 0;
+		for (byte[] page : pages.values())
+		{
+			total += page.length;
+		}
+		size = total;
+	}
+
 }
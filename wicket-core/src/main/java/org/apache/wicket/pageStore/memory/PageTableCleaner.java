@@ -40,7 +40,7 @@ public class PageTableCleaner
 		{
 			Integer pageIdOfTheOldest = pageTable.getOldest();
 			pageTable.removePage(pageIdOfTheOldest);
-			LOG.debug("Evicted page with id '{}' from the HttpSessionDataStore");
+			LOG.debug("Evicted page with id '{}' from the HttpSessionDataStore", pageIdOfTheOldest);
 		}
 	}
 }
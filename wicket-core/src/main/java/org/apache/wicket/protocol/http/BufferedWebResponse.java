@@ -28,6 +28,7 @@ import javax.servlet.http.Cookie;
 import org.apache.wicket.Application;
 import org.apache.wicket.WicketRuntimeException;
 import org.apache.wicket.request.Response;
+import org.apache.wicket.request.cycle.RequestCycle;
 import org.apache.wicket.request.http.WebResponse;
 import org.apache.wicket.response.filter.IResponseFilter;
 import org.apache.wicket.util.lang.Args;
@@ -140,11 +141,22 @@ public class BufferedWebResponse extends WebResponse implements IMetaDataBufferi
 
 	private static class WriteCharSequenceAction extends Action
 	{
-		private final StringBuilder builder = new StringBuilder(4096);
+		private final AppendingStringBuffer builder;
+
+		/** the request cycle which lent the builder, if any */
+		private RequestCycle requestCycle;
 
 		public WriteCharSequenceAction()
 		{
-
+			requestCycle = RequestCycle.get();
+			if (requestCycle != null)
+			{
+				builder = requestCycle.newRenderBuffer(4096);
+			}
+			else
+			{
+				builder = new AppendingStringBuffer(4096);
+			}
 		}
 
 		public void append(CharSequence sequence)
@@ -152,21 +164,36 @@ public class BufferedWebResponse extends WebResponse implements IMetaDataBufferi
 			builder.append(sequence);
 		}
 
+		/**
+		 * Keeps the builder from being reused after the request.
+		 */
+		public void retain()
+		{
+			if (requestCycle != null)
+			{
+				requestCycle.retainRenderBuffer(builder);
+				requestCycle = null;
+			}
+		}
+
 		@Override
 		protected void invoke(WebResponse response)
 		{
-			AppendingStringBuffer responseBuffer = new AppendingStringBuffer(builder);
-
 			List<IResponseFilter> responseFilters = Application.get()
 				.getRequestCycleSettings()
 				.getResponseFilters();
 
-			if (responseFilters != null)
+			if (responseFilters == null)
 			{
-				for (IResponseFilter filter : responseFilters)
-				{
-					responseBuffer = filter.filter(responseBuffer);
-				}
+				// no need to copy
+				response.write(builder);
+				return;
+			}
+
+			AppendingStringBuffer responseBuffer = new AppendingStringBuffer(builder);
+			for (IResponseFilter filter : responseFilters)
+			{
+				responseBuffer = filter.filter(responseBuffer);
 			}
 			response.write(responseBuffer);
 		}
@@ -517,6 +544,59 @@ public class BufferedWebResponse extends WebResponse implements IMetaDataBufferi
 		}
 	}
 
+	/**
+	 * @return the approximate size in bytes of the buffered content
+	 */
+	long getBufferedSize()
+	{
+		long size = 0;
+		if (charSequenceAction != null)
+		{
+			size += 2L * charSequenceAction.builder.length();
+		}
+		if (dataAction != null)
+		{
+			size += dataAction.stream.size();
+		}
+		return size;
+	}
+
+	/**
+	 * Keeps the text of this response for use after the current request, e.g. because this
+	 * response is stored to be written in a following request. Only needed if a
+	 * {@link org.apache.wicket.response.RenderBufferPool} is enabled, otherwise the text is never
+	 * reused.
+	 * 
+	 * @see org.apache.wicket.settings.RequestCycleSettings#setRenderBufferPoolSize(int)
+	 */
+	public void retainText()
+	{
+		if (charSequenceAction != null)
+		{
+			charSequenceAction.retain();
+		}
+	}
+
+	/**
+	 * @return the bytes already written to this response, or {@code null} if there are none
+	 */
+	final byte[] getData()
+	{
+		return dataAction != null ? dataAction.stream.toByteArray() : null;
+	}
+
+	/**
+	 * Drops the bytes already written to this response, keeping the other buffered actions.
+	 */
+	final void clearData()
+	{
+		if (dataAction != null)
+		{
+			actions.remove(dataAction);
+			dataAction = null;
+		}
+	}
+
 	/**
 	 * Replaces the text in this response
 	 * 
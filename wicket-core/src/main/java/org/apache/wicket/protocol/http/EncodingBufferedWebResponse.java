@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.protocol.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.request.http.WebResponse;
+import org.apache.wicket.response.IEncodingResponse;
+import org.apache.wicket.util.lang.Args;
+
+/**
+ * A {@link BufferedWebResponse} which encodes the text while it is written, so that the buffer
+ * holds bytes only. Text already encoded with the charset of this response can be written as
+ * bytes, e.g. the static markup of a page which is encoded only once.
+ * 
+ * @see org.apache.wicket.settings.RequestCycleSettings#setRenderPagesAsBytes(boolean)
+ */
+public class EncodingBufferedWebResponse extends BufferedWebResponse implements IEncodingResponse
+{
+	private final Charset charset;
+
+	/** encodes the written text into the buffer */
+	private Writer writer;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param originalResponse
+	 * @param charset
+	 *            the charset to encode the text with
+	 */
+	public EncodingBufferedWebResponse(final WebResponse originalResponse, final Charset charset)
+	{
+		super(originalResponse);
+
+		this.charset = Args.notNull(charset, "charset");
+	}
+
+	@Override
+	public Charset getCharset()
+	{
+		return charset;
+	}
+
+	@Override
+	public void write(final CharSequence sequence)
+	{
+		if (writer == null)
+		{
+			writer = new OutputStreamWriter(new OutputStream()
+			{
+				@Override
+				public void write(final int b)
+				{
+					EncodingBufferedWebResponse.super.write(new byte[] { (byte)b });
+				}
+
+				@Override
+				public void write(final byte[] b, final int off, final int len)
+				{
+					EncodingBufferedWebResponse.super.write(b, off, len);
+				}
+			}, charset);
+		}
+
+		try
+		{
+			writer.append(sequence);
+		}
+		catch (IOException e)
+		{
+			throw new WicketRuntimeException(e);
+		}
+	}
+
+	@Override
+	public void write(final byte[] array)
+	{
+		flushWriter();
+		super.write(array);
+	}
+
+	@Override
+	public void write(final byte[] array, final int offset, final int length)
+	{
+		flushWriter();
+		super.write(array, offset, length);
+	}
+
+	/**
+	 * Decodes the bytes already written to this response.
+	 */
+	@Override
+	public CharSequence getText()
+	{
+		flushWriter();
+		byte[] data = getData();
+		return data != null ? new String(data, charset) : null;
+	}
+
+	/**
+	 * Replaces the text and the bytes already written to this response.
+	 */
+	@Override
+	public void setText(final CharSequence text)
+	{
+		// drop the text not encoded yet
+		writer = null;
+		clearData();
+
+		write(text);
+	}
+
+	@Override
+	public void reset()
+	{
+		super.reset();
+
+		// drop the text not encoded yet
+		writer = null;
+	}
+
+	@Override
+	public void writeTo(final WebResponse response)
+	{
+		flushWriter();
+		super.writeTo(response);
+	}
+
+	private void flushWriter()
+	{
+		if (writer != null)
+		{
+			try
+			{
+				writer.flush();
+			}
+			catch (IOException e)
+			{
+				throw new WicketRuntimeException(e);
+			}
+		}
+	}
+}
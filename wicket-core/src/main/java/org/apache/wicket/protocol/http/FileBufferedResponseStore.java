@@ -0,0 +1,618 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.protocol.http;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.servlet.http.Cookie;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.request.http.WebResponse;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.string.Strings;
+import org.apache.wicket.util.time.Duration;
+import org.apache.wicket.util.time.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An {@link IBufferedResponseStore} keeping the responses in files of a folder, which can be
+ * shared by the nodes of a cluster. A response is written once by the node which rendered it, and
+ * is read by whichever node serves the redirected request.
+ * <p>
+ * A response is taken by renaming its file atomically, so that it is served only once. Files
+ * older than the lifetime are removed from time to time.
+ * </p>
+ * <p>
+ * The text of a response is stored encoded with the
+ * {@link org.apache.wicket.settings.RequestCycleSettings#getResponseRequestEncoding() response
+ * encoding}, after the response filters have been applied.
+ * </p>
+ */
+public class FileBufferedResponseStore implements IBufferedResponseStore
+{
+	private static final Logger log = LoggerFactory.getLogger(FileBufferedResponseStore.class);
+
+	/** the version of the file format */
+	private static final int VERSION = 1;
+
+	/** the extension of the response files */
+	private static final String EXTENSION = ".response";
+
+	private static final byte END = 0;
+	private static final byte ADD_COOKIE = 1;
+	private static final byte CLEAR_COOKIE = 2;
+	private static final byte SET_HEADER = 3;
+	private static final byte ADD_HEADER = 4;
+	private static final byte SET_DATE_HEADER = 5;
+	private static final byte SET_CONTENT_LENGTH = 6;
+	private static final byte SET_CONTENT_TYPE = 7;
+	private static final byte SET_STATUS = 8;
+	private static final byte SEND_ERROR = 9;
+	private static final byte SEND_REDIRECT = 10;
+	private static final byte FLUSH = 11;
+	private static final byte WRITE = 12;
+
+	private final File folder;
+
+	/** the time in milliseconds a response is kept */
+	private final long lifetime;
+
+	/** the last time the expired files were removed */
+	private final AtomicLong lastSweep = new AtomicLong(System.currentTimeMillis());
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Construct.
+	 * 
+	 * @param folder
+	 *            the folder for the response files
+	 * @param lifetime
+	 *            the duration of time to keep a response before considering it expired
+	 */
+	public FileBufferedResponseStore(final File folder, final Duration lifetime)
+	{
+		this.folder = Args.notNull(folder, "folder");
+		this.lifetime = Args.notNull(lifetime, "lifetime").getMilliseconds();
+
+		if (folder.exists() == false && folder.mkdirs() == false)
+		{
+			log.warn("Cannot create the folder {} for the buffered responses.", folder);
+		}
+	}
+
+	@Override
+	public void storeResponse(final String key, final BufferedWebResponse response)
+	{
+		sweep(System.currentTimeMillis());
+
+		File file = getFile(key);
+		File temp = new File(folder, file.getName() + "." + UUID.randomUUID() + ".tmp");
+		try
+		{
+			try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(temp))))
+			{
+				out.writeInt(VERSION);
+				response.writeTo(new RecordingResponse(out, getCharset()));
+				out.writeByte(END);
+			}
+
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (IOException | WicketRuntimeException e)
+		{
+			log.error("Couldn't store the buffered response in " + file + ".", e);
+			temp.delete();
+		}
+	}
+
+	@Override
+	public BufferedWebResponse getAndRemoveResponse(final String key)
+	{
+		File file = getFile(key);
+		File taken = new File(folder, file.getName() + "." + UUID.randomUUID() + ".taken");
+		try
+		{
+			// only one node succeeds
+			Files.move(file.toPath(), taken.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (NoSuchFileException e)
+		{
+			misses.increment();
+			return null;
+		}
+		catch (IOException e)
+		{
+			log.error("Couldn't take the buffered response " + file + ".", e);
+			misses.increment();
+			return null;
+		}
+
+		try
+		{
+			if (isExpired(taken, System.currentTimeMillis()))
+			{
+				misses.increment();
+				return null;
+			}
+
+			BufferedWebResponse response = read(taken);
+			hits.increment();
+			return response;
+		}
+		catch (IOException e)
+		{
+			log.error("Couldn't read the buffered response " + file + ".", e);
+			misses.increment();
+			return null;
+		}
+		finally
+		{
+			taken.delete();
+		}
+	}
+
+	@Override
+	public boolean hasResponse(final String key)
+	{
+		File file = getFile(key);
+		return file.exists() && isExpired(file, System.currentTimeMillis()) == false;
+	}
+
+	@Override
+	public long getHits()
+	{
+		return hits.sum();
+	}
+
+	@Override
+	public long getMisses()
+	{
+		return misses.sum();
+	}
+
+	@Override
+	public void destroy()
+	{
+		// the files may still be needed by other nodes
+	}
+
+	/**
+	 * @return the folder for the response files
+	 */
+	public File getFolder()
+	{
+		return folder;
+	}
+
+	private boolean isExpired(final File file, final long now)
+	{
+		return now - file.lastModified() >= lifetime;
+	}
+
+	/**
+	 * Removes the expired files, at most once per lifetime.
+	 */
+	private void sweep(final long now)
+	{
+		long last = lastSweep.get();
+		if (now - last < lifetime || lastSweep.compareAndSet(last, now) == false)
+		{
+			return;
+		}
+
+		File[] files = folder.listFiles();
+		if (files != null)
+		{
+			for (File file : files)
+			{
+				if (file.getName().contains(EXTENSION) && isExpired(file, now))
+				{
+					file.delete();
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the file of the response with the given key
+	 */
+	private File getFile(final String key)
+	{
+		try
+		{
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(
+				key.getBytes(StandardCharsets.UTF_8));
+			StringBuilder name = new StringBuilder(digest.length * 2 + EXTENSION.length());
+			for (byte b : digest)
+			{
+				name.append(Character.forDigit((b >> 4) & 0xf, 16));
+				name.append(Character.forDigit(b & 0xf, 16));
+			}
+			return new File(folder, name.append(EXTENSION).toString());
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new WicketRuntimeException(e);
+		}
+	}
+
+	private Charset getCharset()
+	{
+		String encoding = null;
+		if (Application.exists())
+		{
+			encoding = Application.get().getRequestCycleSettings().getResponseRequestEncoding();
+		}
+		return Strings.isEmpty(encoding) ? StandardCharsets.UTF_8 : Charset.forName(encoding);
+	}
+
+	private BufferedWebResponse read(final File file) throws IOException
+	{
+		try (DataInputStream in = new DataInputStream(
+			new BufferedInputStream(new FileInputStream(file))))
+		{
+			if (in.readInt() != VERSION)
+			{
+				throw new IOException("Unsupported version");
+			}
+
+			BufferedWebResponse response = new BufferedWebResponse(null);
+			for (byte operation = in.readByte(); operation != END; operation = in.readByte())
+			{
+				switch (operation)
+				{
+					case ADD_COOKIE :
+						response.addCookie(readCookie(in));
+						break;
+					case CLEAR_COOKIE :
+						response.clearCookie(readCookie(in));
+						break;
+					case SET_HEADER :
+						response.setHeader(in.readUTF(), readString(in));
+						break;
+					case ADD_HEADER :
+						response.addHeader(in.readUTF(), readString(in));
+						break;
+					case SET_DATE_HEADER :
+						response.setDateHeader(in.readUTF(), Time.millis(in.readLong()));
+						break;
+					case SET_CONTENT_LENGTH :
+						response.setContentLength(in.readLong());
+						break;
+					case SET_CONTENT_TYPE :
+						response.setContentType(readString(in));
+						break;
+					case SET_STATUS :
+						response.setStatus(in.readInt());
+						break;
+					case SEND_ERROR :
+						response.sendError(in.readInt(), readString(in));
+						break;
+					case SEND_REDIRECT :
+						response.sendRedirect(readString(in));
+						break;
+					case FLUSH :
+						response.flush();
+						break;
+					case WRITE :
+						byte[] data = new byte[in.readInt()];
+						in.readFully(data);
+						response.write(data);
+						break;
+					default :
+						throw new IOException("Unknown operation " + operation);
+				}
+			}
+			return response;
+		}
+	}
+
+	private static Cookie readCookie(final DataInputStream in) throws IOException
+	{
+		Cookie cookie = new Cookie(in.readUTF(), readString(in));
+		String domain = readString(in);
+		if (domain != null)
+		{
+			cookie.setDomain(domain);
+		}
+		cookie.setPath(readString(in));
+		cookie.setComment(readString(in));
+		cookie.setMaxAge(in.readInt());
+		cookie.setSecure(in.readBoolean());
+		cookie.setVersion(in.readInt());
+		cookie.setHttpOnly(in.readBoolean());
+		return cookie;
+	}
+
+	private static String readString(final DataInputStream in) throws IOException
+	{
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	/**
+	 * Writes the operations of a {@link BufferedWebResponse} into a file.
+	 */
+	private static class RecordingResponse extends WebResponse
+	{
+		private final DataOutputStream out;
+
+		private final Charset charset;
+
+		private boolean redirect;
+
+		private RecordingResponse(final DataOutputStream out, final Charset charset)
+		{
+			this.out = out;
+			this.charset = charset;
+		}
+
+		@Override
+		public void addCookie(final Cookie cookie)
+		{
+			try
+			{
+				out.writeByte(ADD_COOKIE);
+				writeCookie(cookie);
+			}
+			catch (IOException e)
+			{
+				throw new WicketRuntimeException(e);
+			}
+		}
+
+		@Override
+		public void clearCookie(final Cookie cookie)
+		{
+			try
+			{
+				out.writeByte(CLEAR_COOKIE);
+				writeCookie(cookie);
+			}
+			catch (IOException e)
+			{
+				throw new WicketRuntimeException(e);
+			}
+		}
+
+		@Override
+		public void setHeader(final String name, final String value)
+		{
+			try
+			{
+				out.writeByte(SET_HEADER);
+				out.writeUTF(name);
+				writeString(value);
+			}
+			catch (IOException e)
+			{
+				throw new WicketRuntimeException(e);
+			}
+		}
+
+		@Override
+		public void addHeader(final String name, final String value)
+		{
+			try
+			{
+				out.writeByte(ADD_HEADER);
+				out.writeUTF(name);
+				writeString(value);
+			}
+			catch (IOException e)
+			{
+				throw new WicketRuntimeException(e);
+			}
+		}
+
+		@Override
+		public void setDateHeader(final String name, final Time date)
+		{
+			try
+			{
+				out.writeByte(SET_DATE_HEADER);
+				out.writeUTF(name);
+				out.writeLong(date.getMilliseconds());
+			}
+			catch (IOException e)
+			{
+				throw new WicketRuntimeException(e);
+			}
+		}
+
+		@Override
+		public void setContentLength(final long length)
+		{
+			try
+			{
+				out.writeByte(SET_CONTENT_LENGTH);
+				out.writeLong(length);
+			}
+			catch (IOException e)
+			{
+				throw new WicketRuntimeException(e);
+			}
+		}
+
+		@Override
+		public void setContentType(final String mimeType)
+		{
+			try
+			{
+				out.writeByte(SET_CONTENT_TYPE);
+				writeString(mimeType);
+			}
+			catch (IOException e)
+			{
+				throw new WicketRuntimeException(e);
+			}
+		}
+
+		@Override
+		public void setStatus(final int sc)
+		{
+			try
+			{
+				out.writeByte(SET_STATUS);
+				out.writeInt(sc);
+			}
+			catch (IOException e)
+			{
+				throw new WicketRuntimeException(e);
+			}
+		}
+
+		@Override
+		public void sendError(final int sc, final String msg)
+		{
+			try
+			{
+				out.writeByte(SEND_ERROR);
+				out.writeInt(sc);
+				writeString(msg);
+			}
+			catch (IOException e)
+			{
+				throw new WicketRuntimeException(e);
+			}
+		}
+
+		@Override
+		public void sendRedirect(final String url)
+		{
+			redirect = true;
+			try
+			{
+				out.writeByte(SEND_REDIRECT);
+				writeString(url);
+			}
+			catch (IOException e)
+			{
+				throw new WicketRuntimeException(e);
+			}
+		}
+
+		@Override
+		public boolean isRedirect()
+		{
+			return redirect;
+		}
+
+		@Override
+		public void flush()
+		{
+			try
+			{
+				out.writeByte(FLUSH);
+			}
+			catch (IOException e)
+			{
+				throw new WicketRuntimeException(e);
+			}
+		}
+
+		@Override
+		public void write(final CharSequence sequence)
+		{
+			write(sequence.toString().getBytes(charset));
+		}
+
+		@Override
+		public void write(final byte[] array)
+		{
+			write(array, 0, array.length);
+		}
+
+		@Override
+		public void write(final byte[] array, final int offset, final int length)
+		{
+			try
+			{
+				out.writeByte(WRITE);
+				out.writeInt(length);
+				out.write(array, offset, length);
+			}
+			catch (IOException e)
+			{
+				throw new WicketRuntimeException(e);
+			}
+		}
+
+		@Override
+		public String encodeURL(final CharSequence url)
+		{
+			return url != null ? url.toString() : null;
+		}
+
+		@Override
+		public String encodeRedirectURL(final CharSequence url)
+		{
+			return url != null ? url.toString() : null;
+		}
+
+		@Override
+		public Object getContainerResponse()
+		{
+			return null;
+		}
+
+		private void writeCookie(final Cookie cookie) throws IOException
+		{
+			out.writeUTF(cookie.getName());
+			writeString(cookie.getValue());
+			writeString(cookie.getDomain());
+			writeString(cookie.getPath());
+			writeString(cookie.getComment());
+			out.writeInt(cookie.getMaxAge());
+			out.writeBoolean(cookie.getSecure());
+			out.writeInt(cookie.getVersion());
+			out.writeBoolean(cookie.isHttpOnly());
+		}
+
+		private void writeString(final String string) throws IOException
+		{
+			out.writeBoolean(string != null);
+			if (string != null)
+			{
+				out.writeUTF(string);
+			}
+		}
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.protocol.http;
+
+/**
+ * Keeps the responses rendered with the
+ * {@link org.apache.wicket.settings.RequestCycleSettings.RenderStrategy#REDIRECT_TO_BUFFER}
+ * strategy until the redirected request asks for them.
+ * <p>
+ * The default implementation is the node local {@link StoredResponsesMap}. In a cluster without
+ * sticky sessions the redirected request may be served by another node, which needs a shared store
+ * like the {@link FileBufferedResponseStore}.
+ * </p>
+ * 
+ * @see WebApplication#setBufferedResponseStore(IBufferedResponseStore)
+ */
+public interface IBufferedResponseStore
+{
+	/**
+	 * Stores a response.
+	 * 
+	 * @param key
+	 *            the key, made of the session id and the url of the response
+	 * @param response
+	 *            the response
+	 */
+	void storeResponse(String key, BufferedWebResponse response);
+
+	/**
+	 * Gets a stored response and removes it, so that it is served only once.
+	 * 
+	 * @param key
+	 *            the key
+	 * @return the response, {@code null} if there is none or it has expired
+	 */
+	BufferedWebResponse getAndRemoveResponse(String key);
+
+	/**
+	 * @param key
+	 *            the key
+	 * @return whether a response is stored with the key and has not expired
+	 */
+	boolean hasResponse(String key);
+
+	/**
+	 * @return the number of stored responses which were found
+	 */
+	long getHits();
+
+	/**
+	 * @return the number of responses which were looked for, but not found
+	 */
+	long getMisses();
+
+	/**
+	 * Called when the application is destroyed.
+	 */
+	void destroy();
+}
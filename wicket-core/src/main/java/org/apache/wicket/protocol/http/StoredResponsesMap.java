@@ -16,19 +16,28 @@
  */
 package org.apache.wicket.protocol.http;
 
-import java.util.Map;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
-import org.apache.wicket.util.collections.MostRecentlyUsedMap;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
 import org.apache.wicket.util.time.Duration;
-import org.apache.wicket.util.time.Time;
 
 /**
  * A map that contains the buffered responses. It has a constraint on the maximum entries that it
- * can contain, and a constraint on the duration of time an entry is considered valid/non-expired
+ * can contain, on the total size of the responses, and on the duration of time an entry is
+ * considered valid/non-expired.
+ * <p>
+ * The entries are spread over several shards, each with its own lock and its own least recently
+ * used order, so that concurrent requests of different sessions rarely wait for each other. The
+ * limits are split evenly between the shards.
+ * </p>
  */
-class StoredResponsesMap extends MostRecentlyUsedMap<String, Object>
+public class StoredResponsesMap implements IBufferedResponseStore
 {
-	private static final long serialVersionUID = 1L;
+	/** the number of shards, must be a power of two */
+	private static final int SHARD_COUNT = 16;
 
 	/**
 	 * The actual object that is stored as a value of the map. It wraps the buffered response and
@@ -37,16 +46,36 @@ class StoredResponsesMap extends MostRecentlyUsedMap<String, Object>
 	private static class Value
 	{
 		/** the original response to store */
-		private BufferedWebResponse response;
+		private final BufferedWebResponse response;
 
-		/** the time when this response is stored */
-		private Time creationTime;
+		/** the time in milliseconds when this response is stored */
+		private final long creationTime;
+
+		/** the size of the buffered content */
+		private final long size;
+
+		private Value(final BufferedWebResponse response, final long creationTime)
+		{
+			this.response = response;
+			this.creationTime = creationTime;
+			size = response.getBufferedSize();
+		}
 	}
 
 	/**
-	 * The duration of time before a {@link Value} is considered as expired
+	 * The duration of time in milliseconds before a {@link Value} is considered as expired
 	 */
-	private final Duration lifetime;
+	private final long lifetime;
+
+	private final Shard[] shards = new Shard[SHARD_COUNT];
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	private final LongAdder expirations = new LongAdder();
+
+	private final LongAdder evictions = new LongAdder();
 
 	/**
 	 * Construct.
@@ -58,32 +87,42 @@ class StoredResponsesMap extends MostRecentlyUsedMap<String, Object>
 	 */
 	public StoredResponsesMap(int maxEntries, Duration lifetime)
 	{
-		super(maxEntries);
-
-		this.lifetime = lifetime;
+		this(maxEntries, Bytes.bytes(Long.MAX_VALUE), lifetime);
 	}
 
-	@Override
-	protected synchronized boolean removeEldestEntry(java.util.Map.Entry<String, Object> eldest)
+	/**
+	 * Construct.
+	 * 
+	 * @param maxEntries
+	 *            how much entries this map can contain
+	 * @param maxSize
+	 *            the maximum total size of the buffered content of the responses
+	 * @param lifetime
+	 *            the duration of time to keep an entry in the map before considering it expired
+	 */
+	public StoredResponsesMap(int maxEntries, Bytes maxSize, Duration lifetime)
 	{
-		boolean removed = super.removeEldestEntry(eldest);
-		if (removed == false)
+		Args.withinRange(1, Integer.MAX_VALUE, maxEntries, "maxEntries");
+		Args.notNull(maxSize, "maxSize");
+		this.lifetime = Args.notNull(lifetime, "lifetime").getMilliseconds();
+
+		int shardEntries = (maxEntries + SHARD_COUNT - 1) / SHARD_COUNT;
+		long shardSize = Math.max(1, maxSize.bytes() / SHARD_COUNT);
+		for (int i = 0; i < SHARD_COUNT; i++)
 		{
-			Value value = (Value)eldest.getValue();
-			if (value != null)
-			{
-				Duration elapsedTime = Time.now().subtract(value.creationTime);
-				if (lifetime.lessThanOrEqual(elapsedTime))
-				{
-					removedValue = value.response;
-					removed = true;
-				}
-			}
+			shards[i] = new Shard(shardEntries, shardSize);
 		}
-		return removed;
 	}
 
-	@Override
+	/**
+	 * Stores a response.
+	 * 
+	 * @param key
+	 *            the key
+	 * @param bufferedResponse
+	 *            the {@link BufferedWebResponse}
+	 * @return the previous response stored with the key, if any
+	 */
 	public BufferedWebResponse put(String key, Object bufferedResponse)
 	{
 		if (!(bufferedResponse instanceof BufferedWebResponse))
@@ -92,59 +131,251 @@ class StoredResponsesMap extends MostRecentlyUsedMap<String, Object>
 				" can store only instances of " + BufferedWebResponse.class.getSimpleName());
 		}
 
-		Value value = new Value();
-		value.creationTime = Time.now();
-		value.response = (BufferedWebResponse)bufferedResponse;
+		long now = System.currentTimeMillis();
+		Value value = new Value((BufferedWebResponse)bufferedResponse, now);
+		Value oldValue = shard(key).put(key, value, now);
 
-		Value oldValue;
-		synchronized (this)
+		return oldValue != null ? oldValue.response : null;
+	}
+
+	/**
+	 * Gets a stored response.
+	 * 
+	 * @param key
+	 *            the key
+	 * @return the response, {@code null} if there is none or it has expired
+	 */
+	public BufferedWebResponse get(Object key)
+	{
+		Value value = shard(key).get(key, System.currentTimeMillis(), false);
+		return count(value);
+	}
+
+	/**
+	 * Removes a stored response.
+	 * 
+	 * @param key
+	 *            the key
+	 * @return the removed response, {@code null} if there is none or it has expired
+	 */
+	public BufferedWebResponse remove(Object key)
+	{
+		Value value = shard(key).get(key, System.currentTimeMillis(), true);
+		return count(value);
+	}
+
+	/**
+	 * @param key
+	 *            the key
+	 * @return whether a response is stored with the key and has not expired
+	 */
+	public boolean containsKey(Object key)
+	{
+		return shard(key).containsKey(key, System.currentTimeMillis());
+	}
+
+	/**
+	 * Removes the expired responses and returns the number of the remaining ones.
+	 * 
+	 * @return the number of stored responses
+	 */
+	public int size()
+	{
+		long now = System.currentTimeMillis();
+		int size = 0;
+		for (Shard shard : shards)
 		{
-			oldValue = (Value)super.put(key, value);
+			size += shard.expunge(now);
 		}
+		return size;
+	}
 
-		return oldValue != null ? oldValue.response : null;
+	@Override
+	public void storeResponse(final String key, final BufferedWebResponse response)
+	{
+		put(key, response);
 	}
 
 	@Override
-	public BufferedWebResponse get(Object key)
+	public BufferedWebResponse getAndRemoveResponse(final String key)
+	{
+		return remove(key);
+	}
+
+	@Override
+	public boolean hasResponse(final String key)
+	{
+		return containsKey(key);
+	}
+
+	@Override
+	public void destroy()
+	{
+		for (Shard shard : shards)
+		{
+			shard.clear();
+		}
+	}
+
+	@Override
+	public long getHits()
 	{
-		BufferedWebResponse result = null;
-		Value value;
-		synchronized (this)
+		return hits.sum();
+	}
+
+	@Override
+	public long getMisses()
+	{
+		return misses.sum();
+	}
+
+	/**
+	 * @return the number of responses removed because they expired
+	 */
+	public long getExpirations()
+	{
+		return expirations.sum();
+	}
+
+	/**
+	 * @return the number of responses removed to make room for other responses
+	 */
+	public long getEvictions()
+	{
+		return evictions.sum();
+	}
+
+	private Shard shard(final Object key)
+	{
+		int hash = key.hashCode();
+		hash ^= hash >>> 16;
+		return shards[hash & (SHARD_COUNT - 1)];
+	}
+
+	private BufferedWebResponse count(final Value value)
+	{
+		if (value == null)
+		{
+			misses.increment();
+			return null;
+		}
+		hits.increment();
+		return value.response;
+	}
+
+	private boolean isExpired(final Value value, final long now)
+	{
+		return now - value.creationTime >= lifetime;
+	}
+
+	/**
+	 * A part of the entries, in the least recently used order.
+	 */
+	private class Shard
+	{
+		private final int maxEntries;
+
+		private final long maxSize;
+
+		private final LinkedHashMap<Object, Value> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+		private long size;
+
+		private Shard(final int maxEntries, final long maxSize)
 		{
-			value = (Value)super.get(key);
+			this.maxEntries = maxEntries;
+			this.maxSize = maxSize;
 		}
-		if (value != null)
+
+		private synchronized Value put(final Object key, final Value value, final long now)
 		{
-			Duration elapsedTime = Time.now().subtract(value.creationTime);
-			if (lifetime.greaterThan(elapsedTime))
+			Value oldValue = entries.put(key, value);
+			if (oldValue != null)
 			{
-				result = value.response;
+				size -= oldValue.size;
 			}
-			else
+			size += value.size;
+
+			// remove the least recently used entries while expired or over the limits
+			Iterator<Value> iterator = entries.values().iterator();
+			while (iterator.hasNext())
 			{
-				// expired, remove it
-				remove(key);
+				Value eldest = iterator.next();
+				if (eldest == value)
+				{
+					break;
+				}
+				else if (isExpired(eldest, now))
+				{
+					expirations.increment();
+				}
+				else if (entries.size() > maxEntries || size > maxSize)
+				{
+					evictions.increment();
+				}
+				else
+				{
+					break;
+				}
+				iterator.remove();
+				size -= eldest.size;
 			}
+
+			return oldValue;
 		}
-		return result;
-	}
 
-	@Override
-	public BufferedWebResponse remove(Object key)
-	{
-		Value removedValue;
-		synchronized (this)
+		private synchronized Value get(final Object key, final long now, final boolean remove)
+		{
+			Value value = remove ? entries.remove(key) : entries.get(key);
+			if (value == null)
+			{
+				return null;
+			}
+
+			if (isExpired(value, now))
+			{
+				if (remove == false)
+				{
+					entries.remove(key);
+				}
+				size -= value.size;
+				expirations.increment();
+				return null;
+			}
+
+			if (remove)
+			{
+				size -= value.size;
+			}
+			return value;
+		}
+
+		private synchronized boolean containsKey(final Object key, final long now)
 		{
-			removedValue = (Value)super.remove(key);
+			Value value = entries.get(key);
+			return value != null && isExpired(value, now) == false;
 		}
 
-		return removedValue != null ? removedValue.response : null;
-	}
+		private synchronized void clear()
+		{
+			entries.clear();
+			size = 0;
+		}
 
-	@Override
-	public void putAll(Map<? extends String, ?> m)
-	{
-		throw new UnsupportedOperationException();
+		private synchronized int expunge(final long now)
+		{
+			Iterator<Value> iterator = entries.values().iterator();
+			while (iterator.hasNext())
+			{
+				Value value = iterator.next();
+				if (isExpired(value, now))
+				{
+					iterator.remove();
+					size -= value.size;
+					expirations.increment();
+				}
+			}
+			return entries.size();
+		}
 	}
 }
@@ -75,6 +75,7 @@ import org.apache.wicket.util.file.FileCleaner;
 import org.apache.wicket.util.file.IFileCleaner;
 import org.apache.wicket.util.file.Path;
 import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
 import org.apache.wicket.util.lang.PackageName;
 import org.apache.wicket.util.string.Strings;
 import org.apache.wicket.util.time.Duration;
@@ -706,6 +707,8 @@ public abstract class WebApplication extends Application
 			fileCleaner.destroy();
 		}
 
+		bufferedResponseStore.destroy();
+
 		super.internalDestroy();
 	}
 
@@ -959,11 +962,48 @@ public abstract class WebApplication extends Application
 	}
 
 	/*
-	 * Can contain at most 1000 responses and each entry can live at most one minute. For now there
-	 * is no need to configure these parameters externally.
+	 * By default can contain at most 1000 responses of together 100MB and each entry can live at
+	 * most one minute.
+	 */
+	private IBufferedResponseStore bufferedResponseStore = new StoredResponsesMap(1000,
+		Bytes.megabytes(100), Duration.seconds(60));
+
+	/**
+	 * @return the store for the buffered responses
+	 * @see org.apache.wicket.settings.RequestCycleSettings.RenderStrategy#REDIRECT_TO_BUFFER
+	 */
+	public final IBufferedResponseStore getBufferedResponseStore()
+	{
+		return bufferedResponseStore;
+	}
+
+	/**
+	 * Sets the store for the buffered responses, e.g. a {@link FileBufferedResponseStore} shared
+	 * by the nodes of a cluster without sticky sessions.
+	 * 
+	 * @param bufferedResponseStore
+	 *            the store
+	 * @return {@code this} object for chaining
+	 * @see org.apache.wicket.settings.RequestCycleSettings.RenderStrategy#REDIRECT_TO_BUFFER
 	 */
-	private final StoredResponsesMap storedResponses = new StoredResponsesMap(1000,
-		Duration.seconds(60));
+	public final WebApplication setBufferedResponseStore(
+		final IBufferedResponseStore bufferedResponseStore)
+	{
+		this.bufferedResponseStore = Args.notNull(bufferedResponseStore, "bufferedResponseStore");
+		return this;
+	}
+
+	/**
+	 * @return the buffered responses, e.g. to query their hits and expirations, or {@code null} if
+	 *         they are kept by another {@link IBufferedResponseStore}
+	 * @see #getBufferedResponseStore()
+	 * @see org.apache.wicket.settings.RequestCycleSettings.RenderStrategy#REDIRECT_TO_BUFFER
+	 */
+	public final StoredResponsesMap getStoredResponses()
+	{
+		return bufferedResponseStore instanceof StoredResponsesMap
+			? (StoredResponsesMap)bufferedResponseStore : null;
+	}
 
 	/**
 	 * 
@@ -974,7 +1014,7 @@ public abstract class WebApplication extends Application
 	public boolean hasBufferedResponse(String sessionId, Url url)
 	{
 		String key = sessionId + url.toString();
-		return storedResponses.containsKey(key);
+		return bufferedResponseStore.hasResponse(key);
 	}
 
 	/**
@@ -988,7 +1028,7 @@ public abstract class WebApplication extends Application
 	public BufferedWebResponse getAndRemoveBufferedResponse(String sessionId, Url url)
 	{
 		String key = sessionId + url.toString();
-		return storedResponses.remove(key);
+		return bufferedResponseStore.getAndRemoveResponse(key);
 	}
 
 	/**
@@ -1007,8 +1047,11 @@ public abstract class WebApplication extends Application
 			return;
 		}
 
+		// the response is written by a following request
+		response.retainText();
+
 		String key = sessionId + url.toString();
-		storedResponses.put(key, response);
+		bufferedResponseStore.storeResponse(key, response);
 	}
 
 	@Override
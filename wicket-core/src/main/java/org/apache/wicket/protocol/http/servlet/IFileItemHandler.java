@@ -0,0 +1,40 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.protocol.http.servlet;
+
+import java.io.IOException;
+
+import org.apache.commons.fileupload.FileItem;
+
+/**
+ * Receives the uploaded files of a multipart request while the request is parsed.
+ * 
+ * @see MultipartServletWebRequest#parseFileParts(IFileItemHandler)
+ */
+public interface IFileItemHandler
+{
+	/**
+	 * Called for each uploaded file. If the request is streamed, the
+	 * {@link FileItem#getInputStream() input stream} of the item reads directly from the request
+	 * and can be read only until this method returns.
+	 * 
+	 * @param item
+	 *            the uploaded file
+	 * @throws IOException
+	 */
+	void onFileItem(FileItem item) throws IOException;
+}
@@ -16,6 +16,7 @@
  */
 package org.apache.wicket.protocol.http.servlet;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
@@ -80,6 +81,41 @@ public abstract class MultipartServletWebRequest extends ServletWebRequest
 	 */
 	public abstract void parseFileParts() throws FileUploadException;
 
+	/**
+	 * Parses the multipart body of the request and passes each uploaded file to the given handler.
+	 * Implementations may stream the files to the handler instead of storing them, see
+	 * {@link IFileItemHandler#onFileItem(FileItem)}.
+	 * <p>
+	 * By default the files are parsed with {@link #parseFileParts()} and passed to the handler
+	 * afterwards.
+	 * </p>
+	 * 
+	 * @param handler
+	 *            the handler of the uploaded files
+	 * @throws FileUploadException
+	 */
+	public void parseFileParts(IFileItemHandler handler) throws FileUploadException
+	{
+		Args.notNull(handler, "handler");
+
+		parseFileParts();
+
+		try
+		{
+			for (List<FileItem> items : getFiles().values())
+			{
+				for (FileItem item : items)
+				{
+					handler.onFileItem(item);
+				}
+			}
+		}
+		catch (IOException e)
+		{
+			throw new FileUploadException(e.getMessage(), e);
+		}
+	}
+
 	@Override
 	public ServletWebRequest cloneWithUrl(Url url)
 	{
@@ -91,6 +127,12 @@ public abstract class MultipartServletWebRequest extends ServletWebRequest
 				MultipartServletWebRequest.this.parseFileParts();
 			}
 
+			@Override
+			public void parseFileParts(IFileItemHandler handler) throws FileUploadException
+			{
+				MultipartServletWebRequest.this.parseFileParts(handler);
+			}
+
 			@Override
 			public List<FileItem> getFile(String fieldName)
 			{
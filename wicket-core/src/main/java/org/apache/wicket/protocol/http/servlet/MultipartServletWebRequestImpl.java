@@ -31,11 +31,14 @@ import javax.servlet.http.Part;
 
 import org.apache.commons.fileupload.FileItem;
 import org.apache.commons.fileupload.FileItemFactory;
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
 import org.apache.commons.fileupload.FileUploadBase;
 import org.apache.commons.fileupload.FileUploadException;
 import org.apache.commons.fileupload.disk.DiskFileItemFactory;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
 import org.apache.commons.fileupload.servlet.ServletRequestContext;
+import org.apache.commons.fileupload.util.Streams;
 import org.apache.commons.io.FileCleaningTracker;
 import org.apache.wicket.Application;
 import org.apache.wicket.WicketRuntimeException;
@@ -150,18 +153,7 @@ public class MultipartServletWebRequestImpl extends MultipartServletWebRequest
 	{
 		HttpServletRequest request = getContainerRequest();
 
-		// The encoding that will be used to decode the string parameters
-		// It should NOT be null at this point, but it may be
-		// especially if the older Servlet API 2.2 is used
-		String encoding = request.getCharacterEncoding();
-
-		// The encoding can also be null when using multipart/form-data encoded forms.
-		// In that case we use the [application-encoding] which we always demand using
-		// the attribute 'accept-encoding' in wicket forms.
-		if (encoding == null)
-		{
-			encoding = Application.get().getRequestCycleSettings().getResponseRequestEncoding();
-		}
+		String encoding = getEncoding();
 
 		FileUploadBase fileUpload = newFileUpload(encoding);
 
@@ -169,15 +161,7 @@ public class MultipartServletWebRequestImpl extends MultipartServletWebRequest
 
 		if (wantUploadProgressUpdates())
 		{
-			ServletRequestContext ctx = new ServletRequestContext(request)
-			{
-				@Override
-				public InputStream getInputStream() throws IOException
-				{
-					return new CountingInputStream(super.getInputStream());
-				}
-			};
-			totalBytes = request.getContentLength();
+			ServletRequestContext ctx = newCountingRequestContext();
 
 			onUploadStarted(totalBytes);
 			try
@@ -230,16 +214,157 @@ public class MultipartServletWebRequestImpl extends MultipartServletWebRequest
 			}
 			else
 			{
-				List<FileItem> fileItems = files.get(item.getFieldName());
-				if (fileItems == null)
+				addFile(item);
+			}
+		}
+	}
+
+	/**
+	 * Parses the multipart body of the request without storing the uploaded files: each file is
+	 * passed to the handler with an input stream reading directly from the request, in the order
+	 * of the parts in the request. Afterwards {@link #getFiles()} provides the files' metadata
+	 * only.
+	 * <p>
+	 * The size limits are enforced while the files are read, i.e. a file exceeding them fails
+	 * with an {@link java.io.IOException} in the handler, which is reported as a
+	 * {@link FileUploadException} by this method.
+	 * </p>
+	 */
+	@Override
+	public void parseFileParts(IFileItemHandler handler) throws FileUploadException
+	{
+		Args.notNull(handler, "handler");
+
+		HttpServletRequest request = getContainerRequest();
+
+		String encoding = getEncoding();
+
+		FileUploadBase fileUpload = newFileUpload(encoding);
+
+		boolean progress = wantUploadProgressUpdates();
+		ServletRequestContext ctx = progress ? newCountingRequestContext()
+			: new ServletRequestContext(request);
+
+		if (progress)
+		{
+			onUploadStarted(totalBytes);
+		}
+		try
+		{
+			boolean empty = true;
+			FileItemIterator iterator = fileUpload.getItemIterator(ctx);
+			while (iterator.hasNext())
+			{
+				empty = false;
+
+				FileItemStream item = iterator.next();
+				if (item.isFormField())
+				{
+					try (InputStream in = item.openStream())
+					{
+						addParameter(item.getFieldName(), (encoding != null)
+							? Streams.asString(in, encoding) : Streams.asString(in));
+					}
+				}
+				else
+				{
+					FileItem fileItem = new StreamedFileItem(item);
+					addFile(fileItem);
+					handler.onFileItem(fileItem);
+				}
+			}
+
+			if (empty && progress == false)
+			{
+				// fallback to Servlet 3.0 APIs
+				for (FileItem item : readServlet3Parts(request))
 				{
-					fileItems = new ArrayList<>();
-					files.put(item.getFieldName(), fileItems);
+					if (item.isFormField())
+					{
+						addParameter(item.getFieldName(), (encoding != null)
+							? item.getString(encoding) : item.getString());
+					}
+					else
+					{
+						addFile(item);
+						handler.onFileItem(item);
+					}
 				}
-				// Add to file list
-				fileItems.add(item);
 			}
 		}
+		catch (FileUploadBase.FileUploadIOException e)
+		{
+			// a size limit was exceeded
+			throw (FileUploadException)e.getCause();
+		}
+		catch (IOException e)
+		{
+			throw new FileUploadException(e.getMessage(), e);
+		}
+		finally
+		{
+			if (progress)
+			{
+				onUploadCompleted();
+			}
+		}
+	}
+
+	/**
+	 * @return the encoding that will be used to decode the string parameters
+	 */
+	private String getEncoding()
+	{
+		// The encoding that will be used to decode the string parameters
+		// It should NOT be null at this point, but it may be
+		// especially if the older Servlet API 2.2 is used
+		String encoding = getContainerRequest().getCharacterEncoding();
+
+		// The encoding can also be null when using multipart/form-data encoded forms.
+		// In that case we use the [application-encoding] which we always demand using
+		// the attribute 'accept-encoding' in wicket forms.
+		if (encoding == null)
+		{
+			encoding = Application.get().getRequestCycleSettings().getResponseRequestEncoding();
+		}
+		return encoding;
+	}
+
+	/**
+	 * @return a request context which reports the read bytes as upload updates
+	 */
+	private ServletRequestContext newCountingRequestContext()
+	{
+		HttpServletRequest request = getContainerRequest();
+
+		totalBytes = request.getContentLength();
+
+		return new ServletRequestContext(request)
+		{
+			@Override
+			public InputStream getInputStream() throws IOException
+			{
+				return new CountingInputStream(super.getInputStream());
+			}
+		};
+	}
+
+	/**
+	 * Adds a file to the files map
+	 * 
+	 * @param item
+	 *            the uploaded file
+	 */
+	private void addFile(final FileItem item)
+	{
+		List<FileItem> fileItems = files.get(item.getFieldName());
+		if (fileItems == null)
+		{
+			fileItems = new ArrayList<>();
+			files.put(item.getFieldName(), fileItems);
+		}
+		// Add to file list
+		fileItems.add(item);
 	}
 
 	/**
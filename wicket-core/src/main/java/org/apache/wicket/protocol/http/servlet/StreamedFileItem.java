@@ -0,0 +1,215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.protocol.http.servlet;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+
+import org.apache.commons.fileupload.FileItem;
+import org.apache.commons.fileupload.FileItemHeaders;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.util.io.IOUtils;
+import org.apache.wicket.util.lang.Args;
+
+/**
+ * An adapter of Apache Commons FileUpload's {@link FileItemStream} to {@link FileItem}. The
+ * content is not stored anywhere, it can be read only once and only while the request is at the
+ * position of this item.
+ * 
+ * @see MultipartServletWebRequestImpl#parseFileParts(IFileItemHandler)
+ */
+class StreamedFileItem implements FileItem
+{
+	/**
+	 * The adapted item
+	 */
+	private final FileItemStream item;
+
+	private InputStream inputStream;
+
+	/**
+	 * the number of bytes read so far
+	 */
+	private long size;
+
+	/**
+	 * Constructor
+	 */
+	StreamedFileItem(FileItemStream item)
+	{
+		Args.notNull(item, "item");
+		this.item = item;
+	}
+
+	@Override
+	public InputStream getInputStream() throws IOException
+	{
+		if (inputStream == null)
+		{
+			inputStream = new FilterInputStream(item.openStream())
+			{
+				@Override
+				public int read() throws IOException
+				{
+					int read = super.read();
+					size += (read < 0) ? 0 : 1;
+					return read;
+				}
+
+				@Override
+				public int read(byte[] b, int off, int len) throws IOException
+				{
+					int read = super.read(b, off, len);
+					size += (read < 0) ? 0 : read;
+					return read;
+				}
+
+				@Override
+				public long skip(long n) throws IOException
+				{
+					long skipped = super.skip(n);
+					size += skipped;
+					return skipped;
+				}
+			};
+		}
+		return inputStream;
+	}
+
+	@Override
+	public String getContentType()
+	{
+		return item.getContentType();
+	}
+
+	@Override
+	public String getName()
+	{
+		return item.getName();
+	}
+
+	@Override
+	public boolean isInMemory()
+	{
+		return false;
+	}
+
+	/**
+	 * @return the number of bytes read so far
+	 */
+	@Override
+	public long getSize()
+	{
+		return size;
+	}
+
+	@Override
+	public byte[] get()
+	{
+		try
+		{
+			return IOUtils.toByteArray(getInputStream());
+		}
+		catch (IOException iox)
+		{
+			throw new WicketRuntimeException("Could not read upload's input stream", iox);
+		}
+	}
+
+	@Override
+	public String getString(String encoding) throws UnsupportedEncodingException
+	{
+		byte[] bytes = get();
+		return new String(bytes, encoding);
+	}
+
+	@Override
+	public String getString()
+	{
+		try
+		{
+			return getString("UTF-8");
+		}
+		catch (UnsupportedEncodingException uex)
+		{
+			throw new WicketRuntimeException("UTF-8 must be supported", uex);
+		}
+	}
+
+	@Override
+	public void write(File file) throws Exception
+	{
+		try (OutputStream out = new FileOutputStream(file))
+		{
+			IOUtils.copy(getInputStream(), out);
+		}
+	}
+
+	@Override
+	public void delete()
+	{
+		// nothing is stored
+	}
+
+	@Override
+	public String getFieldName()
+	{
+		return item.getFieldName();
+	}
+
+	@Override
+	public void setFieldName(String name)
+	{
+		throw new UnsupportedOperationException("setFieldName");
+	}
+
+	@Override
+	public boolean isFormField()
+	{
+		return item.isFormField();
+	}
+
+	@Override
+	public void setFormField(boolean state)
+	{
+		throw new UnsupportedOperationException("setFormField");
+	}
+
+	@Override
+	public OutputStream getOutputStream() throws IOException
+	{
+		throw new UnsupportedOperationException("getOutputStream");
+	}
+
+	@Override
+	public FileItemHeaders getHeaders()
+	{
+		return item.getHeaders();
+	}
+
+	@Override
+	public void setHeaders(FileItemHeaders headers)
+	{
+		throw new UnsupportedOperationException("setHeaders");
+	}
+}
@@ -16,6 +16,8 @@
  */
 package org.apache.wicket.request.cycle;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 import org.apache.wicket.Application;
@@ -49,8 +51,10 @@ import org.apache.wicket.request.mapper.parameter.PageParameters;
 import org.apache.wicket.request.resource.IResource;
 import org.apache.wicket.request.resource.ResourceReference;
 import org.apache.wicket.request.resource.caching.IStaticCacheableResource;
+import org.apache.wicket.response.RenderBufferPool;
 import org.apache.wicket.util.lang.Args;
 import org.apache.wicket.util.lang.Exceptions;
+import org.apache.wicket.util.string.AppendingStringBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -123,6 +127,12 @@ public class RequestCycle implements IRequestCycle, IEventSink
 
 	private Response activeResponse;
 
+	/** the pool of the borrowed render buffers */
+	private RenderBufferPool renderBufferPool;
+
+	/** the render buffers to return to the pool on detach */
+	private List<AppendingStringBuffer> renderBuffers;
+
 	/**
 	 * Construct.
 	 * 
@@ -623,6 +633,8 @@ public class RequestCycle implements IRequestCycle, IEventSink
 
 	private void onInternalDetach()
 	{
+		releaseRenderBuffers();
+
 		if (Session.exists())
 		{
 			Session.get().internalDetach();
@@ -825,6 +837,70 @@ public class RequestCycle implements IRequestCycle, IEventSink
 		return current;
 	}
 
+	/**
+	 * Creates a buffer for rendering. If a render buffer pool is enabled, the buffer is taken from
+	 * the pool and returned to it when this request cycle detaches, so it must not be used after
+	 * this request.
+	 * 
+	 * @param initialCapacity
+	 *            the initial capacity of a new buffer
+	 * @return an empty buffer
+	 * @see org.apache.wicket.settings.RequestCycleSettings#setRenderBufferPoolSize(int)
+	 */
+	public AppendingStringBuffer newRenderBuffer(final int initialCapacity)
+	{
+		if (renderBufferPool == null && Application.exists())
+		{
+			renderBufferPool = Application.get().getRequestCycleSettings().getRenderBufferPool();
+		}
+		if (renderBufferPool == null)
+		{
+			return new AppendingStringBuffer(initialCapacity);
+		}
+
+		AppendingStringBuffer buffer = renderBufferPool.borrow(initialCapacity);
+		if (renderBuffers == null)
+		{
+			renderBuffers = new ArrayList<>();
+		}
+		renderBuffers.add(buffer);
+		return buffer;
+	}
+
+	/**
+	 * Keeps a buffer created by {@link #newRenderBuffer(int)} from being returned to the pool,
+	 * because its content is still needed after this request.
+	 * 
+	 * @param buffer
+	 *            the buffer
+	 */
+	public void retainRenderBuffer(final CharSequence buffer)
+	{
+		if (renderBuffers != null)
+		{
+			for (int i = renderBuffers.size() - 1; i >= 0; i--)
+			{
+				if (renderBuffers.get(i) == buffer)
+				{
+					renderBuffers.remove(i);
+					break;
+				}
+			}
+		}
+	}
+
+	private void releaseRenderBuffers()
+	{
+		if (renderBuffers != null)
+		{
+			for (AppendingStringBuffer buffer : renderBuffers)
+			{
+				renderBufferPool.release(buffer);
+			}
+			renderBuffers = null;
+		}
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -16,6 +16,7 @@
  */
 package org.apache.wicket.request.handler.render;
 
+import java.nio.charset.Charset;
 import java.util.List;
 
 import org.apache.wicket.Application;
@@ -25,6 +26,7 @@ import org.apache.wicket.core.request.handler.RenderPageRequestHandler.RedirectP
 import org.apache.wicket.feedback.FeedbackCollector;
 import org.apache.wicket.feedback.FeedbackMessage;
 import org.apache.wicket.protocol.http.BufferedWebResponse;
+import org.apache.wicket.protocol.http.EncodingBufferedWebResponse;
 import org.apache.wicket.protocol.http.WebApplication;
 import org.apache.wicket.request.IRequestHandler;
 import org.apache.wicket.request.Request;
@@ -33,7 +35,9 @@ import org.apache.wicket.request.component.IRequestablePage;
 import org.apache.wicket.request.cycle.RequestCycle;
 import org.apache.wicket.request.http.WebRequest;
 import org.apache.wicket.request.http.WebResponse;
+import org.apache.wicket.settings.RequestCycleSettings;
 import org.apache.wicket.util.lang.Objects;
+import org.apache.wicket.util.string.Strings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -87,6 +91,27 @@ public class WebPageRenderer extends PageRenderer
 		WebApplication.get().storeBufferedResponse(getSessionId(), url, response);
 	}
 	
+	/**
+	 * Creates the response to render the page into. The page is rendered into bytes if enabled and
+	 * no response filters are registered, since these work on the text of the page.
+	 * 
+	 * @param originalResponse
+	 *            the response to write the page to
+	 * @return the buffered response
+	 * @see RequestCycleSettings#setRenderPagesAsBytes(boolean)
+	 */
+	protected BufferedWebResponse newBufferedWebResponse(final WebResponse originalResponse)
+	{
+		RequestCycleSettings settings = Application.get().getRequestCycleSettings();
+		String encoding = settings.getResponseRequestEncoding();
+		if (settings.getRenderPagesAsBytes() && settings.getResponseFilters() == null &&
+			Strings.isEmpty(encoding) == false)
+		{
+			return new EncodingBufferedWebResponse(originalResponse, Charset.forName(encoding));
+		}
+		return new BufferedWebResponse(originalResponse);
+	}
+
 	/**
 	 * Renders page to a {@link BufferedWebResponse}. All URLs in page will be rendered relative to
 	 * <code>targetUrl</code>
@@ -113,7 +138,7 @@ public class WebPageRenderer extends PageRenderer
 		final WebResponse originalResponse = (WebResponse)requestCycle.getResponse();
 
 		// buffered web response for page
-		BufferedWebResponse response = new BufferedWebResponse(originalResponse);
+		BufferedWebResponse response = newBufferedWebResponse(originalResponse);
 
 		// keep the original base URL
 		Url originalBaseUrl = requestCycle.getUrlRenderer().setBaseUrl(targetUrl);
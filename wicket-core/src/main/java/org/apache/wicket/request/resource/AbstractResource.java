@@ -16,8 +16,12 @@
  */
 package org.apache.wicket.request.resource;
 
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -26,6 +30,7 @@ import javax.servlet.http.HttpServletResponse;
 import org.apache.wicket.Application;
 import org.apache.wicket.MetaDataKey;
 import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.protocol.http.BufferedWebResponse;
 import org.apache.wicket.request.HttpHeaderCollection;
 import org.apache.wicket.request.Request;
 import org.apache.wicket.request.Response;
@@ -138,6 +143,7 @@ public abstract class AbstractResource implements IResource
 		private String contentRange = null;
 		private ContentRangeType contentRangeType = null;
 		private String textEncoding;
+		private String contentEncoding;
 		private long contentLength = -1;
 		private Time lastModified = null;
 		private WriteCallback writeCallback;
@@ -372,6 +378,28 @@ public abstract class AbstractResource implements IResource
 			return textEncoding;
 		}
 
+		/**
+		 * Sets the content coding of the data, e.g. {@code gzip} when it is sent compressed.
+		 * 
+		 * @param contentEncoding
+		 *            the content coding, {@code null} if the data is not encoded
+		 *
+		 * @return {@code this}, for chaining.
+		 */
+		public ResourceResponse setContentEncoding(String contentEncoding)
+		{
+			this.contentEncoding = contentEncoding;
+			return this;
+		}
+
+		/**
+		 * @return content coding of the data
+		 */
+		public String getContentEncoding()
+		{
+			return contentEncoding;
+		}
+
 		/**
 		 * Sets the content length (in bytes) of the data. Content length is optional but it's
 		 * recommended to set it so that the browser can show download progress.
@@ -825,7 +853,14 @@ public abstract class AbstractResource implements IResource
 				}
 			}
 
-			// 5. Accept Range
+			// 5. Content Encoding
+			String contentEncoding = resourceResponse.getContentEncoding();
+			if (contentEncoding != null)
+			{
+				webResponse.setHeader("Content-Encoding", contentEncoding);
+			}
+
+			// 6. Accept Range
 			ContentRangeType acceptRange = resourceResponse.getAcceptRange();
 			if (acceptRange != null)
 			{
@@ -835,7 +870,7 @@ public abstract class AbstractResource implements IResource
 			long contentLength = resourceResponse.getContentLength();
 			boolean contentRangeApplied = false;
 
-			// 6. Content Range
+			// 7. Content Range
 			// for more information take a look here:
 			// http://stackoverflow.com/questions/8293687/sample-http-range-request-session
 			// if the content range header has been set directly
@@ -857,7 +892,7 @@ public abstract class AbstractResource implements IResource
 				}
 			}
 
-			// 7. Content Length
+			// 8. Content Length
 			if (contentLength != -1 && !contentRangeApplied)
 			{
 				webResponse.setContentLength(contentLength);
@@ -949,8 +984,88 @@ public abstract class AbstractResource implements IResource
 		 */
 		protected final void writeStream(Attributes attributes, InputStream stream) throws IOException
 		{
+			if (stream instanceof FileInputStream)
+			{
+				WritableByteChannel target = getContainerChannel(attributes);
+				if (target != null)
+				{
+					FileChannel channel = ((FileInputStream)stream).getChannel();
+					long position = channel.position();
+					writeChannel(target, channel, position, channel.size() - position);
+					return;
+				}
+			}
+
 			final Response response = attributes.getResponse();
 			Streams.copy(stream, response.getOutputStream());
 		}
+
+		/**
+		 * Returns the output stream of the servlet container if it is a
+		 * {@link WritableByteChannel}, so that files can be transferred to it by the operating
+		 * system. The headers buffered by Wicket are sent before.
+		 * 
+		 * @param attributes
+		 *            request attributes
+		 * @return the channel, or {@code null} if the data has to be written to the response of
+		 *         the attributes
+		 */
+		protected final WritableByteChannel getContainerChannel(Attributes attributes)
+			throws IOException
+		{
+			Response response = attributes.getResponse();
+			if (response instanceof WebResponse == false ||
+				response instanceof BufferedWebResponse)
+			{
+				// data written to the container would overtake the buffered one
+				return null;
+			}
+
+			WebResponse webResponse = (WebResponse)response;
+			Object containerResponse = webResponse.getContainerResponse();
+			if (containerResponse instanceof HttpServletResponse == false)
+			{
+				return null;
+			}
+
+			OutputStream outputStream = ((HttpServletResponse)containerResponse).getOutputStream();
+			if (outputStream instanceof WritableByteChannel == false)
+			{
+				return null;
+			}
+
+			webResponse.flush();
+			return (WritableByteChannel)outputStream;
+		}
+
+		/**
+		 * Transfers a part of a file to the given channel without copying it through a buffer on
+		 * the heap. The position of the file channel is moved past the written part.
+		 * 
+		 * @param target
+		 *            the channel returned by {@link #getContainerChannel(Attributes)}
+		 * @param channel
+		 *            the channel of the file
+		 * @param position
+		 *            the position of the part in the file
+		 * @param count
+		 *            the maximum number of bytes to write, less are written at the end of the file
+		 */
+		protected final void writeChannel(WritableByteChannel target, FileChannel channel,
+			long position, long count) throws IOException
+		{
+			long end = position + count;
+			while (position < end)
+			{
+				long transferred = channel.transferTo(position, end - position, target);
+				if (transferred <= 0)
+				{
+					// end of file
+					break;
+				}
+				position += transferred;
+			}
+			channel.position(position);
+		}
 	}
 }
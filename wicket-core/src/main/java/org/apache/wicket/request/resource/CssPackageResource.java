@@ -102,6 +102,13 @@ public class CssPackageResource extends PackageResource
 		}
 	}
 
+	@Override
+	protected boolean isProcessingResponse()
+	{
+		return (getCompressor() != null && getCompress()) ||
+			getProcessResponseDeclarer(getClass()) != CssPackageResource.class;
+	}
+
 	/**
 	 * Gets the {@link ICssCompressor} to be used. By default returns the configured compressor on
 	 * application level, but can be overriden by the user application to provide compressor
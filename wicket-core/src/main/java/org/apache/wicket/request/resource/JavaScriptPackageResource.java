@@ -103,6 +103,13 @@ public class JavaScriptPackageResource extends PackageResource
 		}
 	}
 
+	@Override
+	protected boolean isProcessingResponse()
+	{
+		return (getCompressor() != null && getCompress()) ||
+			getProcessResponseDeclarer(getClass()) != JavaScriptPackageResource.class;
+	}
+
 	/**
 	 * Gets the {@link IJavaScriptCompressor} to be used. By default returns the configured
 	 * compressor on application level, but can be overriden by the user application to provide
@@ -17,11 +17,14 @@
 package org.apache.wicket.request.resource;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Locale;
 import java.util.Objects;
+import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.http.HttpServletResponse;
 
@@ -35,17 +38,22 @@ import org.apache.wicket.markup.html.IPackageResourceGuard;
 import org.apache.wicket.mock.MockWebRequest;
 import org.apache.wicket.request.Url;
 import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.request.http.WebRequest;
 import org.apache.wicket.request.resource.caching.IStaticCacheableResource;
 import org.apache.wicket.response.StringResponse;
 import org.apache.wicket.util.io.IOUtils;
+import org.apache.wicket.util.lang.Bytes;
 import org.apache.wicket.util.lang.Classes;
 import org.apache.wicket.util.lang.Packages;
+import org.apache.wicket.util.listener.IChangeListener;
 import org.apache.wicket.util.resource.IFixedLocationResourceStream;
 import org.apache.wicket.util.resource.IResourceStream;
 import org.apache.wicket.util.resource.ResourceStreamNotFoundException;
 import org.apache.wicket.util.resource.ResourceStreamWrapper;
 import org.apache.wicket.util.string.Strings;
 import org.apache.wicket.util.time.Time;
+import org.apache.wicket.util.watch.IModifiable;
+import org.apache.wicket.util.watch.IModificationWatcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -75,8 +83,33 @@ public class PackageResource extends AbstractResource implements IStaticCacheabl
 {
 	private static final Logger log = LoggerFactory.getLogger(PackageResource.class);
 
+	/** the content codings of compressed resources, in order of preference, with their extension */
+	private static final String[][] CONTENT_CODINGS = { { "br", "br" }, { "gzip", "gz" } };
+
 	private static final long serialVersionUID = 1L;
 
+	/** resource class -> the most specific class declaring processResponse() */
+	private static final ClassValue<Class<?>> PROCESS_RESPONSE_DECLARERS = new ClassValue<Class<?>>()
+	{
+		@Override
+		protected Class<?> computeValue(final Class<?> type)
+		{
+			for (Class<?> cls = type; cls != PackageResource.class; cls = cls.getSuperclass())
+			{
+				try
+				{
+					cls.getDeclaredMethod("processResponse", Attributes.class, byte[].class);
+					return cls;
+				}
+				catch (NoSuchMethodException e)
+				{
+					// not overridden here
+				}
+			}
+			return PackageResource.class;
+		}
+	};
+
 	/**
 	 * Exception thrown when the creation of a package resource is not allowed.
 	 */
@@ -337,10 +370,14 @@ public class PackageResource extends AbstractResource implements IStaticCacheabl
 			// supports accept range
 			resourceResponse.setAcceptRange(ContentRangeType.BYTES);
 
+			// send a compressed version if the client accepts it, ranges refer to it then
+			final IResourceStream dataStream = negotiateContentEncoding(attributes, resourceStream,
+				contentType, resourceResponse);
+
 			try
 			{
 				// read resource data to get the content length
-				InputStream inputStream = resourceStream.getInputStream();
+				InputStream inputStream = dataStream.getInputStream();
 
 				byte[] bytes = null;
 				// send Content-Length header
@@ -351,7 +388,7 @@ public class PackageResource extends AbstractResource implements IStaticCacheabl
 				}
 				else
 				{
-					resourceResponse.setContentLength(resourceStream.length().bytes());
+					resourceResponse.setContentLength(dataStream.length().bytes());
 				}
 
 				// get content range information
@@ -385,6 +422,10 @@ public class PackageResource extends AbstractResource implements IStaticCacheabl
 					if (readBuffered)
 					{
 						IOUtils.close(resourceStream);
+						if (dataStream != resourceStream)
+						{
+							IOUtils.close(dataStream);
+						}
 					}
 				}
 				catch (IOException e)
@@ -411,6 +452,28 @@ public class PackageResource extends AbstractResource implements IStaticCacheabl
 		return original;
 	}
 
+	/**
+	 * Tells whether {@link #processResponse(Attributes, byte[])} may change the content of the
+	 * resource. Compressed versions next to the resource, e.g. {@code x.js.gz}, are not sent for
+	 * processed resources, because they would not contain the processed content.
+	 * 
+	 * @return {@code true} if {@link #processResponse(Attributes, byte[])} is overridden
+	 */
+	protected boolean isProcessingResponse()
+	{
+		return getProcessResponseDeclarer(getClass()) != PackageResource.class;
+	}
+
+	/**
+	 * @param resourceClass
+	 *            a class of package resources
+	 * @return the most specific class declaring {@link #processResponse(Attributes, byte[])}
+	 */
+	static Class<?> getProcessResponseDeclarer(final Class<?> resourceClass)
+	{
+		return PROCESS_RESPONSE_DECLARERS.get(resourceClass);
+	}
+
 	/**
 	 * send resource specific error message and write log entry
 	 * 
@@ -435,6 +498,143 @@ public class PackageResource extends AbstractResource implements IStaticCacheabl
 		return resourceResponse;
 	}
 
+	/**
+	 * Looks for a compressed version of the resource which is accepted by the client.
+	 * 
+	 * @param attributes
+	 *            the request attributes
+	 * @param resourceStream
+	 *            the resource stream
+	 * @param contentType
+	 *            the content type of the resource
+	 * @param resourceResponse
+	 *            the response to set the content coding for
+	 * @return the stream to send, the given resource stream if no compressed version is accepted
+	 */
+	private IResourceStream negotiateContentEncoding(final Attributes attributes,
+		final IResourceStream resourceStream, final String contentType,
+		final ResourceResponse resourceResponse)
+	{
+		if ((resourceStream instanceof ProcessingResourceStream) == false ||
+			Application.exists() == false ||
+			Application.get().getResourceSettings().getUsePrecompressedResources() == false)
+		{
+			return resourceStream;
+		}
+		final ProcessingResourceStream processingStream = (ProcessingResourceStream)resourceStream;
+
+		String acceptEncoding = null;
+		if (attributes.getRequest() instanceof WebRequest)
+		{
+			acceptEncoding = ((WebRequest)attributes.getRequest()).getHeader("Accept-Encoding");
+		}
+
+		// the compressed versions next to the resource do not contain the processed content
+		final boolean processed = isProcessingResponse();
+
+		IResourceStream encodedStream = null;
+		String contentEncoding = null;
+		float bestQuality = 0;
+		boolean compressed = false;
+		for (String[] coding : CONTENT_CODINGS)
+		{
+			IResourceStream candidate = processed ? null
+				: processingStream.locateCompressed(coding[1]);
+			if (candidate == null && "gzip".equals(coding[0]) && isCompressible(contentType) &&
+				getProcessedResourceCache() != null)
+			{
+				candidate = new CompressingResourceStream(processingStream);
+			}
+
+			if (candidate != null)
+			{
+				compressed = true;
+				float quality = getQuality(acceptEncoding, coding[0]);
+				if (quality > bestQuality)
+				{
+					encodedStream = candidate;
+					contentEncoding = coding[0];
+					bestQuality = quality;
+				}
+			}
+		}
+
+		if (compressed)
+		{
+			// the identity response varies too
+			resourceResponse.getHeaders().addHeader("Vary", "Accept-Encoding");
+		}
+		if (encodedStream == null)
+		{
+			return resourceStream;
+		}
+		resourceResponse.setContentEncoding(contentEncoding);
+		return encodedStream;
+	}
+
+	/**
+	 * @param contentType
+	 *            the content type of a resource
+	 * @return whether the resource is worth compressing
+	 */
+	private static boolean isCompressible(final String contentType)
+	{
+		return contentType != null &&
+			(contentType.startsWith("text/") || contentType.contains("javascript") ||
+				contentType.contains("json") || contentType.contains("xml") ||
+				contentType.contains("svg"));
+	}
+
+	/**
+	 * Gets the quality value of a content coding in an {@code Accept-Encoding} header.
+	 * 
+	 * @param acceptEncoding
+	 *            the value of the header, may be {@code null}
+	 * @param coding
+	 *            the content coding
+	 * @return the quality value, {@code 0} if the content coding is not acceptable
+	 */
+	static float getQuality(final String acceptEncoding, final String coding)
+	{
+		if (acceptEncoding == null)
+		{
+			return 0;
+		}
+
+		float wildcardQuality = 0;
+		for (String item : Strings.split(acceptEncoding, ','))
+		{
+			String[] parts = Strings.split(item, ';');
+			float quality = 1;
+			for (int i = 1; i < parts.length; i++)
+			{
+				String parameter = parts[i].trim();
+				if (parameter.startsWith("q="))
+				{
+					try
+					{
+						quality = Float.parseFloat(parameter.substring(2).trim());
+					}
+					catch (NumberFormatException e)
+					{
+						quality = 0;
+					}
+				}
+			}
+
+			String name = parts[0].trim();
+			if (name.equalsIgnoreCase(coding))
+			{
+				return quality;
+			}
+			else if ("*".equals(name))
+			{
+				wildcardQuality = quality;
+			}
+		}
+		return wildcardQuality;
+	}
+
 	/**
 	 * locate resource stream for current resource
 	 * 
@@ -500,7 +700,8 @@ public class PackageResource extends AbstractResource implements IStaticCacheabl
 
 		if (resourceStream != null)
 		{
-			resourceStream = new ProcessingResourceStream(resourceStream);
+			resourceStream = new ProcessingResourceStream(resourceStream, new CacheKey(scopeName,
+				absolutePath, locale, style, variation));
 		}
 		return resourceStream;
 	}
@@ -512,14 +713,32 @@ public class PackageResource extends AbstractResource implements IStaticCacheabl
 	{
 		private static final long serialVersionUID = 1L;
 
-		private ProcessingResourceStream(IResourceStream delegate)
+		private final CacheKey cacheKey;
+
+		private ProcessingResourceStream(IResourceStream delegate, CacheKey cacheKey)
 		{
 			super(delegate);
+			this.cacheKey = cacheKey;
 		}
 
 		@Override
 		public InputStream getInputStream() throws ResourceStreamNotFoundException
 		{
+			final ProcessedResourceCache cache = getProcessedResourceCache();
+			long lastModified = 0;
+			if (cache != null)
+			{
+				Time time = lastModifiedTime();
+				lastModified = time != null ? time.getMilliseconds() : 0;
+
+				byte[] processedBytes = cache.get(PackageResource.this.getClass(), cacheKey,
+					lastModified);
+				if (processedBytes != null)
+				{
+					return new ByteArrayInputStream(processedBytes);
+				}
+			}
+
 			byte[] bytes = null;
 			InputStream inputStream = super.getInputStream();
 
@@ -553,6 +772,12 @@ public class PackageResource extends AbstractResource implements IStaticCacheabl
 			if (bytes != null)
 			{
 				byte[] processedBytes = processResponse(attributes, bytes);
+				if (cache != null)
+				{
+					cache.put(PackageResource.this.getClass(), cacheKey, lastModified,
+						processedBytes);
+					watch(cache);
+				}
 				return new ByteArrayInputStream(processedBytes);
 			}
 			else
@@ -560,6 +785,144 @@ public class PackageResource extends AbstractResource implements IStaticCacheabl
 				return inputStream;
 			}
 		}
+
+		/**
+		 * Looks for a compressed version of the located resource, e.g. {@code x_nl.min.js.gz} for
+		 * {@code x_nl.min.js}.
+		 * 
+		 * @param extension
+		 *            the extension of the compressed version
+		 * @return the compressed version or {@code null} if there is none
+		 */
+		private IResourceStream locateCompressed(final String extension)
+		{
+			String path = Strings.beforeLast(absolutePath, '.');
+			if ((getDelegate() instanceof IFixedLocationResourceStream) == false ||
+				Strings.isEmpty(path))
+			{
+				return null;
+			}
+			String location = ((IFixedLocationResourceStream)getDelegate()).locationAsString();
+			if (location == null)
+			{
+				return null;
+			}
+
+			IResourceStream compressed = Application.get()
+				.getResourceSettings()
+				.getResourceStreamLocator()
+				.locate(getScope(), path, cacheKey.style, cacheKey.variation, cacheKey.locale,
+					Strings.afterLast(absolutePath, '.') + '.' + extension, false);
+
+			// ignore the compressed version of another file, e.g. for a less specific locale
+			if (compressed instanceof IFixedLocationResourceStream &&
+				(location + '.' + extension).equals(
+					((IFixedLocationResourceStream)compressed).locationAsString()))
+			{
+				return compressed;
+			}
+			return null;
+		}
+
+		/**
+		 * Removes the processed content from the cache when the resource is modified, so that it
+		 * does not take up space until it is evicted. A resource is watched only once until it
+		 * gets modified.
+		 */
+		private void watch(final ProcessedResourceCache cache)
+		{
+			final IModificationWatcher watcher = Application.get()
+				.getResourceSettings()
+				.getResourceWatcher(true);
+			final Class<?> resourceClass = PackageResource.this.getClass();
+			if (watcher != null && cache.watch(resourceClass, cacheKey))
+			{
+				watcher.add(this, new IChangeListener<IModifiable>()
+				{
+					@Override
+					public void onChange(IModifiable modifiable)
+					{
+						watcher.remove(modifiable);
+						cache.unwatch(resourceClass, cacheKey);
+						cache.remove(resourceClass, cacheKey);
+					}
+				});
+			}
+		}
+	}
+
+	/**
+	 * An IResourceStream that compresses the processed content with gzip, once as long as the
+	 * compressed content is kept in the {@link ProcessedResourceCache}
+	 */
+	private class CompressingResourceStream extends ResourceStreamWrapper
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final ProcessingResourceStream processingStream;
+
+		private CompressingResourceStream(ProcessingResourceStream processingStream)
+		{
+			super(processingStream);
+			this.processingStream = processingStream;
+		}
+
+		@Override
+		public InputStream getInputStream() throws ResourceStreamNotFoundException
+		{
+			final ProcessedResourceCache cache = getProcessedResourceCache();
+			final Object key = Arrays.asList(processingStream.cacheKey, "gzip");
+			Time time = lastModifiedTime();
+			long lastModified = time != null ? time.getMilliseconds() : 0;
+
+			byte[] compressed = cache != null ? cache.get(PackageResource.this.getClass(), key,
+				lastModified) : null;
+			if (compressed == null)
+			{
+				InputStream inputStream = processingStream.getInputStream();
+				try
+				{
+					ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+					GZIPOutputStream gzip = new GZIPOutputStream(bytes);
+					IOUtils.copy(inputStream, gzip);
+					gzip.close();
+					compressed = bytes.toByteArray();
+				}
+				catch (IOException iox)
+				{
+					throw new WicketRuntimeException(iox);
+				}
+				finally
+				{
+					IOUtils.closeQuietly(inputStream);
+				}
+
+				if (cache != null)
+				{
+					cache.put(PackageResource.this.getClass(), key, lastModified, compressed);
+				}
+			}
+			return new ByteArrayInputStream(compressed);
+		}
+
+		@Override
+		public Bytes length()
+		{
+			// unknown before compressing
+			return null;
+		}
+	}
+
+	/**
+	 * @return the cache for the processed content, {@code null} if it should not be cached
+	 */
+	private ProcessedResourceCache getProcessedResourceCache()
+	{
+		if (readBuffered && isCachingEnabled() && Application.exists())
+		{
+			return Application.get().getResourceSettings().getProcessedResourceCache();
+		}
+		return null;
 	}
 
 	/**
@@ -16,9 +16,12 @@
  */
 package org.apache.wicket.request.resource;
 
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 
 import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.wicket.protocol.http.servlet.ResponseIOException;
@@ -31,7 +34,8 @@ import org.apache.wicket.util.lang.Args;
 /**
  * Used to read a part of an input stream and writes it to the output stream of the response taken
  * from attributes in {@link #writeData(org.apache.wicket.request.resource.IResource.Attributes)}
- * method.
+ * method. The part of a {@link FileInputStream} is transferred by its channel if the output stream
+ * of the container is a channel too.
  *
  * @author Tobias Soloschenko
  * @since 7.0.0
@@ -112,6 +116,16 @@ public class PartWriterCallback extends WriteCallback
 	{
 		try
 		{
+			if (inputStream instanceof FileInputStream)
+			{
+				WritableByteChannel target = getContainerChannel(attributes);
+				if (target != null)
+				{
+					writeFileData(target);
+					return;
+				}
+			}
+
 			OutputStream outputStream = attributes.getResponse().getOutputStream();
 			byte[] buffer = new byte[getBufferSize()];
 
@@ -176,10 +190,39 @@ public class PartWriterCallback extends WriteCallback
 			// org.apache.catalina.connector.ClientAbortException)
 			// we ignore this case
 		}
-		if (close)
+		finally
+		{
+			if (close)
+			{
+				IOUtils.close(inputStream);
+			}
+		}
+	}
+
+	/**
+	 * Transfers the data of a file
+	 *
+	 * @param target
+	 *            the output stream of the container
+	 * @throws IOException
+	 *             if something went wrong while writing the data to the output stream
+	 */
+	private void writeFileData(WritableByteChannel target) throws IOException
+	{
+		FileChannel channel = ((FileInputStream)inputStream).getChannel();
+		long position = channel.position();
+		long count = channel.size() - position;
+
+		if (startbyte != null || endbyte != null)
 		{
-			IOUtils.close(inputStream);
+			long start = startbyte != null ? startbyte : 0L;
+			long end = endbyte == null || endbyte == -1 ? contentLength : endbyte;
+
+			position += start;
+			count = (end - start) + 1;
 		}
+
+		writeChannel(target, channel, position, count);
 	}
 
 	/**
@@ -0,0 +1,256 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.resource;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Set;
+
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.util.lang.Objects;
+
+/**
+ * A cache for the processed content of {@link PackageResource}s, so that e.g. the compression of
+ * JavaScript and CSS files is done only once and not for every request.
+ * <p>
+ * The content is stored with the last modification time of the resource and is not used anymore
+ * once the resource has been modified. When the total size of the cached content exceeds the
+ * maximum size, the least recently used content is removed.
+ * </p>
+ * 
+ * @see org.apache.wicket.settings.ResourceSettings#setProcessedResourceCacheSize(Bytes)
+ */
+public class ProcessedResourceCache
+{
+	private final long maxSize;
+
+	/** the cached content, the least recently used first */
+	private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+	private long size;
+
+	private long hits;
+
+	private long misses;
+
+	/** the resources watched for modifications */
+	private final Set<Key> watched = new HashSet<>();
+
+	/**
+	 * Construct.
+	 * 
+	 * @param maxSize
+	 *            the maximum size of the cached content
+	 */
+	public ProcessedResourceCache(final Bytes maxSize)
+	{
+		this.maxSize = Args.notNull(maxSize, "maxSize").bytes();
+	}
+
+	/**
+	 * Gets the processed content of a resource.
+	 * 
+	 * @param resourceClass
+	 *            the class of the resource, which does the processing
+	 * @param cacheKey
+	 *            the key of the resource, identifying its location, locale, style and variation
+	 * @param lastModified
+	 *            the last modification time of the resource in milliseconds
+	 * @return the content or {@code null} if it is not cached or outdated
+	 */
+	public synchronized byte[] get(final Class<?> resourceClass, final Object cacheKey,
+		final long lastModified)
+	{
+		Key key = new Key(resourceClass, cacheKey);
+		Entry entry = entries.get(key);
+		if (entry == null || entry.lastModified != lastModified)
+		{
+			misses++;
+			return null;
+		}
+
+		hits++;
+		return entry.content;
+	}
+
+	/**
+	 * Stores the processed content of a resource.
+	 * 
+	 * @param resourceClass
+	 *            the class of the resource, which does the processing
+	 * @param cacheKey
+	 *            the key of the resource, identifying its location, locale, style and variation
+	 * @param lastModified
+	 *            the last modification time of the resource in milliseconds
+	 * @param content
+	 *            the processed content, must not be modified anymore
+	 */
+	public synchronized void put(final Class<?> resourceClass, final Object cacheKey,
+		final long lastModified, final byte[] content)
+	{
+		Args.notNull(content, "content");
+
+		Key key = new Key(resourceClass, cacheKey);
+		Entry previous = entries.remove(key);
+		if (previous != null)
+		{
+			size -= previous.content.length;
+		}
+
+		if (content.length > maxSize)
+		{
+			return;
+		}
+
+		entries.put(key, new Entry(lastModified, content));
+		size += content.length;
+
+		Iterator<Entry> eldest = entries.values().iterator();
+		while (size > maxSize)
+		{
+			size -= eldest.next().content.length;
+			eldest.remove();
+		}
+	}
+
+	/**
+	 * Removes the processed content of a resource, e.g. because it has been modified.
+	 * 
+	 * @param resourceClass
+	 *            the class of the resource, which does the processing
+	 * @param cacheKey
+	 *            the key of the resource
+	 */
+	public synchronized void remove(final Class<?> resourceClass, final Object cacheKey)
+	{
+		Entry entry = entries.remove(new Key(resourceClass, cacheKey));
+		if (entry != null)
+		{
+			size -= entry.content.length;
+		}
+	}
+
+	/**
+	 * Marks a resource as watched for modifications, so that it is registered with the watcher
+	 * only once.
+	 * 
+	 * @param resourceClass
+	 *            the class of the resource, which does the processing
+	 * @param cacheKey
+	 *            the key of the resource
+	 * @return {@code true} if the resource was not watched already
+	 */
+	synchronized boolean watch(final Class<?> resourceClass, final Object cacheKey)
+	{
+		return watched.add(new Key(resourceClass, cacheKey));
+	}
+
+	/**
+	 * Marks a resource as not watched anymore.
+	 * 
+	 * @param resourceClass
+	 *            the class of the resource, which does the processing
+	 * @param cacheKey
+	 *            the key of the resource
+	 */
+	synchronized void unwatch(final Class<?> resourceClass, final Object cacheKey)
+	{
+		watched.remove(new Key(resourceClass, cacheKey));
+	}
+
+	/**
+	 * Removes all content.
+	 */
+	public synchronized void clear()
+	{
+		entries.clear();
+		size = 0;
+	}
+
+	/**
+	 * @return the total size of the cached content
+	 */
+	public synchronized long getSize()
+	{
+		return size;
+	}
+
+	/**
+	 * @return the number of times cached content was used
+	 */
+	public synchronized long getHits()
+	{
+		return hits;
+	}
+
+	/**
+	 * @return the number of times the content had to be processed
+	 */
+	public synchronized long getMisses()
+	{
+		return misses;
+	}
+
+	private static class Key
+	{
+		private final Class<?> resourceClass;
+
+		private final Object cacheKey;
+
+		private Key(final Class<?> resourceClass, final Object cacheKey)
+		{
+			this.resourceClass = Args.notNull(resourceClass, "resourceClass");
+			this.cacheKey = Args.notNull(cacheKey, "cacheKey");
+		}
+
+		@Override
+		public boolean equals(final Object obj)
+		{
+			if (this == obj)
+			{
+				return true;
+			}
+			if ((obj instanceof Key) == false)
+			{
+				return false;
+			}
+			Key rhs = (Key)obj;
+			return resourceClass == rhs.resourceClass && cacheKey.equals(rhs.cacheKey);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return Objects.hashCode(resourceClass, cacheKey);
+		}
+	}
+
+	private static class Entry
+	{
+		private final long lastModified;
+
+		private final byte[] content;
+
+		private Entry(final long lastModified, final byte[] content)
+		{
+			this.lastModified = lastModified;
+			this.content = content;
+		}
+	}
+}
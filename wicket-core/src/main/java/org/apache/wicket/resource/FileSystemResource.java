@@ -16,8 +16,10 @@
  */
 package org.apache.wicket.resource;
 
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.attribute.BasicFileAttributes;
@@ -155,6 +157,11 @@ public class FileSystemResource extends AbstractResource
 	 */
 	protected InputStream getInputStream() throws IOException
 	{
+		if (path.getFileSystem() == FileSystems.getDefault())
+		{
+			// the channel of a file input stream can transfer the data to the response
+			return new FileInputStream(path.toFile());
+		}
 		return Files.newInputStream(path);
 	}
 }
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.response;
+
+import java.util.ArrayDeque;
+
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.string.AppendingStringBuffer;
+
+/**
+ * A pool of buffers for rendering, so that the buffers of {@link StringResponse}s and
+ * {@link org.apache.wicket.protocol.http.BufferedWebResponse}s are not allocated anew for every
+ * request.
+ * <p>
+ * The buffers are borrowed by the {@link org.apache.wicket.request.cycle.RequestCycle} and returned
+ * when it detaches. Buffers grown beyond the maximum capacity are not kept, so that huge pages do
+ * not pin memory.
+ * </p>
+ * 
+ * @see org.apache.wicket.settings.RequestCycleSettings#setRenderBufferPoolSize(int)
+ */
+public class RenderBufferPool
+{
+	private final int maxCount;
+
+	private final int maxCapacity;
+
+	/** the pooled buffers, the most recently returned last */
+	private final ArrayDeque<AppendingStringBuffer> buffers = new ArrayDeque<>();
+
+	private long hits;
+
+	private long misses;
+
+	private long discards;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param maxCount
+	 *            the maximum number of pooled buffers
+	 * @param maxCapacity
+	 *            the maximum capacity in characters of a pooled buffer
+	 */
+	public RenderBufferPool(final int maxCount, final int maxCapacity)
+	{
+		this.maxCount = Args.withinRange(1, Integer.MAX_VALUE, maxCount, "maxCount");
+		this.maxCapacity = Args.withinRange(1, Integer.MAX_VALUE, maxCapacity, "maxCapacity");
+	}
+
+	/**
+	 * Takes an empty buffer from the pool, or creates a new one if the pool is empty.
+	 * 
+	 * @param initialCapacity
+	 *            the capacity of a new buffer
+	 * @return the buffer
+	 */
+	public synchronized AppendingStringBuffer borrow(final int initialCapacity)
+	{
+		AppendingStringBuffer buffer = buffers.pollLast();
+		if (buffer == null)
+		{
+			misses++;
+			return new AppendingStringBuffer(initialCapacity);
+		}
+
+		hits++;
+		return buffer;
+	}
+
+	/**
+	 * Returns a buffer to the pool. The buffer must not be used by the caller anymore.
+	 * 
+	 * @param buffer
+	 *            the buffer
+	 */
+	public void release(final AppendingStringBuffer buffer)
+	{
+		Args.notNull(buffer, "buffer");
+
+		boolean keep = buffer.capacity() <= maxCapacity;
+		if (keep)
+		{
+			buffer.clear();
+		}
+
+		synchronized (this)
+		{
+			if (keep && buffers.size() < maxCount)
+			{
+				buffers.addLast(buffer);
+			}
+			else
+			{
+				discards++;
+			}
+		}
+	}
+
+	/**
+	 * @return the number of pooled buffers
+	 */
+	public synchronized int getCount()
+	{
+		return buffers.size();
+	}
+
+	/**
+	 * @return the number of buffers taken from the pool
+	 */
+	public synchronized long getHits()
+	{
+		return hits;
+	}
+
+	/**
+	 * @return the number of buffers created because the pool was empty
+	 */
+	public synchronized long getMisses()
+	{
+		return misses;
+	}
+
+	/**
+	 * @return the number of returned buffers not kept, because they were too big or the pool was
+	 *         full
+	 */
+	public synchronized long getDiscards()
+	{
+		return discards;
+	}
+
+	/**
+	 * Removes all pooled buffers.
+	 */
+	public synchronized void clear()
+	{
+		buffers.clear();
+	}
+}
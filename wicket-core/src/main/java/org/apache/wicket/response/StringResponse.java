@@ -17,6 +17,7 @@
 package org.apache.wicket.response;
 
 import org.apache.wicket.request.Response;
+import org.apache.wicket.request.cycle.RequestCycle;
 import org.apache.wicket.util.string.AppendingStringBuffer;
 
 
@@ -24,6 +25,10 @@ import org.apache.wicket.util.string.AppendingStringBuffer;
  * Response object that writes to a StringWriter. If the StringResponse is later converted to a
  * String via toString(), the output which was written to the StringResponse will be returned as a
  * String.
+ * <p>
+ * If a {@link RenderBufferPool} is enabled, the buffer of a response created during a request is
+ * reused after the request, so {@link #getBuffer()} must not be kept longer.
+ * </p>
  * 
  * @author Jonathan Locke
  */
@@ -38,7 +43,15 @@ public class StringResponse extends Response
 	 */
 	public StringResponse()
 	{
-		out = new AppendingStringBuffer(128);
+		RequestCycle requestCycle = RequestCycle.get();
+		if (requestCycle != null)
+		{
+			out = requestCycle.newRenderBuffer(128);
+		}
+		else
+		{
+			out = new AppendingStringBuffer(128);
+		}
 	}
 
 	/**
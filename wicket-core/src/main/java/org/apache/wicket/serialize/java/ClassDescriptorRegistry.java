@@ -0,0 +1,254 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.serialize.java;
+
+import java.io.ObjectStreamClass;
+import java.io.ObjectStreamField;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.wicket.AttributeModifier;
+import org.apache.wicket.Component;
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.MetaDataEntry;
+import org.apache.wicket.Page;
+import org.apache.wicket.ajax.AbstractDefaultAjaxBehavior;
+import org.apache.wicket.ajax.AjaxEventBehavior;
+import org.apache.wicket.behavior.AbstractAjaxBehavior;
+import org.apache.wicket.behavior.AttributeAppender;
+import org.apache.wicket.behavior.Behavior;
+import org.apache.wicket.feedback.FeedbackMessage;
+import org.apache.wicket.feedback.FeedbackMessages;
+import org.apache.wicket.markup.html.WebComponent;
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.markup.html.form.AbstractChoice;
+import org.apache.wicket.markup.html.form.AbstractSingleSelectChoice;
+import org.apache.wicket.markup.html.form.AbstractTextComponent;
+import org.apache.wicket.markup.html.form.Button;
+import org.apache.wicket.markup.html.form.CheckBox;
+import org.apache.wicket.markup.html.form.ChoiceRenderer;
+import org.apache.wicket.markup.html.form.DropDownChoice;
+import org.apache.wicket.markup.html.form.Form;
+import org.apache.wicket.markup.html.form.FormComponent;
+import org.apache.wicket.markup.html.form.HiddenField;
+import org.apache.wicket.markup.html.form.LabeledWebMarkupContainer;
+import org.apache.wicket.markup.html.form.PasswordTextField;
+import org.apache.wicket.markup.html.form.TextArea;
+import org.apache.wicket.markup.html.form.TextField;
+import org.apache.wicket.markup.html.link.AbstractLink;
+import org.apache.wicket.markup.html.link.BookmarkablePageLink;
+import org.apache.wicket.markup.html.link.ExternalLink;
+import org.apache.wicket.markup.html.link.Link;
+import org.apache.wicket.markup.html.list.AbstractItem;
+import org.apache.wicket.markup.html.list.ListItem;
+import org.apache.wicket.markup.html.list.ListView;
+import org.apache.wicket.markup.html.panel.FeedbackPanel;
+import org.apache.wicket.markup.html.panel.Fragment;
+import org.apache.wicket.markup.html.panel.Panel;
+import org.apache.wicket.markup.repeater.AbstractRepeater;
+import org.apache.wicket.markup.repeater.RepeatingView;
+import org.apache.wicket.model.AbstractPropertyModel;
+import org.apache.wicket.model.ChainingModel;
+import org.apache.wicket.model.CompoundPropertyModel;
+import org.apache.wicket.model.LoadableDetachableModel;
+import org.apache.wicket.model.Model;
+import org.apache.wicket.model.PropertyModel;
+import org.apache.wicket.model.ResourceModel;
+import org.apache.wicket.model.StringResourceModel;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.apache.wicket.util.lang.Args;
+
+/**
+ * A registry of classes whose class descriptors are replaced by a compact numeric id in the
+ * serialized data. Used by {@link CompactJavaSerializer}.
+ * <p>
+ * The id of a class is its position in the registry, so all nodes reading each other's data (e.g.
+ * in a cluster or after a restart with a persistent page store) have to register the same classes
+ * in the same order. Classes should be registered before the serializer is used for the first
+ * time - data serialized with a different set of registered classes, or before the serialized
+ * form of a registered class changed, cannot be deserialized.
+ * </p>
+ *
+ * @see #withDefaults()
+ */
+public class ClassDescriptorRegistry
+{
+	/** the id written for classes which are not registered */
+	static final int UNREGISTERED = -1;
+
+	private static final int MAX_CLASSES = Short.MAX_VALUE;
+
+	private final List<Class<?>> classes = new CopyOnWriteArrayList<>();
+
+	private final ConcurrentMap<Class<?>, Integer> ids = new ConcurrentHashMap<>();
+
+	private volatile int fingerprint = 1;
+
+	/**
+	 * Creates an empty registry.
+	 */
+	public ClassDescriptorRegistry()
+	{
+	}
+
+	/**
+	 * Creates a registry with Wicket's most commonly serialized component, model and behavior
+	 * classes and the collections they use.
+	 *
+	 * @return a new registry
+	 */
+	public static ClassDescriptorRegistry withDefaults()
+	{
+		ClassDescriptorRegistry registry = new ClassDescriptorRegistry();
+
+		// JDK
+		registry.register(Object[].class, String[].class, int[].class, Number.class,
+			Integer.class, Long.class, Boolean.class, ArrayList.class, HashMap.class,
+			LinkedHashMap.class, HashSet.class);
+
+		// components
+		registry.register(Component.class, MarkupContainer.class, WebComponent.class,
+			WebMarkupContainer.class, Page.class, WebPage.class, Panel.class, Fragment.class,
+			Label.class, AbstractLink.class, Link.class, BookmarkablePageLink.class,
+			ExternalLink.class, AbstractRepeater.class, RepeatingView.class, ListView.class,
+			AbstractItem.class, ListItem.class, FeedbackPanel.class);
+
+		// form components
+		registry.register(Form.class, LabeledWebMarkupContainer.class, FormComponent.class,
+			AbstractTextComponent.class, TextField.class, PasswordTextField.class,
+			HiddenField.class, TextArea.class, CheckBox.class, Button.class, AbstractChoice.class,
+			AbstractSingleSelectChoice.class, DropDownChoice.class, ChoiceRenderer.class);
+
+		// models
+		registry.register(Model.class, ChainingModel.class, AbstractPropertyModel.class,
+			PropertyModel.class, CompoundPropertyModel.class, LoadableDetachableModel.class,
+			ResourceModel.class, StringResourceModel.class);
+
+		// behaviors and other component state
+		registry.register(Behavior.class, AttributeModifier.class, AttributeAppender.class,
+			AbstractAjaxBehavior.class, AbstractDefaultAjaxBehavior.class,
+			AjaxEventBehavior.class, MetaDataEntry.class, FeedbackMessage.class,
+			FeedbackMessages.class, PageParameters.class);
+
+		return registry;
+	}
+
+	/**
+	 * Registers the given classes. Classes registered already keep their id.
+	 *
+	 * @param classes
+	 *            the serializable classes to register
+	 * @return {@code this}, for chaining
+	 */
+	public synchronized ClassDescriptorRegistry register(Class<?>... classes)
+	{
+		for (Class<?> cls : classes)
+		{
+			Args.notNull(cls, "cls");
+			if (Serializable.class.isAssignableFrom(cls) == false)
+			{
+				throw new IllegalArgumentException("Class '" + cls.getName() +
+					"' is not serializable");
+			}
+			if (ids.containsKey(cls))
+			{
+				continue;
+			}
+			if (this.classes.size() == MAX_CLASSES)
+			{
+				throw new IllegalStateException("Cannot register more than " + MAX_CLASSES +
+					" classes");
+			}
+			this.classes.add(cls);
+			ids.put(cls, this.classes.size() - 1);
+			fingerprint = 31 * fingerprint + getFingerprint(cls);
+		}
+		return this;
+	}
+
+	/**
+	 * Gets a fingerprint of the serialized form of a class, i.e. its name, serialVersionUID and
+	 * serializable fields. The data of a registered class is read with its current class
+	 * descriptor, so it has to be rejected when the class has changed.
+	 *
+	 * @param cls
+	 * @return the fingerprint of the class
+	 */
+	private static int getFingerprint(Class<?> cls)
+	{
+		ObjectStreamClass descriptor = ObjectStreamClass.lookup(cls);
+		int fingerprint = cls.getName().hashCode();
+		fingerprint = 31 * fingerprint + Long.hashCode(descriptor.getSerialVersionUID());
+		for (ObjectStreamField field : descriptor.getFields())
+		{
+			fingerprint = 31 * fingerprint + field.getName().hashCode();
+			fingerprint = 31 * fingerprint + field.getTypeCode();
+			if (field.getTypeString() != null)
+			{
+				fingerprint = 31 * fingerprint + field.getTypeString().hashCode();
+			}
+		}
+		return fingerprint;
+	}
+
+	/**
+	 * @param cls
+	 * @return the id of the class or {@value #UNREGISTERED} if it is not registered
+	 */
+	int getId(Class<?> cls)
+	{
+		Integer id = ids.get(cls);
+		return id != null ? id : UNREGISTERED;
+	}
+
+	/**
+	 * @param id
+	 * @return the class with the given id or {@code null} if there is none
+	 */
+	Class<?> getClass(int id)
+	{
+		return id >= 0 && id < classes.size() ? classes.get(id) : null;
+	}
+
+	/**
+	 * Gets a fingerprint of the registered classes and their serialized form, used to detect data
+	 * written with a different registry or different versions of the registered classes.
+	 *
+	 * @return the fingerprint
+	 */
+	public int getFingerprint()
+	{
+		return fingerprint;
+	}
+
+	/**
+	 * @return the number of registered classes
+	 */
+	public int size()
+	{
+		return classes.size();
+	}
+}
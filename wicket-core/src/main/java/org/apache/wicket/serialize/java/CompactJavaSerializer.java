@@ -0,0 +1,241 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.serialize.java;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+
+import org.apache.wicket.util.lang.Args;
+
+/**
+ * A {@link JavaSerializer} which writes a numeric id instead of the full class descriptor for the
+ * classes registered in a {@link ClassDescriptorRegistry}, and reuses its output buffer per
+ * thread. Instances of other classes are serialized with their class descriptors, just like
+ * {@link JavaSerializer} does it.
+ *
+ * <p>
+ * Since the class descriptors make up a big part of a serialized page, this reduces both the size
+ * of the serialized pages and the time needed to write and read them. The registered classes
+ * have to be the same on all nodes sharing the serialized data, see
+ * {@link ClassDescriptorRegistry}.
+ * </p>
+ *
+ * <p>
+ * To use this serializer, put the following code in your application's init:
+ *
+ * <pre>
+ * ClassDescriptorRegistry registry = ClassDescriptorRegistry.withDefaults().register(MyPage.class);
+ * getFrameworkSettings().setSerializer(new CompactJavaSerializer(getApplicationKey(), registry));
+ * </pre>
+ */
+public class CompactJavaSerializer extends JavaSerializer
+{
+	/** buffers bigger than this are not kept for the next serialization */
+	private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+	private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+
+	private final ClassDescriptorRegistry registry;
+
+	private final ThreadLocal<Buffer> buffers = new ThreadLocal<>();
+
+	/**
+	 * Construct with the {@link ClassDescriptorRegistry#withDefaults() default} registry.
+	 *
+	 * @param applicationKey
+	 *      the name of the application
+	 */
+	public CompactJavaSerializer(String applicationKey)
+	{
+		this(applicationKey, ClassDescriptorRegistry.withDefaults());
+	}
+
+	/**
+	 * Construct.
+	 *
+	 * @param applicationKey
+	 *      the name of the application
+	 * @param registry
+	 *      the registered classes
+	 */
+	public CompactJavaSerializer(String applicationKey, ClassDescriptorRegistry registry)
+	{
+		super(applicationKey);
+
+		this.registry = Args.notNull(registry, "registry");
+	}
+
+	/**
+	 * @return the registered classes
+	 */
+	public ClassDescriptorRegistry getRegistry()
+	{
+		return registry;
+	}
+
+	@Override
+	public byte[] serialize(Object object)
+	{
+		Buffer buffer = buffers.get();
+		if (buffer == null || buffer.inUse)
+		{
+			// first use by this thread or a nested serialization
+			buffer = new Buffer();
+		}
+
+		buffer.inUse = true;
+		try
+		{
+			return serialize(object, buffer);
+		}
+		finally
+		{
+			buffer.inUse = false;
+			if (buffer.capacity() > MAX_RETAINED_BUFFER_SIZE)
+			{
+				buffers.remove();
+			}
+			else
+			{
+				buffer.reset();
+				buffers.set(buffer);
+			}
+		}
+	}
+
+	@Override
+	protected ObjectOutputStream newObjectOutputStream(OutputStream out) throws IOException
+	{
+		new DataOutputStream(out).writeInt(registry.getFingerprint());
+
+		return new SerializationCheckerObjectOutputStream(out, new RegistryObjectOutputStream(
+			out, registry));
+	}
+
+	@Override
+	protected ObjectInputStream newObjectInputStream(InputStream in) throws IOException
+	{
+		int fingerprint = new DataInputStream(in).readInt();
+		if (fingerprint != registry.getFingerprint())
+		{
+			throw new StreamCorruptedException(
+				"The data was serialized with different registered classes or class versions");
+		}
+
+		return new RegistryObjectInputStream(in, registry);
+	}
+
+	/**
+	 * Writes the ids of registered classes instead of their descriptors.
+	 */
+	private static class RegistryObjectOutputStream extends ObjectOutputStream
+	{
+		private final ClassDescriptorRegistry registry;
+
+		private RegistryObjectOutputStream(OutputStream out, ClassDescriptorRegistry registry)
+			throws IOException
+		{
+			super(out);
+
+			this.registry = registry;
+		}
+
+		@Override
+		protected void writeClassDescriptor(ObjectStreamClass desc) throws IOException
+		{
+			int id = registry.getId(desc.forClass());
+			writeShort(id);
+			if (id == ClassDescriptorRegistry.UNREGISTERED)
+			{
+				super.writeClassDescriptor(desc);
+			}
+		}
+	}
+
+	/**
+	 * Looks up the descriptors of registered classes by their ids.
+	 */
+	private static class RegistryObjectInputStream extends ClassResolverObjectInputStream
+	{
+		private final ClassDescriptorRegistry registry;
+
+		private RegistryObjectInputStream(InputStream in, ClassDescriptorRegistry registry)
+			throws IOException
+		{
+			super(in);
+
+			this.registry = registry;
+		}
+
+		@Override
+		protected ObjectStreamClass readClassDescriptor() throws IOException,
+			ClassNotFoundException
+		{
+			int id = readShort();
+			if (id == ClassDescriptorRegistry.UNREGISTERED)
+			{
+				return super.readClassDescriptor();
+			}
+
+			Class<?> cls = registry.getClass(id);
+			if (cls == null)
+			{
+				throw new StreamCorruptedException("Unknown class id " + id);
+			}
+			return ObjectStreamClass.lookup(cls);
+		}
+
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException,
+			ClassNotFoundException
+		{
+			// descriptors of registered classes are bound to their class already
+			Class<?> cls = desc.forClass();
+			if (cls != null)
+			{
+				return cls;
+			}
+			return super.resolveClass(desc);
+		}
+	}
+
+	/**
+	 * A reusable output buffer.
+	 */
+	private static class Buffer extends ByteArrayOutputStream
+	{
+		private boolean inUse;
+
+		private Buffer()
+		{
+			super(INITIAL_BUFFER_SIZE);
+		}
+
+		private int capacity()
+		{
+			return buf.length;
+		}
+	}
+}
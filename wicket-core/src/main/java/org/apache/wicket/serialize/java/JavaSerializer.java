@@ -70,10 +70,23 @@ public class JavaSerializer implements ISerializer
 
 	@Override
 	public byte[] serialize(final Object object)
+	{
+		return serialize(object, new ByteArrayOutputStream());
+	}
+
+	/**
+	 * Serializes the object into the given buffer.
+	 * 
+	 * @param object
+	 *            the object to serialize
+	 * @param out
+	 *            the buffer to write to
+	 * @return the serialized object or {@code null} if the serialization failed
+	 */
+	protected final byte[] serialize(final Object object, final ByteArrayOutputStream out)
 	{
 		try
 		{
-			final ByteArrayOutputStream out = new ByteArrayOutputStream();
 			ObjectOutputStream oos = null;
 			try
 			{
@@ -179,9 +192,9 @@ public class JavaSerializer implements ISerializer
 	/**
 	 * Extend {@link ObjectInputStream} to add framework class resolution logic.
 	 */
-	private static class ClassResolverObjectInputStream extends ObjectInputStream
+	static class ClassResolverObjectInputStream extends ObjectInputStream
 	{
-		public ClassResolverObjectInputStream(InputStream in) throws IOException
+		ClassResolverObjectInputStream(InputStream in) throws IOException
 		{
 			super(in);
 		}
@@ -348,16 +361,22 @@ public class JavaSerializer implements ISerializer
 	 *     This is done so to save some CPU time to make the checks for no reason.
 	 * </p>
 	 */
-	private static class SerializationCheckerObjectOutputStream extends ObjectOutputStream
+	static class SerializationCheckerObjectOutputStream extends ObjectOutputStream
 	{
 		private final OutputStream outputStream;
 
 		private final ObjectOutputStream oos;
 
 		private SerializationCheckerObjectOutputStream(OutputStream outputStream) throws IOException
+		{
+			this(outputStream, new ObjectOutputStream(outputStream));
+		}
+
+		SerializationCheckerObjectOutputStream(OutputStream outputStream, ObjectOutputStream oos)
+			throws IOException
 		{
 			this.outputStream = outputStream;
-			oos = new ObjectOutputStream(outputStream);
+			this.oos = oos;
 		}
 
 		@Override
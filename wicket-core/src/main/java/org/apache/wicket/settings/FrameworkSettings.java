@@ -129,6 +129,14 @@ public class FrameworkSettings implements IEventDispatcher
 		return this;
 	}
 
+	/**
+	 * @return {@code true} if any event dispatchers have been registered
+	 */
+	public boolean hasEventDispatchers()
+	{
+		return eventDispatchers != null;
+	}
+
 	/**
 	 * Dispatches event to registered dispatchers
 	 * 
@@ -16,6 +16,8 @@
  */
 package org.apache.wicket.settings;
 
+import java.io.File;
+
 import org.apache.wicket.DefaultMarkupIdGenerator;
 import org.apache.wicket.IMarkupIdGenerator;
 import org.apache.wicket.markup.MarkupFactory;
@@ -71,6 +73,9 @@ public class MarkupSettings
 	 */
 	private IMarkupIdGenerator markupIdGenerator = new DefaultMarkupIdGenerator();
 
+	/** The folder for the precompiled markup files, {@code null} if disabled */
+	private File precompiledMarkupFolder;
+
 	/**
 	 * Construct
 	 */
@@ -253,6 +258,30 @@ public class MarkupSettings
 		return this;
 	}
 
+	/**
+	 * @return the folder where the parsed markup files are stored, {@code null} if disabled
+	 * @see org.apache.wicket.markup.parser.PrecompiledXmlPullParser
+	 */
+	public File getPrecompiledMarkupFolder()
+	{
+		return precompiledMarkupFolder;
+	}
+
+	/**
+	 * Sets the folder where the parsed markup files are stored, so that following starts of the
+	 * application do not have to parse them again. Disabled by default.
+	 *
+	 * @param folder
+	 *            the folder, {@code null} to disable
+	 * @return {@code this} object for chaining
+	 * @see org.apache.wicket.markup.parser.PrecompiledXmlPullParser
+	 */
+	public MarkupSettings setPrecompiledMarkupFolder(final File folder)
+	{
+		precompiledMarkupFolder = folder;
+		return this;
+	}
+
 	/**
 	 * @return The configured generator for component markup ids
 	 */
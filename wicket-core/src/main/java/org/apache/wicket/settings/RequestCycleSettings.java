@@ -20,6 +20,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import org.apache.wicket.response.RenderBufferPool;
 import org.apache.wicket.response.filter.IResponseFilter;
 import org.apache.wicket.util.lang.Args;
 import org.apache.wicket.util.time.Duration;
@@ -173,6 +174,16 @@ public class RequestCycleSettings
 
 	private int exceptionRetryCount = 10;
 
+	private boolean streamAjaxResponses = false;
+
+	private boolean renderPagesAsBytes = false;
+
+	private int renderBufferPoolSize = 0;
+
+	private int maxPooledRenderBufferCapacity = 64 * 1024;
+
+	private volatile RenderBufferPool renderBufferPool;
+
 // ****************************************************************************
 // IRequestCycleSettings Implementation
 // ****************************************************************************
@@ -418,4 +429,128 @@ public class RequestCycleSettings
 	{
 		return exceptionRetryCount;
 	}
+
+	/**
+	 * Sets whether Ajax responses are written to the client while the components are rendered,
+	 * instead of keeping the whole response in memory until all components are rendered. Has no
+	 * effect if response filters are added, since they work on the whole response.
+	 * <p>
+	 * <strong>Note:</strong> an exception while rendering a component cannot be reported properly
+	 * to the client, when the markup of the preceding components has already been sent.
+	 *
+	 * @param streamAjaxResponses
+	 *            {@code true} to stream Ajax responses
+	 * @return {@code this} object for chaining
+	 */
+	public RequestCycleSettings setStreamAjaxResponses(boolean streamAjaxResponses)
+	{
+		this.streamAjaxResponses = streamAjaxResponses;
+		return this;
+	}
+
+	/**
+	 * @return whether Ajax responses are streamed to the client
+	 */
+	public boolean getStreamAjaxResponses()
+	{
+		return streamAjaxResponses;
+	}
+
+	/**
+	 * Sets whether pages are rendered into bytes, encoded with the
+	 * {@link #getResponseRequestEncoding() response encoding}. The static markup of the pages is
+	 * then encoded only once and not for every render, only the dynamic content is encoded while
+	 * rendering. Has no effect if response filters are added, since they work on the text of the
+	 * page.
+	 * <p>
+	 * <strong>Note:</strong> pages must not declare a charset other than the response encoding.
+	 *
+	 * @param renderPagesAsBytes
+	 *            {@code true} to render pages into bytes
+	 * @return {@code this} object for chaining
+	 */
+	public RequestCycleSettings setRenderPagesAsBytes(final boolean renderPagesAsBytes)
+	{
+		this.renderPagesAsBytes = renderPagesAsBytes;
+		return this;
+	}
+
+	/**
+	 * @return whether pages are rendered into bytes
+	 */
+	public boolean getRenderPagesAsBytes()
+	{
+		return renderPagesAsBytes;
+	}
+
+	/**
+	 * Sets the maximum number of buffers kept for rendering, so that the buffers used for rendering
+	 * pages and components are reused by the following requests. Disabled by default.
+	 * <p>
+	 * <strong>Note:</strong> the buffers borrowed during a request are reused after the request
+	 * cycle detaches, so e.g. {@link org.apache.wicket.response.StringResponse#getBuffer()} must
+	 * not be kept beyond the request.
+	 *
+	 * @param size
+	 *            the maximum number of pooled buffers, {@code 0} to disable the pool
+	 * @return {@code this} object for chaining
+	 * @see RenderBufferPool
+	 */
+	public RequestCycleSettings setRenderBufferPoolSize(final int size)
+	{
+		renderBufferPoolSize = Args.withinRange(0, Integer.MAX_VALUE, size, "size");
+		renderBufferPool = null;
+		return this;
+	}
+
+	/**
+	 * @return the maximum number of pooled buffers for rendering
+	 */
+	public int getRenderBufferPoolSize()
+	{
+		return renderBufferPoolSize;
+	}
+
+	/**
+	 * Sets the maximum capacity of a buffer kept for rendering. Bigger buffers are not reused.
+	 * Defaults to 64K characters.
+	 *
+	 * @param capacity
+	 *            the maximum capacity in characters
+	 * @return {@code this} object for chaining
+	 */
+	public RequestCycleSettings setMaxPooledRenderBufferCapacity(final int capacity)
+	{
+		maxPooledRenderBufferCapacity = Args.withinRange(1, Integer.MAX_VALUE, capacity,
+			"capacity");
+		renderBufferPool = null;
+		return this;
+	}
+
+	/**
+	 * @return the maximum capacity in characters of a pooled buffer for rendering
+	 */
+	public int getMaxPooledRenderBufferCapacity()
+	{
+		return maxPooledRenderBufferCapacity;
+	}
+
+	/**
+	 * @return the pool of buffers for rendering, {@code null} if disabled
+	 */
+	public RenderBufferPool getRenderBufferPool()
+	{
+		if (renderBufferPool == null && renderBufferPoolSize > 0)
+		{
+			synchronized (this)
+			{
+				if (renderBufferPool == null)
+				{
+					renderBufferPool = new RenderBufferPool(renderBufferPoolSize,
+						maxPooledRenderBufferCapacity);
+				}
+			}
+		}
+		return renderBufferPool;
+	}
 }
@@ -35,6 +35,7 @@ import org.apache.wicket.markup.head.ResourceAggregator.RecordedHeaderItem;
 import org.apache.wicket.markup.html.IPackageResourceGuard;
 import org.apache.wicket.markup.html.SecurePackageResourceGuard;
 import org.apache.wicket.request.http.WebResponse;
+import org.apache.wicket.request.resource.ProcessedResourceCache;
 import org.apache.wicket.request.resource.caching.FilenameWithVersionResourceCachingStrategy;
 import org.apache.wicket.request.resource.caching.IResourceCachingStrategy;
 import org.apache.wicket.request.resource.caching.NoOpResourceCachingStrategy;
@@ -54,6 +55,7 @@ import org.apache.wicket.resource.loader.ValidatorStringResourceLoader;
 import org.apache.wicket.util.file.IFileCleaner;
 import org.apache.wicket.util.file.IResourceFinder;
 import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
 import org.apache.wicket.util.lang.Generics;
 import org.apache.wicket.util.resource.IResourceStream;
 import org.apache.wicket.util.time.Duration;
@@ -168,6 +170,12 @@ public class ResourceSettings implements IPropertiesFactoryContext
 
 	private boolean useMinifiedResources = true;
 
+	private boolean usePrecompressedResources = false;
+
+	private Bytes processedResourceCacheSize = Bytes.bytes(0);
+
+	private volatile ProcessedResourceCache processedResourceCache;
+
 	private Comparator<? super RecordedHeaderItem> headerItemComparator = new PriorityFirstComparator(
 		false);
 
@@ -714,6 +722,76 @@ public class ResourceSettings implements IPropertiesFactoryContext
 		return useMinifiedResources;
 	}
 
+	/**
+	 * Sets whether to send compressed package resources to clients accepting them. The compressed
+	 * versions are detected by name: {@code x.js.br} and {@code x.js.gz} are the brotli and gzip
+	 * compressed versions of {@code x.js}. If there is no gzip compressed version, it is created
+	 * once when the cache for processed resources is enabled. The compressed versions are not
+	 * used for resources which are processed, e.g. by a compressor, then only the gzip compressed
+	 * version is created. Disabled by default.
+	 *
+	 * @param usePrecompressedResources
+	 *            The new value for the setting
+	 * @return {@code this} object for chaining
+	 * @see #setProcessedResourceCacheSize(Bytes)
+	 */
+	public ResourceSettings setUsePrecompressedResources(boolean usePrecompressedResources)
+	{
+		this.usePrecompressedResources = usePrecompressedResources;
+		return this;
+	}
+
+	/**
+	 * @return Whether compressed resources will be used.
+	 */
+	public boolean getUsePrecompressedResources()
+	{
+		return usePrecompressedResources;
+	}
+
+	/**
+	 * Sets the maximum size of the content of package resources kept after processing, e.g. after
+	 * compressing JavaScript and CSS files, so that the processing is not repeated for every
+	 * request. Disabled by default.
+	 *
+	 * @param size
+	 *            the maximum size, {@code 0} to disable the cache
+	 * @return {@code this} object for chaining
+	 * @see org.apache.wicket.request.resource.PackageResource
+	 */
+	public ResourceSettings setProcessedResourceCacheSize(final Bytes size)
+	{
+		processedResourceCacheSize = Args.notNull(size, "size");
+		processedResourceCache = null;
+		return this;
+	}
+
+	/**
+	 * @return the maximum size of the processed package resources to keep
+	 */
+	public Bytes getProcessedResourceCacheSize()
+	{
+		return processedResourceCacheSize;
+	}
+
+	/**
+	 * @return the cache for processed package resources, {@code null} if disabled
+	 */
+	public ProcessedResourceCache getProcessedResourceCache()
+	{
+		if (processedResourceCache == null && processedResourceCacheSize.bytes() > 0)
+		{
+			synchronized (this)
+			{
+				if (processedResourceCache == null)
+				{
+					processedResourceCache = new ProcessedResourceCache(processedResourceCacheSize);
+				}
+			}
+		}
+		return processedResourceCache;
+	}
+
 	/**
 	 * @return The comparator used to sort header items.
 	 */
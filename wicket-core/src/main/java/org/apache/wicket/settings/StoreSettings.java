@@ -50,16 +50,28 @@ public class StoreSettings
 
 	private static final int DEFAULT_ASYNCHRONOUS_QUEUE_CAPACITY = 100;
 
+	private static final Bytes DEFAULT_SEGMENT_SIZE = Bytes.megabytes(64);
+
 	private int inmemoryCacheSize = DEFAULT_CACHE_SIZE;
 
+	private Bytes offHeapCacheSize = Bytes.bytes(0);
+
 	private Bytes maxSizePerSession = DEFAULT_MAX_SIZE_PER_SESSION;
 
 	private File fileStoreFolder = null;
 
 	private int asynchronousQueueCapacity = DEFAULT_ASYNCHRONOUS_QUEUE_CAPACITY;
 
+	private int asynchronousThreads = 1;
+
 	private boolean isAsynchronous = true;
 
+	private boolean isSegmented = false;
+
+	private Bytes segmentSize = DEFAULT_SEGMENT_SIZE;
+
+	private boolean isDeltaPages = false;
+
 	/**
 	 * Construct.
 	 * 
@@ -93,6 +105,31 @@ public class StoreSettings
 		return this;
 	}
 
+	/**
+	 * @return the maximum size of the pages which will be stored in the application scoped cache
+	 *         outside of the Java heap
+	 */
+	public Bytes getOffHeapCacheSize()
+	{
+		return offHeapCacheSize;
+	}
+
+	/**
+	 * Sets the maximum size of the pages which will be stored in an application scoped second level
+	 * cache outside of the Java heap, see {@link org.apache.wicket.pageStore.OffHeapPageCache}. If
+	 * set to a size bigger than zero, this cache is used instead of the one configured with
+	 * {@link #setInmemoryCacheSize(int)}.
+	 *
+	 * @param offHeapCacheSize
+	 *            the maximum size of the cached pages
+	 * @return {@code this} object for chaining
+	 */
+	public StoreSettings setOffHeapCacheSize(final Bytes offHeapCacheSize)
+	{
+		this.offHeapCacheSize = Args.notNull(offHeapCacheSize, "offHeapCacheSize");
+		return this;
+	}
+
 	/**
 	 * @return maximum page size. After this size is exceeded,
 	 * the {@link org.apache.wicket.pageStore.DiskDataStore} will start saving the
@@ -192,6 +229,35 @@ public class StoreSettings
 		return this;
 	}
 
+	/**
+	 * @return the number of threads which store the pages asynchronously
+	 * @see org.apache.wicket.pageStore.AsynchronousDataStore
+	 */
+	public int getAsynchronousThreads()
+	{
+		return asynchronousThreads;
+	}
+
+	/**
+	 * Sets the number of threads which store the pages asynchronously. The sessions are
+	 * distributed among the threads and the queue capacity is shared by them.
+	 *
+	 * @param threads
+	 *            the number of threads
+	 * @see org.apache.wicket.pageStore.AsynchronousDataStore
+	 * @return {@code this} object for chaining
+	 */
+	public StoreSettings setAsynchronousThreads(int threads)
+	{
+		if (threads < 1)
+		{
+			throw new IllegalArgumentException(
+				"The number of asynchronous threads should be at least 1.");
+		}
+		asynchronousThreads = threads;
+		return this;
+	}
+
 	/**
 	 * Sets a flag whether to wrap the configured {@link org.apache.wicket.pageStore.IDataStore} with
 	 * {@link org.apache.wicket.pageStore.AsynchronousDataStore}. By doing this the HTTP worker thread will not wait for the
@@ -214,4 +280,74 @@ public class StoreSettings
 	{
 		return isAsynchronous;
 	}
+
+	/**
+	 * Sets a flag whether to store the pages of all sessions in a few shared memory-mapped segment
+	 * files with {@link org.apache.wicket.pageStore.SegmentedDataStore} instead of one file per
+	 * session with {@link org.apache.wicket.pageStore.DiskDataStore}.
+	 *
+	 * @param segmented
+	 *            {@code true} to use segment files, {@code false} - otherwise
+	 * @return {@code this} object for chaining
+	 */
+	public StoreSettings setSegmented(boolean segmented)
+	{
+		isSegmented = segmented;
+		return this;
+	}
+
+	/**
+	 * @return {@code true} if the pages are stored in shared segment files
+	 */
+	public boolean isSegmented()
+	{
+		return isSegmented;
+	}
+
+	/**
+	 * @return the size of a single segment file of
+	 *         {@link org.apache.wicket.pageStore.SegmentedDataStore}
+	 */
+	public Bytes getSegmentSize()
+	{
+		return segmentSize;
+	}
+
+	/**
+	 * Sets the size of a single segment file of
+	 * {@link org.apache.wicket.pageStore.SegmentedDataStore}. Pages bigger than this size get a
+	 * segment on their own.
+	 *
+	 * @param segmentSize
+	 *            the size of a segment file
+	 * @return {@code this} object for chaining
+	 */
+	public StoreSettings setSegmentSize(final Bytes segmentSize)
+	{
+		this.segmentSize = Args.notNull(segmentSize, "segmentSize");
+		return this;
+	}
+
+	/**
+	 * Sets a flag whether to wrap the configured {@link org.apache.wicket.pageStore.IDataStore}
+	 * with {@link org.apache.wicket.pageStore.DeltaDataStore}, which stores most pages as a delta
+	 * against an earlier page of the same session.
+	 *
+	 * @param deltaPages
+	 *            {@code true} to store deltas, {@code false} - otherwise
+	 * @return {@code this} object for chaining
+	 */
+	public StoreSettings setDeltaPages(boolean deltaPages)
+	{
+		isDeltaPages = deltaPages;
+		return this;
+	}
+
+	/**
+	 * @return {@code true} if the pages are stored as deltas
+	 */
+	public boolean isDeltaPages()
+	{
+		return isDeltaPages;
+	}
 }
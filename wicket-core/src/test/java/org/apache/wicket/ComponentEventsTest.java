@@ -495,6 +495,47 @@ public class ComponentEventsTest
 		assertEquals(-1, b2.sequence);
 	}
 
+	/** */
+	@Test
+	public void testIndexedBroadcast()
+	{
+		page.setIndexEventSubscriptions(true);
+
+		WebMarkupContainer plain = new WebMarkupContainer("plain");
+		WebComponent leaf = new WebComponent("leaf");
+		plain.add(leaf);
+		WebMarkupContainer wrapper = new WebMarkupContainer("wrapper");
+		TestComponent nested = new TestComponent("nested");
+		wrapper.add(nested);
+		page.add(plain, wrapper);
+
+		page.send(page, Broadcast.BREADTH, new Payload());
+		assertPath(page, c1, c12, c13, c134, c135, c6);
+		assertEquals(7, nested.sequence);
+
+		// the index holds the subscribers and the containers leading to them
+		Page indexed = page;
+		EventSubscriptions subscriptions = indexed.getEventSubscriptions();
+		Assert.assertEquals(8, subscriptions.size());
+		Assert.assertTrue(subscriptions.visitObject(c135));
+		Assert.assertFalse(subscriptions.visitObject(plain));
+		Assert.assertFalse(subscriptions.visitChildren(plain));
+		Assert.assertFalse(subscriptions.visitObject(wrapper));
+		Assert.assertTrue(subscriptions.visitChildren(wrapper));
+
+		// a behavior handling events makes its component a subscriber
+		TestBehavior behavior = new TestBehavior();
+		leaf.add(behavior);
+		Assert.assertNotSame(subscriptions, indexed.getEventSubscriptions());
+		Assert.assertTrue(subscriptions.visitObject(plain));
+
+		page.send(page, Broadcast.DEPTH, new Payload());
+		assertEquals(6, behavior.sequence);
+		assertEquals(7, nested.sequence);
+		assertEquals(8, page.sequence);
+		Assert.assertTrue(indexed.getEventSubscriptions().visitChildren(plain));
+	}
+
 
 	private void assertPath(Testable... testables)
 	{
@@ -31,7 +31,6 @@ import java.util.List;
 import java.util.Optional;
 import java.util.Random;
 
-import org.apache.commons.collections4.map.LinkedMap;
 import org.apache.wicket.core.util.lang.WicketObjects;
 import org.apache.wicket.markup.IMarkupResourceStreamProvider;
 import org.apache.wicket.markup.html.WebComponent;
@@ -465,28 +464,28 @@ public class MarkupContainerTest extends WicketTestCase
 		assertChildrenType(wmc, List.class);
 
 		addNChildren(wmc, 1);
-		assertChildrenType(wmc, LinkedMap.class);
+		assertChildrenType(wmc, ChildTable.class);
 	}
 
 	@Test
-	public void childrenBecomesLinkedMapWhenThresholdPassed() throws Exception
+	public void childrenBecomesChildTableWhenThresholdPassed() throws Exception
 	{
 		WebMarkupContainer wmc = new WebMarkupContainer("id");
 
 		addNChildren(wmc, NUMBER_OF_CHILDREN_FOR_A_MAP + 1);
 
-		assertChildrenType(wmc, LinkedMap.class);
+		assertChildrenType(wmc, ChildTable.class);
 	}
 
 	@Test
-	public void linkedMapChildrenBecomesChild()
+	public void childTableChildrenBecomesChild()
 	{
 		WebMarkupContainer wmc = new WebMarkupContainer("id");
 
 		addNChildren(wmc, NUMBER_OF_CHILDREN_FOR_A_MAP);
 		wmc.add(new EmptyPanel("panel"));
 
-		assertChildrenType(wmc, LinkedMap.class);
+		assertChildrenType(wmc, ChildTable.class);
 
 		Iterator<Component> iterator = wmc.iterator();
 		removeNChildren(iterator, NUMBER_OF_CHILDREN_FOR_A_MAP);
@@ -494,6 +493,56 @@ public class MarkupContainerTest extends WicketTestCase
 		assertChildrenType(wmc, EmptyPanel.class);
 	}
 
+	/**
+	 * Lookups, removals and the order of many children survive the compaction of the table and
+	 * serialization.
+	 */
+	@Test
+	public void manyChildren()
+	{
+		int count = 10000;
+		WebMarkupContainer wmc = new WebMarkupContainer("id");
+		addNChildren(wmc, count);
+		assertChildrenType(wmc, ChildTable.class);
+
+		for (int i = 0; i < count; i++)
+		{
+			assertThat(wmc.get("padding" + i).getId(), is("padding" + i));
+		}
+
+		for (int i = 0; i < count; i += 2)
+		{
+			wmc.remove("padding" + i);
+		}
+		assertThat(wmc.size(), is(count / 2));
+		assertThat(wmc.get("padding0"), is(nullValue()));
+
+		// replacing keeps the position
+		Label replacement = new Label("padding1", "replacement");
+		wmc.replace(replacement);
+		assertThat(wmc.iterator().next(), is(sameInstance(replacement)));
+
+		WebMarkupContainer clone = WicketObjects.cloneObject(wmc);
+		clone.add(new EmptyPanel("panel"));
+		assertThat(clone.size(), is(count / 2 + 1));
+		assertThat(clone.get("padding1").getDefaultModelObject(), is("replacement"));
+
+		int i = 1;
+		for (Component child : clone)
+		{
+			if (i < count)
+			{
+				assertThat(child.getId(), is("padding" + i));
+				assertThat(clone.get(child.getId()), is(sameInstance(child)));
+				i += 2;
+			}
+			else
+			{
+				assertThat(child.getId(), is("panel"));
+			}
+		}
+	}
+
 	@Test
 	public void listChildrenBecomesChild()
 	{
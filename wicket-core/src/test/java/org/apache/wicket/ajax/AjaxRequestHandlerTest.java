@@ -206,6 +206,23 @@ public class AjaxRequestHandlerTest extends WicketTestCase
 		}
 	}
 
+	/**
+	 * A streamed response is the same as a buffered one
+	 */
+	@Test
+	public void streamedResponse()
+	{
+		tester.startPage(VarargsAddComponentPage.class);
+		tester.clickLink("link");
+		String bufferedResponse = tester.getLastResponseAsString();
+
+		tester.getApplication().getRequestCycleSettings().setStreamAjaxResponses(true);
+
+		tester.startPage(VarargsAddComponentPage.class);
+		tester.clickLink("link");
+		assertEquals(bufferedResponse, tester.getLastResponseAsString());
+	}
+
 	/**
 	 * Testing the default event raised whenever Wicket begins to create an AJAX response
 	 */
@@ -34,6 +34,7 @@ import org.apache.wicket.request.Url;
 import org.apache.wicket.request.component.IRequestableComponent;
 import org.apache.wicket.request.component.IRequestablePage;
 import org.apache.wicket.request.http.WebRequest;
+import org.apache.wicket.request.mapper.CompoundRequestMapper;
 import org.apache.wicket.request.mapper.parameter.INamedParameters;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
 import org.junit.Test;
@@ -130,6 +131,56 @@ public class MountedMapperTest extends AbstractMapperTest
 		assertTrue(page.getPageParameters().getNamedKeys().isEmpty());
 	}
 
+	/**
+	 * A mapper matching case insensitively is a candidate of {@link CompoundRequestMapper} for
+	 * differently cased URLs
+	 */
+	@Test
+	public void decode1CaseInsensitivelyInCompound()
+	{
+		CompoundRequestMapper compound = new CompoundRequestMapper();
+		compound.add(placeholderEncoder);
+		compound.add(encoder.setCaseSensitiveMatch(false));
+		assertEquals(0, encoder.getFixedMountSegments().length);
+
+		Url url = Url.parse("somE/moUnt/paTh");
+		IRequestHandler handler = compound.mapRequest(getRequest(url));
+		assertThat(handler, instanceOf(RenderPageRequestHandler.class));
+	}
+
+	/**
+	 * A subclass matching the segments in a custom way is a candidate of
+	 * {@link CompoundRequestMapper} for all URLs
+	 */
+	@Test
+	public void decode1CustomMatchInCompound()
+	{
+		MountedMapper custom = new MountedMapper("/some/mount/path", MockPage.class)
+		{
+			@Override
+			protected IMapperContext getContext()
+			{
+				return context;
+			}
+
+			@Override
+			protected boolean segmentsMatch(String mountedSegment, String urlSegment)
+			{
+				return mountedSegment.replace("-", "").equals(urlSegment.replace("-", ""));
+			}
+		};
+		assertEquals(0, custom.getFixedMountSegments().length);
+		assertEquals(3, encoder.getFixedMountSegments().length);
+
+		CompoundRequestMapper compound = new CompoundRequestMapper();
+		compound.add(placeholderEncoder);
+		compound.add(custom);
+
+		Url url = Url.parse("so-me/mount/path");
+		IRequestHandler handler = compound.mapRequest(getRequest(url));
+		assertThat(handler, instanceOf(RenderPageRequestHandler.class));
+	}
+
 	/**
 	 *
 	 */
@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup;
+
+import java.util.Set;
+
+import org.apache.wicket.util.tester.WicketTestCase;
+import org.junit.Test;
+
+/**
+ * Tests for {@link MarkupCacheWarmUp}
+ */
+public class MarkupCacheWarmUpTest extends WicketTestCase
+{
+	/**
+	 * The markup of the pages and of their panels is in the cache after the warm-up
+	 */
+	@Test
+	public void warmUp()
+	{
+		IMarkupCache cache = tester.getApplication()
+			.getMarkupSettings()
+			.getMarkupFactory()
+			.getMarkupCache();
+		cache.clear();
+
+		MarkupCacheWarmUp warmUp = new MarkupCacheWarmUp(MarkupInheritancePage_6.class,
+			MarkupInheritanceExtension_1.class).setParallelism(2);
+		warmUp.warmUp(tester.getApplication());
+
+		Set<String> locations = warmUp.getLoadTimes().keySet();
+		assertEquals(3, locations.size());
+		assertLoaded(locations, "MarkupInheritancePage_6.html");
+		assertLoaded(locations, "MarkupInheritanceExtensionPanel_6.html");
+		assertLoaded(locations, "MarkupInheritanceExtension_1.html");
+
+		// including the base markup
+		assertTrue(cache.size() >= 5);
+	}
+
+	private static void assertLoaded(Set<String> locations, String name)
+	{
+		assertTrue(name, locations.stream().anyMatch(location -> location.endsWith(name)));
+	}
+}
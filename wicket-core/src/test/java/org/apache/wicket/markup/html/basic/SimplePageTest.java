@@ -43,6 +43,20 @@ public class SimplePageTest extends WicketTestCase
 		executeTest(SimplePage.class, "SimplePageExpectedResult.html");
 	}
 
+	/**
+	 * The page rendered into bytes is the same as rendered into text
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void renderHomePageAsBytes() throws Exception
+	{
+		tester.getApplication().getRequestCycleSettings().setRenderPagesAsBytes(true);
+
+		executeTest(SimplePage.class, "SimplePageExpectedResult.html");
+		assertTrue(tester.getLastResponse().getBinaryContent().length > 0);
+	}
+
 	/**
 	 * @throws Exception
 	 */
@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.html.form;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.model.Model;
+import org.apache.wicket.util.tester.WicketTestCase;
+import org.apache.wicket.util.visit.IVisit;
+import org.apache.wicket.util.visit.IVisitor;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link FormComponentIndex}
+ */
+public class FormComponentIndexTest extends WicketTestCase
+{
+	private WebPage page;
+
+	private Form<Void> form;
+
+	private Form<Void> nested;
+
+	/**
+	 * Builds a page with a nested form and a form component which does not process its children
+	 */
+	@Before
+	public void before()
+	{
+		page = new WebPage()
+		{
+		};
+		form = new Form<>("form");
+		page.add(form);
+
+		WebMarkupContainer container = new WebMarkupContainer("container");
+		form.add(container);
+		container.add(new TextField<>("text1", Model.of("")));
+
+		FormComponentPanel<String> panel = new FormComponentPanel<String>("panel", Model.of(""))
+		{
+			@Override
+			public boolean processChildren()
+			{
+				return false;
+			}
+		};
+		container.add(panel);
+		panel.add(new TextField<>("text2", Model.of("")));
+
+		nested = new Form<>("nested");
+		panel.add(nested);
+		nested.add(new TextField<>("text3", Model.of("")));
+
+		form.add(new TextField<>("text4", Model.of("")));
+	}
+
+	/**
+	 * The index has the same components in the same order as the visits
+	 */
+	@Test
+	public void sameAsVisits()
+	{
+		FormComponentIndex index = new FormComponentIndex(form, page);
+
+		for (Form<?> f : new Form<?>[] { form, nested })
+		{
+			FormComponentIndex.Entry entry = index.get(f);
+			assertSame(f, entry.form);
+			assertEquals(visitComponentsPostOrder(f), entry.components);
+			assertEquals(visitChildren(f), entry.descendants);
+		}
+
+		assertEquals(1, index.get(form).nestedForms.size());
+		assertEquals(3, index.get(form).getFormComponents().size());
+		assertSame(nested, index.get(form).getFormsPostOrder().get(0));
+		assertSame(form, index.get(form).getFormsPostOrder().get(1));
+	}
+
+	/**
+	 * The index gets invalid when the hierarchy changes
+	 */
+	@Test
+	public void invalidation()
+	{
+		FormComponentIndex index = new FormComponentIndex(form, page);
+		assertTrue(index.isValid());
+
+		form.get("text4").setVisible(false);
+		assertTrue(index.isValid());
+
+		form.add(new TextField<>("text5", Model.of("")));
+		assertFalse(index.isValid());
+
+		index = new FormComponentIndex(form, page);
+		form.remove("text5");
+		assertFalse(index.isValid());
+
+		index = new FormComponentIndex(form, page);
+		((WebMarkupContainer)form.get("container")).removeAll();
+		assertFalse(index.isValid());
+
+		assertFalse(new FormComponentIndex(form, null).isValid());
+	}
+
+	private static List<Component> visitComponentsPostOrder(Form<?> form)
+	{
+		final List<Component> components = new ArrayList<>();
+		FormComponent.visitComponentsPostOrder(form, new IVisitor<Component, Void>()
+		{
+			@Override
+			public void component(Component component, IVisit<Void> visit)
+			{
+				components.add(component);
+			}
+		});
+		return components;
+	}
+
+	private static List<Component> visitChildren(Form<?> form)
+	{
+		final List<Component> components = new ArrayList<>();
+		form.visitChildren(new IVisitor<Component, Void>()
+		{
+			@Override
+			public void component(Component component, IVisit<Void> visit)
+			{
+				components.add(component);
+			}
+		});
+		return components;
+	}
+}
@@ -173,6 +173,62 @@ public class FileUploadFieldTest extends WicketTestCase
 		tester.assertNoErrorMessage();
 	}
 
+	/**
+	 * The uploaded file is passed to the field while the request is parsed
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void streamedUpload() throws IOException
+	{
+		tester.startPage(StreamingPage.class);
+		File tmpFile = writeTestFile(1000);
+		tmpFile.deleteOnExit();
+		FormTester formtester = tester.newFormTester("form");
+		formtester.setFile("upload", tmpFile, "text/plain");
+		formtester.submit();
+
+		StreamingPage page = (StreamingPage)tester.getLastRenderedPage();
+		assertEquals(1, page.uploads);
+		assertArrayEquals(read(tmpFile), page.content);
+		assertTrue(page.submitted);
+	}
+
+	public static class StreamingPage extends MockPageWithFormAndUploadField
+	{
+		/** */
+		private static final long serialVersionUID = 1L;
+
+		int uploads;
+
+		byte[] content;
+
+		boolean submitted;
+
+		/** */
+		public StreamingPage()
+		{
+			getForm().setFileUploadStreaming(true);
+			getForm().replace(new FileUploadField(FILE_UPLOAD_ID)
+			{
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void onFileUpload(FileUpload fileUpload) throws IOException
+				{
+					uploads++;
+					content = fileUpload.getBytes();
+				}
+			});
+		}
+
+		@Override
+		protected void handleFormSubmit() throws Exception
+		{
+			submitted = true;
+		}
+	}
+
 	public static class TestValidationPage extends MockPageWithFormAndUploadField
 	{
 		/** */
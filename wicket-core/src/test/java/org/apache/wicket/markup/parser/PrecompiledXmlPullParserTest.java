@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+
+import org.apache.wicket.markup.parser.IXmlPullParser.HttpTagType;
+import org.apache.wicket.util.time.Time;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link PrecompiledXmlPullParser}
+ */
+public class PrecompiledXmlPullParserTest extends Assert
+{
+	private static final String MARKUP = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+		"<!DOCTYPE html>\n" + "<html xmlns:wicket>\n" +
+		"<head><script>if (a < b) { c(); }</script></head>\n" +
+		"<body><!-- comment --><span wicket:id=\"label\" class='a &amp; b'>text</span>\n" +
+		"<wicket:panel><input type=\"text\" disabled/></wicket:panel>\n" +
+		"<![CDATA[ <raw> ]]>äöü</body>\n" + "</html>";
+
+	private File file;
+
+	/**
+	 * Creates the file for the parsed markup
+	 * 
+	 * @throws IOException
+	 */
+	@Before
+	public void before() throws IOException
+	{
+		file = File.createTempFile("PrecompiledXmlPullParserTest", ".bin");
+		file.delete();
+	}
+
+	/**
+	 * Deletes the file for the parsed markup
+	 */
+	@After
+	public void after()
+	{
+		file.delete();
+	}
+
+	/**
+	 * The elements read from the file are the same as the parsed ones
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void replay() throws Exception
+	{
+		PrecompiledXmlPullParser parsing = parse(MARKUP, Time.millis(1000));
+		assertFalse(parsing.isPrecompiled());
+		XmlPullParser expected = new XmlPullParser();
+		expected.parse(new ByteArrayInputStream(MARKUP.getBytes(StandardCharsets.UTF_8)), null);
+		assertSameElements(expected, parsing);
+		assertTrue(file.exists());
+
+		PrecompiledXmlPullParser replaying = parse(MARKUP, Time.millis(1000));
+		assertTrue(replaying.isPrecompiled());
+		expected = new XmlPullParser();
+		expected.parse(new ByteArrayInputStream(MARKUP.getBytes(StandardCharsets.UTF_8)), null);
+		assertSameElements(expected, replaying);
+		assertEquals("UTF-8", replaying.getEncoding());
+		assertEquals("!DOCTYPE html", replaying.getDoctype().toString());
+	}
+
+	/**
+	 * The markup is parsed again when it has been modified
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void outdated() throws Exception
+	{
+		assertSameElements(MARKUP, parse(MARKUP, Time.millis(1000)));
+
+		PrecompiledXmlPullParser parser = parse(MARKUP, Time.millis(2000));
+		assertFalse(parser.isPrecompiled());
+		assertSameElements(MARKUP, parser);
+
+		String modified = MARKUP.replace("label", "other");
+		parser = parse(modified, Time.millis(2000));
+		assertFalse(parser.isPrecompiled());
+		assertSameElements(modified, parser);
+
+		parser = parse(modified, Time.millis(2000));
+		assertTrue(parser.isPrecompiled());
+		assertSameElements(modified, parser);
+	}
+
+	private PrecompiledXmlPullParser parse(String markup, Time lastModified) throws IOException
+	{
+		PrecompiledXmlPullParser parser = new PrecompiledXmlPullParser(new XmlPullParser(), file,
+			lastModified);
+		parser.parse(new ByteArrayInputStream(markup.getBytes(StandardCharsets.UTF_8)), null);
+		return parser;
+	}
+
+	private void assertSameElements(String markup, IXmlPullParser actual) throws Exception
+	{
+		XmlPullParser expected = new XmlPullParser();
+		expected.parse(new ByteArrayInputStream(markup.getBytes(StandardCharsets.UTF_8)), null);
+		assertSameElements(expected, actual);
+	}
+
+	private void assertSameElements(IXmlPullParser expected, IXmlPullParser actual)
+		throws ParseException
+	{
+		HttpTagType type;
+		do
+		{
+			type = expected.next();
+			assertEquals(type, actual.next());
+			assertEquals(String.valueOf(expected.getString()), String.valueOf(actual.getString()));
+
+			XmlTag expectedTag = expected.getElement();
+			XmlTag actualTag = actual.getElement();
+			if (expectedTag == null)
+			{
+				assertNull(actualTag);
+			}
+			else
+			{
+				assertEquals(expectedTag.toDebugString(), actualTag.toDebugString());
+				assertEquals(expectedTag.getType(), actualTag.getType());
+				assertEquals(expectedTag.getNamespace(), actualTag.getNamespace());
+				assertEquals(expectedTag.getAttributes(), actualTag.getAttributes());
+				assertEquals(expectedTag.getLength(), actualTag.getLength());
+
+				int pos = expectedTag.getPos();
+				assertEquals(expected.getInputFromPositionMarker(pos).toString(),
+					actual.getInputFromPositionMarker(pos).toString());
+				expected.setPositionMarker();
+				actual.setPositionMarker();
+			}
+		}
+		while (type != HttpTagType.NOT_INITIALIZED);
+
+		assertEquals(expected.getInputFromPositionMarker(-1).toString(),
+			actual.getInputFromPositionMarker(-1).toString());
+	}
+}
@@ -16,10 +16,16 @@
  */
 package org.apache.wicket.page;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -393,4 +399,163 @@ public class PageAccessSynchronizerTest extends Assert
 			throw errors.remove();
 		}
 	}
+
+	/**
+	 * Waiting threads get the lock in the order of their arrival
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void fairHandOver() throws Exception
+	{
+		final PageAccessSynchronizer sync = new PageAccessSynchronizer(Duration.seconds(5));
+		final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+
+		sync.lockPage(1);
+
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 5; i++)
+		{
+			final int index = i;
+			Thread thread = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					sync.lockPage(1);
+					order.add(index);
+					sync.unlockAllPages();
+				}
+			};
+			thread.start();
+			threads.add(thread);
+
+			// wait until the thread is queued
+			while (sync.getContentionCount() < i + 1)
+			{
+				Thread.sleep(1);
+			}
+		}
+
+		sync.unlockPage(1);
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+
+		assertEquals(Arrays.asList(0, 1, 2, 3, 4), order);
+		assertEquals(6, sync.getAcquisitionCount());
+		assertEquals(5, sync.getContentionCount());
+		assertEquals(0, sync.getTimeoutCount());
+
+		long waits = 0;
+		for (long count : sync.getWaitTimeHistogram())
+		{
+			waits += count;
+		}
+		assertEquals(5, waits);
+	}
+
+	/**
+	 * A lock can be acquired without blocking a thread
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void lockAsync() throws Exception
+	{
+		final PageAccessSynchronizer sync = new PageAccessSynchronizer(Duration.milliseconds(500));
+		final Object owner = new Object();
+
+		sync.lockPage(1);
+		CompletableFuture<Void> future = sync.lockPageAsync(1, owner);
+		assertFalse(future.isDone());
+
+		sync.unlockAllPages();
+		assertTrue(future.isDone());
+		assertSame(owner, sync.getLocks().get().get(1).getOwner());
+		assertNull(sync.getLocks().get().get(1).getThread());
+
+		// the page is still locked by the owner
+		CompletableFuture<Void> other = sync.lockPageAsync(1, "other");
+		try
+		{
+			other.get();
+			fail("The lock should not have been acquired");
+		}
+		catch (ExecutionException e)
+		{
+			assertTrue(e.getCause() instanceof CouldNotLockPageException);
+		}
+		assertEquals(1, sync.getTimeoutCount());
+
+		sync.unlockPage(1, owner);
+		assertTrue(sync.getLocks().get().isEmpty());
+	}
+
+	/**
+	 * A lock is passed on if the future of the asynchronous request has been cancelled
+	 */
+	@Test
+	public void lockAsyncCancelled()
+	{
+		final PageAccessSynchronizer sync = new PageAccessSynchronizer(Duration.seconds(5));
+
+		sync.lockPage(1);
+		CompletableFuture<Void> cancelled = sync.lockPageAsync(1, "cancelled");
+		CompletableFuture<Void> next = sync.lockPageAsync(1, "next");
+		cancelled.cancel(false);
+
+		sync.unlockAllPages();
+		assertTrue(next.isDone());
+		assertFalse(next.isCompletedExceptionally());
+		assertEquals("next", sync.getLocks().get().get(1).getOwner());
+
+		sync.unlockPage(1, "next");
+		assertTrue(sync.getLocks().get().isEmpty());
+	}
+
+	/**
+	 * The thread completing timed out asynchronous requests ends when no timeout is pending
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void timeoutThreadEnds() throws Exception
+	{
+		final PageAccessSynchronizer sync = new PageAccessSynchronizer(Duration.milliseconds(50));
+
+		sync.lockPage(1);
+		CompletableFuture<Void> future = sync.lockPageAsync(1, "owner");
+		assertTrue(isTimeoutThreadAlive());
+		try
+		{
+			future.get();
+			fail("The lock should not have been acquired");
+		}
+		catch (ExecutionException e)
+		{
+			assertTrue(e.getCause() instanceof CouldNotLockPageException);
+		}
+		sync.unlockAllPages();
+
+		long deadline = System.currentTimeMillis() + 10000;
+		while (isTimeoutThreadAlive() && System.currentTimeMillis() < deadline)
+		{
+			Thread.sleep(100);
+		}
+		assertFalse(isTimeoutThreadAlive());
+	}
+
+	private static boolean isTimeoutThreadAlive()
+	{
+		for (Thread thread : Thread.getAllStackTraces().keySet())
+		{
+			if ("Wicket-PageAccessSynchronizer-Timeout".equals(thread.getName()) && thread.isAlive())
+			{
+				return true;
+			}
+		}
+		return false;
+	}
 }
@@ -19,6 +19,7 @@ package org.apache.wicket.page;
 import org.apache.wicket.Component;
 import org.apache.wicket.markup.parser.filter.HtmlHeaderSectionHandler;
 import org.apache.wicket.mock.MockWebResponse;
+import org.apache.wicket.response.StringResponse;
 import org.apache.wicket.util.tester.WicketTestCase;
 import org.junit.Test;
 
@@ -52,6 +53,44 @@ public class XmlPartialPageUpdateTest extends WicketTestCase
 				"</head>]]></header-contribution></ajax-response>";
 		assertEquals(expected, response.getTextResponse().toString());
 	}
+
+	/**
+	 * Each CDATA end is split, also when adjacent or at the borders of the content.
+	 */
+	@Test
+	public void writeEncoded()
+	{
+		XmlPartialPageUpdate update = new XmlPartialPageUpdate(new PageForPartialUpdate());
+
+		String[] contents = { "", ">", "]]", "]]>", "]]]>", "]]>]]>", "a]]>>b]]", "]>]]x>" };
+		for (String content : contents)
+		{
+			StringResponse response = new StringResponse();
+			update.writeEncoded(response, content);
+			assertEquals(content.replace("]]>", "]]]]><![CDATA[>"), response.toString());
+		}
+	}
+
+	/**
+	 * An override of the deprecated encode() is still used.
+	 */
+	@Test
+	public void encodeOverridden()
+	{
+		XmlPartialPageUpdate update = new XmlPartialPageUpdate(new PageForPartialUpdate())
+		{
+			@Override
+			protected CharSequence encode(CharSequence str)
+			{
+				return str.toString().toUpperCase();
+			}
+		};
+
+		StringResponse response = new StringResponse();
+		update.writeEncoded(response, "a]]>b");
+		assertEquals("A]]>B", response.toString());
+	}
+
 	/**
 	 * 
 	 * see https://issues.apache.org/jira/browse/WICKET-6162
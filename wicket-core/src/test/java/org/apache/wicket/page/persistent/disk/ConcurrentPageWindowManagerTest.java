@@ -0,0 +1,235 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.page.persistent.disk;
+
+import java.security.SecureRandom;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.wicket.pageStore.ConcurrentPageWindowManager;
+import org.apache.wicket.pageStore.PageWindowManager;
+import org.apache.wicket.pageStore.PageWindowManager.PageWindow;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ConcurrentPageWindowManager}
+ */
+public class ConcurrentPageWindowManagerTest extends Assert
+{
+	/**
+	 *
+	 */
+	@Test
+	public void addRemove()
+	{
+		ConcurrentPageWindowManager manager = new ConcurrentPageWindowManager(300);
+		PageWindow window;
+
+		window = manager.createPageWindow(1, 50);
+		assertWindow(window, 1, 0, 50);
+
+		window = manager.createPageWindow(2, 40);
+		assertWindow(window, 2, 50, 40);
+		assertEquals(90, manager.getTotalSize());
+
+		// saving a page again appends it
+		PageWindow old = window;
+		window = manager.createPageWindow(2, 30);
+		assertWindow(window, 2, 90, 30);
+		assertEquals(80, manager.getTotalSize());
+		assertFalse(manager.isValid(old));
+		assertTrue(manager.isValid(window));
+		assertSame(window, manager.getPageWindow(2));
+
+		manager.removePage(2);
+		assertNull(manager.getPageWindow(2));
+		assertFalse(manager.isValid(window));
+		assertEquals(50, manager.getTotalSize());
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void pageWindowCycle()
+	{
+		ConcurrentPageWindowManager manager = new ConcurrentPageWindowManager(100);
+
+		manager.createPageWindow(1, 30);
+		manager.createPageWindow(2, 30);
+		assertWindow(manager.createPageWindow(3, 30), 3, 60, 30);
+
+		// should start at the beginning
+		assertWindow(manager.createPageWindow(4, 20), 4, 0, 20);
+		assertNull(manager.getPageWindow(1));
+		assertNotNull(manager.getPageWindow(2));
+
+		assertWindow(manager.createPageWindow(5, 20), 5, 20, 20);
+		assertNull(manager.getPageWindow(2));
+		assertNotNull(manager.getPageWindow(3));
+
+		List<PageWindow> last = manager.getLastPageWindows(10);
+		assertEquals(3, last.size());
+		assertEquals(5, last.get(0).getPageId());
+		assertEquals(4, last.get(1).getPageId());
+		assertEquals(3, last.get(2).getPageId());
+	}
+
+	/**
+	 * The file space of a cancelled window is reused
+	 */
+	@Test
+	public void reserveAndCancel()
+	{
+		ConcurrentPageWindowManager manager = new ConcurrentPageWindowManager(100);
+
+		PageWindow failed = manager.reservePageWindow(1, 30);
+		manager.cancelPageWindow(failed);
+		assertNull(manager.getPageWindow(1));
+		assertEquals(0, manager.getTotalSize());
+
+		manager.createPageWindow(2, 30);
+		manager.createPageWindow(3, 30);
+
+		// not skipped as if it was still being written
+		assertWindow(manager.createPageWindow(4, 30), 4, 0, 30);
+		assertFalse(manager.publishPageWindow(failed));
+	}
+
+	/**
+	 * A reserved window is neither visible nor overwritten until it is published
+	 */
+	@Test
+	public void reserveAndPublish()
+	{
+		ConcurrentPageWindowManager manager = new ConcurrentPageWindowManager(100);
+
+		PageWindow first = manager.reservePageWindow(1, 30);
+		assertWindow(first, 1, 0, 30);
+		assertNull(manager.getPageWindow(1));
+
+		manager.createPageWindow(2, 30);
+		manager.createPageWindow(3, 30);
+
+		// the space of the first window is still being written, so it is skipped
+		assertWindow(manager.createPageWindow(4, 30), 4, 30, 30);
+		assertNull(manager.getPageWindow(2));
+
+		assertTrue(manager.publishPageWindow(first));
+		assertSame(first, manager.getPageWindow(1));
+		assertTrue(manager.isValid(first));
+
+		// a newer window of the same page wins
+		PageWindow older = manager.reservePageWindow(3, 10);
+		PageWindow newer = manager.createPageWindow(3, 10);
+		assertFalse(manager.publishPageWindow(older));
+		assertSame(newer, manager.getPageWindow(3));
+	}
+
+	/**
+	 * The windows of a {@link PageWindowManager} are taken over unchanged
+	 */
+	@Test
+	public void importWindows()
+	{
+		PageWindowManager legacy = new PageWindowManager(100);
+		legacy.createPageWindow(1, 30);
+		legacy.createPageWindow(2, 30);
+		legacy.createPageWindow(3, 30);
+
+		ConcurrentPageWindowManager manager = new ConcurrentPageWindowManager(legacy, 100);
+		assertWindow(manager.getPageWindow(1), 1, 0, 30);
+		assertWindow(manager.getPageWindow(2), 2, 30, 30);
+		assertWindow(manager.getPageWindow(3), 3, 60, 30);
+		assertEquals(90, manager.getTotalSize());
+
+		// continues after the newest window
+		assertWindow(manager.createPageWindow(4, 10), 4, 90, 10);
+		assertWindow(manager.createPageWindow(5, 10), 5, 0, 10);
+		assertNull(manager.getPageWindow(1));
+	}
+
+	/**
+	 * Concurrently saved pages never get overlapping windows
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void randomOperations() throws Exception
+	{
+		final ConcurrentPageWindowManager manager = new ConcurrentPageWindowManager(1000L);
+		final SecureRandom random = new SecureRandom();
+		final AtomicReference<String> failure = new AtomicReference<>();
+
+		ExecutorService executorService = Executors.newFixedThreadPool(50);
+		for (int i = 0; i < 10000; i++)
+		{
+			executorService.submit(() -> {
+				int pageId = 1 + random.nextInt(10);
+				switch (random.nextInt(3))
+				{
+					case 0 :
+						manager.createPageWindow(pageId, 1 + random.nextInt(300));
+						break;
+					case 1 :
+						manager.getPageWindow(pageId);
+						break;
+					default :
+						manager.removePage(pageId);
+				}
+
+				List<PageWindow> windows = manager.getLastPageWindows(Integer.MAX_VALUE);
+				int total = 0;
+				for (PageWindow window : windows)
+				{
+					total += window.getFilePartSize();
+				}
+				if (total > 1000 + 300)
+				{
+					failure.set("Total size " + total + " exceeds the maximum size");
+				}
+			});
+		}
+		executorService.shutdown();
+		assertTrue(executorService.awaitTermination(1, TimeUnit.MINUTES));
+		assertNull(failure.get());
+
+		// once the dust settled the remaining windows don't overlap
+		List<PageWindow> windows = manager.getLastPageWindows(Integer.MAX_VALUE);
+		for (PageWindow w1 : windows)
+		{
+			for (PageWindow w2 : windows)
+			{
+				if (w1 != w2)
+				{
+					assertTrue(w1.getFilePartOffset() + w1.getFilePartSize() <= w2.getFilePartOffset() ||
+						w2.getFilePartOffset() + w2.getFilePartSize() <= w1.getFilePartOffset());
+				}
+			}
+		}
+	}
+
+	private void assertWindow(PageWindow window, int pageId, int filePartOffset, int filePartSize)
+	{
+		assertTrue(window.getPageId() == pageId && window.getFilePartOffset() == filePartOffset &&
+			window.getFilePartSize() == filePartSize);
+	}
+}
@@ -17,11 +17,15 @@
 package org.apache.wicket.pageStore;
 
 import java.security.SecureRandom;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.wicket.versioning.InMemoryPageStore;
+import org.junit.Assert;
 import org.junit.Test;
 
 /**
@@ -77,6 +81,167 @@ public class AsynchronousDataStoreTest
 		DATA_STORE.destroy();
 	}
 
+	/**
+	 * Pages stored again while waiting in the queue are written only once, with their last data.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void coalescedWrites() throws Exception
+	{
+		final CountDownLatch saving = new CountDownLatch(1);
+		final CountDownLatch proceed = new CountDownLatch(1);
+		InMemoryPageStore wrapped = new InMemoryPageStore()
+		{
+			@Override
+			public void storeData(String sessionId, int pageId, byte[] pageAsBytes)
+			{
+				saving.countDown();
+				try
+				{
+					proceed.await();
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+				super.storeData(sessionId, pageId, pageAsBytes);
+			}
+
+			@Override
+			public void destroy()
+			{
+				// keep the pages for the assertions
+			}
+		};
+		AsynchronousDataStore dataStore = new AsynchronousDataStore(wrapped, 10, 2);
+
+		// blocks the thread saving the pages of the session
+		dataStore.storeData("s1", 1, new byte[] { 1 });
+		saving.await();
+
+		dataStore.storeData("s1", 2, new byte[] { 2 });
+		dataStore.storeData("s1", 2, new byte[] { 3 });
+		dataStore.storeData("s1", 2, new byte[] { 4 });
+		// the first page is being saved already, so it is queued again
+		dataStore.storeData("s1", 1, new byte[] { 5 });
+
+		Assert.assertArrayEquals(new byte[] { 4 }, dataStore.getData("s1", 2));
+		Assert.assertEquals(2, dataStore.getCoalescedWriteCount());
+
+		proceed.countDown();
+		dataStore.destroy();
+
+		Assert.assertEquals(0, dataStore.getQueueDepth());
+		Assert.assertEquals(3, dataStore.getWriteCount());
+		Assert.assertArrayEquals(new byte[] { 5 }, wrapped.getData("s1", 1));
+		Assert.assertArrayEquals(new byte[] { 4 }, wrapped.getData("s1", 2));
+	}
+
+	/**
+	 * A failure of the wrapped store does not stop the saving of the following pages
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void failedWrite() throws Exception
+	{
+		InMemoryPageStore wrapped = new InMemoryPageStore()
+		{
+			@Override
+			public void storeData(String sessionId, int pageId, byte[] pageAsBytes)
+			{
+				if (pageId == 1)
+				{
+					throw new IllegalStateException("expected");
+				}
+				super.storeData(sessionId, pageId, pageAsBytes);
+			}
+
+			@Override
+			public void destroy()
+			{
+				// keep the pages for the assertions
+			}
+		};
+
+		AsynchronousDataStore dataStore = new AsynchronousDataStore(wrapped, 10);
+		dataStore.storeData("s1", 1, new byte[] { 1 });
+		dataStore.storeData("s1", 2, new byte[] { 2 });
+		dataStore.destroy();
+
+		Assert.assertNull(dataStore.getData("s1", 1));
+		Assert.assertArrayEquals(new byte[] { 2 }, wrapped.getData("s1", 2));
+		Assert.assertEquals(1, dataStore.getWriteCount());
+	}
+
+	/**
+	 * A storing thread waits for room in a full queue, also when it is interrupted, instead of
+	 * saving the page itself
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void backpressure() throws Exception
+	{
+		final CountDownLatch saving = new CountDownLatch(1);
+		final CountDownLatch proceed = new CountDownLatch(1);
+		final Set<String> savingThreads = ConcurrentHashMap.newKeySet();
+		InMemoryPageStore wrapped = new InMemoryPageStore()
+		{
+			@Override
+			public void storeData(String sessionId, int pageId, byte[] pageAsBytes)
+			{
+				savingThreads.add(Thread.currentThread().getName());
+				saving.countDown();
+				try
+				{
+					proceed.await();
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+				super.storeData(sessionId, pageId, pageAsBytes);
+			}
+
+			@Override
+			public void destroy()
+			{
+				// keep the pages for the assertions
+			}
+		};
+		final AsynchronousDataStore dataStore = new AsynchronousDataStore(wrapped, 1);
+
+		// blocks the saving thread, the next page fills the queue
+		dataStore.storeData("s1", 1, new byte[] { 1 });
+		saving.await();
+		dataStore.storeData("s1", 2, new byte[] { 2 });
+
+		final AtomicBoolean interrupted = new AtomicBoolean();
+		Thread storing = new Thread(() -> {
+			dataStore.storeData("s1", 3, new byte[] { 3 });
+			interrupted.set(Thread.currentThread().isInterrupted());
+		}, "storing");
+		storing.start();
+
+		while (dataStore.getBackpressureWaitCount() == 0)
+		{
+			Thread.sleep(10);
+		}
+		storing.interrupt();
+		storing.join(200);
+		Assert.assertTrue(storing.isAlive());
+
+		proceed.countDown();
+		storing.join();
+		Assert.assertTrue(interrupted.get());
+
+		dataStore.destroy();
+		Assert.assertArrayEquals(new byte[] { 3 }, wrapped.getData("s1", 3));
+		Assert.assertFalse(savingThreads.contains("storing"));
+	}
+
 	private static abstract class AbstractTask implements Runnable
 	{
 		protected abstract void r();
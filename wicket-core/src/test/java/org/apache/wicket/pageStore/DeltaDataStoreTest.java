@@ -0,0 +1,281 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.versioning.InMemoryPageStore;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link DeltaDataStore}
+ */
+public class DeltaDataStoreTest extends Assert
+{
+	private final Random random = new Random(42);
+
+	/** the ids of the base snapshots in the wrapped store */
+	private final Set<Integer> snapshots = new TreeSet<>();
+
+	private InMemoryPageStore inner;
+
+	private DeltaDataStore store;
+
+	/**
+	 * Creates the store
+	 */
+	@Before
+	public void before()
+	{
+		inner = new InMemoryPageStore()
+		{
+			@Override
+			public void storeData(String sessionId, int pageId, byte[] pageAsBytes)
+			{
+				if (pageId < 0)
+				{
+					snapshots.add(pageId);
+				}
+				super.storeData(sessionId, pageId, pageAsBytes);
+			}
+
+			@Override
+			public void removeData(String sessionId, int pageId)
+			{
+				snapshots.remove(pageId);
+				super.removeData(sessionId, pageId);
+			}
+		};
+		store = new DeltaDataStore(inner, 4);
+	}
+
+	/**
+	 * Similar pages are stored as small deltas
+	 */
+	@Test
+	public void similarPages()
+	{
+		byte[][] pages = new byte[5][];
+		pages[0] = randomBytes(10000);
+		for (int i = 1; i < pages.length; i++)
+		{
+			pages[i] = modify(pages[i - 1]);
+		}
+
+		for (int i = 0; i < pages.length; i++)
+		{
+			store.storeData("s1", i, pages[i]);
+		}
+		for (int i = 0; i < pages.length; i++)
+		{
+			assertArrayEquals(pages[i], store.getData("s1", i));
+		}
+
+		// the base snapshot of the fifth page is the first one
+		assertEquals(2, store.getSnapshotCount());
+		assertEquals(5, store.getDeltaCount());
+		assertEquals(50100, store.getPageBytes());
+		// the first base is stored again before it is replaced
+		assertTrue(store.getWrittenBytes() < store.getPageBytes() * 2 / 3);
+	}
+
+	/**
+	 * A page which differs too much from the base gets a new base snapshot
+	 */
+	@Test
+	public void differentPages()
+	{
+		byte[] page1 = randomBytes(5000);
+		byte[] page2 = randomBytes(5000);
+		store.storeData("s1", 1, page1);
+		store.storeData("s1", 2, page2);
+
+		assertEquals(2, store.getSnapshotCount());
+		assertArrayEquals(page1, store.getData("s1", 1));
+		assertArrayEquals(page2, store.getData("s1", 2));
+	}
+
+	/**
+	 * Base snapshots are removed when no page refers to them anymore
+	 */
+	@Test
+	public void removeSnapshots()
+	{
+		byte[] page1 = randomBytes(5000);
+		byte[] page2 = randomBytes(5000);
+		store.storeData("s1", 1, page1);
+		store.storeData("s1", 2, modify(page1));
+		store.storeData("s1", 3, page2);
+		assertEquals(2, snapshots.size());
+
+		store.removeData("s1", 1);
+		assertEquals(2, snapshots.size());
+		store.removeData("s1", 2);
+		assertEquals(1, snapshots.size());
+
+		// the current base is kept for the following pages
+		store.removeData("s1", 3);
+		assertEquals(1, snapshots.size());
+
+		byte[] page4 = modify(page2);
+		store.storeData("s1", 4, page4);
+		assertEquals(2, store.getSnapshotCount());
+		assertArrayEquals(page4, store.getData("s1", 4));
+	}
+
+	/**
+	 * A page whose base snapshot is gone is missing
+	 */
+	@Test
+	public void missingSnapshot()
+	{
+		byte[] page1 = randomBytes(5000);
+		store.storeData("s1", 1, page1);
+		store.storeData("s1", 2, modify(page1));
+		int baseId = snapshots.iterator().next();
+
+		// e.g. discarded by the wrapped store
+		inner.removeData("s1", baseId);
+
+		// the current base snapshot is still at hand
+		assertNotNull(store.getData("s1", 2));
+
+		// the previous base is stored again when it is replaced
+		store.storeData("s1", 3, randomBytes(5000));
+		assertNotNull(store.getData("s1", 2));
+
+		inner.removeData("s1", baseId);
+		assertNull(store.getData("s1", 1));
+		assertNull(store.getData("s1", 2));
+	}
+
+	/**
+	 * Data stored before the wrapped store got decorated can still be read
+	 */
+	@Test
+	public void undecoratedData()
+	{
+		byte[] page = randomBytes(100);
+		page[0] = (byte)0xAC;
+		inner.storeData("s1", 1, page);
+
+		assertArrayEquals(page, store.getData("s1", 1));
+	}
+
+	/**
+	 * The base snapshot outlives the pages referring to it when the data file of the session gets
+	 * full
+	 */
+	@Test
+	public void fullDataFile()
+	{
+		DiskDataStore disk = new DiskDataStore("DeltaDataStoreTest",
+			new java.io.File(System.getProperty("java.io.tmpdir")), Bytes.kilobytes(16))
+		{
+			@Override
+			public void storeData(String sessionId, int pageId, byte[] pageAsBytes)
+			{
+				if (pageId < 0)
+				{
+					snapshots.add(pageId);
+				}
+				super.storeData(sessionId, pageId, pageAsBytes);
+			}
+		};
+		DeltaDataStore deltas = new DeltaDataStore(disk, 1000);
+		try
+		{
+			byte[] original = randomBytes(4000);
+			byte[] page = null;
+			for (int i = 1; i <= 1000; i++)
+			{
+				page = modify(original);
+				deltas.storeData("s1", i, page);
+			}
+
+			assertEquals(1, deltas.getSnapshotCount());
+			assertNotNull(disk.getData("s1", snapshots.iterator().next()));
+			assertNull(deltas.getData("s1", 1));
+			assertArrayEquals(page, deltas.getData("s1", 1000));
+		}
+		finally
+		{
+			deltas.removeData("s1");
+			deltas.destroy();
+		}
+	}
+
+	/**
+	 * The diff restores the target for all kinds of inputs
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void diffAndPatch() throws IOException
+	{
+		byte[] base = randomBytes(1000);
+		assertDiff(base, new byte[0]);
+		assertDiff(new byte[0], base);
+		assertDiff(base, new byte[] { 1, 2, 3 });
+		assertDiff(base, base);
+		assertDiff(base, modify(base));
+
+		byte[] repeated = new byte[5000];
+		assertDiff(repeated, repeated);
+		assertDiff(base, repeated);
+	}
+
+	private void assertDiff(byte[] base, byte[] target) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DeltaDataStore.diff(base, target, new DataOutputStream(bytes));
+		byte[] patched = DeltaDataStore.patch(base,
+			new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+		assertArrayEquals(target, patched);
+	}
+
+	private byte[] randomBytes(int length)
+	{
+		byte[] bytes = new byte[length];
+		random.nextBytes(bytes);
+		return bytes;
+	}
+
+	/**
+	 * Changes, inserts and removes a few bytes
+	 */
+	private byte[] modify(byte[] data)
+	{
+		byte[] result = new byte[data.length + 10];
+		int split = random.nextInt(data.length / 2);
+		System.arraycopy(data, 0, result, 0, split);
+		System.arraycopy(randomBytes(20), 0, result, split, 20);
+		System.arraycopy(data, split + 10, result, split + 20, data.length - split - 10);
+		result[result.length - 1 - random.nextInt(data.length / 2)]++;
+		return result;
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.util.Arrays;
+
+import org.apache.wicket.pageStore.DefaultPageStore.SerializedPage;
+import org.apache.wicket.util.lang.Bytes;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link OffHeapPageCache}
+ */
+public class OffHeapPageCacheTest extends Assert
+{
+	private static final int BLOCK = OffHeapPageCache.BLOCK_SIZE;
+
+	private static SerializedPage page(String sessionId, int pageId, int length)
+	{
+		byte[] data = new byte[length];
+		Arrays.fill(data, (byte)pageId);
+		data[length - 1] = (byte)length;
+		return new SerializedPage(sessionId, pageId, data);
+	}
+
+	private static void assertPage(SerializedPage expected, SerializedPage actual)
+	{
+		assertEquals(expected, actual);
+		assertArrayEquals(expected.getData(), actual.getData());
+	}
+
+	/**
+	 * Stores, replaces and removes pages
+	 */
+	@Test
+	public void storeAndRemove()
+	{
+		OffHeapPageCache cache = new OffHeapPageCache(Bytes.bytes(10 * BLOCK));
+
+		SerializedPage page1 = page("s1", 1, 100);
+		SerializedPage page2 = page("s1", 2, 3 * BLOCK + 1);
+		SerializedPage page3 = page("s2", 1, BLOCK);
+		cache.storePage("s1", 1, page1);
+		cache.storePage("s1", 2, page2);
+		cache.storePage("s2", 1, page3);
+
+		assertPage(page1, cache.getPage("s1", 1));
+		assertPage(page2, cache.getPage("s1", 2));
+		assertPage(page3, cache.getPage("s2", 1));
+		assertNull(cache.getPage("s2", 2));
+		assertEquals(100 + 3 * BLOCK + 1 + BLOCK, cache.getSize());
+
+		SerializedPage replacement = page("s1", 1, 2 * BLOCK);
+		cache.storePage("s1", 1, replacement);
+		assertPage(replacement, cache.getPage("s1", 1));
+
+		assertPage(replacement, cache.removePage("s1", 1));
+		assertNull(cache.getPage("s1", 1));
+
+		cache.removePages("s1");
+		assertNull(cache.getPage("s1", 2));
+		assertPage(page3, cache.getPage("s2", 1));
+		assertEquals(1, cache.getCount());
+		assertEquals(BLOCK, cache.getSize());
+
+		assertEquals(5, cache.getHits());
+		assertEquals(3, cache.getMisses());
+	}
+
+	/**
+	 * The least recently used pages are evicted when the cache is full
+	 */
+	@Test
+	public void eviction()
+	{
+		OffHeapPageCache cache = new OffHeapPageCache(Bytes.bytes(4 * BLOCK));
+
+		cache.storePage("s1", 1, page("s1", 1, BLOCK));
+		cache.storePage("s1", 2, page("s1", 2, BLOCK));
+		cache.storePage("s1", 3, page("s1", 3, 2 * BLOCK));
+
+		// touch the first page
+		assertNotNull(cache.getPage("s1", 1));
+
+		cache.storePage("s1", 4, page("s1", 4, BLOCK));
+		assertNull(cache.getPage("s1", 2));
+		assertNotNull(cache.getPage("s1", 1));
+		assertEquals(1, cache.getEvictions());
+
+		cache.storePage("s1", 5, page("s1", 5, 3 * BLOCK));
+		assertNull(cache.getPage("s1", 3));
+		assertNull(cache.getPage("s1", 4));
+		assertPage(page("s1", 1, BLOCK), cache.getPage("s1", 1));
+		assertPage(page("s1", 5, 3 * BLOCK), cache.getPage("s1", 5));
+		assertEquals(3, cache.getEvictions());
+	}
+
+	/**
+	 * A page bigger than the cache is not cached
+	 */
+	@Test
+	public void tooBig()
+	{
+		OffHeapPageCache cache = new OffHeapPageCache(Bytes.bytes(2 * BLOCK));
+
+		cache.storePage("s1", 1, page("s1", 1, 100));
+		cache.storePage("s1", 2, page("s1", 2, 2 * BLOCK + 1));
+		assertNull(cache.getPage("s1", 2));
+		assertNotNull(cache.getPage("s1", 1));
+	}
+}
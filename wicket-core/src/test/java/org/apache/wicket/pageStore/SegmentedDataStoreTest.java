@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.apache.wicket.util.file.Files;
+import org.apache.wicket.util.lang.Bytes;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link SegmentedDataStore}
+ */
+public class SegmentedDataStoreTest extends Assert
+{
+	private File folder;
+
+	private SegmentedDataStore store;
+
+	/**
+	 * Creates a store with small segments
+	 */
+	@Before
+	public void before()
+	{
+		folder = new File(System.getProperty("java.io.tmpdir"), "SegmentedDataStoreTest-" +
+			System.nanoTime());
+		store = newStore(Bytes.kilobytes(10));
+	}
+
+	/**
+	 * Removes the store folder
+	 */
+	@After
+	public void after()
+	{
+		store.destroy();
+		Files.removeFolder(folder);
+	}
+
+	private SegmentedDataStore newStore(Bytes maxSizePerSession)
+	{
+		return new SegmentedDataStore("app", folder, maxSizePerSession, Bytes.kilobytes(4));
+	}
+
+	private static byte[] data(int length, int value)
+	{
+		byte[] data = new byte[length];
+		Arrays.fill(data, (byte)value);
+		return data;
+	}
+
+	/**
+	 * Stores, overwrites and removes pages
+	 */
+	@Test
+	public void storeAndRemove()
+	{
+		store.storeData("s1", 1, data(100, 1));
+		store.storeData("s1", 2, data(200, 2));
+		store.storeData("s2", 1, data(300, 3));
+
+		assertArrayEquals(data(100, 1), store.getData("s1", 1));
+		assertArrayEquals(data(200, 2), store.getData("s1", 2));
+		assertArrayEquals(data(300, 3), store.getData("s2", 1));
+
+		store.storeData("s1", 1, data(150, 4));
+		assertArrayEquals(data(150, 4), store.getData("s1", 1));
+
+		store.removeData("s1", 1);
+		assertNull(store.getData("s1", 1));
+		assertArrayEquals(data(200, 2), store.getData("s1", 2));
+
+		store.removeData("s1");
+		assertNull(store.getData("s1", 2));
+		assertArrayEquals(data(300, 3), store.getData("s2", 1));
+	}
+
+	/**
+	 * The oldest pages of a session are discarded when it grows over the maximum size
+	 */
+	@Test
+	public void maxSizePerSession()
+	{
+		for (int i = 0; i < 20; i++)
+		{
+			store.storeData("s1", i, data(1000, i));
+		}
+
+		for (int i = 0; i < 10; i++)
+		{
+			assertNull(store.getData("s1", i));
+		}
+		for (int i = 10; i < 20; i++)
+		{
+			assertArrayEquals(data(1000, i), store.getData("s1", i));
+		}
+	}
+
+	/**
+	 * A page bigger than the segment size gets its own segment
+	 */
+	@Test
+	public void pageBiggerThanSegment()
+	{
+		store.storeData("s1", 1, data(6000, 1));
+		assertArrayEquals(data(6000, 1), store.getData("s1", 1));
+	}
+
+	/**
+	 * Segments without live data are deleted and sparse ones are compacted
+	 */
+	@Test
+	public void compaction()
+	{
+		// fills three segments and starts a fourth one
+		for (int i = 0; i < 13; i++)
+		{
+			store.storeData("s" + i, 1, data(1000, i));
+		}
+		assertEquals(4, store.getSegmentCount());
+
+		// empties the first segment and leaves one page in the second one
+		for (int i = 0; i < 7; i++)
+		{
+			store.removeData("s" + i);
+		}
+		assertEquals(3, store.getSegmentCount());
+
+		// moves the remaining page of the second segment to the fourth one
+		store.compact();
+		assertEquals(2, store.getSegmentCount());
+
+		for (int i = 7; i < 13; i++)
+		{
+			assertArrayEquals(data(1000, i), store.getData("s" + i, 1));
+		}
+	}
+
+	/**
+	 * The pages survive a restart
+	 */
+	@Test
+	public void restart()
+	{
+		for (int i = 0; i < 10; i++)
+		{
+			store.storeData("s1", i, data(1000, i));
+		}
+		store.destroy();
+
+		store = newStore(Bytes.kilobytes(10));
+		for (int i = 0; i < 10; i++)
+		{
+			assertArrayEquals(data(1000, i), store.getData("s1", i));
+		}
+	}
+}
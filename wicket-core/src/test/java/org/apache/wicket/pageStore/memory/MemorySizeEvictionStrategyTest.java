@@ -17,10 +17,11 @@
 package org.apache.wicket.pageStore.memory;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import org.apache.wicket.util.lang.Bytes;
-import org.apache.wicket.core.util.lang.WicketObjects;
 import org.junit.Test;
 
 /***/
@@ -35,31 +36,46 @@ public class MemorySizeEvictionStrategyTest
 	{
 		PageTable pageTable = new PageTable();
 
-		long sizeOfEmptyPageTable = WicketObjects.sizeof(pageTable);
-
 		// evict to empty page table
-		MemorySizeEvictionStrategy strategy = new MemorySizeEvictionStrategy(
-			Bytes.bytes(sizeOfEmptyPageTable));
+		MemorySizeEvictionStrategy strategy = new MemorySizeEvictionStrategy(Bytes.bytes(0));
 		pageTable.storePage(PAGE1.length, PAGE1);
 		assertEquals(1, pageTable.size());
 		strategy.evict(pageTable);
 		assertEquals(0, pageTable.size());
-		long currentSize = WicketObjects.sizeof(pageTable);
-		assertTrue("Current size: |" + currentSize + "|, strategy size: |" + sizeOfEmptyPageTable +
-			"|", currentSize <= sizeOfEmptyPageTable);
+		assertEquals(0, pageTable.getSize());
 
-		// evict to page table with size: empty + PAGE2
+		// evict to page table with size: PAGE2
+		strategy = new MemorySizeEvictionStrategy(Bytes.bytes(PAGE2.length));
 		pageTable.storePage(PAGE2.length, PAGE2);
-		long sizeOfWithPage2 = WicketObjects.sizeof(pageTable);
-		strategy = new MemorySizeEvictionStrategy(Bytes.bytes(sizeOfWithPage2));
 		pageTable.storePage(PAGE1.length, PAGE1);
 		assertEquals(2, pageTable.size());
 		strategy.evict(pageTable);
-		// the following assertion depends on the fact that PAGE2 has
-		// bigger size than PAGE1
+		// the least recently used page is evicted
 		assertEquals(1, pageTable.size());
-		currentSize = WicketObjects.sizeof(pageTable);
-		assertTrue("Current size: |" + currentSize + "|, strategy size: |" + sizeOfWithPage2 + "|",
-			currentSize <= sizeOfWithPage2);
+		long currentSize = pageTable.getSize();
+		assertTrue("Current size: |" + currentSize + "|, strategy size: |" + PAGE2.length + "|",
+			currentSize <= PAGE2.length);
+		assertNotNull(pageTable.getPage(PAGE1.length));
+	}
+
+	/**
+	 * Only as many of the oldest pages as needed are evicted
+	 */
+	@Test
+	public void evictOldest()
+	{
+		PageTable pageTable = new PageTable();
+		MemorySizeEvictionStrategy strategy = new MemorySizeEvictionStrategy(Bytes.bytes(10));
+
+		for (int i = 1; i <= 5; i++)
+		{
+			pageTable.storePage(i, new byte[4]);
+			strategy.evict(pageTable);
+		}
+		assertEquals(2, pageTable.size());
+		assertEquals(8, pageTable.getSize());
+		assertNull(pageTable.getPage(3));
+		assertNotNull(pageTable.getPage(4));
+		assertNotNull(pageTable.getPage(5));
 	}
 }
@@ -19,6 +19,12 @@ package org.apache.wicket.pageStore.memory;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
 import org.junit.Test;
 
 /***/
@@ -55,4 +61,47 @@ public class PageTableTest
 		// index: 1, 3
 		assertEquals(Integer.valueOf(3), pageTable.getOldest());
 	}
+
+	/**
+	 * The size is updated as pages are stored and removed
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void size() throws Exception
+	{
+		PageTable pageTable = new PageTable();
+		assertEquals(0, pageTable.getSize());
+
+		pageTable.storePage(1, new byte[10]);
+		pageTable.storePage(2, new byte[20]);
+		assertEquals(30, pageTable.getSize());
+
+		// replaced
+		pageTable.storePage(1, new byte[5]);
+		assertEquals(25, pageTable.getSize());
+
+		pageTable.removePage(2);
+		pageTable.removePage(3);
+		assertEquals(5, pageTable.getSize());
+
+		// recomputed after deserialization
+		assertEquals(5, copy(pageTable).getSize());
+
+		pageTable.clear();
+		assertEquals(0, pageTable.getSize());
+	}
+
+	private PageTable copy(PageTable pageTable) throws IOException, ClassNotFoundException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes))
+		{
+			out.writeObject(pageTable);
+		}
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())))
+		{
+			return (PageTable)in.readObject();
+		}
+	}
 }
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.protocol.http;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.wicket.markup.RawMarkup;
+import org.apache.wicket.mock.MockWebResponse;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link EncodingBufferedWebResponse}
+ */
+public class EncodingBufferedWebResponseTest extends Assert
+{
+	private static final Charset UTF_8 = StandardCharsets.UTF_8;
+
+	/**
+	 * Text and already encoded markup end up in the written order
+	 */
+	@Test
+	public void textAndBytes()
+	{
+		RawMarkup markup = new RawMarkup("</p>");
+		assertSame(markup.getBytes(UTF_8), markup.getBytes(UTF_8));
+
+		EncodingBufferedWebResponse response = new EncodingBufferedWebResponse(null, UTF_8);
+		response.setContentType("text/html; charset=UTF-8");
+		response.write("<p>");
+		response.write("Gr\u00fc\u00dfe".getBytes(UTF_8));
+		response.write(" \u20ac ");
+		response.write(markup.getBytes(UTF_8));
+
+		MockWebResponse target = new MockWebResponse();
+		response.writeTo(target);
+		assertArrayEquals("<p>Gr\u00fc\u00dfe \u20ac </p>".getBytes(UTF_8), target.getBinaryResponse());
+		assertEquals("text/html; charset=UTF-8", target.getContentType());
+	}
+
+	/**
+	 * The written text can be read and replaced
+	 */
+	@Test
+	public void replaceText()
+	{
+		EncodingBufferedWebResponse response = new EncodingBufferedWebResponse(null, UTF_8);
+		response.setContentType("text/html; charset=UTF-8");
+		assertNull(response.getText());
+
+		response.write("<p>");
+		response.write("Gr\u00fc\u00dfe".getBytes(UTF_8));
+		response.write(" \u20ac");
+		assertEquals("<p>Gr\u00fc\u00dfe \u20ac", response.getText().toString());
+
+		response.setText("<p>\u20ac");
+		response.write("</p>".getBytes(UTF_8));
+		assertEquals("<p>\u20ac</p>", response.getText().toString());
+
+		MockWebResponse target = new MockWebResponse();
+		response.writeTo(target);
+		assertArrayEquals("<p>\u20ac</p>".getBytes(UTF_8), target.getBinaryResponse());
+		assertEquals("text/html; charset=UTF-8", target.getContentType());
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.protocol.http;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import javax.servlet.http.Cookie;
+
+import org.apache.wicket.mock.MockWebResponse;
+import org.apache.wicket.util.file.Files;
+import org.apache.wicket.util.tester.WicketTestCase;
+import org.apache.wicket.util.time.Duration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link FileBufferedResponseStore}
+ */
+public class FileBufferedResponseStoreTest extends WicketTestCase
+{
+	/** stands in for a folder shared by the nodes of a cluster */
+	private File folder;
+
+	/**
+	 * Creates the folder
+	 * 
+	 * @throws IOException
+	 */
+	@Before
+	public void createFolder() throws IOException
+	{
+		folder = java.nio.file.Files.createTempDirectory("FileBufferedResponseStoreTest").toFile();
+	}
+
+	/**
+	 * Removes the folder
+	 */
+	@After
+	public void removeFolder()
+	{
+		Files.removeFolder(folder);
+	}
+
+	/**
+	 * A response stored by one node is served once by another one
+	 */
+	@Test
+	public void otherNode()
+	{
+		FileBufferedResponseStore node1 = new FileBufferedResponseStore(folder, Duration.minutes(1));
+		FileBufferedResponseStore node2 = new FileBufferedResponseStore(folder, Duration.minutes(1));
+
+		BufferedWebResponse response = new BufferedWebResponse(null);
+		response.setContentType("text/html; charset=UTF-8");
+		response.setHeader("X-Test", "value");
+		Cookie cookie = new Cookie("name", "cookie");
+		cookie.setPath("/path");
+		cookie.setHttpOnly(true);
+		response.addCookie(cookie);
+		response.write("<p>Gr\u00fc\u00dfe</p>");
+		node1.storeResponse("session/url", response);
+
+		assertTrue(node2.hasResponse("session/url"));
+		assertFalse(node2.hasResponse("session/other"));
+
+		BufferedWebResponse stored = node2.getAndRemoveResponse("session/url");
+		assertNotNull(stored);
+		MockWebResponse target = new MockWebResponse();
+		stored.writeTo(target);
+		assertEquals("text/html; charset=UTF-8", target.getContentType());
+		assertEquals("value", target.getHeader("X-Test"));
+		assertEquals(1, target.getCookies().size());
+		assertEquals("cookie", target.getCookies().get(0).getValue());
+		assertEquals("/path", target.getCookies().get(0).getPath());
+		assertTrue(target.getCookies().get(0).isHttpOnly());
+		assertArrayEquals("<p>Gr\u00fc\u00dfe</p>".getBytes(StandardCharsets.UTF_8),
+			target.getBinaryResponse());
+
+		// served only once
+		assertNull(node1.getAndRemoveResponse("session/url"));
+		assertFalse(node2.hasResponse("session/url"));
+
+		assertEquals(1, node2.getHits());
+		assertEquals(0, node2.getMisses());
+		assertEquals(1, node1.getMisses());
+		assertEquals(0, folder.listFiles().length);
+	}
+
+	/**
+	 * An expired response is not served
+	 */
+	@Test
+	public void expired()
+	{
+		FileBufferedResponseStore store = new FileBufferedResponseStore(folder, Duration.minutes(1));
+
+		BufferedWebResponse response = new BufferedWebResponse(null);
+		response.write("text");
+		store.storeResponse("session/url", response);
+
+		File[] files = folder.listFiles();
+		assertEquals(1, files.length);
+		files[0].setLastModified(System.currentTimeMillis() - Duration.minutes(2).getMilliseconds());
+
+		assertFalse(store.hasResponse("session/url"));
+		assertNull(store.getAndRemoveResponse("session/url"));
+		assertEquals(1, store.getMisses());
+	}
+}
@@ -17,12 +17,14 @@
 package org.apache.wicket.protocol.http;
 
 import java.security.SecureRandom;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.wicket.util.SlowTests;
+import org.apache.wicket.util.lang.Bytes;
 import org.apache.wicket.util.time.Duration;
 import org.apache.wicket.util.time.Time;
 import org.junit.Assert;
@@ -84,6 +86,63 @@ public class StoredResponsesMapTest extends Assert
 		map.put("1", new Object());
 	}
 
+	/**
+	 * Verifies that the least recently used responses are removed when the size limit is reached
+	 */
+	@Test
+	public void maxSize()
+	{
+		// 1000 bytes per shard
+		StoredResponsesMap map = new StoredResponsesMap(1000, Bytes.bytes(16 * 1000),
+			Duration.days(1));
+		for (int i = 0; i < 100; i++)
+		{
+			// 200 bytes
+			map.put("key" + i, response(100));
+		}
+
+		int size = map.size();
+		assertTrue(size <= 16 * 5);
+		assertEquals(100 - size, map.getEvictions());
+		assertTrue(map.containsKey("key99"));
+	}
+
+	/**
+	 * Verifies the counting of hits, misses and expirations
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void metrics() throws Exception
+	{
+		StoredResponsesMap map = new StoredResponsesMap(1000, Duration.milliseconds(50));
+		BufferedWebResponse response = response(10);
+		map.put("1", response);
+		assertSame(response, map.get("1"));
+		assertSame(response, map.remove("1"));
+		assertNull(map.remove("1"));
+		assertNull(map.get("2"));
+
+		map.put("3", response(10));
+		TimeUnit.MILLISECONDS.sleep(100);
+		assertFalse(map.containsKey("3"));
+		assertNull(map.remove("3"));
+
+		assertEquals(2, map.getHits());
+		assertEquals(3, map.getMisses());
+		assertEquals(1, map.getExpirations());
+		assertEquals(0, map.getEvictions());
+	}
+
+	private static BufferedWebResponse response(int length)
+	{
+		BufferedWebResponse response = new BufferedWebResponse(null);
+		char[] text = new char[length];
+		Arrays.fill(text, 'x');
+		response.write(new String(text));
+		return response;
+	}
+
 	/**
 	 * <a href="https://issues.apache.org/jira/browse/WICKET-3736">WICKET-3736</a>
 	 * 
@@ -0,0 +1,230 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.resource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+
+import org.apache.wicket.mock.MockWebRequest;
+import org.apache.wicket.mock.MockWebResponse;
+import org.apache.wicket.protocol.http.BufferedWebResponse;
+import org.apache.wicket.protocol.http.mock.MockHttpServletResponse;
+import org.apache.wicket.request.Url;
+import org.apache.wicket.request.resource.IResource.Attributes;
+import org.apache.wicket.response.ByteArrayResponse;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link PartWriterCallback}
+ */
+public class PartWriterCallbackTest extends Assert
+{
+	private static final String CONTENT = "0123456789abcdefghij";
+
+	private File file;
+
+	/**
+	 * Creates the file
+	 *
+	 * @throws IOException
+	 */
+	@Before
+	public void before() throws IOException
+	{
+		file = File.createTempFile("PartWriterCallbackTest", ".txt");
+		try (OutputStream out = new FileOutputStream(file))
+		{
+			out.write(CONTENT.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	/**
+	 * Deletes the file
+	 */
+	@After
+	public void after()
+	{
+		file.delete();
+	}
+
+	/**
+	 * Whole files and parts of them are transferred by the channel of the file
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void fileParts() throws IOException
+	{
+		assertEquals(CONTENT, write(null, null));
+		assertEquals("01234567", write(0L, 7L));
+		assertEquals("3456789", write(3L, 9L));
+		assertEquals("fghij", write(15L, -1L));
+		assertEquals("fghij", write(15L, null));
+		assertEquals("0123", write(null, 3L));
+	}
+
+	/**
+	 * The data is transferred to the output stream of the container if it is a channel, after the
+	 * buffered headers
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void channelOutputStream() throws IOException
+	{
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final MockHttpServletResponse servletResponse = new MockHttpServletResponse(null)
+		{
+			@Override
+			public ServletOutputStream getOutputStream()
+			{
+				return new ChannelOutputStream(bytes);
+			}
+		};
+		final AtomicBoolean flushed = new AtomicBoolean();
+		MockWebResponse response = new MockWebResponse()
+		{
+			@Override
+			public Object getContainerResponse()
+			{
+				return servletResponse;
+			}
+
+			@Override
+			public void flush()
+			{
+				assertEquals(0, bytes.size());
+				flushed.set(true);
+			}
+		};
+
+		new PartWriterCallback(new FileInputStream(file), (long)CONTENT.length(), 5L, 9L).setClose(
+			true).writeData(new Attributes(new MockWebRequest(Url.parse("")), response));
+
+		assertTrue(flushed.get());
+		assertEquals("56789", new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * A buffered response gets the data, so that it stays behind the buffered one
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void bufferedResponse() throws IOException
+	{
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final MockHttpServletResponse servletResponse = new MockHttpServletResponse(null)
+		{
+			@Override
+			public ServletOutputStream getOutputStream()
+			{
+				return new ChannelOutputStream(bytes);
+			}
+		};
+		MockWebResponse originalResponse = new MockWebResponse()
+		{
+			@Override
+			public Object getContainerResponse()
+			{
+				return servletResponse;
+			}
+		};
+		BufferedWebResponse response = new BufferedWebResponse(originalResponse);
+		response.write("01234".getBytes(StandardCharsets.UTF_8));
+
+		new PartWriterCallback(new FileInputStream(file), (long)CONTENT.length(), 5L, 9L).setClose(
+			true).writeData(new Attributes(new MockWebRequest(Url.parse("")), response));
+		response.writeTo(originalResponse);
+
+		assertEquals(0, bytes.size());
+		assertEquals("0123456789",
+			new String(originalResponse.getBinaryResponse(), StandardCharsets.UTF_8));
+	}
+
+	private String write(Long startbyte, Long endbyte) throws IOException
+	{
+		ByteArrayResponse response = new ByteArrayResponse();
+		new PartWriterCallback(new FileInputStream(file), (long)CONTENT.length(), startbyte,
+			endbyte).setClose(true).writeData(
+			new Attributes(new MockWebRequest(Url.parse("")), response));
+		return new String(response.getBytes(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * An output stream which is a channel too, like the ones of some containers
+	 */
+	private static class ChannelOutputStream extends ServletOutputStream
+		implements
+			WritableByteChannel
+	{
+		private final ByteArrayOutputStream bytes;
+
+		private ChannelOutputStream(ByteArrayOutputStream bytes)
+		{
+			this.bytes = bytes;
+		}
+
+		@Override
+		public void write(int b)
+		{
+			fail("data is written to the channel");
+		}
+
+		@Override
+		public int write(ByteBuffer src)
+		{
+			int length = src.remaining();
+			while (src.hasRemaining())
+			{
+				bytes.write(src.get());
+			}
+			return length;
+		}
+
+		@Override
+		public boolean isOpen()
+		{
+			return true;
+		}
+
+		@Override
+		public boolean isReady()
+		{
+			return true;
+		}
+
+		@Override
+		public void setWriteListener(WriteListener writeListener)
+		{
+		}
+	}
+}
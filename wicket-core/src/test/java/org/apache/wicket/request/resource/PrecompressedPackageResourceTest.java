@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.resource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.wicket.protocol.http.mock.MockHttpServletRequest;
+import org.apache.wicket.protocol.http.mock.MockHttpServletResponse;
+import org.apache.wicket.request.Request;
+import org.apache.wicket.request.Response;
+import org.apache.wicket.request.resource.IResource.Attributes;
+import org.apache.wicket.response.ByteArrayResponse;
+import org.apache.wicket.util.io.IOUtils;
+import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.util.tester.WicketTestCase;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for sending compressed versions of {@link PackageResource}s
+ */
+public class PrecompressedPackageResourceTest extends WicketTestCase
+{
+	/**
+	 * Enables compressed resources and uses a locale without localized versions of the resources
+	 */
+	@Before
+	public void before()
+	{
+		tester.getApplication().getResourceSettings().setUsePrecompressedResources(true);
+		tester.getSession().setLocale(Locale.CHINA);
+	}
+
+	/**
+	 * The compressed version next to the resource is sent if the client accepts it
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void precompressed() throws IOException
+	{
+		MockHttpServletResponse response = respond("compressed.txt", "gzip, deflate");
+
+		assertEquals("gzip", response.getHeader("Content-Encoding"));
+		assertEquals("Accept-Encoding", response.getHeader("Vary"));
+
+		InputStream compressed = getClass().getResourceAsStream("compressed.txt.gz");
+		try
+		{
+			assertArrayEquals(IOUtils.toByteArray(compressed), response.getBinaryContent());
+		}
+		finally
+		{
+			IOUtils.closeQuietly(compressed);
+		}
+		assertEquals("compressed.txt", gunzip(response.getBinaryContent()));
+	}
+
+	/**
+	 * The resource is sent as is if the client does not accept the compressed version
+	 */
+	@Test
+	public void notAccepted()
+	{
+		MockHttpServletResponse response = respond("compressed.txt", "br, gzip;q=0");
+
+		assertNull(response.getHeader("Content-Encoding"));
+		assertEquals("Accept-Encoding", response.getHeader("Vary"));
+		assertEquals("compressed.txt", new String(response.getBinaryContent()));
+	}
+
+	/**
+	 * A resource without compressed version does not vary
+	 */
+	@Test
+	public void withoutCompressedVersion()
+	{
+		MockHttpServletResponse response = respond("resource.txt", "gzip");
+
+		assertNull(response.getHeader("Content-Encoding"));
+		assertNull(response.getHeader("Vary"));
+		assertEquals("resource.txt", new String(response.getBinaryContent()));
+	}
+
+	/**
+	 * The compressed version is created once when processed resources are cached
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void generated() throws IOException
+	{
+		tester.getApplication().getResourceSettings().setProcessedResourceCacheSize(
+			Bytes.kilobytes(100));
+
+		MockHttpServletResponse response = respond("resource.txt", "gzip");
+		assertEquals("gzip", response.getHeader("Content-Encoding"));
+		assertEquals("resource.txt", gunzip(response.getBinaryContent()));
+
+		ProcessedResourceCache cache = tester.getApplication()
+			.getResourceSettings()
+			.getProcessedResourceCache();
+		long hits = cache.getHits();
+
+		ByteArrayResponse byteResponse = new ByteArrayResponse();
+		new PackageResourceReference(getClass(), "resource.txt").getResource().respond(
+			new Attributes(tester.getRequestCycle().getRequest(), byteResponse));
+		assertEquals("resource.txt", gunzip(byteResponse.getBytes()));
+		assertEquals(hits + 1, cache.getHits());
+	}
+
+	/**
+	 * The compressed version next to a processed resource is not sent, it lacks the processing
+	 */
+	@Test
+	public void processed()
+	{
+		PackageResource resource = new PackageResource(getClass(), "compressed.txt", null, null,
+			null)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected byte[] processResponse(Attributes attributes, byte[] original)
+			{
+				return new String(original).toUpperCase().getBytes();
+			}
+		};
+
+		Request request = tester.getRequestCycle().getRequest();
+		((MockHttpServletRequest)request.getContainerRequest()).setHeader("Accept-Encoding",
+			"gzip");
+		Response response = tester.getRequestCycle().getResponse();
+		resource.respond(new Attributes(request, response));
+
+		MockHttpServletResponse httpResponse = (MockHttpServletResponse)response.getContainerResponse();
+		assertNull(httpResponse.getHeader("Content-Encoding"));
+		assertEquals("COMPRESSED.TXT", new String(httpResponse.getBinaryContent()));
+	}
+
+	/**
+	 * The quality values of content codings
+	 */
+	@Test
+	public void quality()
+	{
+		assertEquals(0, PackageResource.getQuality(null, "gzip"), 0);
+		assertEquals(1, PackageResource.getQuality("gzip", "gzip"), 0);
+		assertEquals(1, PackageResource.getQuality("deflate, GZIP", "gzip"), 0);
+		assertEquals(0.5, PackageResource.getQuality("br;q=0.5, gzip", "br"), 0);
+		assertEquals(0, PackageResource.getQuality("br, gzip; q=0", "gzip"), 0);
+		assertEquals(0, PackageResource.getQuality("deflate", "gzip"), 0);
+		assertEquals(0.1, PackageResource.getQuality("br, *;q=0.1", "gzip"), 0.0001);
+		assertEquals(0, PackageResource.getQuality("*, gzip;q=0", "gzip"), 0);
+	}
+
+	private MockHttpServletResponse respond(String name, String acceptEncoding)
+	{
+		Request request = tester.getRequestCycle().getRequest();
+		((MockHttpServletRequest)request.getContainerRequest()).setHeader("Accept-Encoding",
+			acceptEncoding);
+		Response response = tester.getRequestCycle().getResponse();
+
+		new PackageResourceReference(getClass(), name).getResource().respond(
+			new Attributes(request, response));
+		return (MockHttpServletResponse)response.getContainerResponse();
+	}
+
+	private static String gunzip(byte[] bytes) throws IOException
+	{
+		return new String(IOUtils.toByteArray(new GZIPInputStream(new ByteArrayInputStream(bytes))));
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.resource;
+
+import org.apache.wicket.util.lang.Bytes;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ProcessedResourceCache}
+ */
+public class ProcessedResourceCacheTest extends Assert
+{
+	/**
+	 * Content is used only for the same modification time
+	 */
+	@Test
+	public void lastModified()
+	{
+		ProcessedResourceCache cache = new ProcessedResourceCache(Bytes.bytes(100));
+
+		byte[] content = new byte[10];
+		cache.put(PackageResource.class, "a.js", 1000, content);
+		assertSame(content, cache.get(PackageResource.class, "a.js", 1000));
+		assertNull(cache.get(PackageResource.class, "a.js", 2000));
+		assertNull(cache.get(CssPackageResource.class, "a.js", 1000));
+		assertNull(cache.get(PackageResource.class, "b.js", 1000));
+
+		byte[] modified = new byte[20];
+		cache.put(PackageResource.class, "a.js", 2000, modified);
+		assertSame(modified, cache.get(PackageResource.class, "a.js", 2000));
+		assertEquals(20, cache.getSize());
+
+		cache.remove(PackageResource.class, "a.js");
+		assertNull(cache.get(PackageResource.class, "a.js", 2000));
+		assertEquals(0, cache.getSize());
+
+		assertEquals(2, cache.getHits());
+		assertEquals(4, cache.getMisses());
+	}
+
+	/**
+	 * The least recently used content is removed when the cache is full
+	 */
+	@Test
+	public void eviction()
+	{
+		ProcessedResourceCache cache = new ProcessedResourceCache(Bytes.bytes(100));
+
+		cache.put(PackageResource.class, "a.js", 0, new byte[40]);
+		cache.put(PackageResource.class, "b.js", 0, new byte[40]);
+		assertNotNull(cache.get(PackageResource.class, "a.js", 0));
+
+		cache.put(PackageResource.class, "c.js", 0, new byte[40]);
+		assertNull(cache.get(PackageResource.class, "b.js", 0));
+		assertNotNull(cache.get(PackageResource.class, "a.js", 0));
+		assertNotNull(cache.get(PackageResource.class, "c.js", 0));
+		assertEquals(80, cache.getSize());
+
+		// too big to be cached at all
+		cache.put(PackageResource.class, "d.js", 0, new byte[101]);
+		assertNull(cache.get(PackageResource.class, "d.js", 0));
+		assertEquals(80, cache.getSize());
+	}
+
+	/**
+	 * A resource is watched only once until it is modified
+	 */
+	@Test
+	public void watch()
+	{
+		ProcessedResourceCache cache = new ProcessedResourceCache(Bytes.bytes(100));
+
+		assertTrue(cache.watch(PackageResource.class, "a.js"));
+		assertFalse(cache.watch(PackageResource.class, "a.js"));
+		assertTrue(cache.watch(CssPackageResource.class, "a.js"));
+
+		cache.unwatch(PackageResource.class, "a.js");
+		assertTrue(cache.watch(PackageResource.class, "a.js"));
+	}
+}
@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.response;
+
+import org.apache.wicket.MockPageWithLink;
+import org.apache.wicket.util.string.AppendingStringBuffer;
+import org.apache.wicket.util.tester.WicketTestCase;
+import org.junit.Test;
+
+/**
+ * Tests for {@link RenderBufferPool}
+ */
+public class RenderBufferPoolTest extends WicketTestCase
+{
+	/**
+	 * Returned buffers are reused, unless too big or the pool is full
+	 */
+	@Test
+	public void borrowAndRelease()
+	{
+		RenderBufferPool pool = new RenderBufferPool(2, 100);
+
+		AppendingStringBuffer buffer1 = pool.borrow(16);
+		AppendingStringBuffer buffer2 = pool.borrow(16);
+		AppendingStringBuffer buffer3 = pool.borrow(16);
+		buffer1.append("content");
+
+		pool.release(buffer1);
+		pool.release(buffer2);
+		pool.release(buffer3);
+		pool.release(new AppendingStringBuffer(200));
+		assertEquals(2, pool.getCount());
+
+		assertSame(buffer2, pool.borrow(16));
+		AppendingStringBuffer reused = pool.borrow(16);
+		assertSame(buffer1, reused);
+		assertEquals(0, reused.length());
+
+		assertEquals(2, pool.getHits());
+		assertEquals(3, pool.getMisses());
+		assertEquals(2, pool.getDiscards());
+	}
+
+	/**
+	 * The buffers of a request are reused by the following requests
+	 */
+	@Test
+	public void reuseByFollowingRequests()
+	{
+		tester.getApplication().getRequestCycleSettings().setRenderBufferPoolSize(10);
+		RenderBufferPool pool = tester.getApplication()
+			.getRequestCycleSettings()
+			.getRenderBufferPool();
+
+		tester.startPage(MockPageWithLink.class);
+		String response = tester.getLastResponseAsString();
+		assertTrue(pool.getCount() > 0);
+
+		tester.startPage(MockPageWithLink.class);
+		assertEquals(response, tester.getLastResponseAsString());
+		assertTrue(pool.getHits() > 0);
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.serialize.java;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.wicket.MockPageWithForm;
+import org.apache.wicket.markup.html.WebComponent;
+import org.apache.wicket.markup.html.form.DropDownChoice;
+import org.apache.wicket.markup.html.form.Form;
+import org.apache.wicket.model.Model;
+import org.apache.wicket.util.tester.WicketTestCase;
+import org.junit.Test;
+
+/**
+ * Tests for {@link CompactJavaSerializer}
+ */
+public class CompactJavaSerializerTest extends WicketTestCase
+{
+	/**
+	 * A page survives the round trip with all its components and models
+	 */
+	@Test
+	public void page()
+	{
+		CompactJavaSerializer serializer = new CompactJavaSerializer("CompactJavaSerializerTest");
+
+		MockPageWithForm page = new MockPageWithForm();
+		page.get("form:dropdown").setDefaultModelObject("Select me");
+
+		byte[] bytes = serializer.serialize(page);
+		MockPageWithForm deserialized = (MockPageWithForm)serializer.deserialize(bytes);
+
+		assertNotSame(page, deserialized);
+		Form<?> form = (Form<?>)deserialized.get("form");
+		assertSame(deserialized, form.getParent());
+		DropDownChoice<?> dropDown = (DropDownChoice<?>)form.get("dropdown");
+		assertEquals("Select me", dropDown.getDefaultModelObject());
+		assertEquals(1, dropDown.getChoices().size());
+		assertEquals(1, dropDown.getBehaviors().size());
+
+		// the class descriptors of the registered classes are omitted
+		byte[] javaBytes = new JavaSerializer("CompactJavaSerializerTest").serialize(page);
+		assertTrue(bytes.length < javaBytes.length);
+	}
+
+	/**
+	 * Instances of classes which are not registered are serialized with their class descriptors
+	 */
+	@Test
+	public void unregisteredClasses()
+	{
+		CompactJavaSerializer serializer = new CompactJavaSerializer("CompactJavaSerializerTest",
+			new ClassDescriptorRegistry());
+
+		List<Object> list = new ArrayList<>();
+		list.add(new Value("value"));
+		list.add(new WebComponent("component", Model.of("model")));
+
+		@SuppressWarnings("unchecked")
+		List<Object> deserialized = (List<Object>)serializer.deserialize(serializer.serialize(list));
+		assertEquals("value", ((Value)deserialized.get(0)).value);
+		assertEquals("model", ((WebComponent)deserialized.get(1)).getDefaultModelObject());
+	}
+
+	/**
+	 * The output buffer is reused
+	 */
+	@Test
+	public void repeatedSerialization()
+	{
+		CompactJavaSerializer serializer = new CompactJavaSerializer("CompactJavaSerializerTest");
+
+		for (int i = 0; i < 10; i++)
+		{
+			Value value = new Value("value" + i);
+			assertEquals(value.value, ((Value)serializer.deserialize(serializer.serialize(value))).value);
+		}
+	}
+
+	/**
+	 * Data written with different registered classes is rejected
+	 */
+	@Test(expected = RuntimeException.class)
+	public void differentRegistry()
+	{
+		CompactJavaSerializer serializer = new CompactJavaSerializer("CompactJavaSerializerTest");
+		byte[] bytes = serializer.serialize(new Value("value"));
+
+		CompactJavaSerializer other = new CompactJavaSerializer("CompactJavaSerializerTest",
+			ClassDescriptorRegistry.withDefaults().register(Value.class));
+		other.deserialize(bytes);
+	}
+
+	private static class Value implements Serializable
+	{
+		private final String value;
+
+		private Value(String value)
+		{
+			this.value = value;
+		}
+	}
+}
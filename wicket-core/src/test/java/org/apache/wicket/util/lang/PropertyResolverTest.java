@@ -221,6 +221,26 @@ public class PropertyResolverTest extends WicketTestCase
 		assertEquals(street, "wicket-street");
 	}
 
+	/**
+	 * A parsed expression is reused for other objects, even if the parts resolve differently.
+	 */
+	@Test
+	public void parsedExpressionReused()
+	{
+		HashMap<String, Object> map = new HashMap<>();
+		map.put("address.test", "value");
+		person.setAddressMap(new HashMap<String, Address>());
+
+		assertEquals("value", PropertyResolver.getValue("..[address.test]", map));
+		assertNull(PropertyResolver.getValue("..[address.test]", person.getAddressMap()));
+
+		PropertyResolver.setValue("addressAt.0", person, new Address(), CONVERTER);
+		PropertyResolver.setValue("addressAt.0.street", person, "wicket-street", CONVERTER);
+		assertEquals("wicket-street", PropertyResolver.getValue("addressAt.0.street", person));
+		assertEquals("wicket-street", PropertyResolver.getValue("addressAt.0.street", person));
+		assertNull(PropertyResolver.getValue("addressAt.0.street", map));
+	}
+
 	/**
 	 * @throws Exception
 	 */
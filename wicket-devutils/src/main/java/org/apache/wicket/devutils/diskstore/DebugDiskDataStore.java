@@ -21,8 +21,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.wicket.Application;
+import org.apache.wicket.pageStore.ConcurrentPageWindowManager;
 import org.apache.wicket.pageStore.DiskDataStore;
-import org.apache.wicket.pageStore.PageWindowManager;
 import org.apache.wicket.pageStore.PageWindowManager.PageWindow;
 import org.apache.wicket.protocol.http.WebApplication;
 import org.apache.wicket.util.lang.Bytes;
@@ -71,7 +71,7 @@ public class DebugDiskDataStore extends DiskDataStore
 		SessionEntry sessionEntry = getSessionEntry(sessionId, false);
 		if (sessionEntry != null)
 		{
-			PageWindowManager windowManager = sessionEntry.getManager();
+			ConcurrentPageWindowManager windowManager = sessionEntry.getWindowManager();
 			pageWindows.addAll(windowManager.getLastPageWindows(count));
 		}
 		return pageWindows;
@@ -16,6 +16,7 @@
  */
 package org.apache.wicket.request.mapper;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
 
@@ -252,6 +253,26 @@ public abstract class AbstractMapper implements IRequestMapper
 		return res;
 	}
 
+	/**
+	 * Returns the leading segments of a mount path which are neither placeholders nor contain one.
+	 *
+	 * @param mountSegments
+	 *            the segments of the mount path
+	 * @return the leading fixed segments
+	 * @see IMountedRequestMapper
+	 */
+	protected String[] getFixedSegments(String[] mountSegments)
+	{
+		int count = 0;
+		while (count < mountSegments.length &&
+			mountSegments[count].contains("${") == false &&
+			mountSegments[count].contains("#{") == false)
+		{
+			count++;
+		}
+		return Arrays.copyOf(mountSegments, count);
+	}
+
 	/**
 	 * @return the locale to use for parsing any numbers in the request parameters
 	 */
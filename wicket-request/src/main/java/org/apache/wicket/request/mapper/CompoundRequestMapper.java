@@ -17,9 +17,12 @@
 package org.apache.wicket.request.mapper;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.apache.wicket.request.IRequestHandler;
@@ -34,6 +37,11 @@ import org.slf4j.LoggerFactory;
  * Thread safe compound {@link IRequestMapper}. The mappers are searched depending on their
  * compatibility score and the orders they were registered. If two or more {@link IRequestMapper}s
  * have the same compatibility score, the last registered mapper has highest priority.
+ * <p>
+ * To avoid asking every mapper for its score, the {@link IMountedRequestMapper}s are indexed by
+ * their fixed mount segments: only the mappers whose fixed segments match the start of the request
+ * URL and all mappers which cannot be indexed are scored.
+ * </p>
  * 
  * @author igor.vaynberg
  * @author Matej Knopp
@@ -95,27 +103,139 @@ public class CompoundRequestMapper implements ICompoundRequestMapper
 		}
 	}
 
+	/**
+	 * A node of the index, keyed by a fixed mount segment.
+	 */
+	private static class Node
+	{
+		/** the positions of the mappers whose fixed segments end at this node */
+		private int[] mappers = new int[0];
+
+		private final Map<String, Node> children = new HashMap<>();
+
+		private void add(final int mapper)
+		{
+			mappers = Arrays.copyOf(mappers, mappers.length + 1);
+			mappers[mappers.length - 1] = mapper;
+		}
+	}
+
+	/**
+	 * The index of the mappers registered at a time.
+	 */
+	private static class Index
+	{
+		private final IRequestMapper[] mappers;
+
+		private final Node root = new Node();
+
+		private Index(final IRequestMapper[] mappers)
+		{
+			this.mappers = mappers;
+
+			for (int i = 0; i < mappers.length; i++)
+			{
+				Node node = root;
+				if (mappers[i] instanceof IMountedRequestMapper)
+				{
+					for (String segment : ((IMountedRequestMapper)mappers[i]).getFixedMountSegments())
+					{
+						Node child = node.children.get(segment);
+						if (child == null)
+						{
+							child = new Node();
+							node.children.put(segment, child);
+						}
+						node = child;
+					}
+				}
+				node.add(i);
+			}
+		}
+
+		/**
+		 * @return the candidates for the given URL segments, in the order of registration
+		 */
+		private List<IRequestMapper> getCandidates(final List<String> segments)
+		{
+			if (segments.isEmpty())
+			{
+				// e.g. a mounted mapper may redirect from the home page
+				return Arrays.asList(mappers);
+			}
+
+			int[] positions = root.mappers;
+			Node node = root;
+			for (int i = 0; i < segments.size() && node.children.isEmpty() == false; i++)
+			{
+				node = node.children.get(segments.get(i));
+				if (node == null)
+				{
+					break;
+				}
+				int[] merged = Arrays.copyOf(positions, positions.length + node.mappers.length);
+				System.arraycopy(node.mappers, 0, merged, positions.length, node.mappers.length);
+				positions = merged;
+			}
+			if (positions != root.mappers)
+			{
+				Arrays.sort(positions);
+			}
+
+			List<IRequestMapper> candidates = new ArrayList<>(positions.length);
+			for (int position : positions)
+			{
+				candidates.add(mappers[position]);
+			}
+			return candidates;
+		}
+	}
+
 	private final List<IRequestMapper> mappers = new CopyOnWriteArrayList<>();
 
+	/** lazily built, discarded whenever a mapper is added or removed */
+	private volatile Index index;
+
 	@Override
-	public CompoundRequestMapper add(final IRequestMapper mapper)
+	public synchronized CompoundRequestMapper add(final IRequestMapper mapper)
 	{
 		mappers.add(0, mapper);
+		index = null;
 		return this;
 	}
 
 	@Override
-	public CompoundRequestMapper remove(final IRequestMapper mapper)
+	public synchronized CompoundRequestMapper remove(final IRequestMapper mapper)
 	{
 		mappers.remove(mapper);
+		index = null;
 		return this;
 	}
 
+	private Index getIndex()
+	{
+		Index result = index;
+		if (result == null)
+		{
+			synchronized (this)
+			{
+				result = index;
+				if (result == null)
+				{
+					result = new Index(mappers.toArray(new IRequestMapper[0]));
+					index = result;
+				}
+			}
+		}
+		return result;
+	}
+
 	/**
 	 * Searches the registered {@link IRequestMapper}s to find one that can map the {@link Request}.
-	 * Each registered {@link IRequestMapper} is asked to provide its compatibility score. Then the
+	 * Each candidate {@link IRequestMapper} is asked to provide its compatibility score. Then the
 	 * mappers are asked to map the request in order depending on the provided compatibility
-	 * score.
+	 * score. {@link IMountedRequestMapper}s whose fixed segments do not match the URL are no
+	 * candidates.
 	 * <p>
 	 * The mapper with highest compatibility score which can map the request is returned.
 	 * 
@@ -126,9 +246,10 @@ public class CompoundRequestMapper implements ICompoundRequestMapper
 	@Override
 	public IRequestHandler mapRequest(final Request request)
 	{
-		List<MapperWithScore> list = new ArrayList<>(mappers.size());
+		List<IRequestMapper> candidates = getIndex().getCandidates(request.getUrl().getSegments());
+		List<MapperWithScore> list = new ArrayList<>(candidates.size());
 
-		for (IRequestMapper mapper : this)
+		for (IRequestMapper mapper : candidates)
 		{
 			int score = mapper.getCompatibilityScore(request);
 			list.add(new MapperWithScore(mapper, score));
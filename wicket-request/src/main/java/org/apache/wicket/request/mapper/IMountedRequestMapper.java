@@ -0,0 +1,40 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.mapper;
+
+import org.apache.wicket.request.IRequestMapper;
+
+/**
+ * A interface to be implemented by {@link IRequestMapper}s which map only requests whose URL starts
+ * with fixed segments, e.g. the static part of a mount path. {@link CompoundRequestMapper} uses
+ * these segments to skip the mapper for all other requests.
+ * <p>
+ * For any URL with at least one segment that does not start with the fixed segments the mapper's
+ * {@link #mapRequest(org.apache.wicket.request.Request)} must return <code>null</code>. The
+ * segments are compared case sensitively, so a mapper which matches them case insensitively has to
+ * return an empty array.
+ * </p>
+ */
+public interface IMountedRequestMapper extends IRequestMapper
+{
+	/**
+	 * Returns the fixed segments every URL mapped by this mapper starts with.
+	 *
+	 * @return the fixed segments, an empty array if the mapper cannot be indexed
+	 */
+	String[] getFixedMountSegments();
+}
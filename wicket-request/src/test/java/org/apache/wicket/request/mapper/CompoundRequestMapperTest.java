@@ -16,6 +16,15 @@
  */
 package org.apache.wicket.request.mapper;
 
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.wicket.request.IRequestHandler;
+import org.apache.wicket.request.Request;
+import org.apache.wicket.request.Url;
 import org.apache.wicket.request.mapper.CompoundRequestMapper.MapperWithScore;
 import org.junit.Assert;
 import org.junit.Test;
@@ -47,4 +56,183 @@ public class CompoundRequestMapperTest extends Assert
 	{
 		return new MapperWithScore(null, score);
 	}
+
+	/**
+	 * Only the mappers whose fixed segments match the URL and the mappers which cannot be indexed
+	 * are scored
+	 */
+	@Test
+	public void index()
+	{
+		CompoundRequestMapper compound = new CompoundRequestMapper();
+		List<TestMapper> mounted = new ArrayList<>();
+		for (int i = 0; i < 100; i++)
+		{
+			TestMapper mapper = new TestMapper("page" + i + "/${id}", true);
+			mounted.add(mapper);
+			compound.add(mapper);
+		}
+		TestMapper unindexed = new TestMapper("page5/detail", false);
+		compound.add(unindexed);
+		TestMapper optional = new TestMapper("#{lang}/page5", true);
+		compound.add(optional);
+		TestMapper nested = new TestMapper("page5/detail/${id}", true);
+		compound.add(nested);
+
+		assertSame(nested.handler, compound.mapRequest(request("page5/detail/1")));
+		assertEquals(1, mounted.get(5).scored);
+		assertEquals(0, mounted.get(6).scored);
+		assertEquals(1, unindexed.scored);
+		assertEquals(1, optional.scored);
+		assertEquals(1, nested.scored);
+
+		assertSame(mounted.get(7).handler, compound.mapRequest(request("page7/1")));
+		assertEquals(1, nested.scored);
+		assertEquals(2, unindexed.scored);
+
+		assertSame(optional.handler, compound.mapRequest(request("en/page5")));
+		assertNull(compound.mapRequest(request("unknown")));
+
+		// the index is rebuilt when the mappers change
+		compound.remove(nested);
+		assertSame(unindexed.handler, compound.mapRequest(request("page5/detail/1")));
+		TestMapper added = new TestMapper("page5/detail", true);
+		compound.add(added);
+		assertSame(added.handler, compound.mapRequest(request("page5/detail/1")));
+		assertEquals(1, added.scored);
+
+		// all mappers are asked for the empty URL
+		compound.mapRequest(request(""));
+		assertEquals(1, mounted.get(6).scored);
+	}
+
+	/**
+	 * The mapper registered last wins among mappers with the same score, also when they are indexed
+	 * at different nodes
+	 */
+	@Test
+	public void order()
+	{
+		CompoundRequestMapper compound = new CompoundRequestMapper();
+		TestMapper first = new TestMapper("a/b", true);
+		compound.add(first);
+		TestMapper second = new TestMapper("a/${x}", true);
+		compound.add(second);
+
+		// both score 2
+		assertSame(second.handler, compound.mapRequest(request("a/b")));
+
+		compound.add(new TestMapper("a/b", true));
+		compound.remove(first);
+		compound.add(first);
+		assertSame(first.handler, compound.mapRequest(request("a/b")));
+	}
+
+	/**
+	 * A mapper matching case insensitively is not indexed and still maps differently cased URLs
+	 */
+	@Test
+	public void caseInsensitive()
+	{
+		CompoundRequestMapper compound = new CompoundRequestMapper();
+		TestMapper indexed = new TestMapper("foo/baz", true);
+		compound.add(indexed);
+		TestMapper insensitive = new TestMapper("foo/bar", false)
+		{
+			@Override
+			protected boolean urlStartsWith(Url url, String... segments)
+			{
+				return super.urlStartsWith(Url.parse(url.getPath().toLowerCase(Locale.ROOT)),
+					segments);
+			}
+		};
+		compound.add(insensitive);
+
+		assertSame(insensitive.handler, compound.mapRequest(request("FOO/bar")));
+		assertSame(insensitive.handler, compound.mapRequest(request("foo/BAR")));
+		assertSame(indexed.handler, compound.mapRequest(request("foo/baz")));
+		assertNull(compound.mapRequest(request("FOO/baz")));
+	}
+
+	private static Request request(final String url)
+	{
+		return new Request()
+		{
+			@Override
+			public Url getUrl()
+			{
+				return Url.parse(url);
+			}
+
+			@Override
+			public Url getClientUrl()
+			{
+				return getUrl();
+			}
+
+			@Override
+			public Locale getLocale()
+			{
+				return Locale.ENGLISH;
+			}
+
+			@Override
+			public Charset getCharset()
+			{
+				return StandardCharsets.UTF_8;
+			}
+
+			@Override
+			public Object getContainerRequest()
+			{
+				return null;
+			}
+		};
+	}
+
+	/**
+	 * Scores the number of matching mount segments and maps to a handler of its own
+	 */
+	private static class TestMapper extends AbstractMapper implements IMountedRequestMapper
+	{
+		private final String[] mountSegments;
+
+		private final boolean indexed;
+
+		private final IRequestHandler handler = requestCycle -> {
+		};
+
+		private int scored;
+
+		private TestMapper(String mountPath, boolean indexed)
+		{
+			mountSegments = getMountSegments(mountPath);
+			this.indexed = indexed;
+		}
+
+		@Override
+		public String[] getFixedMountSegments()
+		{
+			return indexed ? getFixedSegments(mountSegments) : new String[0];
+		}
+
+		@Override
+		public int getCompatibilityScore(Request request)
+		{
+			scored++;
+			return urlStartsWith(request.getUrl(), mountSegments) ? mountSegments.length : 0;
+		}
+
+		@Override
+		public IRequestHandler mapRequest(Request request)
+		{
+			return urlStartsWith(request.getUrl(), mountSegments) ? handler : null;
+		}
+
+		@Override
+		public Url mapHandler(IRequestHandler requestHandler)
+		{
+			return null;
+		}
+	}
 }
@@ -16,9 +16,11 @@
  */
 package org.apache.wicket.util.resource;
 
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URLConnection;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.attribute.BasicFileAttributes;
@@ -91,7 +93,15 @@ public class FileSystemResourceStream extends AbstractResourceStream
 		{
 			try
 			{
-				inputStream = Files.newInputStream(path);
+				if (path.getFileSystem() == FileSystems.getDefault())
+				{
+					// the channel of a file input stream can transfer the data to the response
+					inputStream = new FileInputStream(path.toFile());
+				}
+				else
+				{
+					inputStream = Files.newInputStream(path);
+				}
 			}
 			catch (IOException e)
 			{